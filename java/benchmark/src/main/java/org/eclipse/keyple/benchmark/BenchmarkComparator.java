@@ -0,0 +1,190 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Compare two JMH result files (JSON format) and report the benchmarks whose performance
+ * regressed beyond a threshold.
+ * <p>
+ * Usage: <code>BenchmarkComparator baseline.json results.json [threshold]</code>, the threshold
+ * being a ratio (0.10 by default, i.e. 10%). The process exits with the status 1 if a regression
+ * is found, with the status 2 if a file is missing.
+ * <p>
+ * No baseline is committed: the scores depend on the machine, the baseline is recorded on the
+ * machine running the comparison by the jmhBaseline task.
+ * <p>
+ * The scores are compared according to the benchmark mode: the higher the better for the
+ * throughput, the lower the better for the other modes. A difference smaller than the sum of the
+ * score errors is not significant. The benchmarks missing in one of the files are listed but are
+ * not regressions.
+ */
+public class BenchmarkComparator {
+
+    static final double DEFAULT_THRESHOLD = 0.10;
+
+    /**
+     * Score of a benchmark
+     */
+    static final class Score {
+        final String mode;
+        final double value;
+        final double error;
+        final String unit;
+
+        Score(String mode, double value, double error, String unit) {
+            this.mode = mode;
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+        }
+
+        boolean higherIsBetter() {
+            return "thrpt".equals(mode);
+        }
+    }
+
+    /**
+     * Read a JMH result file
+     *
+     * @param fileName : JSON file produced with -rf json
+     * @return the scores indexed by benchmark name and parameters
+     * @throws IOException if the file cannot be read
+     */
+    static Map<String, Score> readResults(String fileName) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(fileName), "UTF-8");
+        try {
+            return parseResults(new JsonParser().parse(reader).getAsJsonArray());
+        } finally {
+            reader.close();
+        }
+    }
+
+    static Map<String, Score> parseResults(JsonArray results) {
+        Map<String, Score> scores = new TreeMap<String, Score>();
+        for (JsonElement element : results) {
+            JsonObject result = element.getAsJsonObject();
+            StringBuilder key = new StringBuilder(result.get("benchmark").getAsString());
+            if (result.has("params")) {
+                Map<String, String> params = new TreeMap<String, String>();
+                for (Map.Entry<String, JsonElement> param : result.getAsJsonObject("params")
+                        .entrySet()) {
+                    params.put(param.getKey(), param.getValue().getAsString());
+                }
+                key.append(params);
+            }
+            JsonObject metric = result.getAsJsonObject("primaryMetric");
+            double error = metric.get("scoreError").isJsonPrimitive()
+                    && metric.get("scoreError").getAsJsonPrimitive().isNumber()
+                            ? metric.get("scoreError").getAsDouble()
+                            : 0;
+            scores.put(key.toString(),
+                    new Score(result.get("mode").getAsString(),
+                            metric.get("score").getAsDouble(), error,
+                            metric.get("scoreUnit").getAsString()));
+        }
+        return scores;
+    }
+
+    /**
+     * Compare the results with the baseline
+     *
+     * @param baseline : scores of reference
+     * @param results : scores to check
+     * @param threshold : tolerated degradation ratio
+     * @param report : comparison report, one line per benchmark
+     * @return the number of regressions
+     */
+    static int compare(Map<String, Score> baseline, Map<String, Score> results, double threshold,
+            StringBuilder report) {
+        int regressions = 0;
+        Map<String, Score> remaining = new LinkedHashMap<String, Score>(baseline);
+        for (Map.Entry<String, Score> entry : results.entrySet()) {
+            Score score = entry.getValue();
+            Score reference = remaining.remove(entry.getKey());
+            if (reference == null) {
+                report.append(String.format("NEW        %s: %.3f %s%n", entry.getKey(),
+                        score.value, score.unit));
+                continue;
+            }
+            if (!reference.unit.equals(score.unit) || !reference.mode.equals(score.mode)) {
+                report.append(String.format("CHANGED    %s: %s %s -> %s %s, not compared%n",
+                        entry.getKey(), reference.mode, reference.unit, score.mode,
+                        score.unit));
+                continue;
+            }
+            // positive when the performance degrades
+            double degradation = score.higherIsBetter()
+                    ? (reference.value - score.value) / reference.value
+                    : (score.value - reference.value) / reference.value;
+            // differences within the error margins are not significant
+            boolean significant =
+                    Math.abs(score.value - reference.value) > score.error + reference.error;
+            String status;
+            if (degradation > threshold && significant) {
+                status = "REGRESSION";
+                regressions++;
+            } else if (degradation < -threshold && significant) {
+                status = "IMPROVED  ";
+            } else {
+                status = "OK        ";
+            }
+            report.append(String.format("%s %s: %.3f -> %.3f %s (%+.1f%%)%n", status,
+                    entry.getKey(), reference.value, score.value, score.unit,
+                    (0 - degradation) * 100));
+        }
+        for (String name : remaining.keySet()) {
+            report.append(String.format("MISSING    %s%n", name));
+        }
+        return regressions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(
+                    "Usage: BenchmarkComparator baseline.json results.json [threshold]");
+            System.exit(2);
+        }
+        if (!new File(args[0]).isFile()) {
+            System.err.println("No baseline " + args[0]
+                    + ": run jmhBaseline first, after a jmh run on this machine");
+            System.exit(2);
+        }
+        if (!new File(args[1]).isFile()) {
+            System.err.println("No results " + args[1] + ": run jmh first");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        StringBuilder report = new StringBuilder();
+        int regressions =
+                compare(readResults(args[0]), readResults(args[1]), threshold, report);
+        System.out.print(report);
+        if (regressions > 0) {
+            System.out.println(String.format("%d benchmark(s) regressed by more than %.0f%%",
+                    regressions, threshold * 100));
+            System.exit(1);
+        }
+        System.out.println("No regression");
+    }
+}
@@ -0,0 +1,102 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.benchmark.calypso;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.calypso.command.po.parser.GetDataFciRespPars;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordsRespPars;
+import org.eclipse.keyple.plugin.stub.calypso.StubCalypsoPo;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of the PO responses: Read Records (one or several records, as maps or in place views, or
+ * the status only) and FCI of the application selection
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalypsoParsersBenchmark {
+
+    static final String AID = "315449432E49434131";
+
+    ApduResponse singleRecordResponse;
+    ApduResponse multipleRecordsResponse;
+    ApduResponse fciResponse;
+
+    @Setup
+    public void setUp() throws KeypleReaderException {
+        String record = "00112233445566778899AABBCCDDEEFF00112233445566778899AABBCC";
+        singleRecordResponse = new ApduResponse(ByteArrayUtils.fromHex(record + "9000"), null);
+        multipleRecordsResponse = new ApduResponse(ByteArrayUtils.fromHex(
+                "011D" + record + "021D" + record + "031D" + record + "9000"), null);
+        // FCI returned by the simulated PO
+        StubCalypsoPo po = new StubCalypsoPo(StubCalypsoPo.Revision.REV3_1,
+                ByteArrayUtils.fromHex(AID), ByteArrayUtils.fromHex("0000000011223344"));
+        fciResponse = new ApduResponse(
+                po.processApdu(ByteArrayUtils.fromHex("00A4040009" + AID + "00")), null);
+        if (!new GetDataFciRespPars(fciResponse).isValidCalypsoFCI()) {
+            throw new IllegalStateException("Invalid FCI: " + fciResponse);
+        }
+    }
+
+    @Benchmark
+    public void readRecords_singleRecord(Blackhole blackhole) {
+        blackhole.consume(new ReadRecordsRespPars(singleRecordResponse,
+                ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1).getRecords());
+    }
+
+    @Benchmark
+    public void readRecords_multipleRecords(Blackhole blackhole) {
+        blackhole.consume(new ReadRecordsRespPars(multipleRecordsResponse,
+                ReadDataStructure.MULTIPLE_RECORD_DATA, (byte) 1).getRecords());
+    }
+
+    @Benchmark
+    public void readRecords_multipleRecordsViews(Blackhole blackhole) {
+        ReadRecordsRespPars parser = new ReadRecordsRespPars(multipleRecordsResponse,
+                ReadDataStructure.MULTIPLE_RECORD_DATA, (byte) 1);
+        byte[] bytes = parser.getApduResponse().getBytes();
+        for (int i = 0; i < parser.getRecordCount(); i++) {
+            blackhole.consume(bytes[parser.getRecordOffset(i)]);
+        }
+    }
+
+    @Benchmark
+    public boolean readRecords_successOnly() {
+        return new ReadRecordsRespPars(multipleRecordsResponse,
+                ReadDataStructure.MULTIPLE_RECORD_DATA, (byte) 1).isSuccessful();
+    }
+
+    @Benchmark
+    public void getDataFci(Blackhole blackhole) {
+        GetDataFciRespPars parser = new GetDataFciRespPars(fciResponse);
+        blackhole.consume(parser.getApplicationSerialNumber());
+        blackhole.consume(parser.getBufferSizeValue());
+    }
+}
@@ -0,0 +1,153 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.benchmark.calypso;
+
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.PoSelector;
+import org.eclipse.keyple.calypso.transaction.PoTransaction;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelector;
+import org.eclipse.keyple.plugin.stub.StubPlugin;
+import org.eclipse.keyple.plugin.stub.StubProtocolSetting;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.plugin.stub.calypso.StubCalypsoPo;
+import org.eclipse.keyple.plugin.stub.calypso.StubCalypsoSam;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.protocol.ContactlessProtocols;
+import org.eclipse.keyple.seproxy.protocol.Protocol;
+import org.eclipse.keyple.seproxy.protocol.SeProtocolSetting;
+import org.eclipse.keyple.seproxy.protocol.TransmissionMode;
+import org.eclipse.keyple.transaction.SeSelection;
+import org.eclipse.keyple.transaction.SelectionsResult;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full secure session (opening, reading of a record, closing) between the simulated PO and SAM
+ * <p>
+ * The PO and the SAM are selected once, each invocation runs a new PoTransaction on the selected
+ * PO.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PoTransactionBenchmark {
+
+    static final byte[] AID = ByteArrayUtils.fromHex("315449432E49434131");
+    static final byte SFI_ENVIRONMENT = (byte) 0x07;
+    static final byte SFI_EVENT_LOG = (byte) 0x08;
+    static final String PO_READER_NAME = "PoTransactionBenchmark-po";
+    static final String SAM_READER_NAME = "PoTransactionBenchmark-sam";
+
+    @Param({"REV3_1", "REV3_2"})
+    StubCalypsoPo.Revision revision;
+
+    StubCalypsoPo po;
+    StubReader poReader;
+    StubReader samReader;
+    CalypsoPo calypsoPo;
+    EnumMap<PoTransaction.SamSettings, Byte> samSettings;
+
+    @Setup
+    public void setUp() throws KeypleReaderException {
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        stubPlugin.plugStubReader(PO_READER_NAME, true);
+        stubPlugin.plugStubReader(SAM_READER_NAME, true);
+        poReader = (StubReader) stubPlugin.getReader(PO_READER_NAME);
+        samReader = (StubReader) stubPlugin.getReader(SAM_READER_NAME);
+        poReader.addSeProtocolSetting(
+                new SeProtocolSetting(StubProtocolSetting.SETTING_PROTOCOL_ISO14443_4));
+
+        po = new StubCalypsoPo(revision, AID, ByteArrayUtils.fromHex("0000000011223344"))
+                .addLinearFile(SFI_ENVIRONMENT, 0x2001, 1, 29)
+                .addCyclicFile(SFI_EVENT_LOG, 0x2010, 3, 29);
+        po.setRecord(SFI_EVENT_LOG, 1, ByteArrayUtils.fromHex("0102030405"));
+        poReader.insertSe(po);
+        samReader.insertSe(new StubCalypsoSam(ByteArrayUtils.fromHex("12345678")));
+
+        SeSelection samSelection = new SeSelection();
+        samSelection.prepareSelection(
+                new SamSelectionRequest(new SamSelector(SamRevision.C1, null, "SAM"),
+                        ChannelState.KEEP_OPEN, Protocol.ANY));
+        if (!samSelection.processExplicitSelection(samReader).hasActiveSelection()) {
+            throw new IllegalStateException("SAM selection failed");
+        }
+
+        SeSelection poSelection = new SeSelection();
+        poSelection.prepareSelection(new PoSelectionRequest(
+                new PoSelector(new PoSelector.PoAidSelector(AID, PoSelector.InvalidatedPo.REJECT),
+                        null, "PO"),
+                ChannelState.KEEP_OPEN, ContactlessProtocols.PROTOCOL_ISO14443_4));
+        SelectionsResult selectionsResult = poSelection.processExplicitSelection(poReader);
+        if (!selectionsResult.hasActiveSelection()) {
+            throw new IllegalStateException("PO selection failed");
+        }
+        calypsoPo = (CalypsoPo) selectionsResult.getActiveSelection().getMatchingSe();
+
+        samSettings =
+                new EnumMap<PoTransaction.SamSettings, Byte>(PoTransaction.SamSettings.class);
+        samSettings.put(PoTransaction.SamSettings.SAM_DEFAULT_KEY_RECORD_NUMBER,
+                PoTransaction.DEFAULT_KEY_RECORD_NUMER);
+    }
+
+    /**
+     * Each session decrements the transaction counter of the PO
+     */
+    @Setup(Level.Iteration)
+    public void resetTransactionCounter() {
+        po.setTransactionCounter(0xFFFFFF);
+    }
+
+    @TearDown
+    public void tearDown() throws KeypleReaderException, InterruptedException {
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        stubPlugin.unplugStubReader(PO_READER_NAME, true);
+        stubPlugin.unplugStubReader(SAM_READER_NAME, true);
+    }
+
+    @Benchmark
+    public boolean openReadClose() throws KeypleReaderException {
+        PoTransaction poTransaction =
+                new PoTransaction(poReader, calypsoPo, samReader, samSettings);
+        poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, SFI_ENVIRONMENT, (byte) 1);
+        poTransaction.prepareReadRecordsCmd(SFI_EVENT_LOG, ReadDataStructure.SINGLE_RECORD_DATA,
+                (byte) 1, "EventLog");
+        poTransaction.processPoCommandsInSession();
+        poTransaction.processClosing(TransmissionMode.CONTACTLESS, ChannelState.KEEP_OPEN);
+        if (!poTransaction.isSuccessful()) {
+            throw new IllegalStateException("Transaction failed");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,64 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.benchmark.core;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Construction of the ApduResponse, done for each APDU received from a reader
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ApduResponseBenchmark {
+
+    /* a Read Record response */
+    final byte[] response = ByteArrayUtils.fromHex(
+            "00112233445566778899AABBCCDDEEFF00112233445566778899AABBCC9000");
+    final byte[] statusWord = ByteArrayUtils.fromHex("6200");
+    final Set<Integer> successfulStatusCodes = new HashSet<Integer>();
+
+    {
+        successfulStatusCodes.add(0x6200);
+    }
+
+    @Benchmark
+    public void construct(Blackhole blackhole) {
+        ApduResponse apduResponse = new ApduResponse(response, null);
+        blackhole.consume(apduResponse.isSuccessful());
+        blackhole.consume(apduResponse.getDataOut());
+    }
+
+    @Benchmark
+    public void construct_successfulStatusCodes(Blackhole blackhole) {
+        ApduResponse apduResponse = new ApduResponse(statusWord, successfulStatusCodes);
+        blackhole.consume(apduResponse.isSuccessful());
+        blackhole.consume(apduResponse.getStatusCode());
+    }
+}
@@ -0,0 +1,100 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.benchmark.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.plugin.stub.StubSecureElement;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.SeSelector;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.message.SeRequest;
+import org.eclipse.keyple.seproxy.message.SeRequestSet;
+import org.eclipse.keyple.seproxy.message.SeResponseSet;
+import org.eclipse.keyple.seproxy.protocol.Protocol;
+import org.eclipse.keyple.transaction.SeSelection;
+import org.eclipse.keyple.transaction.SeSelectionRequest;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Processing of a request set by AbstractLocalReader over a stub reader: the cost measured is the
+ * one of the reader layer, the stub SE answering instantly
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocalReaderBenchmark {
+
+    @Param({"1", "10"})
+    int apduCount;
+
+    StubReader reader;
+    SeRequestSet requestSet;
+
+    @Setup
+    public void setUp() throws KeypleReaderException {
+        StubSecureElement se = new StubSecureElement() {
+            @Override
+            public byte[] getATR() {
+                return ByteArrayUtils.fromHex("3B8880010000000000718100F9");
+            }
+
+            @Override
+            public String getSeProcotol() {
+                return "PROTOCOL_ISO14443_4";
+            }
+        };
+        se.addHexPrefixCommand("00B2",
+                "00112233445566778899AABBCCDDEEFF00112233445566778899AABBCC9000");
+        se.addHexPrefixCommand("00A404", "6F0A8408315449432E4943419000");
+        reader = new StubReader("LocalReaderBenchmark");
+        reader.insertSe(se);
+
+        // the requests are sent to the application selected once
+        SeSelection seSelection = new SeSelection();
+        seSelection.prepareSelection(new SeSelectionRequest(
+                new SeSelector(new SeSelector.AidSelector(
+                        ByteArrayUtils.fromHex("315449432E494341"), null), null, "AID"),
+                ChannelState.KEEP_OPEN, Protocol.ANY));
+        if (!seSelection.processExplicitSelection(reader).hasActiveSelection()) {
+            throw new IllegalStateException("Selection failed");
+        }
+
+        List<ApduRequest> apduRequests = new ArrayList<ApduRequest>();
+        for (int i = 0; i < apduCount; i++) {
+            apduRequests.add(new ApduRequest(ByteArrayUtils.fromHex("00B2013C00"), false));
+        }
+        requestSet = new SeRequestSet(new SeRequest(apduRequests, ChannelState.KEEP_OPEN));
+    }
+
+    @Benchmark
+    public SeResponseSet processSeRequestSet() throws KeypleReaderException {
+        return reader.transmitSet(requestSet);
+    }
+}
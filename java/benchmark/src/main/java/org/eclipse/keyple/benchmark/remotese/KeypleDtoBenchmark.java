@@ -0,0 +1,80 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.benchmark.remotese;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.plugin.remotese.rm.RemoteMethod;
+import org.eclipse.keyple.plugin.remotese.transport.json.JsonParser;
+import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
+import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDtoHelper;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.message.SeRequest;
+import org.eclipse.keyple.seproxy.message.SeRequestSet;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON encoding and decoding of a transmit request exchanged between the master and a slave
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeypleDtoBenchmark {
+
+    SeRequestSet requestSet;
+    KeypleDto keypleDto;
+    String json;
+
+    @Setup
+    public void setUp() {
+        List<ApduRequest> apduRequests = new ArrayList<ApduRequest>();
+        for (int i = 1; i <= 4; i++) {
+            apduRequests.add(new ApduRequest("Read Record",
+                    ByteArrayUtils.fromHex("00B20" + i + "3C00"), false));
+        }
+        requestSet = new SeRequestSet(new SeRequest(apduRequests, ChannelState.KEEP_OPEN));
+        keypleDto = dto(requestSet);
+        json = KeypleDtoHelper.toJson(keypleDto);
+    }
+
+    private static KeypleDto dto(SeRequestSet requestSet) {
+        return new KeypleDto(RemoteMethod.READER_TRANSMIT.getName(),
+                JsonParser.getGson().toJson(requestSet, SeRequestSet.class), true, "session-1",
+                "native-reader", "virtual-reader", "master", "slave");
+    }
+
+    @Benchmark
+    public String encode() {
+        return KeypleDtoHelper.toJson(dto(requestSet));
+    }
+
+    @Benchmark
+    public SeRequestSet decode() {
+        KeypleDto dto = KeypleDtoHelper.fromJson(json);
+        return JsonParser.getGson().fromJson(dto.getBody(), SeRequestSet.class);
+    }
+}
@@ -0,0 +1,249 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.PoSelector;
+import org.eclipse.keyple.calypso.transaction.PoTransaction;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelector;
+import org.eclipse.keyple.plugin.stub.calypso.StubCalypsoPo;
+import org.eclipse.keyple.plugin.stub.calypso.StubCalypsoSam;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.event.SelectionResponse;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.message.SeRequest;
+import org.eclipse.keyple.seproxy.message.SeRequestSet;
+import org.eclipse.keyple.seproxy.protocol.ContactlessProtocols;
+import org.eclipse.keyple.seproxy.protocol.Protocol;
+import org.eclipse.keyple.seproxy.protocol.SeProtocolSetting;
+import org.eclipse.keyple.seproxy.protocol.TransmissionMode;
+import org.eclipse.keyple.transaction.SeSelection;
+import org.eclipse.keyple.transaction.SelectionsResult;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Allocation budgets of the steady-state processing of the APDUs.
+ * <p>
+ * Each test measures the mean number of bytes allocated per operation, once the code is warmed up,
+ * and fails if it exceeds the budget of the operation. A change allocating more must either be
+ * reworked or raise the budget knowingly.
+ * <p>
+ * The operations run on stub readers, the budgets of the PoTransaction phases include the
+ * allocations of the simulated PO and SAM. The budgets include a margin for the differences between
+ * JVMs, the tests are skipped if the JVM does not count the allocations per thread.
+ * <p>
+ * The tests are in the benchmark module, where nothing is logged: the trace logs enabled by the
+ * tests of the components would be measured as well.
+ */
+public class AllocationBudgetTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AllocationBudgetTest.class);
+
+    /* budgets in bytes per operation */
+    static final long PROCESS_APDU_REQUEST_BUDGET = 256;
+    static final long PROCESS_SE_REQUEST_SET_BUDGET = 1024;
+    static final long PROCESS_DEFAULT_SELECTION_BUDGET = 1024;
+    static final long PO_TRANSACTION_OPENING_BUDGET = 8192;
+    static final long PO_TRANSACTION_COMMANDS_BUDGET = 2048;
+    static final long PO_TRANSACTION_CLOSING_BUDGET = 20480;
+
+    static final int WARMUP_OPERATIONS = 5000;
+    static final int MEASURED_OPERATIONS = 2000;
+
+    private static final byte[] AID = ByteArrayUtils.fromHex("315449432E49434131");
+    private static final byte SFI_ENVIRONMENT = (byte) 0x07;
+    private static final byte SFI_EVENT_LOG = (byte) 0x08;
+    private static final String PO_READER_NAME = "AllocationBudgetTest-po";
+    private static final String SAM_READER_NAME = "AllocationBudgetTest-sam";
+
+    private StubReader poReader;
+    private StubReader samReader;
+    private StubCalypsoPo po;
+
+    @BeforeClass
+    public static void checkSupport() {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+    }
+
+    @Before
+    public void setUp() throws KeypleReaderException {
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        stubPlugin.plugStubReader(PO_READER_NAME, true);
+        stubPlugin.plugStubReader(SAM_READER_NAME, true);
+        poReader = (StubReader) stubPlugin.getReader(PO_READER_NAME);
+        samReader = (StubReader) stubPlugin.getReader(SAM_READER_NAME);
+        poReader.addSeProtocolSetting(
+                new SeProtocolSetting(StubProtocolSetting.SETTING_PROTOCOL_ISO14443_4));
+        po = new StubCalypsoPo(StubCalypsoPo.Revision.REV3_1, AID,
+                ByteArrayUtils.fromHex("0000000011223344"))
+                        .addLinearFile(SFI_ENVIRONMENT, 0x2001, 1, 29)
+                        .addCyclicFile(SFI_EVENT_LOG, 0x2010, 3, 29);
+        po.setRecord(SFI_ENVIRONMENT, 1, ByteArrayUtils.fromHex("24B92848080000131A5000"));
+        poReader.insertSe(po);
+        samReader.insertSe(new StubCalypsoSam(ByteArrayUtils.fromHex("12345678")));
+    }
+
+    @After
+    public void tearDown() throws KeypleReaderException, InterruptedException {
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        stubPlugin.unplugStubReader(PO_READER_NAME, true);
+        stubPlugin.unplugStubReader(SAM_READER_NAME, true);
+    }
+
+    private static void assertBudget(String operation, AllocationMeter meter, long budget) {
+        long allocated = meter.bytesPerOperation();
+        logger.info("{} : {} bytes per operation (budget {})", operation, allocated, budget);
+        Assert.assertTrue(operation + " allocates " + allocated + " bytes, budget is " + budget,
+                allocated <= budget);
+    }
+
+    private PoSelectionRequest poSelectionRequest() {
+        PoSelectionRequest poSelectionRequest = new PoSelectionRequest(
+                new PoSelector(new PoSelector.PoAidSelector(AID, PoSelector.InvalidatedPo.REJECT),
+                        null, "PO"),
+                ChannelState.KEEP_OPEN, ContactlessProtocols.PROTOCOL_ISO14443_4);
+        poSelectionRequest.prepareReadRecordsCmd(SFI_ENVIRONMENT,
+                ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1, "Environment");
+        return poSelectionRequest;
+    }
+
+    private CalypsoPo selectPo() throws KeypleReaderException {
+        SeSelection seSelection = new SeSelection();
+        seSelection.prepareSelection(poSelectionRequest());
+        SelectionsResult selectionsResult = seSelection.processExplicitSelection(poReader);
+        Assert.assertTrue(selectionsResult.hasActiveSelection());
+        return (CalypsoPo) selectionsResult.getActiveSelection().getMatchingSe();
+    }
+
+    @Test
+    public void processApduRequest() throws KeypleReaderException {
+        selectPo();
+        ApduRequest apduRequest = new ApduRequest(ByteArrayUtils.fromHex("00B2013C00"), false);
+        AllocationMeter meter = new AllocationMeter();
+        for (int i = 0; i < WARMUP_OPERATIONS + MEASURED_OPERATIONS; i++) {
+            if (i == WARMUP_OPERATIONS) {
+                meter.reset();
+            }
+            meter.begin();
+            poReader.processApduRequestTestProxy(apduRequest);
+            meter.end();
+        }
+        assertBudget("processApduRequest", meter, PROCESS_APDU_REQUEST_BUDGET);
+    }
+
+    @Test
+    public void processSeRequestSet() throws KeypleReaderException {
+        selectPo();
+        List<ApduRequest> apduRequests = new ArrayList<ApduRequest>();
+        apduRequests.add(new ApduRequest(ByteArrayUtils.fromHex("00B2013C00"), false));
+        apduRequests.add(new ApduRequest(ByteArrayUtils.fromHex("00B2014400"), false));
+        SeRequestSet requestSet =
+                new SeRequestSet(new SeRequest(apduRequests, ChannelState.KEEP_OPEN));
+        AllocationMeter meter = new AllocationMeter();
+        for (int i = 0; i < WARMUP_OPERATIONS + MEASURED_OPERATIONS; i++) {
+            if (i == WARMUP_OPERATIONS) {
+                meter.reset();
+            }
+            meter.begin();
+            poReader.processSeRequestSetTestProxy(requestSet);
+            meter.end();
+        }
+        assertBudget("processSeRequestSet", meter, PROCESS_SE_REQUEST_SET_BUDGET);
+    }
+
+    @Test
+    public void processDefaultSelection() throws KeypleReaderException {
+        SeSelection seSelection = new SeSelection();
+        seSelection.prepareSelection(poSelectionRequest());
+        SelectionResponse selectionResponse = new SelectionResponse(poReader.transmitSet(
+                seSelection.getSelectionOperation().getSelectionSeRequestSet()));
+        AllocationMeter meter = new AllocationMeter();
+        for (int i = 0; i < WARMUP_OPERATIONS + MEASURED_OPERATIONS; i++) {
+            if (i == WARMUP_OPERATIONS) {
+                meter.reset();
+            }
+            meter.begin();
+            SelectionsResult selectionsResult =
+                    seSelection.processDefaultSelection(selectionResponse);
+            meter.end();
+            Assert.assertTrue(selectionsResult.hasActiveSelection());
+        }
+        assertBudget("processDefaultSelection", meter, PROCESS_DEFAULT_SELECTION_BUDGET);
+    }
+
+    @Test
+    public void poTransaction() throws KeypleReaderException {
+        SeSelection samSelection = new SeSelection();
+        samSelection.prepareSelection(
+                new SamSelectionRequest(new SamSelector(SamRevision.C1, null, "SAM"),
+                        ChannelState.KEEP_OPEN, Protocol.ANY));
+        Assert.assertTrue(samSelection.processExplicitSelection(samReader).hasActiveSelection());
+        CalypsoPo calypsoPo = selectPo();
+        EnumMap<PoTransaction.SamSettings, Byte> samSettings =
+                new EnumMap<PoTransaction.SamSettings, Byte>(PoTransaction.SamSettings.class);
+        samSettings.put(PoTransaction.SamSettings.SAM_DEFAULT_KEY_RECORD_NUMBER,
+                PoTransaction.DEFAULT_KEY_RECORD_NUMER);
+        byte[] event = ByteArrayUtils.fromHex("0102030405060708");
+
+        AllocationMeter openingMeter = new AllocationMeter();
+        AllocationMeter commandsMeter = new AllocationMeter();
+        AllocationMeter closingMeter = new AllocationMeter();
+        int warmup = WARMUP_OPERATIONS / 5;
+        for (int i = 0; i < warmup + MEASURED_OPERATIONS; i++) {
+            if (i == warmup) {
+                openingMeter.reset();
+                commandsMeter.reset();
+                closingMeter.reset();
+            }
+            openingMeter.begin();
+            PoTransaction poTransaction =
+                    new PoTransaction(poReader, calypsoPo, samReader, samSettings);
+            boolean opened = poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                    PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, SFI_ENVIRONMENT,
+                    (byte) 1);
+            openingMeter.end();
+
+            commandsMeter.begin();
+            poTransaction.prepareReadRecordsCmd(SFI_EVENT_LOG,
+                    ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1, "EventLog");
+            boolean processed = poTransaction.processPoCommandsInSession();
+            commandsMeter.end();
+
+            closingMeter.begin();
+            poTransaction.prepareAppendRecordCmd(SFI_EVENT_LOG, event, "EventLog");
+            boolean closed = poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                    ChannelState.KEEP_OPEN);
+            closingMeter.end();
+
+            Assert.assertTrue(opened && processed && closed);
+        }
+        assertBudget("PoTransaction opening", openingMeter, PO_TRANSACTION_OPENING_BUDGET);
+        assertBudget("PoTransaction commands", commandsMeter, PO_TRANSACTION_COMMANDS_BUDGET);
+        assertBudget("PoTransaction closing", closingMeter, PO_TRANSACTION_CLOSING_BUDGET);
+    }
+}
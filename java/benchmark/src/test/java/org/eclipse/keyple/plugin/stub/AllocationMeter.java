@@ -0,0 +1,91 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measure of the bytes allocated by the current thread, based on the allocation counters of the
+ * HotSpot ThreadMXBean.
+ * <p>
+ * Each {@link #begin()}/{@link #end()} pair measures one operation, the meter gives the mean
+ * number of bytes allocated per operation.
+ */
+class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean threadMXBean = sunThreadMXBean();
+
+    /* bytes allocated by the measure itself, depends on the JVM */
+    private static final long overhead = isSupported() ? measureOverhead() : 0;
+
+    private long start;
+    private long allocatedBytes;
+    private int operations;
+
+    private static com.sun.management.ThreadMXBean sunThreadMXBean() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadMXBean =
+                    (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported()) {
+                sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+                return sunThreadMXBean;
+            }
+        }
+        return null;
+    }
+
+    private static long measureOverhead() {
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long start = currentThreadAllocatedBytes();
+            overhead = Math.min(overhead, currentThreadAllocatedBytes() - start);
+        }
+        return overhead;
+    }
+
+    /**
+     * @return true if the JVM counts the bytes allocated by each thread
+     */
+    static boolean isSupported() {
+        return threadMXBean != null;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    void begin() {
+        start = currentThreadAllocatedBytes();
+    }
+
+    void end() {
+        allocatedBytes += currentThreadAllocatedBytes() - start - overhead;
+        operations++;
+    }
+
+    /**
+     * Forget the operations measured so far (e.g. during the warmup)
+     */
+    void reset() {
+        allocatedBytes = 0;
+        operations = 0;
+    }
+
+    /**
+     * @return the mean number of bytes allocated per operation
+     */
+    long bytesPerOperation() {
+        return operations == 0 ? 0 : allocatedBytes / operations;
+    }
+}
@@ -33,6 +33,16 @@ public abstract class AbstractPoCommandBuilder<T extends AbstractApduResponsePar
         super(reference, request);
     }
 
+    /**
+     * Constructor dedicated for the building of user-defined commands
+     *
+     * @param name the name of the command (will appear in the ApduRequest log)
+     * @param request the ApduRequest (the correct instruction byte must be provided)
+     */
+    public AbstractPoCommandBuilder(String name, ApduRequest request) {
+        super(name, request);
+    }
+
     /**
      * Create the response parser matching the builder
      *
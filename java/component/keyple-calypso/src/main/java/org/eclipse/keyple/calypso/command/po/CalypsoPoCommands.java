@@ -55,7 +55,19 @@ public enum CalypsoPoCommands implements CommandsTable {
     SELECT_FILE("Select File", (byte) 0xA4),
 
     /* The po change key */
-    CHANGE_KEY("Change Key", (byte) 0xD8);
+    CHANGE_KEY("Change Key", (byte) 0xD8),
+
+    /** The po read record multiple. */
+    READ_RECORD_MULTIPLE("Read Record Multiple", (byte) 0xB3),
+
+    /** The po search record multiple. */
+    SEARCH_RECORD_MULTIPLE("Search Record Multiple", (byte) 0xA2),
+
+    /** The po increase multiple counters. */
+    INCREASE_MULTIPLE("Increase Multiple", (byte) 0x3A),
+
+    /** The po decrease multiple counters. */
+    DECREASE_MULTIPLE("Decrease Multiple", (byte) 0x38);
 
     /** The name. */
     private final String name;
@@ -12,16 +12,19 @@
 package org.eclipse.keyple.calypso.command.po;
 
 import org.eclipse.keyple.calypso.command.CalypsoBuilderParser;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
 
 /**
  * The PoBuilderParser class contains the builder of a {@link PoSendableInSession} command
  * <p>
- * A setter allows to associate the parser object.
+ * A setter allows to associate the parser object, or the response from which the parser is
+ * created on first access.
  */
 public class PoBuilderParser<T>
         implements CalypsoBuilderParser<AbstractPoCommandBuilder, AbstractPoResponseParser> {
     private final AbstractPoCommandBuilder poCommandBuilder;
     private AbstractPoResponseParser poResponseParser;
+    private ApduResponse apduResponse;
 
     public PoBuilderParser(AbstractPoCommandBuilder poCommandBuilder) {
         this.poCommandBuilder = poCommandBuilder;
@@ -31,11 +34,31 @@ public class PoBuilderParser<T>
         return poCommandBuilder;
     }
 
+    /**
+     * @return the parser of the response, created by the command builder on the first call if the
+     *         response was set with {@link #setApduResponse(ApduResponse)}, null if no response is
+     *         available
+     */
     public AbstractPoResponseParser getResponseParser() {
+        if (poResponseParser == null && apduResponse != null) {
+            poResponseParser =
+                    (AbstractPoResponseParser) poCommandBuilder.createResponseParser(apduResponse);
+        }
         return poResponseParser;
     }
 
     public void setResponseParser(AbstractPoResponseParser poResponseParser) {
         this.poResponseParser = poResponseParser;
+        this.apduResponse = null;
+    }
+
+    /**
+     * Set the response to the command, the parser is only created when requested
+     *
+     * @param apduResponse the response of the PO
+     */
+    public void setApduResponse(ApduResponse apduResponse) {
+        this.apduResponse = apduResponse;
+        this.poResponseParser = null;
     }
 }
@@ -11,17 +11,25 @@
  ********************************************************************************/
 package org.eclipse.keyple.calypso.command.po;
 
-import org.eclipse.keyple.command.AbstractIso7816CommandBuilder;
 import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
 
 /**
  * Class to build custom (non-referenced) modification PO commands
+ * <p>
+ * When sent in the closing of a secure session, the response of the command is anticipated: the
+ * response expected from the PO must be provided if it is not a simple 9000.
  */
-public class PoCustomModificationCommandBuilder extends AbstractIso7816CommandBuilder
-        implements PoModificationCommand {
+public class PoCustomModificationCommandBuilder
+        extends AbstractPoCommandBuilder<AbstractPoResponseParser>
+        implements PoModificationCommand, PoSendableInSession {
+
+    private static final byte[] SW_SUCCESS = {(byte) 0x90, (byte) 0x00};
 
     protected PoRevision defaultRevision = PoRevision.REV3_1;
 
+    private final byte[] anticipatedResponse;
+
     /**
      * Constructor dedicated to the construction of user-defined commands.
      *
@@ -38,6 +46,34 @@ public class PoCustomModificationCommandBuilder extends AbstractIso7816CommandBu
      * @param request the ApduRequest (the correct instruction byte must be provided)
      */
     public PoCustomModificationCommandBuilder(String name, ApduRequest request) {
+        this(name, request, SW_SUCCESS);
+    }
+
+    /**
+     * Constructor dedicated to the construction of user-defined commands with a known response.
+     *
+     * @param name the name of the command (will appear in the ApduRequest log)
+     * @param request the ApduRequest (the correct instruction byte must be provided)
+     * @param anticipatedResponse the response expected from the PO, including the status word
+     */
+    public PoCustomModificationCommandBuilder(String name, ApduRequest request,
+            byte[] anticipatedResponse) {
         super("PO Custom Modification Command: " + name, request);
+        if (anticipatedResponse == null || anticipatedResponse.length < 2) {
+            throw new IllegalArgumentException("Bad anticipated response.");
+        }
+        this.anticipatedResponse = anticipatedResponse.clone();
+    }
+
+    /**
+     * @return the response expected from the PO, including the status word
+     */
+    public byte[] getAnticipatedResponse() {
+        return anticipatedResponse.clone();
+    }
+
+    @Override
+    public AbstractPoResponseParser createResponseParser(ApduResponse apduResponse) {
+        return new AbstractPoResponseParser(apduResponse) {};
     }
 }
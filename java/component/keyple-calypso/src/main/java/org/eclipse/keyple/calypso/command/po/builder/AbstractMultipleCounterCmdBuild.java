@@ -0,0 +1,79 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.builder;
+
+import java.util.Map;
+import java.util.SortedMap;
+import org.eclipse.keyple.calypso.command.PoClass;
+import org.eclipse.keyple.calypso.command.po.*;
+import org.eclipse.keyple.calypso.command.po.parser.AbstractMultipleCounterRespPars;
+
+/**
+ * The Class AbstractMultipleCounterCmdBuild. This class provides the encoding of the counters list
+ * shared by the Increase Multiple and Decrease Multiple APDU commands (rev3.3).
+ */
+public abstract class AbstractMultipleCounterCmdBuild<T extends AbstractMultipleCounterRespPars>
+        extends AbstractPoCommandBuilder<T> implements PoSendableInSession, PoModificationCommand {
+
+    /** maximum number of counters of a command */
+    private static final int MAX_COUNTERS = 62;
+
+    /**
+     * Instantiates a new multiple counter cmd build from command parameters.
+     *
+     * @param command the command (Increase Multiple or Decrease Multiple)
+     * @param poClass indicates which CLA byte should be used for the Apdu
+     * @param sfi SFI of the file to select or 00h for current EF
+     * @param counterNumberToValue the values of the operation (positive ints &lt;= 16777215
+     *        [FFFFFFh]) indexed by counter number (&gt;= 1)
+     * @param extraInfo extra information included in the logs (can be null or empty)
+     * @throws java.lang.IllegalArgumentException - if a counter number or a value is out of range
+     * @throws java.lang.IllegalArgumentException - if the command is inconsistent
+     */
+    protected AbstractMultipleCounterCmdBuild(CalypsoPoCommands command, PoClass poClass,
+            byte sfi, SortedMap<Integer, Integer> counterNumberToValue, String extraInfo)
+            throws IllegalArgumentException {
+        super(command, null);
+
+        if (counterNumberToValue == null || counterNumberToValue.isEmpty()
+                || counterNumberToValue.size() > MAX_COUNTERS) {
+            throw new IllegalArgumentException("Bad number of counters.");
+        }
+
+        /* counter number (1 byte) and value (3 bytes) for each counter */
+        byte[] dataIn = new byte[counterNumberToValue.size() * 4];
+        int index = 0;
+        for (Map.Entry<Integer, Integer> entry : counterNumberToValue.entrySet()) {
+            int counterNumber = entry.getKey();
+            int value = entry.getValue();
+            if (counterNumber < 1 || counterNumber > 255) {
+                throw new IllegalArgumentException("Counter number out of range!");
+            }
+            if (value < 0 || value > 0xFFFFFF) {
+                throw new IllegalArgumentException("Value out of range!");
+            }
+            dataIn[index++] = (byte) counterNumber;
+            dataIn[index++] = (byte) ((value >> 16) & 0xFF);
+            dataIn[index++] = (byte) ((value >> 8) & 0xFF);
+            dataIn[index++] = (byte) (value & 0xFF);
+        }
+
+        byte p2 = (byte) (sfi * 8);
+
+        /* this is a case4 command, we set Le = 0 */
+        this.request = setApduRequest(poClass.getValue(), command, (byte) 0x00, p2, dataIn,
+                (byte) 0x00);
+        if (extraInfo != null) {
+            this.addSubName(extraInfo);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.builder;
+
+import java.util.SortedMap;
+import org.eclipse.keyple.calypso.command.PoClass;
+import org.eclipse.keyple.calypso.command.po.CalypsoPoCommands;
+import org.eclipse.keyple.calypso.command.po.parser.IncreaseMultipleRespPars;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+
+/**
+ * The Class IncreaseMultipleCmdBuild. This class provides the dedicated constructor to build the
+ * Increase Multiple APDU command (rev3.3), replacing a Increase command per counter of the same EF.
+ */
+public final class IncreaseMultipleCmdBuild
+        extends AbstractMultipleCounterCmdBuild<IncreaseMultipleRespPars> {
+
+    /**
+     * Instantiates a new increase multiple cmd build from command parameters.
+     *
+     * @param poClass indicates which CLA byte should be used for the Apdu
+     * @param sfi SFI of the file to select or 00h for current EF
+     * @param counterNumberToValue the values to add to the counters (positive ints &lt;=
+     *        16777215 [FFFFFFh]) indexed by counter number (&gt;= 1)
+     * @param extraInfo extra information included in the logs (can be null or empty)
+     * @throws java.lang.IllegalArgumentException - if a counter number or a value is out of range
+     * @throws java.lang.IllegalArgumentException - if the command is inconsistent
+     */
+    public IncreaseMultipleCmdBuild(PoClass poClass, byte sfi,
+            SortedMap<Integer, Integer> counterNumberToValue, String extraInfo)
+            throws IllegalArgumentException {
+        super(CalypsoPoCommands.INCREASE_MULTIPLE, poClass, sfi, counterNumberToValue, extraInfo);
+    }
+
+    @Override
+    public IncreaseMultipleRespPars createResponseParser(ApduResponse apduResponse) {
+        return new IncreaseMultipleRespPars(apduResponse);
+    }
+}
@@ -0,0 +1,90 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.builder;
+
+import java.util.Collections;
+import java.util.Set;
+import org.eclipse.keyple.calypso.command.PoClass;
+import org.eclipse.keyple.calypso.command.po.AbstractPoCommandBuilder;
+import org.eclipse.keyple.calypso.command.po.CalypsoPoCommands;
+import org.eclipse.keyple.calypso.command.po.PoSendableInSession;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordMultipleRespPars;
+import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+
+/**
+ * The Class ReadRecordMultipleCmdBuild. This class provides the dedicated constructor to build the
+ * Read Record Multiple APDU command (rev3.3).
+ * <p>
+ * The same part of the successive records of an EF is read with a single command, e.g. the date
+ * of all the records of an event log.
+ */
+public final class ReadRecordMultipleCmdBuild
+        extends AbstractPoCommandBuilder<ReadRecordMultipleRespPars>
+        implements PoSendableInSession {
+
+    /** The command. */
+    private static final CalypsoPoCommands command = CalypsoPoCommands.READ_RECORD_MULTIPLE;
+
+    /** tag of the data of the command: offset and length of the part of the records to read */
+    private static final byte TAG_RECORD_PART = (byte) 0x54;
+
+    /** a partial read (6200h) is successful, the records read are available */
+    private static final Set<Integer> PARTIAL_READ_STATUS = Collections.singleton(0x6200);
+
+    private final byte firstRecordNumber;
+    private final int length;
+
+    /**
+     * Instantiates a new read record multiple cmd build.
+     *
+     * @param poClass indicates which CLA byte should be used for the Apdu
+     * @param sfi the sfi top select
+     * @param firstRecordNumber the first record to read
+     * @param offset the offset of the part to read in each record
+     * @param length the length of the part to read in each record
+     * @param extraInfo extra information included in the logs (can be null or empty)
+     * @throws java.lang.IllegalArgumentException - if record number &lt; 1
+     * @throws java.lang.IllegalArgumentException - if the offset or the length is out of range
+     */
+    public ReadRecordMultipleCmdBuild(PoClass poClass, byte sfi, byte firstRecordNumber,
+            int offset, int length, String extraInfo) throws IllegalArgumentException {
+        super(command, null);
+
+        if (firstRecordNumber < 1) {
+            throw new IllegalArgumentException("Bad record number (< 1)");
+        }
+        if (offset < 0 || offset > 249 || length < 1 || offset + length > 250) {
+            throw new IllegalArgumentException("Bad offset or length.");
+        }
+
+        this.firstRecordNumber = firstRecordNumber;
+        this.length = length;
+
+        byte p2 = (byte) (sfi * 8 + 5);
+        byte[] dataIn = new byte[] {TAG_RECORD_PART, 0x02, (byte) offset, (byte) length};
+
+        /* this is a case4 command, we set Le = 0 */
+        ApduRequest apduRequest = setApduRequest(poClass.getValue(), command, firstRecordNumber,
+                p2, dataIn, (byte) 0x00);
+        this.request = new ApduRequest(apduRequest.getName(), apduRequest.getBytes(), true,
+                PARTIAL_READ_STATUS);
+        if (extraInfo != null) {
+            this.addSubName(extraInfo);
+        }
+    }
+
+    @Override
+    public ReadRecordMultipleRespPars createResponseParser(ApduResponse apduResponse) {
+        return new ReadRecordMultipleRespPars(apduResponse, firstRecordNumber, length);
+    }
+}
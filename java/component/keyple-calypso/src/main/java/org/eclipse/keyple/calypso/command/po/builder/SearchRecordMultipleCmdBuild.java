@@ -0,0 +1,104 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.builder;
+
+import org.eclipse.keyple.calypso.command.PoClass;
+import org.eclipse.keyple.calypso.command.po.AbstractPoCommandBuilder;
+import org.eclipse.keyple.calypso.command.po.CalypsoPoCommands;
+import org.eclipse.keyple.calypso.command.po.PoSendableInSession;
+import org.eclipse.keyple.calypso.command.po.parser.SearchRecordMultipleRespPars;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+
+/**
+ * The Class SearchRecordMultipleCmdBuild. This class provides the dedicated constructor to build
+ * the Search Record Multiple APDU command (rev3.3).
+ * <p>
+ * The records of an EF containing a value at a given offset are searched with a single command,
+ * optionally returning the content of the first matching record.
+ */
+public final class SearchRecordMultipleCmdBuild
+        extends AbstractPoCommandBuilder<SearchRecordMultipleRespPars>
+        implements PoSendableInSession {
+
+    /** The command. */
+    private static final CalypsoPoCommands command = CalypsoPoCommands.SEARCH_RECORD_MULTIPLE;
+
+    /** flags of the command data */
+    private static final byte FLAG_REPEATED_OFFSET = (byte) 0x80;
+    private static final byte FLAG_FETCH_FIRST_MATCHING_RESULT = (byte) 0x01;
+
+    private final boolean fetchFirstMatchingResult;
+
+    /**
+     * Instantiates a new search record multiple cmd build.
+     *
+     * @param poClass indicates which CLA byte should be used for the Apdu
+     * @param sfi the sfi top select
+     * @param firstRecordNumber the record from which the search starts
+     * @param searchOffset the offset of the searched data in the records
+     * @param repeatedOffset true to search the data at each position from the offset to the end
+     *        of the records
+     * @param fetchFirstMatchingResult true to get the content of the first matching record
+     * @param searchData the searched data
+     * @param mask the bits of the searched data taken into account, same length as the searched
+     *        data (null to compare all the bits)
+     * @param extraInfo extra information included in the logs (can be null or empty)
+     * @throws java.lang.IllegalArgumentException - if record number &lt; 1
+     * @throws java.lang.IllegalArgumentException - if the request is inconsistent
+     */
+    public SearchRecordMultipleCmdBuild(PoClass poClass, byte sfi, byte firstRecordNumber,
+            int searchOffset, boolean repeatedOffset, boolean fetchFirstMatchingResult,
+            byte[] searchData, byte[] mask, String extraInfo) throws IllegalArgumentException {
+        super(command, null);
+
+        if (firstRecordNumber < 1) {
+            throw new IllegalArgumentException("Bad record number (< 1)");
+        }
+        if (searchData == null || searchData.length == 0 || searchData.length > 250) {
+            throw new IllegalArgumentException("Bad search data.");
+        }
+        if (searchOffset < 0 || searchOffset + searchData.length > 250) {
+            throw new IllegalArgumentException("Bad search offset.");
+        }
+        if (mask != null && mask.length != searchData.length) {
+            throw new IllegalArgumentException("The mask and the search data lengths differ.");
+        }
+
+        this.fetchFirstMatchingResult = fetchFirstMatchingResult;
+
+        byte p2 = (byte) (sfi * 8 + 7);
+
+        /* offset, flags, length, data [, mask] */
+        int dataLength = 3 + searchData.length + (mask != null ? mask.length : 0);
+        byte[] dataIn = new byte[dataLength];
+        dataIn[0] = (byte) searchOffset;
+        dataIn[1] = (byte) ((repeatedOffset ? FLAG_REPEATED_OFFSET : 0)
+                | (fetchFirstMatchingResult ? FLAG_FETCH_FIRST_MATCHING_RESULT : 0));
+        dataIn[2] = (byte) searchData.length;
+        System.arraycopy(searchData, 0, dataIn, 3, searchData.length);
+        if (mask != null) {
+            System.arraycopy(mask, 0, dataIn, 3 + searchData.length, mask.length);
+        }
+
+        /* this is a case4 command, we set Le = 0 */
+        this.request = setApduRequest(poClass.getValue(), command, firstRecordNumber, p2, dataIn,
+                (byte) 0x00);
+        if (extraInfo != null) {
+            this.addSubName(extraInfo);
+        }
+    }
+
+    @Override
+    public SearchRecordMultipleRespPars createResponseParser(ApduResponse apduResponse) {
+        return new SearchRecordMultipleRespPars(apduResponse, fetchFirstMatchingResult);
+    }
+}
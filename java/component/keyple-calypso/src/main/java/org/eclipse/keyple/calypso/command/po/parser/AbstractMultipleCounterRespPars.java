@@ -0,0 +1,89 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.parser;
+
+import java.util.*;
+import org.eclipse.keyple.calypso.command.po.AbstractPoResponseParser;
+import org.eclipse.keyple.command.AbstractApduResponseParser;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+
+/**
+ * Increase Multiple (003A) and Decrease Multiple (0038) response parser. The response holds the
+ * counter number and the new value of each counter modified.
+ */
+public abstract class AbstractMultipleCounterRespPars extends AbstractPoResponseParser {
+
+    private static final Map<Integer, StatusProperties> STATUS_TABLE;
+
+    static {
+        Map<Integer, StatusProperties> m =
+                new HashMap<Integer, StatusProperties>(AbstractApduResponseParser.STATUS_TABLE);
+        m.put(0x6400, new StatusProperties(false, "Too many modifications in session."));
+        m.put(0x6700, new StatusProperties(false, "Lc value not supported."));
+        m.put(0x6981, new StatusProperties(false, "The current EF is not a Counters EF."));
+        m.put(0x6982, new StatusProperties(false,
+                "Security conditions not fulfilled (no session, wrong key, encryption required)."));
+        m.put(0x6985, new StatusProperties(false,
+                "Access forbidden (Never access mode, DF is invalidated, etc.)"));
+        m.put(0x6986, new StatusProperties(false, "Command not allowed (no current EF)."));
+        m.put(0x6A80, new StatusProperties(false, "Overflow error."));
+        m.put(0x6A82, new StatusProperties(false, "File not found."));
+        m.put(0x6B00, new StatusProperties(false, "P1 or P2 value not supported."));
+        m.put(0x9000, new StatusProperties(true, "Successful execution."));
+        STATUS_TABLE = m;
+    }
+
+    /** map built on first call to getNewValues */
+    private SortedMap<Integer, Integer> newValues;
+
+    /**
+     * Constructor to build a parser of a multiple counter command response.
+     *
+     * @param response response to parse
+     */
+    protected AbstractMultipleCounterRespPars(ApduResponse response) {
+        super(response);
+    }
+
+    @Override
+    protected Map<Integer, StatusProperties> getStatusTable() {
+        // the status table is the same for the Increase and Decrease Multiple commands
+        return STATUS_TABLE;
+    }
+
+    /**
+     * The map is built on the first call and is not modifiable.
+     *
+     * @return the new values of the counters indexed by counter number, empty if the command
+     *         failed
+     */
+    public SortedMap<Integer, Integer> getNewValues() {
+        if (newValues == null) {
+            SortedMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
+            if (response.isSuccessful()) {
+                byte[] apdu = response.getBytes();
+                /* counter number (1 byte) and new value (3 bytes) for each counter */
+                for (int i = 0; i + 4 <= apdu.length - 2; i += 4) {
+                    map.put(apdu[i] & 0xFF, ((apdu[i + 1] & 0xFF) << 16)
+                            | ((apdu[i + 2] & 0xFF) << 8) | (apdu[i + 3] & 0xFF));
+                }
+            }
+            newValues = Collections.unmodifiableSortedMap(map);
+        }
+        return newValues;
+    }
+
+    @Override
+    public String toString() {
+        return "New counter values: " + getNewValues();
+    }
+}
@@ -0,0 +1,30 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.parser;
+
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+
+/**
+ * Decrease Multiple (0038) response parser. The response holds the counter number and the new
+ * value of each counter modified (see {@link #getNewValues()}).
+ */
+public final class DecreaseMultipleRespPars extends AbstractMultipleCounterRespPars {
+
+    /**
+     * Constructor to build a parser of the Decrease Multiple command response.
+     *
+     * @param response response to parse
+     */
+    public DecreaseMultipleRespPars(ApduResponse response) {
+        super(response);
+    }
+}
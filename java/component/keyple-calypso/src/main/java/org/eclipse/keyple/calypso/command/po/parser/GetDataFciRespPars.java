@@ -11,15 +11,16 @@
  ********************************************************************************/
 package org.eclipse.keyple.calypso.command.po.parser;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.keyple.calypso.command.po.AbstractPoResponseParser;
 import org.eclipse.keyple.command.AbstractApduResponseParser;
 import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.BerTlvReader;
 import org.eclipse.keyple.util.ByteArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.sun.jndi.ldap.BerDecoder;
 
 
 /**
@@ -82,7 +83,6 @@ public final class GetDataFciRespPars extends AbstractPoResponseParser {
     private boolean isValidCalypsoFCI = false;
     private byte[] dfName = null;
     private byte[] applicationSN = null;
-    private byte[] discretionaryData = null;
     private byte siBufferSizeIndicator = 0;
     private byte siPlatform = 0;
     private byte siApplicationType = 0;
@@ -91,6 +91,9 @@ public final class GetDataFciRespPars extends AbstractPoResponseParser {
     private byte siSoftwareVersion = 0;
     private byte siSoftwareRevision = 0;
 
+    /** length of the startup information */
+    private static final int STARTUP_INFORMATION_LENGTH = 7;
+
     /** Application type bitmasks features */
     private final static byte APP_TYPE_WITH_CALYPSO_PIN = 0x01;
     private final static byte APP_TYPE_WITH_CALYPSO_SV = 0x02;
@@ -119,7 +122,8 @@ public final class GetDataFciRespPars extends AbstractPoResponseParser {
      * <p>
      * All fields are pre-initialized to handle the case where the parsing fails.
      * <p>
-     * The TLV processing is done with a standard ASN.1 BerDecoder.
+     * The TLV structure is walked in place with a {@link BerTlvReader}, the data objects can
+     * appear in any order in their template and the unknown ones are ignored.
      * 
      * @param selectApplicationResponse the selectApplicationResponse from Get Data APDU commmand
      */
@@ -127,9 +131,6 @@ public final class GetDataFciRespPars extends AbstractPoResponseParser {
         super(selectApplicationResponse);
 
         final byte[] response = selectApplicationResponse.getBytes();
-        byte[] octetString;
-        int[] rlen = new int[1];
-        BerDecoder ber;
 
         /* check the command status to determine if the DF has been invalidated */
         if (selectApplicationResponse.getStatusCode() == 0x6283) {
@@ -138,79 +139,91 @@ public final class GetDataFciRespPars extends AbstractPoResponseParser {
             isDfInvalidated = true;
         }
 
-        /* parse the raw data with the help of the BerDecoder class */
-        try {
-            /* init BerDecoder object */
-            ber = new BerDecoder(response, 0, response.length);
-
-            /* Extract the FCI Template */
-            octetString = ber.parseOctetString(TAG_FCI_TEMPLATE, null);
-
-            ber = new BerDecoder(octetString, 0, octetString.length);
-
-            /* Get the DF Name */
-            dfName = ber.parseOctetString(TAG_DF_NAME, rlen);
-
-            /* Get the FCI Proprietary Template */
-            ber = new BerDecoder(octetString, rlen[0], octetString.length);
-
-            octetString = ber.parseOctetString(TAG_FCI_PROPRIETARY_TEMPLATE, rlen);
+        /* the status word is not part of the FCI */
+        BerTlvReader tlv = new BerTlvReader(response, 0, response.length - 2);
 
-            /* Get the FCI Issuer Discretionary Data */
-            ber = new BerDecoder(octetString, 0, octetString.length);
-
-            /*
-             * We process the TAG_FCI_ISSUER_DISCRETIONARY_DATA tag here in a particular way since
-             * the BerDecoder we use does not support 2-byte tags. We first check the two bytes of
-             * the TAG field and then skip the LENGTH field using an offset value of 3 to obtain the
-             * following data.
-             */
-            byte b = (byte) ber.parseByte();
-            if (b != (byte) (TAG_FCI_ISSUER_DISCRETIONARY_DATA >> 8)) {
-                throw new IllegalStateException(
-                        String.format("Encountered ASN.1 tag %d (expected tag %d)", b,
-                                TAG_FCI_ISSUER_DISCRETIONARY_DATA >> 8));
-            }
-
-            b = (byte) ber.parseByte();
-            if (b != (byte) (TAG_FCI_ISSUER_DISCRETIONARY_DATA & 0xFF)) {
-                throw new IllegalStateException(
-                        String.format("Encountered ASN.1 tag %d (expected tag %d)", b,
-                                TAG_FCI_ISSUER_DISCRETIONARY_DATA & 0xFF));
+        /* Extract the FCI Template */
+        if (!tlv.find(TAG_FCI_TEMPLATE)) {
+            logFciError("FCI Template", tlv);
+            return;
+        }
+        tlv.enter();
+
+        /* Get the DF Name and the FCI Proprietary Template */
+        int proprietaryOffset = -1;
+        int proprietaryLength = 0;
+        while (tlv.next()) {
+            if (tlv.getTag() == TAG_DF_NAME) {
+                dfName = tlv.getValue();
+            } else if (tlv.getTag() == TAG_FCI_PROPRIETARY_TEMPLATE) {
+                proprietaryOffset = tlv.getValueOffset();
+                proprietaryLength = tlv.getValueLength();
             }
+        }
+        if (dfName == null) {
+            logFciError("DF Name", tlv);
+            return;
+        }
+        if (proprietaryOffset < 0) {
+            logFciError("FCI Proprietary Template", tlv);
+            return;
+        }
 
-            ber = new BerDecoder(octetString, 3, octetString.length);
-
-            /* Get the Application Serial Number */
-            applicationSN = ber.parseOctetString(TAG_APPLICATION_SERIAL_NUMBER, rlen);
-
-            if (logger.isDebugEnabled()) {
-                logger.debug("Application Serial Number = {}", ByteArrayUtils.toHex(applicationSN));
+        /* Get the FCI Issuer Discretionary Data */
+        tlv.reset(response, proprietaryOffset, proprietaryLength);
+        if (!tlv.find(TAG_FCI_ISSUER_DISCRETIONARY_DATA)) {
+            logFciError("FCI Issuer Discretionary Data", tlv);
+            return;
+        }
+        tlv.enter();
+
+        /* Get the Application Serial Number and the Discretionary Data */
+        int discretionaryDataOffset = -1;
+        while (tlv.next()) {
+            if (tlv.getTag() == TAG_APPLICATION_SERIAL_NUMBER) {
+                applicationSN = tlv.getValue();
+            } else if (tlv.getTag() == TAG_DISCRETIONARY_DATA
+                    && tlv.getValueLength() >= STARTUP_INFORMATION_LENGTH) {
+                discretionaryDataOffset = tlv.getValueOffset();
             }
+        }
+        if (applicationSN == null) {
+            logFciError("Application Serial Number", tlv);
+            return;
+        }
+        if (discretionaryDataOffset < 0) {
+            logFciError("Discretionary Data", tlv);
+            return;
+        }
 
-            /* Get the Discretionary Data */
-            discretionaryData = ber.parseOctetString(TAG_DISCRETIONARY_DATA, null);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Application Serial Number = {}", ByteArrayUtils.toHex(applicationSN));
+            logger.debug("Discretionary Data = {}",
+                    ByteArrayUtils.toHex(Arrays.copyOfRange(response, discretionaryDataOffset,
+                            discretionaryDataOffset + STARTUP_INFORMATION_LENGTH)));
+        }
 
-            if (logger.isDebugEnabled()) {
-                logger.debug("Discretionary Data = {}", ByteArrayUtils.toHex(discretionaryData));
-            }
+        /*
+         * split discretionary data in as many individual startup information
+         */
+        siBufferSizeIndicator = response[discretionaryDataOffset];
+        siPlatform = response[discretionaryDataOffset + 1];
+        siApplicationType = response[discretionaryDataOffset + 2];
+        siApplicationSubtype = response[discretionaryDataOffset + 3];
+        siSoftwareIssuer = response[discretionaryDataOffset + 4];
+        siSoftwareVersion = response[discretionaryDataOffset + 5];
+        siSoftwareRevision = response[discretionaryDataOffset + 6];
+        /* all 3 main fields were retrieved */
+        isValidCalypsoFCI = true;
+    }
 
-            /*
-             * split discretionary data in as many individual startup information
-             */
-            siBufferSizeIndicator = discretionaryData[0];
-            siPlatform = discretionaryData[1];
-            siApplicationType = discretionaryData[2];
-            siApplicationSubtype = discretionaryData[3];
-            siSoftwareIssuer = discretionaryData[4];
-            siSoftwareVersion = discretionaryData[5];
-            siSoftwareRevision = discretionaryData[6];
-            /* all 3 main fields were retrieved */
-            isValidCalypsoFCI = true;
-
-        } catch (Exception e) {
-            /* Silently ignore problems decoding TLV structure. Just log. */
-            logger.debug("Error while parsing the FCI BER-TLV data structure ({})", e.getMessage());
+    /**
+     * Problems decoding the TLV structure are silently ignored, just logged.
+     */
+    private static void logFciError(String missingDataObject, BerTlvReader tlv) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Error while parsing the FCI BER-TLV data structure ({} {})",
+                    missingDataObject, tlv.isMalformed() ? "malformed" : "not found");
         }
     }
 
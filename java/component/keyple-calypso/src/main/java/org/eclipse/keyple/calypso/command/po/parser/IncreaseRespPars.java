@@ -67,9 +67,11 @@ public final class IncreaseRespPars extends AbstractPoResponseParser {
      *         command response.
      */
     public int getNewValue() throws IllegalStateException {
-        byte[] newValueBuffer = getApduResponse().getDataOut();
-        if (newValueBuffer.length == 3) {
-            return (newValueBuffer[0] << 16) + (newValueBuffer[1] << 8) + newValueBuffer[2];
+        /* decoded in place, the 3 bytes of the value are followed by the status word */
+        byte[] newValueBuffer = getApduResponse().getBytes();
+        if (newValueBuffer.length == 5) {
+            return ((newValueBuffer[0] & 0xFF) << 16) | ((newValueBuffer[1] & 0xFF) << 8)
+                    | (newValueBuffer[2] & 0xFF);
         } else {
             throw new IllegalStateException(
                     "No counter value available in response to the Increase command.");
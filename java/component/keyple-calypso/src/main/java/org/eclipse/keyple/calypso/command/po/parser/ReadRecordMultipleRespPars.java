@@ -0,0 +1,149 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.parser;
+
+import java.util.*;
+import org.eclipse.keyple.calypso.command.po.AbstractPoResponseParser;
+import org.eclipse.keyple.command.AbstractApduResponseParser;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
+
+/**
+ * Read Record Multiple (00B3) response parser.
+ * <p>
+ * The response holds the requested part of the successive records, from the first record read to
+ * the last record of the EF. 6200h indicates that the response could not hold all the records.
+ */
+public final class ReadRecordMultipleRespPars extends AbstractPoResponseParser {
+
+    private static final Map<Integer, StatusProperties> STATUS_TABLE;
+
+    static {
+        Map<Integer, StatusProperties> m =
+                new HashMap<Integer, StatusProperties>(AbstractApduResponseParser.STATUS_TABLE);
+        m.put(0x6200, new StatusProperties(true,
+                "Successful execution, partial read only: issue another Read Record Multiple."));
+        m.put(0x6700, new StatusProperties(false, "Lc value not supported."));
+        m.put(0x6981, new StatusProperties(false, "Command forbidden on binary files"));
+        m.put(0x6982, new StatusProperties(false,
+                "Security conditions not fulfilled (PIN code not presented, encryption required)."));
+        m.put(0x6985, new StatusProperties(false,
+                "Access forbidden (Never access mode, stored value log file and a stored value operation was done during the current session)."));
+        m.put(0x6986, new StatusProperties(false, "Command not allowed (no current EF)"));
+        m.put(0x6A80, new StatusProperties(false, "Incorrect command data (offset or length)."));
+        m.put(0x6A82, new StatusProperties(false, "File not found"));
+        m.put(0x6A83, new StatusProperties(false,
+                "Record not found (record index is 0, or above NumRec"));
+        m.put(0x6B00, new StatusProperties(false, "P1 or P2 value not supported"));
+        m.put(0x9000, new StatusProperties(true, "Successful execution."));
+        STATUS_TABLE = m;
+    }
+
+    @Override
+    protected Map<Integer, StatusProperties> getStatusTable() {
+        return STATUS_TABLE;
+    }
+
+    /** Number of the first record read */
+    private final int firstRecordNumber;
+    /** Length of the part read in each record */
+    private final int length;
+    /** map built on first call to getRecords */
+    private SortedMap<Integer, byte[]> records;
+
+    /**
+     * Instantiates a new ReadRecordMultipleRespPars.
+     *
+     * @param apduResponse the response from the PO
+     * @param firstRecordNumber the number of the first record read
+     * @param length the length of the part read in each record
+     */
+    public ReadRecordMultipleRespPars(ApduResponse apduResponse, int firstRecordNumber,
+            int length) {
+        super(apduResponse);
+        this.firstRecordNumber = firstRecordNumber;
+        this.length = length;
+    }
+
+    /**
+     * @return the number of records read, 0 if the command failed
+     */
+    public int getRecordCount() {
+        if (!response.isSuccessful()) {
+            return 0;
+        }
+        return (response.getBytes().length - 2) / length;
+    }
+
+    /**
+     * @return true if the response could not hold all the records up to the end of the EF
+     */
+    public boolean isPartialRead() {
+        return response.getStatusCode() == 0x6200;
+    }
+
+    /**
+     * @return the number of the record following the last record read (the first record of a
+     *         next Read Record Multiple in case of partial read)
+     */
+    public int getNextRecordNumber() {
+        return firstRecordNumber + getRecordCount();
+    }
+
+    /**
+     * Gets a copy of the part read in a record
+     *
+     * @param recordNumber the record number as defined by the PO specification (starts at 1)
+     * @return the part of the record, null if the record was not read
+     */
+    public byte[] getRecord(int recordNumber) {
+        int index = recordNumber - firstRecordNumber;
+        if (index < 0 || index >= getRecordCount()) {
+            return null;
+        }
+        return Arrays.copyOfRange(response.getBytes(), index * length, (index + 1) * length);
+    }
+
+    /**
+     * The map index follows the PO specification, i.e. starts at 1 for the first record.
+     * <p>
+     * The map is built on the first call and is not modifiable.
+     *
+     * @return the parts of the records read, indexed by record number
+     */
+    public SortedMap<Integer, byte[]> getRecords() {
+        if (records == null) {
+            SortedMap<Integer, byte[]> map = new TreeMap<Integer, byte[]>();
+            int count = getRecordCount();
+            for (int i = 0; i < count; i++) {
+                map.put(firstRecordNumber + i, getRecord(firstRecordNumber + i));
+            }
+            records = Collections.unmodifiableSortedMap(map);
+        }
+        return records;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Record parts: ");
+        for (Iterator<Map.Entry<Integer, byte[]>> it = getRecords().entrySet().iterator(); it
+                .hasNext();) {
+            Map.Entry<Integer, byte[]> entry = it.next();
+            sb.append(String.format("{RECORD = %d, DATA = %s}", entry.getKey(),
+                    ByteArrayUtils.toHex(entry.getValue())));
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -55,8 +55,15 @@ public final class ReadRecordsRespPars extends AbstractPoResponseParser {
     /** Number of the first record read */
     private byte recordNumber;
 
+    /** offsets of the records in the response bytes, decoded on first access */
+    private int[] recordOffsets;
+    /** number of records decoded, -1 if not decoded yet */
+    private int recordCount = -1;
+
     /**
      * Instantiates a new ReadRecordsRespPars.
+     * <p>
+     * The response is decoded on the first access to the records or counters.
      *
      * @param recordNumber the record number
      * @param readDataStructure the type of content in the response to parse
@@ -78,6 +85,125 @@ public final class ReadRecordsRespPars extends AbstractPoResponseParser {
                 || readDataStructure == ReadDataStructure.MULTIPLE_COUNTER;
     }
 
+    /**
+     * Index the records of the response (done once)
+     *
+     * @exception IllegalStateException if the file is a counter file
+     */
+    private void decodeRecords() {
+        if (isCounterFile()) {
+            throw new IllegalStateException("The file is a counter file.");
+        }
+        if (recordCount >= 0) {
+            return;
+        }
+        if (!response.isSuccessful()) {
+            // TODO should we raise an exception?
+            recordCount = 0;
+            return;
+        }
+        byte[] apdu = response.getBytes();
+        int dataLength = apdu.length - 2;
+        if (readDataStructure == ReadDataStructure.SINGLE_RECORD_DATA) {
+            recordOffsets = new int[] {0};
+            recordCount = 1;
+            return;
+        }
+        /* MULTIPLE_RECORD_DATA: record number, length, data... count then index the records */
+        int count = 0;
+        int index = 0;
+        while (index + 2 <= dataLength && index + 2 + (apdu[index + 1] & 0xFF) <= dataLength) {
+            index += 2 + (apdu[index + 1] & 0xFF);
+            count++;
+        }
+        int[] offsets = new int[count];
+        index = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = index + 2;
+            index += 2 + (apdu[index + 1] & 0xFF);
+        }
+        recordOffsets = offsets;
+        recordCount = count;
+    }
+
+    /**
+     * Number of records read, without copying nor boxing (see {@link #getRecordNumber(int)},
+     * {@link #getRecordOffset(int)} and {@link #getRecordLength(int)})
+     *
+     * @return the number of records available, 0 if the command failed
+     * @exception IllegalStateException if the file is a counter file
+     */
+    public int getRecordCount() {
+        decodeRecords();
+        return recordCount;
+    }
+
+    /**
+     * @param index index of the record in the response, from 0 to {@link #getRecordCount()} - 1
+     * @return the record number as defined by the PO specification (starts at 1)
+     * @exception IllegalStateException if the file is a counter file
+     * @exception IndexOutOfBoundsException if the index is out of range
+     */
+    public int getRecordNumber(int index) {
+        checkRecordIndex(index);
+        if (readDataStructure == ReadDataStructure.SINGLE_RECORD_DATA) {
+            return recordNumber;
+        }
+        return response.getBytes()[recordOffsets[index] - 2] & 0xFF;
+    }
+
+    /**
+     * @param index index of the record in the response, from 0 to {@link #getRecordCount()} - 1
+     * @return the offset of the record data in the bytes of {@link #getApduResponse()}
+     * @exception IllegalStateException if the file is a counter file
+     * @exception IndexOutOfBoundsException if the index is out of range
+     */
+    public int getRecordOffset(int index) {
+        checkRecordIndex(index);
+        return recordOffsets[index];
+    }
+
+    /**
+     * @param index index of the record in the response, from 0 to {@link #getRecordCount()} - 1
+     * @return the length of the record data
+     * @exception IllegalStateException if the file is a counter file
+     * @exception IndexOutOfBoundsException if the index is out of range
+     */
+    public int getRecordLength(int index) {
+        checkRecordIndex(index);
+        byte[] apdu = response.getBytes();
+        if (readDataStructure == ReadDataStructure.SINGLE_RECORD_DATA) {
+            return apdu.length - 2;
+        }
+        return apdu[recordOffsets[index] - 1] & 0xFF;
+    }
+
+    /**
+     * Gets a copy of the data of a single record
+     *
+     * @param recordNumber the record number as defined by the PO specification (starts at 1)
+     * @return the record data, null if the record was not read
+     * @exception IllegalStateException if the file is a counter file
+     */
+    public byte[] getRecord(int recordNumber) {
+        int count = getRecordCount();
+        for (int i = 0; i < count; i++) {
+            if (getRecordNumber(i) == recordNumber) {
+                int offset = recordOffsets[i];
+                return Arrays.copyOfRange(response.getBytes(), offset,
+                        offset + getRecordLength(i));
+            }
+        }
+        return null;
+    }
+
+    private void checkRecordIndex(int index) {
+        if (index < 0 || index >= getRecordCount()) {
+            throw new IndexOutOfBoundsException("Record index " + index + ", record count "
+                    + recordCount);
+        }
+    }
+
     /**
      * Parses the Apdu response as a data record (single or multiple), retrieves the records and
      * place it in an map.
@@ -85,34 +211,59 @@ public final class ReadRecordsRespPars extends AbstractPoResponseParser {
      * The map index follows the PO specification, i.e. starts at 1 for the first record.
      * <p>
      * An empty map is returned if no data is available.
+     * <p>
+     * Each call builds a new map holding copies of the records, the caller may modify it.
+     * {@link #getRecord(int)} and the record views ({@link #getRecordCount()}...) avoid copying
+     * all the records.
      * 
      * @return a map of records
-     * @exception IllegalStateException if the parser has not been initialized
+     * @exception IllegalStateException if the file is a counter file
      */
     public SortedMap<Integer, byte[]> getRecords() {
+        int count = getRecordCount();
         SortedMap<Integer, byte[]> records = new TreeMap<Integer, byte[]>();
+        byte[] apdu = response.getBytes();
+        for (int i = 0; i < count; i++) {
+            int offset = recordOffsets[i];
+            records.put(getRecordNumber(i),
+                    Arrays.copyOfRange(apdu, offset, offset + getRecordLength(i)));
+        }
+        return records;
+    }
+
+    /**
+     * Number of counters read, without copying nor boxing (see {@link #getCounterValue(int)})
+     *
+     * @return the number of counters available, 0 if the command failed
+     * @exception IllegalStateException if the file is a data file
+     */
+    public int getCounterCount() {
+        if (!isCounterFile()) {
+            throw new IllegalStateException("The file is a data file.");
+        }
         if (!response.isSuccessful()) {
-            /* return an empty map */
-            // TODO should we raise an exception?
-            return records;
+            return 0;
         }
-        if (readDataStructure == ReadDataStructure.SINGLE_RECORD_DATA) {
-            records.put((int) recordNumber, response.getDataOut());
-        } else if (readDataStructure == ReadDataStructure.MULTIPLE_RECORD_DATA) {
-            byte[] apdu = response.getDataOut();
-            int apduLen = apdu.length;
-            int index = 0;
-            while (apduLen > 0) {
-                byte recordNb = apdu[index++];
-                byte len = apdu[index++];
-                records.put((int) recordNb, Arrays.copyOfRange(apdu, index, index + len));
-                index = index + len;
-                apduLen = apduLen - 2 - len;
-            }
-        } else {
-            throw new IllegalStateException("The file is a counter file.");
+        return (response.getBytes().length - 2) / 3;
+    }
+
+    /**
+     * Decodes a counter value in place
+     *
+     * @param counterNumber the counter number as defined by the PO specification (starts at 1)
+     * @return the 3-byte unsigned value of the counter (up to 2^24 - 1)
+     * @exception IllegalStateException if the file is a data file
+     * @exception IndexOutOfBoundsException if the counter was not read
+     */
+    public int getCounterValue(int counterNumber) {
+        if (counterNumber < 1 || counterNumber > getCounterCount()) {
+            throw new IndexOutOfBoundsException("Counter number " + counterNumber
+                    + ", counter count " + getCounterCount());
         }
-        return records;
+        byte[] apdu = response.getBytes();
+        int index = (counterNumber - 1) * 3;
+        return ((apdu[index] & 0xFF) << 16) | ((apdu[index + 1] & 0xFF) << 8)
+                | (apdu[index + 2] & 0xFF);
     }
 
     /**
@@ -122,35 +273,19 @@ public final class ReadRecordsRespPars extends AbstractPoResponseParser {
      * The map index follows the PO specification, i.e. starts at 1 for the first counter.
      * <p>
      * An empty map is returned if no data is available.
+     * <p>
+     * Each call builds a new map, the caller may modify it. {@link #getCounterValue(int)} decodes
+     * a single counter without boxing.
      *
      * @return a map of counters
-     * @exception IllegalStateException if the parser has not been initialized
+     * @exception IllegalStateException if the file is a data file
      */
     public SortedMap<Integer, Integer> getCounters() {
+        int count = getCounterCount();
         SortedMap<Integer, Integer> counters = new TreeMap<Integer, Integer>();
-        if (!response.isSuccessful()) {
-            /* return an empty map */
-            // TODO should we raise an exception?
-            return counters;
-        }
-        if (readDataStructure == ReadDataStructure.SINGLE_COUNTER
-                || readDataStructure == ReadDataStructure.MULTIPLE_COUNTER) {
-            byte[] apdu = response.getDataOut();
-            int numberOfCounters = apdu.length / 3;
-            int index = 0;
-            int key = 1; /* the first counter is indexed 1 */
-            for (int i = 0; i < numberOfCounters; i++) {
-                /*
-                 * convert the 3-byte unsigned value of the counter into an integer (up to 2^24 -1)
-                 */
-                int counterValue = ((apdu[index + 0] & 0xFF) * 65536)
-                        + ((apdu[index + 1] & 0xFF) * 256) + (apdu[index + 2] & 0xFF);
-                counters.put(key++, counterValue);
-                index = index + 3;
-            }
-
-        } else {
-            throw new IllegalStateException("The file is a data file.");
+        /* the first counter is indexed 1 */
+        for (int key = 1; key <= count; key++) {
+            counters.put(key, getCounterValue(key));
         }
         return counters;
     }
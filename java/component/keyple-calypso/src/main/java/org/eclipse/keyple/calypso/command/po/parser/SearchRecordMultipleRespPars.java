@@ -0,0 +1,113 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.parser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.keyple.calypso.command.po.AbstractPoResponseParser;
+import org.eclipse.keyple.command.AbstractApduResponseParser;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
+
+/**
+ * Search Record Multiple (00A2) response parser.
+ * <p>
+ * The response holds the number of matching records, their numbers and, if requested, the content
+ * of the first matching record.
+ */
+public final class SearchRecordMultipleRespPars extends AbstractPoResponseParser {
+
+    private static final Map<Integer, StatusProperties> STATUS_TABLE;
+
+    static {
+        Map<Integer, StatusProperties> m =
+                new HashMap<Integer, StatusProperties>(AbstractApduResponseParser.STATUS_TABLE);
+        m.put(0x6700, new StatusProperties(false, "Lc value not supported."));
+        m.put(0x6981, new StatusProperties(false, "Command forbidden on binary files"));
+        m.put(0x6982, new StatusProperties(false,
+                "Security conditions not fulfilled (PIN code not presented, encryption required)."));
+        m.put(0x6985, new StatusProperties(false,
+                "Access forbidden (Never access mode, stored value log file and a stored value operation was done during the current session)."));
+        m.put(0x6986, new StatusProperties(false, "Command not allowed (no current EF)"));
+        m.put(0x6A80, new StatusProperties(false, "Incorrect command data (offset or length)."));
+        m.put(0x6A82, new StatusProperties(false, "File not found"));
+        m.put(0x6A83, new StatusProperties(false,
+                "Record not found (record index is 0, or above NumRec"));
+        m.put(0x6B00, new StatusProperties(false, "P1 or P2 value not supported"));
+        m.put(0x9000, new StatusProperties(true, "Successful execution."));
+        STATUS_TABLE = m;
+    }
+
+    @Override
+    protected Map<Integer, StatusProperties> getStatusTable() {
+        return STATUS_TABLE;
+    }
+
+    private final boolean fetchFirstMatchingResult;
+
+    /**
+     * Instantiates a new SearchRecordMultipleRespPars.
+     *
+     * @param apduResponse the response from the PO
+     * @param fetchFirstMatchingResult true if the content of the first matching record was
+     *        requested
+     */
+    public SearchRecordMultipleRespPars(ApduResponse apduResponse,
+            boolean fetchFirstMatchingResult) {
+        super(apduResponse);
+        this.fetchFirstMatchingResult = fetchFirstMatchingResult;
+    }
+
+    /**
+     * @return the number of matching records, 0 if the command failed
+     */
+    public int getMatchingRecordCount() {
+        if (!response.isSuccessful() || response.getBytes().length < 3) {
+            return 0;
+        }
+        return response.getBytes()[0] & 0xFF;
+    }
+
+    /**
+     * @return the numbers of the matching records, in ascending order
+     */
+    public int[] getMatchingRecordNumbers() {
+        int count = getMatchingRecordCount();
+        byte[] apdu = response.getBytes();
+        int[] recordNumbers = new int[count];
+        for (int i = 0; i < count; i++) {
+            recordNumbers[i] = apdu[1 + i] & 0xFF;
+        }
+        return recordNumbers;
+    }
+
+    /**
+     * @return the content of the first matching record, null if not requested or if no record
+     *         matches
+     */
+    public byte[] getFirstMatchingRecord() {
+        int count = getMatchingRecordCount();
+        if (!fetchFirstMatchingResult || count == 0) {
+            return null;
+        }
+        byte[] apdu = response.getBytes();
+        return Arrays.copyOfRange(apdu, 1 + count, apdu.length - 2);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Matching records: %s, first matching record: %s",
+                Arrays.toString(getMatchingRecordNumbers()),
+                ByteArrayUtils.toHex(getFirstMatchingRecord()));
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Map;
 import org.eclipse.keyple.calypso.command.po.AbstractPoResponseParser;
 import org.eclipse.keyple.command.AbstractApduResponseParser;
 import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.BerTlvReader;
 import org.eclipse.keyple.util.ByteArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +26,9 @@ import org.slf4j.LoggerFactory;
  * data from response to a Select File command (available from the parent class).
  * <p>
  * The FCI structure is analyzed and all subfields are made available through as many getters.
+ * <p>
+ * The FCI is parsed on the first call to a getter: an unexpected FCI format is reported by an
+ * {@link IllegalStateException} thrown by every getter, and no longer by the constructor.
  */
 public final class SelectFileRespPars extends AbstractPoResponseParser {
     private static final Logger logger = LoggerFactory.getLogger(SelectFileRespPars.class);
@@ -40,6 +44,14 @@ public final class SelectFileRespPars extends AbstractPoResponseParser {
         STATUS_TABLE = m;
     }
 
+    /* BER-TLV tags definitions */
+    /* FCP Template: application class, constructed, tag number 2h => tag field 62h */
+    private static final int TAG_FCP_TEMPLATE = 0x62;
+    /* Proprietary Information: context-specific class, primitive, tag number 5h => tag field 85h */
+    private static final int TAG_PROPRIETARY_INFORMATION = 0x85;
+    /* length of the Calypso file information */
+    private static final int PROPRIETARY_INFORMATION_LENGTH = 0x17;
+
     // File Type Values
     public final static int FILE_TYPE_MF = 1;
     public final static int FILE_TYPE_DF = 2;
@@ -87,35 +99,54 @@ public final class SelectFileRespPars extends AbstractPoResponseParser {
 
     private boolean selectionSuccessful;
 
+    private boolean parsingDone;
+
     /**
      * Method extracting the various fields from the FCI structure returned by the PO.
      * <p>
      * The successful flag (see isSelectionSuccessful) is based on the response status word.
      * <p>
      * The parsingDone flag is set to avoid multiple call to this method while getting several
-     * attributes. TODO Handle Rev1/Rev2 PO
+     * attributes. It is set only once the FCI has been parsed: an unexpected FCI format is reported
+     * by every getter. TODO Handle Rev1/Rev2 PO
+     *
+     * @exception IllegalStateException if the FCI format is unexpected
      */
     private void parseResponse() {
-        byte[] inFileParameters = response.getDataOut();
-        int iter = 0;
+        if (parsingDone) {
+            return;
+        }
 
         if (!response.isSuccessful()) {
             // the command was not successful, we stop here
+            parsingDone = true;
             return;
         }
 
+        /* the data are parsed in place, the status word is not part of the FCI */
+        byte[] inFileParameters = response.getBytes();
+        int dataLength = inFileParameters.length - 2;
+
         if (logger.isTraceEnabled()) {
-            logger.trace("Parsing FCI: {}", ByteArrayUtils.toHex(inFileParameters));
+            logger.trace("Parsing FCI: {}", ByteArrayUtils.toHex(response.getDataOut()));
         }
 
-        // Check File TLV Tag and length
-        if (inFileParameters[iter++] != (byte) 0x85 || inFileParameters[iter++] != (byte) 0x17) {
+        // Find the File TLV, possibly in a FCP Template, and check its length
+        BerTlvReader tlv = new BerTlvReader(inFileParameters, 0, dataLength);
+        boolean found = tlv.next();
+        if (found && tlv.getTag() == TAG_FCP_TEMPLATE) {
+            tlv.enter();
+            found = tlv.find(TAG_PROPRIETARY_INFORMATION);
+        }
+        if (!found || tlv.getTag() != TAG_PROPRIETARY_INFORMATION
+                || tlv.getValueLength() < PROPRIETARY_INFORMATION_LENGTH) {
             throw new IllegalStateException(
-                    "Unexpected FCI format: " + ByteArrayUtils.toHex(inFileParameters));
+                    "Unexpected FCI format: " + ByteArrayUtils.toHex(response.getDataOut()));
         }
+        int iter = tlv.getValueOffset();
 
-        fileBinaryData = new byte[inFileParameters.length];
-        System.arraycopy(inFileParameters, 0, fileBinaryData, 0, inFileParameters.length);
+        fileBinaryData = new byte[dataLength];
+        System.arraycopy(inFileParameters, 0, fileBinaryData, 0, dataLength);
 
         sfi = inFileParameters[iter++];
         fileType = inFileParameters[iter++];
@@ -186,82 +217,102 @@ public final class SelectFileRespPars extends AbstractPoResponseParser {
                 | (inFileParameters[iter + 1] & 0x000000ff);
 
         selectionSuccessful = true;
+        parsingDone = true;
     }
 
     /**
      * Instantiates a new SelectFileRespPars.
      * <p>
+     * The FCI is parsed on the first call to a getter.
+     *
+     * @param response the response to the Select File command
      */
     public SelectFileRespPars(ApduResponse response) {
         super(response);
-        parseResponse();
     }
 
     public boolean isSelectionSuccessful() {
+        parseResponse();
         return selectionSuccessful;
     }
 
     public int getLid() {
+        parseResponse();
         return lid;
     }
 
     public byte getSfi() {
+        parseResponse();
         return sfi;
     }
 
     public byte getFileType() {
+        parseResponse();
         return fileType;
     }
 
     public byte getEfType() {
+        parseResponse();
         return efType;
     }
 
     public int getRecSize() {
+        parseResponse();
         return recSize;
     }
 
     public byte getNumRec() {
+        parseResponse();
         return numRec;
     }
 
     public byte[] getAccessConditions() {
+        parseResponse();
         return accessConditions;
     }
 
     public byte[] getKeyIndexes() {
+        parseResponse();
         return keyIndexes;
     }
 
     public byte getSimulatedCounterFileSfi() {
+        parseResponse();
         return simulatedCounterFileSfi;
     }
 
     public byte getSimulatedCounterNumber() {
+        parseResponse();
         return simulatedCounterNumber;
     }
 
     public int getSharedEf() {
+        parseResponse();
         return sharedEf;
     }
 
     public byte getDfStatus() {
+        parseResponse();
         return dfStatus;
     }
 
     public byte[] getFileBinaryData() {
+        parseResponse();
         return fileBinaryData;
     }
 
     public byte[] getRfu() {
+        parseResponse();
         return rfu;
     }
 
     public byte[] getKvcInfo() {
+        parseResponse();
         return kvcInfo;
     }
 
     public byte[] getKifInfo() {
+        parseResponse();
         return kifInfo;
     }
 
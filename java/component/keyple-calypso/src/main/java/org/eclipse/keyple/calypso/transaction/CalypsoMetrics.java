@@ -0,0 +1,52 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction;
+
+/**
+ * Names of the metrics recorded by the Calypso transactions when the metrics are enabled (see
+ * {@link org.eclipse.keyple.metrics.Metrics}).
+ * <p>
+ * The source of the measures is the name of the PO reader.
+ */
+public final class CalypsoMetrics {
+
+    /** Duration of {@link PoTransaction#processOpening} */
+    public static final String SESSION_OPENING = "calypso.session.opening";
+
+    /** Duration of {@link PoTransaction#processPoCommandsInSession} */
+    public static final String SESSION_COMMANDS = "calypso.session.commands";
+
+    /** Duration of {@link PoTransaction#processClosing}, including the SAM exchanges */
+    public static final String SESSION_CLOSING = "calypso.session.closing";
+
+    /**
+     * Number of closings needing an extra PO exchange because a response could not be anticipated
+     */
+    public static final String SESSION_CLOSING_EXTRA_EXCHANGES = "calypso.session.closing.extra";
+
+    /** Number of interrupted sessions resumed with {@link PoTransaction#processResume} */
+    public static final String SESSION_RESUMES = "calypso.session.resumes";
+
+    /** Number of sessions aborted with {@link PoTransaction#processCancel} */
+    public static final String SESSION_CANCELLATIONS = "calypso.session.cancellations";
+
+    /**
+     * Duration of the personalization of a PO by the
+     * {@link org.eclipse.keyple.calypso.transaction.perso.PersonalizationEngine}, retries included
+     */
+    public static final String PERSONALIZATION = "calypso.perso.card";
+
+    /** Number of attempts of personalization retried */
+    public static final String PERSONALIZATION_RETRIES = "calypso.perso.retries";
+
+    private CalypsoMetrics() {}
+}
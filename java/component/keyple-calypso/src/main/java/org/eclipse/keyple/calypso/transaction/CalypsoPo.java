@@ -37,6 +37,8 @@ public final class CalypsoPo extends MatchingSe {
     private byte[] applicationSerialNumber;
     private PoRevision revision;
     private byte[] dfName;
+    private byte[] startupInfo;
+    private boolean multipleCommandsSupported;
     private static final int PO_REV1_ATR_LENGTH = 20;
     private static final int REV1_PO_DEFAULT_WRITE_OPERATIONS_NUMBER_SUPPORTED_PER_SESSION = 3;
     private static final int REV2_PO_DEFAULT_WRITE_OPERATIONS_NUMBER_SUPPORTED_PER_SESSION = 6;
@@ -50,6 +52,22 @@ public final class CalypsoPo extends MatchingSe {
      * @param extraInfo
      */
     public CalypsoPo(SeResponse selectionResponse, String extraInfo) {
+        this(selectionResponse, extraInfo, false);
+    }
+
+    /**
+     * Constructor.
+     * <p>
+     * The FCI does not tell whether the PO supports the multiple record and counter commands
+     * (rev3.3): the application declares it from its knowledge of the PO family selected.
+     *
+     * @param extraInfo
+     * @param multipleCommandsSupported true if the selected PO supports the Read Record Multiple,
+     *        Search Record Multiple, Increase Multiple and Decrease Multiple commands, ignored for
+     *        a PO older than rev3.1
+     */
+    public CalypsoPo(SeResponse selectionResponse, String extraInfo,
+            boolean multipleCommandsSupported) {
         super(selectionResponse, extraInfo);
 
         poAtr = selectionResponse.getSelectionStatus().getAtr().getBytes();
@@ -66,8 +84,8 @@ public final class CalypsoPo extends MatchingSe {
              * <ul> <li>if
              * <code>%1-------</code>&nbsp;&nbsp;&rarr;&nbsp;&nbsp;CLAP&nbsp;&nbsp;&rarr;&nbsp;&
              * nbsp; REV3.1</li> <li>if
-             * <code>%00101---</code>&nbsp;&nbsp;&rarr;&nbsp;&nbsp;REV3.2</li> <li>if
-             * <code>%00100---</code>&nbsp;&nbsp;&rarr;&nbsp;&nbsp;REV3.1</li>
+             * <code>%001x1---</code>&nbsp;&nbsp;&rarr;&nbsp;&nbsp;REV3.2</li> <li>if
+             * <code>%001x0---</code>&nbsp;&nbsp;&rarr;&nbsp;&nbsp;REV3.1</li>
              * <li>otherwise&nbsp;&nbsp;&rarr;&nbsp;&nbsp;REV2.4</li> </ul>
              */
             // TODO Improve this code by taking into account the startup information and the atr
@@ -75,18 +93,28 @@ public final class CalypsoPo extends MatchingSe {
             if ((applicationTypeByte & (1 << 7)) != 0) {
                 /* CLAP */
                 this.revision = PoRevision.REV3_1_CLAP;
-            } else if ((applicationTypeByte >> 3) == (byte) (0x05)) {
+            } else if ((applicationTypeByte >> 3) == (byte) (0x05)
+                    || (applicationTypeByte >> 3) == (byte) (0x07)) {
                 this.revision = PoRevision.REV3_2;
-            } else if ((applicationTypeByte >> 3) == (byte) (0x04)) {
+            } else if ((applicationTypeByte >> 3) == (byte) (0x04)
+                    || (applicationTypeByte >> 3) == (byte) (0x06)) {
                 this.revision = PoRevision.REV3_1;
             } else {
                 this.revision = PoRevision.REV2_4;
             }
+            this.multipleCommandsSupported = multipleCommandsSupported
+                    && (this.revision == PoRevision.REV3_1 || this.revision == PoRevision.REV3_2);
 
             this.dfName = poFciRespPars.getDfName();
 
             this.applicationSerialNumber = poFciRespPars.getApplicationSerialNumber();
 
+            this.startupInfo = new byte[] {poFciRespPars.getBufferSizeIndicator(),
+                    poFciRespPars.getPlatformByte(), applicationTypeByte,
+                    poFciRespPars.getApplicationSubtypeByte(),
+                    poFciRespPars.getSoftwareIssuerByte(), poFciRespPars.getSoftwareVersionByte(),
+                    poFciRespPars.getSoftwareRevisionByte()};
+
             // TODO review this to take into consideration the type and subtype
             if (this.revision == PoRevision.REV2_4) {
                 /* old cards have their modification counter in number of commands */
@@ -110,6 +138,7 @@ public final class CalypsoPo extends MatchingSe {
 
             this.revision = PoRevision.REV1_0;
             this.dfName = null;
+            this.startupInfo = null;
             this.applicationSerialNumber = new byte[8];
             /* old cards have their modification counter in number of commands */
             this.modificationCounterIsInBytes = false;
@@ -135,6 +164,24 @@ public final class CalypsoPo extends MatchingSe {
         return dfName;
     }
 
+    /**
+     * @return the 7 bytes of the startup information from the FCI (buffer size indicator,
+     *         platform, application type, application subtype, software issuer, software version
+     *         and software revision), null for a rev 1 PO
+     */
+    public byte[] getStartupInfo() {
+        return startupInfo;
+    }
+
+    /**
+     * @return true if the PO supports the Read Record Multiple, Search Record Multiple, Increase
+     *         Multiple and Decrease Multiple commands (rev3.3), as declared by the application in
+     *         the {@link PoSelectionRequest}
+     */
+    public boolean isMultipleCommandsSupported() {
+        return multipleCommandsSupported;
+    }
+
     public byte[] getApplicationSerialNumber() {
         return applicationSerialNumber;
     }
@@ -0,0 +1,127 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction;
+
+import java.util.Arrays;
+import org.eclipse.keyple.calypso.command.po.parser.SelectFileRespPars;
+
+/**
+ * Characteristics of an elementary file of a PO, as returned by the Select File command
+ * <p>
+ * The instances are immutable.
+ */
+public final class PoFileInfo {
+    private final int lid;
+    private final byte sfi;
+    private final byte efType;
+    private final int recordSize;
+    private final int numberOfRecords;
+    private final byte[] accessConditions;
+    private final byte[] keyIndexes;
+
+    /**
+     * @param lid the long identifier
+     * @param sfi the short file identifier
+     * @param efType the EF type (see {@link SelectFileRespPars} EF_TYPE constants)
+     * @param recordSize the size of the records
+     * @param numberOfRecords the number of records
+     * @param accessConditions the 4 access conditions (groups 0 to 3)
+     * @param keyIndexes the 4 key indexes (groups 0 to 3)
+     */
+    public PoFileInfo(int lid, byte sfi, byte efType, int recordSize, int numberOfRecords,
+            byte[] accessConditions, byte[] keyIndexes) {
+        if (accessConditions == null || accessConditions.length != 4 || keyIndexes == null
+                || keyIndexes.length != 4) {
+            throw new IllegalArgumentException("4 access conditions and key indexes expected.");
+        }
+        this.lid = lid;
+        this.sfi = sfi;
+        this.efType = efType;
+        this.recordSize = recordSize;
+        this.numberOfRecords = numberOfRecords;
+        this.accessConditions = accessConditions.clone();
+        this.keyIndexes = keyIndexes.clone();
+    }
+
+    /**
+     * Create the file characteristics from a successful Select File response
+     *
+     * @param selectFileRespPars the Select File response
+     */
+    public PoFileInfo(SelectFileRespPars selectFileRespPars) {
+        this(selectFileRespPars.getLid(), selectFileRespPars.getSfi(),
+                selectFileRespPars.getEfType(), selectFileRespPars.getRecSize(),
+                selectFileRespPars.getNumRec() & 0xFF, selectFileRespPars.getAccessConditions(),
+                selectFileRespPars.getKeyIndexes());
+    }
+
+    public int getLid() {
+        return lid;
+    }
+
+    public byte getSfi() {
+        return sfi;
+    }
+
+    public byte getEfType() {
+        return efType;
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    public int getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    /**
+     * @return a copy of the 4 access conditions
+     */
+    public byte[] getAccessConditions() {
+        return accessConditions.clone();
+    }
+
+    /**
+     * @return a copy of the 4 key indexes
+     */
+    public byte[] getKeyIndexes() {
+        return keyIndexes.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PoFileInfo)) {
+            return false;
+        }
+        PoFileInfo fileInfo = (PoFileInfo) o;
+        return lid == fileInfo.lid && sfi == fileInfo.sfi && efType == fileInfo.efType
+                && recordSize == fileInfo.recordSize
+                && numberOfRecords == fileInfo.numberOfRecords
+                && Arrays.equals(accessConditions, fileInfo.accessConditions)
+                && Arrays.equals(keyIndexes, fileInfo.keyIndexes);
+    }
+
+    @Override
+    public int hashCode() {
+        return (lid * 31 + sfi) * 31 + recordSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LID = %04X, SFI = %02X, EFTYPE = %d, RECSIZE = %d, NUMREC = %d",
+                lid, sfi, efType, recordSize, numberOfRecords);
+    }
+}
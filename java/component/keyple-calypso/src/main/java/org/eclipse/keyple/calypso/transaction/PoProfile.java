@@ -0,0 +1,117 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.keyple.util.ByteArrayUtils;
+
+/**
+ * File structure shared by the POs of a same issuer profile, identified by the DF name and the
+ * startup information of the FCI (see {@link PoProfileCache})
+ * <p>
+ * The instances are immutable.
+ */
+public final class PoProfile {
+    private final byte[] dfName;
+    private final byte[] startupInfo;
+    private final List<PoFileInfo> files;
+
+    /**
+     * @param dfName the DF name of the application
+     * @param startupInfo the 7 bytes of startup information
+     * @param files the elementary files of the application, in the selection order
+     */
+    public PoProfile(byte[] dfName, byte[] startupInfo, List<PoFileInfo> files) {
+        if (dfName == null || startupInfo == null || startupInfo.length != 7) {
+            throw new IllegalArgumentException("DF name and 7 bytes of startup info expected.");
+        }
+        this.dfName = dfName.clone();
+        this.startupInfo = startupInfo.clone();
+        this.files = Collections.unmodifiableList(new ArrayList<PoFileInfo>(files));
+    }
+
+    /**
+     * @return a copy of the DF name
+     */
+    public byte[] getDfName() {
+        return dfName.clone();
+    }
+
+    /**
+     * @return a copy of the startup information of the first PO of this profile
+     */
+    public byte[] getStartupInfo() {
+        return startupInfo.clone();
+    }
+
+    /**
+     * @return the elementary files, in the selection order
+     */
+    public List<PoFileInfo> getFiles() {
+        return files;
+    }
+
+    /**
+     * @param sfi the short file identifier
+     * @return the file, null if not found
+     */
+    public PoFileInfo getFileBySfi(byte sfi) {
+        for (PoFileInfo file : files) {
+            if (file.getSfi() == sfi) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param lid the long identifier
+     * @return the file, null if not found
+     */
+    public PoFileInfo getFileByLid(int lid) {
+        for (PoFileInfo file : files) {
+            if (file.getLid() == lid) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the key identifying the profile
+     */
+    String getKey() {
+        return getKey(dfName, startupInfo);
+    }
+
+    /**
+     * Build the key of a profile from the DF name and the startup information bytes that
+     * identify the file structure: buffer size indicator, application type and subtype, software
+     * issuer and version (the platform and the software revision are not part of the key)
+     *
+     * @param dfName the DF name
+     * @param startupInfo the 7 bytes of startup information
+     * @return the key
+     */
+    static String getKey(byte[] dfName, byte[] startupInfo) {
+        return ByteArrayUtils.toHex(dfName) + "-"
+                + ByteArrayUtils.toHex(new byte[] {startupInfo[0], startupInfo[2], startupInfo[3],
+                        startupInfo[4], startupInfo[5]});
+    }
+
+    @Override
+    public String toString() {
+        return "PoProfile " + getKey() + " " + files;
+    }
+}
@@ -0,0 +1,301 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction;
+
+import static org.eclipse.keyple.calypso.command.po.builder.SelectFileCmdBuild.SelectControl.FIRST;
+import static org.eclipse.keyple.calypso.command.po.builder.SelectFileCmdBuild.SelectControl.NEXT;
+import java.io.*;
+import java.util.*;
+import org.eclipse.keyple.calypso.command.po.parser.SelectFileRespPars;
+import org.eclipse.keyple.calypso.transaction.exception.KeypleCalypsoSecureSessionException;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.SeReader;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the PO file structures, to skip the discovery of the files with Select File commands
+ * for the POs of an already known profile.
+ * <p>
+ * A profile is identified by the DF name and the startup information of the FCI (buffer size
+ * indicator, application type and subtype, software issuer and version). The rev 1 POs, without
+ * FCI, are not supported.
+ * <p>
+ * When created with a file, the cache is loaded from this file and saved to it each time a new
+ * profile is discovered. The file is a text file with one line per profile followed by one line
+ * per elementary file:
+ *
+ * <pre>
+ * profile DF_NAME STARTUP_INFO
+ * file LID SFI EF_TYPE RECORD_SIZE RECORDS ACCESS_CONDITIONS KEY_INDEXES
+ * </pre>
+ * <p>
+ * This class is thread safe.
+ */
+public final class PoProfileCache {
+    private static final Logger logger = LoggerFactory.getLogger(PoProfileCache.class);
+
+    private static final String CHARSET = "UTF-8";
+    private static final String PROFILE = "profile";
+    private static final String FILE = "file";
+    /** limit of the discovery, in case of a PO not ending the NEXT navigation */
+    private static final int MAX_FILES = 64;
+    /** status word of a Select File after the last EF */
+    private static final int SW_FILE_NOT_FOUND = 0x6A82;
+
+    private final File file;
+    private final Map<String, PoProfile> profiles = new LinkedHashMap<String, PoProfile>();
+    /**
+     * serializes the saves: the profiles are copied and written under this lock, the lookups are
+     * not blocked by the file writing
+     */
+    private final Object saveLock = new Object();
+
+    /**
+     * In memory cache
+     */
+    public PoProfileCache() {
+        this.file = null;
+    }
+
+    /**
+     * Cache persisted to a file, loaded if the file exists
+     *
+     * @param file the cache file
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public PoProfileCache(File file) throws IOException {
+        this.file = file;
+        if (file.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * @param calypsoPo the selected PO
+     * @return the cached profile of the PO, null if unknown
+     */
+    public synchronized PoProfile getProfile(CalypsoPo calypsoPo) {
+        if (calypsoPo.getDfName() == null || calypsoPo.getStartupInfo() == null) {
+            return null;
+        }
+        return profiles.get(PoProfile.getKey(calypsoPo.getDfName(), calypsoPo.getStartupInfo()));
+    }
+
+    /**
+     * Add or replace a profile, and save the cache if it has a file
+     *
+     * @param profile the profile
+     */
+    public void putProfile(PoProfile profile) {
+        synchronized (this) {
+            profiles.put(profile.getKey(), profile);
+        }
+        if (file != null) {
+            try {
+                save();
+            } catch (IOException e) {
+                logger.warn("PO profile cache not saved to {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the cached profiles
+     */
+    public synchronized List<PoProfile> getProfiles() {
+        return new ArrayList<PoProfile>(profiles.values());
+    }
+
+    /**
+     * Get the profile of the PO from the cache, or discover the files of the PO if its profile is
+     * unknown.
+     * <p>
+     * The discovery selects the first EF of the current DF and then the next ones, one Select
+     * File exchange per file. The current EF of the PO is therefore changed.
+     *
+     * @param poReader the reader of the PO
+     * @param calypsoPo the selected PO
+     * @return the profile of the PO
+     * @throws KeypleReaderException if a reader error occurs during the discovery
+     * @throws IllegalArgumentException if the PO has no startup information (rev 1)
+     */
+    public PoProfile getOrDiscoverProfile(SeReader poReader, CalypsoPo calypsoPo)
+            throws KeypleReaderException {
+        if (calypsoPo.getDfName() == null || calypsoPo.getStartupInfo() == null) {
+            throw new IllegalArgumentException("No FCI startup information for this PO.");
+        }
+        PoProfile profile = getProfile(calypsoPo);
+        if (profile != null) {
+            return profile;
+        }
+        profile = new PoProfile(calypsoPo.getDfName(), calypsoPo.getStartupInfo(),
+                discoverFiles(poReader, calypsoPo));
+        if (logger.isDebugEnabled()) {
+            logger.debug("New PO profile: {}", profile);
+        }
+        putProfile(profile);
+        return profile;
+    }
+
+    /**
+     * Select all the EFs of the current DF
+     *
+     * @param poReader the reader of the PO
+     * @param calypsoPo the selected PO
+     * @return the files in the selection order
+     * @throws KeypleReaderException if a reader error occurs
+     */
+    private static List<PoFileInfo> discoverFiles(SeReader poReader, CalypsoPo calypsoPo)
+            throws KeypleReaderException {
+        PoTransaction poTransaction = new PoTransaction(poReader, calypsoPo);
+        List<PoFileInfo> files = new ArrayList<PoFileInfo>();
+        Set<Integer> lids = new HashSet<Integer>();
+        int selectFileIndex = poTransaction.prepareSelectFileCmd(FIRST, "First EF");
+        while (files.size() < MAX_FILES) {
+            try {
+                poTransaction.processPoCommands(ChannelState.KEEP_OPEN);
+            } catch (KeypleCalypsoSecureSessionException e) {
+                if (isFileNotFound(e.getResponses())) {
+                    break;
+                }
+                throw e;
+            }
+            SelectFileRespPars selectFileRespPars =
+                    (SelectFileRespPars) poTransaction.getResponseParser(selectFileIndex);
+            if (!selectFileRespPars.isSelectionSuccessful()
+                    || !lids.add(selectFileRespPars.getLid())) {
+                break;
+            }
+            files.add(new PoFileInfo(selectFileRespPars));
+            selectFileIndex = poTransaction.prepareSelectFileCmd(NEXT, "Next EF");
+        }
+        return files;
+    }
+
+    /**
+     * @param responses the responses of a failed command
+     * @return true if the command failed because there is no (more) EF to select
+     */
+    private static boolean isFileNotFound(List<ApduResponse> responses) {
+        return responses != null && !responses.isEmpty()
+                && responses.get(responses.size() - 1).getStatusCode() == SW_FILE_NOT_FOUND;
+    }
+
+    /**
+     * Save the cache to its file
+     * <p>
+     * The file is replaced once the new content is completely written. Concurrent saves are done
+     * one after the other, each one writing the profiles cached when it starts.
+     *
+     * @throws IOException if the file can't be written
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            throw new IllegalStateException("No file for this PO profile cache.");
+        }
+        synchronized (saveLock) {
+            writeProfiles(getProfiles());
+        }
+    }
+
+    /**
+     * Write the profiles to a temporary file and replace the cache file with it
+     *
+     * @param profileList the profiles to save
+     * @throws IOException if the file can't be written
+     */
+    private void writeProfiles(List<PoProfile> profileList) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tmpFile), CHARSET));
+        try {
+            for (PoProfile profile : profileList) {
+                writer.write(PROFILE + " " + ByteArrayUtils.toHex(profile.getDfName()) + " "
+                        + ByteArrayUtils.toHex(profile.getStartupInfo()) + "\n");
+                for (PoFileInfo fileInfo : profile.getFiles()) {
+                    writer.write(String.format("%s %04X %02X %d %d %d %s %s%n", FILE,
+                            fileInfo.getLid(), fileInfo.getSfi(), fileInfo.getEfType(),
+                            fileInfo.getRecordSize(), fileInfo.getNumberOfRecords(),
+                            ByteArrayUtils.toHex(fileInfo.getAccessConditions()),
+                            ByteArrayUtils.toHex(fileInfo.getKeyIndexes())));
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file))) {
+            throw new IOException("Can't replace " + file);
+        }
+    }
+
+    /**
+     * Load the profiles from the file
+     *
+     * @throws IOException if the file can't be read or is malformed
+     */
+    private void load() throws IOException {
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+        try {
+            byte[] dfName = null;
+            byte[] startupInfo = null;
+            List<PoFileInfo> files = new ArrayList<PoFileInfo>();
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.trim().split("\\s+");
+                try {
+                    if (fields[0].equals(PROFILE) && fields.length == 3) {
+                        if (dfName != null) {
+                            addLoadedProfile(new PoProfile(dfName, startupInfo, files));
+                        }
+                        dfName = ByteArrayUtils.fromHex(fields[1]);
+                        startupInfo = ByteArrayUtils.fromHex(fields[2]);
+                        files = new ArrayList<PoFileInfo>();
+                    } else if (fields[0].equals(FILE) && fields.length == 8 && dfName != null) {
+                        files.add(new PoFileInfo(Integer.parseInt(fields[1], 16),
+                                (byte) Integer.parseInt(fields[2], 16),
+                                Byte.parseByte(fields[3]), Integer.parseInt(fields[4]),
+                                Integer.parseInt(fields[5]), ByteArrayUtils.fromHex(fields[6]),
+                                ByteArrayUtils.fromHex(fields[7])));
+                    } else if (fields[0].length() > 0) {
+                        throw new IOException("Malformed line " + lineNumber + " in " + file);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(
+                            "Malformed line " + lineNumber + " in " + file + ": " + e.getMessage());
+                }
+            }
+            if (dfName != null) {
+                try {
+                    addLoadedProfile(new PoProfile(dfName, startupInfo, files));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Malformed profile in " + file + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} PO profiles loaded from {}", profiles.size(), file);
+        }
+    }
+
+    private synchronized void addLoadedProfile(PoProfile profile) {
+        profiles.put(profile.getKey(), profile);
+    }
+}
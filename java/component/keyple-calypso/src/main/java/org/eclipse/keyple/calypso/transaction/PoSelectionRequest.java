@@ -49,6 +49,8 @@ public final class PoSelectionRequest extends SeSelectionRequest {
 
     private final PoClass poClass;
 
+    private boolean multipleCommandsSupported;
+
     /**
      * Constructor.
      * 
@@ -75,6 +77,20 @@ public final class PoSelectionRequest extends SeSelectionRequest {
         }
     }
 
+    /**
+     * Declare that the targeted POs support the Read Record Multiple, Search Record Multiple,
+     * Increase Multiple and Decrease Multiple commands (rev3.3).
+     * <p>
+     * These commands are not advertised by the PO in its FCI: they are used by the PoTransaction
+     * only when the application declares them here (they are ignored for a PO older than rev3.1).
+     * By default, the PoTransaction falls back to the single record and counter commands.
+     *
+     * @param multipleCommandsSupported true if the multiple commands are supported
+     */
+    public void setMultipleCommandsSupported(boolean multipleCommandsSupported) {
+        this.multipleCommandsSupported = multipleCommandsSupported;
+    }
+
     /**
      * Prepare one or more read record ApduRequest based on the target revision to be executed
      * following the selection.
@@ -286,6 +302,6 @@ public final class PoSelectionRequest extends SeSelectionRequest {
      */
     @Override
     protected CalypsoPo parse(SeResponse seResponse) {
-        return new CalypsoPo(seResponse, seSelector.getExtraInfo());
+        return new CalypsoPo(seResponse, seSelector.getExtraInfo(), multipleCommandsSupported);
     }
 }
@@ -31,6 +31,10 @@ import org.eclipse.keyple.calypso.command.sam.parser.security.SamGetChallengeRes
 import org.eclipse.keyple.calypso.transaction.exception.*;
 import org.eclipse.keyple.command.AbstractApduCommandBuilder;
 import org.eclipse.keyple.command.AbstractApduResponseParser;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.metrics.MetricsRecorder;
+import org.eclipse.keyple.metrics.Probe;
+import org.eclipse.keyple.metrics.TraceEvent;
 import org.eclipse.keyple.seproxy.ChannelState;
 import org.eclipse.keyple.seproxy.SeReader;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
@@ -91,7 +95,7 @@ public final class PoTransaction {
     private static final Logger logger = LoggerFactory.getLogger(PoTransaction.class);
 
     /** The reader for PO. */
-    private final ProxyReader poReader;
+    private ProxyReader poReader;
     /** The reader for session SAM. */
     private ProxyReader samReader;
     /** The SAM default revision. */
@@ -100,9 +104,9 @@ public final class PoTransaction {
     private final EnumMap<SamSettings, Byte> samSetting =
             new EnumMap<SamSettings, Byte>(SamSettings.class);
     /** The PO serial number extracted from FCI */
-    private final byte[] poCalypsoInstanceSerial;
+    private byte[] poCalypsoInstanceSerial;
     /** The current CalypsoPo */
-    private final CalypsoPo calypsoPo;
+    private CalypsoPo calypsoPo;
     /** the type of the notified event. */
     private SessionState currentState;
     /** Selected AID of the Calypso PO. */
@@ -137,6 +141,26 @@ public final class PoTransaction {
     private boolean preparedCommandsProcessed;
     private int preparedCommandIndex;
 
+    /** The digest computation of the current secure session */
+    private final DigestProcessor digestProcessor = new DigestProcessor();
+    /** The responses read in the current secure session, to anticipate the closing responses */
+    private final AnticipatedResponseBuilder anticipatedResponseBuilder =
+            new AnticipatedResponseBuilder();
+
+    /** The learner of the reads to prefetch at selection, null if none */
+    private ReadPrefetchLearner readPrefetchLearner;
+    /** The cache of the sessions interrupted in the closing, null if none */
+    private SessionResumeCache sessionResumeCache;
+    /** The opening parameters of the current secure session */
+    private byte currentOpeningSfi;
+    private byte currentOpeningRecordNumber;
+    /** The modification commands sent in the current secure session, kept to resume it */
+    private final List<PoBuilderParser> sessionModifications = new ArrayList<PoBuilderParser>();
+    /** Set when the PO has been lost in the current closing */
+    private boolean poClosingInterrupted;
+    /** The SAM resource keeping the SAM state across transactions, null if none */
+    private SamResource samResource;
+
     /**
      * PoTransaction with PO and SAM readers.
      * <ul>
@@ -159,6 +183,28 @@ public final class PoTransaction {
         setSamSettings(samReader, samSetting);
     }
 
+    /**
+     * PoTransaction with PO and SAM resources.
+     * <p>
+     * Same as {@link #PoTransaction(SeReader, CalypsoPo, SeReader, EnumMap)}, the state of the SAM
+     * kept by the SAM resource is used to skip the Select Diversifier command when the SAM already
+     * holds the serial number of the PO.
+     *
+     * @param poResource the PO resource obtained at the end of the selection step
+     * @param samResource the SAM resource, used by one transaction at a time
+     * @param samSetting a list of SAM related parameters. In the case this parameter is null,
+     *        default parameters are applied. The available setting keys are defined in
+     *        {@link SamSettings}
+     */
+    public PoTransaction(PoResource poResource, SamResource samResource,
+            EnumMap<SamSettings, Byte> samSetting) {
+
+        this(poResource.getSeReader(), poResource.getMatchingSe(), samResource.getSeReader(),
+                samSetting);
+
+        this.samResource = samResource;
+    }
+
     /**
      * PoTransaction with PO reader and without SAM reader.
      * <ul>
@@ -169,6 +215,49 @@ public final class PoTransaction {
      * @param calypsoPO the CalypsoPo object obtained at the end of the selection step
      */
     public PoTransaction(SeReader poReader, CalypsoPo calypsoPO) {
+        bind(poReader, calypsoPO);
+    }
+
+    /**
+     * Reuse this PoTransaction for a new PO.
+     * <p>
+     * The SAM reader and settings, the authorized KVCs and the read prefetch learner are kept. The
+     * state of the previous PO is discarded, a session still open with it is abandoned without
+     * any command sent. The internal lists and buffers are reused, sparing their allocation at each
+     * PO presentation: a terminal can keep one PoTransaction per reader.
+     * <p>
+     * Must not be called while a process method is running.
+     *
+     * @param poReader the PO reader
+     * @param calypsoPO the CalypsoPo object obtained at the end of the selection step
+     */
+    public void reset(SeReader poReader, CalypsoPo calypsoPO) {
+        if (currentState != SessionState.SESSION_CLOSED) {
+            logger.debug("reset => abandon the session in progress: STATE = {}", currentState);
+        }
+        bind(poReader, calypsoPO);
+
+        transactionResult = false;
+        isDiversificationDone = false;
+        poKif = 0;
+        wasRatified = false;
+        openRecordDataRead = null;
+        currentModificationMode = null;
+        currentAccessLevel = null;
+        poBuilderParserList.clear();
+        preparedCommandIndex = 0;
+        anticipatedResponseBuilder.clear();
+        sessionModifications.clear();
+
+        if (readPrefetchLearner != null) {
+            readPrefetchLearner.transactionStarted(calypsoPo);
+        }
+    }
+
+    /**
+     * Set the PO and the data of the PO used by the transaction
+     */
+    private void bind(SeReader poReader, CalypsoPo calypsoPO) {
         this.poReader = (ProxyReader) poReader;
 
         this.calypsoPo = calypsoPO;
@@ -189,6 +278,33 @@ public final class PoTransaction {
         preparedCommandsProcessed = true;
     }
 
+    /**
+     * Report the reads prepared by this transaction to a learner of the reads to prefetch at the
+     * selection of the next POs having the same profile.
+     *
+     * @param readPrefetchLearner the learner, null to stop reporting the reads
+     */
+    public void setReadPrefetchLearner(ReadPrefetchLearner readPrefetchLearner) {
+        this.readPrefetchLearner = readPrefetchLearner;
+        if (readPrefetchLearner != null) {
+            readPrefetchLearner.transactionStarted(calypsoPo);
+        }
+    }
+
+    /**
+     * Keep the sessions interrupted by the loss of the PO in the closing, to resume them with
+     * {@link #processResume(TransmissionMode, ChannelState)}.
+     * <p>
+     * Only the sessions opened in {@link ModificationMode#ATOMIC} mode and closed in
+     * {@link TransmissionMode#CONTACTLESS} mode are kept.
+     *
+     * @param sessionResumeCache the cache, usually shared by the transactions of a terminal, null
+     *        to stop keeping the interrupted sessions
+     */
+    public void setSessionResumeCache(SessionResumeCache sessionResumeCache) {
+        this.sessionResumeCache = sessionResumeCache;
+    }
+
     /**
      * Sets the SAM parameters for Secure Session management
      * 
@@ -197,6 +313,8 @@ public final class PoTransaction {
      */
     public void setSamSettings(SeReader samReader, EnumMap<SamSettings, Byte> samSetting) {
         this.samReader = (ProxyReader) samReader;
+        /* the state of the SAM is not tracked for a bare reader */
+        this.samResource = null;
 
         /* Initialize samSetting with provided settings */
         if (samSetting != null) {
@@ -288,53 +406,40 @@ public final class PoTransaction {
             byte openingRecordNumberToRead, List<PoBuilderParser> poBuilderParsers)
             throws KeypleReaderException {
 
-        /*
-         * counts 'select diversifier' and 'get challenge' commands. At least get challenge is
-         * present
-         */
-        int numberOfSamCmd = 1;
-
-        /* SAM ApduRequest List to hold Select Diversifier and Get Challenge commands */
-        List<ApduRequest> samApduRequestList = new ArrayList<ApduRequest>();
-
         if (logger.isDebugEnabled()) {
             logger.debug("processAtomicOpening => Identification: DFNAME = {}, SERIALNUMBER = {}",
                     ByteArrayUtils.toHex(poCalypsoInstanceAid),
                     ByteArrayUtils.toHex(poCalypsoInstanceSerial));
         }
-        /* diversify only if this has not already been done. */
-        if (!isDiversificationDone) {
-            /* Build the SAM Select Diversifier command to provide the SAM with the PO S/N */
-            AbstractApduCommandBuilder selectDiversifier =
-                    new SelectDiversifierCmdBuild(this.samRevision, poCalypsoInstanceSerial);
-
-            samApduRequestList.add(selectDiversifier.getApduRequest());
-
-            /* increment command number */
-            numberOfSamCmd++;
+        /*
+         * diversify only if this has not already been done, in this transaction or in a previous
+         * one using the same SAM resource.
+         */
+        boolean selectDiversifier = samResource != null
+                ? !samResource.isDiversifiedWith(poCalypsoInstanceSerial)
+                : !isDiversificationDone;
 
-            /* change the diversification status */
-            isDiversificationDone = true;
-        }
         /* Build the SAM Get Challenge command */
         byte challengeLength = poRevision.equals(PoRevision.REV3_2) ? CHALLENGE_LENGTH_REV32
                 : CHALLENGE_LENGTH_REV_INF_32;
 
-        AbstractSamCommandBuilder samGetChallenge =
-                new org.eclipse.keyple.calypso.command.sam.builder.security.SamGetChallengeCmdBuild(
-                        this.samRevision, challengeLength);
-
-        samApduRequestList.add(samGetChallenge.getApduRequest());
-
-        /* Build a SAM SeRequest */
-        SeRequest samSeRequest = new SeRequest(samApduRequestList, ChannelState.KEEP_OPEN);
+        SeRequest samSeRequest = getSamIdentificationRequest(selectDiversifier, challengeLength);
 
         logger.debug("processAtomicOpening => identification: SAMSEREQUEST = {}", samSeRequest);
 
         /*
          * Transmit the SeRequest to the SAM and get back the SeResponse (list of ApduResponse)
          */
-        SeResponse samSeResponse = samReader.transmit(samSeRequest);
+        SeResponse samSeResponse = transmitToSam(samSeRequest);
+
+        if (samSeResponse != null && !samSeResponse.wasChannelPreviouslyOpen()
+                && !selectDiversifier) {
+            /* the SAM has been reset, its diversifier is lost */
+            logger.debug("processAtomicOpening => identification: SAM channel reopened");
+            selectDiversifier = true;
+            samSeRequest = getSamIdentificationRequest(selectDiversifier, challengeLength);
+            samSeResponse = transmitToSam(samSeRequest);
+        }
 
         if (samSeResponse == null) {
             throw new KeypleCalypsoSecureSessionException("Null response received",
@@ -344,6 +449,13 @@ public final class PoTransaction {
 
         logger.debug("processAtomicOpening => identification: SAMSERESPONSE = {}", samSeResponse);
 
+        /*
+         * counts 'select diversifier' and 'get challenge' commands. At least get challenge is
+         * present
+         */
+        int numberOfSamCmd = selectDiversifier ? 2 : 1;
+        List<ApduRequest> samApduRequestList = samSeRequest.getApduRequests();
+
         List<ApduResponse> samApduResponseList = samSeResponse.getApduResponses();
         byte[] sessionTerminalChallenge;
 
@@ -353,11 +465,17 @@ public final class PoTransaction {
             SamGetChallengeRespPars samChallengePars =
                     new SamGetChallengeRespPars(samApduResponseList.get(numberOfSamCmd - 1));
             sessionTerminalChallenge = samChallengePars.getChallenge();
+            /* change the diversification status */
+            isDiversificationDone = true;
+            if (samResource != null) {
+                samResource.setDiversifier(poCalypsoInstanceSerial);
+            }
             if (logger.isDebugEnabled()) {
                 logger.debug("processAtomicOpening => identification: TERMINALCHALLENGE = {}",
                         ByteArrayUtils.toHex(sessionTerminalChallenge));
             }
         } else {
+            resetSamState();
             throw new KeypleCalypsoSecureSessionException("Invalid message received",
                     KeypleCalypsoSecureSessionException.Type.SAM, samApduRequestList,
                     samApduResponseList);
@@ -420,8 +538,8 @@ public final class PoTransaction {
             }
         }
 
-        /* Track Read Records for later use to build anticipated responses. */
-        AnticipatedResponseBuilder.storeCommandResponse(poBuilderParsers, poApduRequestList,
+        /* Track the counter values for later use to build anticipated responses. */
+        anticipatedResponseBuilder.storeCommandResponse(poBuilderParsers, poApduRequestList,
                 poApduResponseList, true);
 
         /* Parse the response to Open Secure Session (the first item of poApduResponseList) */
@@ -468,13 +586,19 @@ public final class PoTransaction {
         /* Keep the ratification status and read data */
         wasRatified = poOpenSessionPars.wasRatified();
         openRecordDataRead = poOpenSessionPars.getRecordDataRead();
+        if (openingSfiToSelect != (byte) 0x00 && openingRecordNumberToRead == (byte) 0x01
+                && openRecordDataRead != null) {
+            /* the record 1 of a counters EF holds the counter values */
+            anticipatedResponseBuilder.storeCounters(openingSfiToSelect, openRecordDataRead,
+                    openRecordDataRead.length);
+        }
 
         /*
          * Initialize the DigestProcessor. It will store all digest operations (Digest Init, Digest
          * Update) until the session closing. AT this moment, all SAM Apdu will be processed at
          * once.
          */
-        DigestProcessor.initialize(poRevision, samRevision, false, false,
+        digestProcessor.initialize(poRevision, samRevision, false, false,
                 poRevision.equals(PoRevision.REV3_2),
                 samSetting.get(SamSettings.SAM_DEFAULT_KEY_RECORD_NUMBER), kif, poKvc,
                 poApduResponseList.get(0).getDataOut());
@@ -490,7 +614,7 @@ public final class PoTransaction {
                 /*
                  * Add requests and responses to the DigestProcessor
                  */
-                DigestProcessor.pushPoExchangeData(poApduRequestList.get(i),
+                digestProcessor.pushPoExchangeData(poApduRequestList.get(i),
                         poApduResponseList.get(i));
             }
         }
@@ -589,7 +713,7 @@ public final class PoTransaction {
         }
 
         /* Track Read Records for later use to build anticipated responses. */
-        AnticipatedResponseBuilder.storeCommandResponse(poBuilderParsers, poApduRequestList,
+        anticipatedResponseBuilder.storeCommandResponse(poBuilderParsers, poApduRequestList,
                 poApduResponseList, false);
 
         /*
@@ -601,13 +725,75 @@ public final class PoTransaction {
                 /*
                  * Add requests and responses to the DigestProcessor
                  */
-                DigestProcessor.pushPoExchangeData(poApduRequestList.get(i),
+                digestProcessor.pushPoExchangeData(poApduRequestList.get(i),
                         poApduResponseList.get(i));
             }
         }
         return poSeResponse;
     }
 
+    /**
+     * Build the SAM request of the session opening
+     *
+     * @param selectDiversifier true if the PO serial number has to be selected as diversifier
+     * @param challengeLength the length of the challenge to get
+     * @return the SeRequest holding the optional Select Diversifier and the Get Challenge
+     */
+    private SeRequest getSamIdentificationRequest(boolean selectDiversifier,
+            byte challengeLength) {
+        /* SAM ApduRequest List to hold Select Diversifier and Get Challenge commands */
+        List<ApduRequest> samApduRequestList = new ArrayList<ApduRequest>();
+
+        if (selectDiversifier) {
+            /* Build the SAM Select Diversifier command to provide the SAM with the PO S/N */
+            AbstractApduCommandBuilder selectDiversifierCmd =
+                    new SelectDiversifierCmdBuild(this.samRevision, poCalypsoInstanceSerial);
+
+            samApduRequestList.add(selectDiversifierCmd.getApduRequest());
+        }
+
+        AbstractSamCommandBuilder samGetChallenge =
+                new org.eclipse.keyple.calypso.command.sam.builder.security.SamGetChallengeCmdBuild(
+                        this.samRevision, challengeLength);
+
+        samApduRequestList.add(samGetChallenge.getApduRequest());
+
+        return new SeRequest(samApduRequestList, ChannelState.KEEP_OPEN);
+    }
+
+    /**
+     * Transmit a request to the SAM
+     * <p>
+     * The state of the SAM kept by the SAM resource is forgotten when the exchange fails or when
+     * the SAM channel has been reopened, i.e. the SAM has been reset.
+     *
+     * @param samSeRequest the request to the SAM
+     * @return the SAM response
+     * @throws KeypleReaderException if a reader error occurs
+     */
+    private SeResponse transmitToSam(SeRequest samSeRequest) throws KeypleReaderException {
+        boolean samStateKept = false;
+        try {
+            SeResponse samSeResponse = samReader.transmit(samSeRequest);
+            samStateKept = samSeResponse != null && samSeResponse.wasChannelPreviouslyOpen();
+            return samSeResponse;
+        } finally {
+            if (!samStateKept) {
+                resetSamState();
+            }
+        }
+    }
+
+    /**
+     * Forget the state of the SAM
+     */
+    private void resetSamState() {
+        isDiversificationDone = false;
+        if (samResource != null) {
+            samResource.resetState();
+        }
+    }
+
     /**
      * Process SAM commands.
      * <ul>
@@ -632,7 +818,7 @@ public final class PoTransaction {
         logger.debug("processSamCommands => SAMSEREQUEST = {}", samSeRequest);
 
         /* Transmit SeRequest and get SeResponse */
-        SeResponse samSeResponse = samReader.transmit(samSeRequest);
+        SeResponse samSeResponse = transmitToSam(samSeRequest);
 
         if (samSeResponse == null) {
             throw new KeypleCalypsoSecureSessionException("Null response received",
@@ -649,6 +835,9 @@ public final class PoTransaction {
         // TODO check if the wasChannelPreviouslyOpen should be done in the case where the session
         // is closed
 
+        /* the commands of the application may have changed the state of the SAM */
+        resetSamState();
+
         return samSeResponse;
     }
 
@@ -731,7 +920,7 @@ public final class PoTransaction {
                     /*
                      * Add requests and responses to the DigestProcessor
                      */
-                    DigestProcessor.pushPoExchangeData(poApduRequestList.get(i),
+                    digestProcessor.pushPoExchangeData(poApduRequestList.get(i),
                             poAnticipatedResponses.get(i));
                 }
             } else {
@@ -744,12 +933,12 @@ public final class PoTransaction {
 
         /* All SAM digest operations will now run at once. */
         /* Get the SAM Digest request from the cache manager */
-        SeRequest samSeRequest = DigestProcessor.getSamDigestRequest();
+        SeRequest samSeRequest = digestProcessor.getSamDigestRequest();
 
         logger.debug("processAtomicClosing => SAMREQUEST = {}", samSeRequest);
 
         /* Transmit SeRequest and get SeResponse */
-        SeResponse samSeResponse = samReader.transmit(samSeRequest);
+        SeResponse samSeResponse = transmitToSam(samSeRequest);
 
         logger.debug("processAtomicClosing => SAMRESPONSE = {}", samSeResponse);
 
@@ -772,6 +961,8 @@ public final class PoTransaction {
 
                 logger.debug("processAtomicClosing => command failure REQUEST = {}, RESPONSE = {}",
                         samSeRequest.getApduRequests().get(i), samApduResponseList.get(i));
+                /* the SAM may have been reset */
+                resetSamState();
                 throw new IllegalStateException(
                         "ProcessClosing command failure during digest computation process.");
             }
@@ -853,6 +1044,8 @@ public final class PoTransaction {
              */
             if (ratificationAsked || poSeResponse == null
                     || poSeResponse.getApduResponses().size() != poApduRequestList.size() - 1) {
+                /* the PO may have committed the session or not */
+                poClosingInterrupted = true;
                 /* Add current PO SeResponse to exception */
                 ex.setSeResponse(poSeResponse);
                 throw new KeypleReaderException("PO Reader Exception while closing Secure Session",
@@ -899,7 +1092,7 @@ public final class PoTransaction {
         logger.debug("PoTransaction.DigestProcessor => checkPoSignature: SAMREQUEST = {}",
                 samSeRequest);
 
-        samSeResponse = samReader.transmit(samSeRequest);
+        samSeResponse = transmitToSam(samSeRequest);
 
         logger.debug("PoTransaction.DigestProcessor => checkPoSignature: SAMRESPONSE = {}",
                 samSeResponse);
@@ -934,6 +1127,7 @@ public final class PoTransaction {
         } else {
             logger.debug(
                     "DigestProcessor => checkPoSignature: no response to Digest Authenticate.");
+            resetSamState();
             throw new IllegalStateException("No response to Digest Authenticate.");
         }
 
@@ -972,9 +1166,35 @@ public final class PoTransaction {
             TransmissionMode transmissionMode, ChannelState channelState)
             throws KeypleReaderException {
         List<ApduResponse> poAnticipatedResponses =
-                AnticipatedResponseBuilder.getResponses(poBuilderParsers);
-        return processAtomicClosing(poBuilderParsers, poAnticipatedResponses, transmissionMode,
-                channelState);
+                anticipatedResponseBuilder.getResponses(poBuilderParsers);
+        if (poAnticipatedResponses != null) {
+            return processAtomicClosing(poBuilderParsers, poAnticipatedResponses,
+                    transmissionMode, channelState);
+        }
+        /*
+         * At least one response can't be anticipated: the commands are sent in the session before
+         * the closing, at the cost of an extra PO exchange.
+         */
+        logger.debug("processAtomicClosing => responses not anticipated, extra PO exchange");
+        MetricsRecorder metrics = Metrics.getRecorder();
+        if (metrics != null) {
+            metrics.incrementCounter(poReader.getName(),
+                    CalypsoMetrics.SESSION_CLOSING_EXTRA_EXCHANGES);
+        }
+        SeResponse seResponsePoCommands;
+        try {
+            seResponsePoCommands =
+                    processAtomicPoCommands(poBuilderParsers, ChannelState.KEEP_OPEN);
+        } catch (KeypleReaderException e) {
+            /* the session has not been closed */
+            poClosingInterrupted = true;
+            throw e;
+        }
+        SeResponse seResponseClosing = processAtomicClosing(null, new ArrayList<ApduResponse>(),
+                transmissionMode, channelState);
+        return new SeResponse(seResponseClosing.isLogicalChannelOpen(),
+                seResponseClosing.wasChannelPreviouslyOpen(),
+                seResponseClosing.getSelectionStatus(), seResponsePoCommands.getApduResponses());
     }
 
     /**
@@ -1100,21 +1320,21 @@ public final class PoTransaction {
      *
      * - checkPoSignature: Digest Authenticate, verify the PO part of the signature
      */
-    private static class DigestProcessor {
+    private static final class DigestProcessor {
         /*
          * The digest data cache stores all PO data to be send to SAM during a Secure Session. The
          * 1st buffer is the data buffer to be provided with Digest Init. The following buffers are
          * PO command/response pairs
          */
-        private static final List<byte[]> poDigestDataCache = new ArrayList<byte[]>();
-        private static SamRevision samRevision;
-        private static PoRevision poRevision;
-        private static boolean encryption;
-        private static boolean verification;
-        private static boolean revMode;
-        private static byte keyRecordNumber;
-        private static byte keyKIF;
-        private static byte keyKVC;
+        private final List<byte[]> poDigestDataCache = new ArrayList<byte[]>();
+        private SamRevision samRevision;
+        private PoRevision poRevision;
+        private boolean encryption;
+        private boolean verification;
+        private boolean revMode;
+        private byte keyRecordNumber;
+        private byte keyKIF;
+        private byte keyKVC;
 
         /**
          * Initializes the digest computation process
@@ -1129,7 +1349,7 @@ public final class PoTransaction {
          * @param workKeyKVC the PO KVC
          * @param digestData a first bunch of data to digest.
          */
-        static void initialize(PoRevision poRev, SamRevision samRev, boolean sessionEncryption,
+        void initialize(PoRevision poRev, SamRevision samRev, boolean sessionEncryption,
                 boolean verificationMode, boolean rev3_2Mode, byte workKeyRecordNumber,
                 byte workKeyKif, byte workKeyKVC, byte[] digestData) {
             /* Store work context */
@@ -1169,7 +1389,7 @@ public final class PoTransaction {
          * @param request PO request
          * @param response PO response
          */
-        static void pushPoExchangeData(ApduRequest request, ApduResponse response) {
+        void pushPoExchangeData(ApduRequest request, ApduResponse response) {
 
             logger.debug("PoTransaction.DigestProcessor => pushPoExchangeData: REQUEST = {}",
                     request);
@@ -1200,7 +1420,7 @@ public final class PoTransaction {
          *         signature
          */
         // TODO optimization with the use of Digest Update Multiple whenever possible.
-        static SeRequest getSamDigestRequest() {
+        SeRequest getSamDigestRequest() {
             List<ApduRequest> samApduRequestList = new ArrayList<ApduRequest>();
 
             if (poDigestDataCache.size() == 0) {
@@ -1253,37 +1473,117 @@ public final class PoTransaction {
 
     /**
      * The class handles the anticipated response computation.
+     * <p>
+     * The values of the counters are collected during the session from the Read Records of a
+     * counters record, the responses to the counter modifications and the values declared by the
+     * application. The anticipated responses of the counter modifications are computed from them.
+     * <p>
+     * The values of the counters before the modifications of the session are kept as well, to
+     * anticipate the responses of the modifications replayed when an interrupted session is
+     * resumed.
      */
-    private static class AnticipatedResponseBuilder {
+    private static final class AnticipatedResponseBuilder {
+        /** successful response without data */
+        private static final byte[] SW_SUCCESS = {(byte) 0x90, (byte) 0x00};
+
+        /** known values of the counters, indexed by {@link #counterKey(byte, int)} */
+        private final Map<Integer, Integer> counterValues = new HashMap<Integer, Integer>();
+        /** values of the counters modified in the session before their first modification */
+        private final Map<Integer, Integer> unmodifiedCounterValues =
+                new HashMap<Integer, Integer>();
+
+        private static int counterKey(byte sfi, int counterNumber) {
+            return ((sfi & 0xFF) << 8) | (counterNumber & 0xFF);
+        }
+
+        private static int counterValue(byte[] buffer, int offset) {
+            return ((buffer[offset] & 0xFF) << 16) | ((buffer[offset + 1] & 0xFF) << 8)
+                    | (buffer[offset + 2] & 0xFF);
+        }
+
         /**
-         * A nested class to associate a request with a response
+         * Forget the counter values of the previous session
          */
-        private static class CommandResponse {
-            private final ApduRequest apduRequest;
-            private final ApduResponse apduResponse;
+        void clear() {
+            counterValues.clear();
+            unmodifiedCounterValues.clear();
+        }
 
-            CommandResponse(ApduRequest apduRequest, ApduResponse apduResponse) {
-                this.apduRequest = apduRequest;
-                this.apduResponse = apduResponse;
-            }
+        /**
+         * Set the value of a counter, read or declared by the application
+         *
+         * @param sfi the SFI of the counters EF
+         * @param counterNumber the counter number (starts at 1)
+         * @param value the value of the counter
+         */
+        void setCounterValue(byte sfi, int counterNumber, int value) {
+            counterValues.put(counterKey(sfi, counterNumber), value);
+        }
 
-            public ApduRequest getApduRequest() {
-                return apduRequest;
+        /**
+         * Set the value of a counter returned by a modification of the session
+         *
+         * @param sfi the SFI of the counters EF
+         * @param counterNumber the counter number (starts at 1)
+         * @param newValue the value of the counter after the modification
+         * @param operand the value added or subtracted
+         * @param decrease true if the operand was subtracted
+         */
+        private void setModifiedCounterValue(byte sfi, int counterNumber, int newValue,
+                int operand, boolean decrease) {
+            int key = counterKey(sfi, counterNumber);
+            counterValues.put(key, newValue);
+            if (!unmodifiedCounterValues.containsKey(key)) {
+                unmodifiedCounterValues.put(key,
+                        decrease ? newValue + operand : newValue - operand);
             }
+        }
 
-            public ApduResponse getApduResponse() {
-                return apduResponse;
+        /**
+         * @return the known values of the counters before the modifications of the session
+         */
+        Map<Integer, Integer> getSessionStartCounterValues() {
+            Map<Integer, Integer> sessionStartCounterValues =
+                    new HashMap<Integer, Integer>(counterValues);
+            sessionStartCounterValues.putAll(unmodifiedCounterValues);
+            return sessionStartCounterValues;
+        }
+
+        /**
+         * Restore the values of the counters known before the modifications of an interrupted
+         * session, the values read since taking precedence
+         *
+         * @param savedCounterValues the values provided by
+         *        {@link #getSessionStartCounterValues()}
+         */
+        void restoreCounterValues(Map<Integer, Integer> savedCounterValues) {
+            for (Map.Entry<Integer, Integer> entry : savedCounterValues.entrySet()) {
+                if (!counterValues.containsKey(entry.getKey())) {
+                    counterValues.put(entry.getKey(), entry.getValue());
+                }
             }
         }
 
         /**
-         * A Map of SFI and Commands/Responses
+         * Keep the content of the record 1 of an EF as the values of its counters (only used if
+         * the EF is a counters EF)
+         *
+         * @param sfi the SFI of the EF
+         * @param data the record data (without status word)
+         * @param length the length of the data
          */
-        private static Map<Byte, CommandResponse> sfiCommandResponseHashMap =
-                new HashMap<Byte, CommandResponse>();
+        void storeCounters(byte sfi, byte[] data, int length) {
+            for (int i = 0; i + 3 <= length; i += 3) {
+                setCounterValue(sfi, i / 3 + 1, counterValue(data, i));
+            }
+        }
 
         /**
-         * Store all Read Record exchanges in a Map whose key is the SFI.
+         * Collect the counter values from the responses of the commands sent to the PO
+         * <p>
+         * The values are taken from the Read Records of the record 1 (the record of the counters)
+         * and from the responses of the Increase, Decrease, Increase Multiple and Decrease
+         * Multiple commands.
          * 
          * @param poBuilderParsers the list of commands sent to the PO
          * @param apduRequests the sent apduRequests
@@ -1291,32 +1591,46 @@ public final class PoTransaction {
          * @param skipFirstItem a flag to indicate if the first apduRequest/apduResponse pair has to
          *        be ignored or not.
          */
-        static void storeCommandResponse(List<PoBuilderParser> poBuilderParsers,
+        void storeCommandResponse(List<PoBuilderParser> poBuilderParsers,
                 List<ApduRequest> apduRequests, List<ApduResponse> apduResponses,
                 Boolean skipFirstItem) {
-            if (poBuilderParsers != null) {
-                /*
-                 * Store Read Records' requests and responses for later use to build anticipated
-                 * responses.
-                 */
-                Iterator<ApduRequest> apduRequestIterator = apduRequests.iterator();
-                Iterator<ApduResponse> apduResponseIterator = apduResponses.iterator();
-                if (skipFirstItem) {
-                    /* case of processAtomicOpening */
-                    apduRequestIterator.next();
-                    apduResponseIterator.next();
+            if (poBuilderParsers == null) {
+                return;
+            }
+            int index = skipFirstItem ? 1 : 0;
+            for (PoBuilderParser poCommand : poBuilderParsers) {
+                if (index >= apduRequests.size() || index >= apduResponses.size()) {
+                    break;
                 }
-                /* Iterate over the poCommandsInsideSession list */
-                for (PoBuilderParser poCommand : poBuilderParsers) {
-                    if (((CalypsoBuilderParser) poCommand)
-                            .getCommandBuilder() instanceof ReadRecordsCmdBuild) {
-                        ApduRequest apduRequest = apduRequestIterator.next();
-                        byte sfi = (byte) ((apduRequest.getBytes()[OFFSET_P2] >> 3) & 0x1F);
-                        sfiCommandResponseHashMap.put(sfi,
-                                new CommandResponse(apduRequest, apduResponseIterator.next()));
-                    } else {
-                        apduRequestIterator.next();
-                        apduResponseIterator.next();
+                byte[] request = apduRequests.get(index).getBytes();
+                ApduResponse apduResponse = apduResponses.get(index);
+                index++;
+                if (!apduResponse.isSuccessful()) {
+                    continue;
+                }
+                byte[] response = apduResponse.getBytes();
+                int dataLength = response.length - 2;
+                byte sfi = (byte) ((request[OFFSET_P2] >> 3) & 0x1F);
+                AbstractApduCommandBuilder commandBuilder = poCommand.getCommandBuilder();
+                if (commandBuilder instanceof ReadRecordsCmdBuild) {
+                    /* one record read (P2 = SFI * 8 + 4), the record 1 */
+                    if ((request[OFFSET_P2] & 0x07) == 0x04 && request[OFFSET_P1] == 0x01) {
+                        storeCounters(sfi, response, dataLength);
+                    }
+                } else if (commandBuilder instanceof IncreaseCmdBuild
+                        || commandBuilder instanceof DecreaseCmdBuild) {
+                    if (dataLength == 3) {
+                        setModifiedCounterValue(sfi, request[OFFSET_P1] & 0xFF,
+                                counterValue(response, 0), counterValue(request, OFFSET_DATA),
+                                commandBuilder instanceof DecreaseCmdBuild);
+                    }
+                } else if (commandBuilder instanceof AbstractMultipleCounterCmdBuild) {
+                    /* the response has the same layout as the command data */
+                    for (int i = 0; i + 4 <= dataLength; i += 4) {
+                        setModifiedCounterValue(sfi, response[i] & 0xFF,
+                                counterValue(response, i + 1),
+                                counterValue(request, OFFSET_DATA + i + 1),
+                                commandBuilder instanceof DecreaseMultipleCmdBuild);
                     }
                 }
             }
@@ -1329,92 +1643,132 @@ public final class PoTransaction {
          * <p>
          * Increase and Decrease return NNNNNN9000 where NNNNNNN is the new counter value.
          * <p>
-         * NNNNNN is determine with the current value of the counter (extracted from the Read Record
-         * responses previously collected) and the value to add or subtract provided in the command.
+         * Increase Multiple and Decrease Multiple return CCNNNNNN...9000 where CC is the number of
+         * each counter modified.
+         * <p>
+         * NNNNNN is determined with the current value of the counter (read, returned by a previous
+         * modification or declared by the application) and the value to add or subtract provided
+         * in the command. The successive modifications of a counter are taken into account.
          * <p>
-         * The SFI field is used to determine which data should be used to extract the needed
-         * information.
+         * The custom modification commands return the response provided by the application, 9000
+         * by default.
          *
          * @param poBuilderParsers the modification command list
-         * @return the anticipated responses.
-         * @throws KeypleCalypsoSecureSessionException if an response can't be determined.
+         * @return the anticipated responses, null if a response can't be determined (command
+         *         which is not a modification command, counter value unknown or out of range)
          */
-        public static List<ApduResponse> getResponses(List<PoBuilderParser> poBuilderParsers)
-                throws KeypleCalypsoSecureSessionException {
+        List<ApduResponse> getResponses(List<PoBuilderParser> poBuilderParsers) {
             List<ApduResponse> apduResponses = new ArrayList<ApduResponse>();
-            if (poBuilderParsers != null) {
-                for (PoBuilderParser poBuilderParser : poBuilderParsers) {
-                    if (poBuilderParser.getCommandBuilder() instanceof DecreaseCmdBuild
-                            || poBuilderParser.getCommandBuilder() instanceof IncreaseCmdBuild) {
-                        /* response = NNNNNN9000 */
-                        byte[] modCounterApduRequest =
-                                (poBuilderParser.getCommandBuilder()).getApduRequest().getBytes();
-                        /* Retrieve SFI from the current Decrease command */
-                        byte sfi = (byte) ((modCounterApduRequest[OFFSET_P2] >> 3) & 0x1F);
-                        /*
-                         * Look for the counter value in the stored records. Only the first
-                         * occurrence of the SFI is taken into account. We assume here that the
-                         * record number is always 1.
-                         */
-                        CommandResponse commandResponse = sfiCommandResponseHashMap.get(sfi);
-                        if (commandResponse != null) {
-                            byte counterNumber = modCounterApduRequest[OFFSET_P1];
-                            /*
-                             * The record containing the counters is structured as follow:
-                             * AAAAAAABBBBBBCCCCCC...XXXXXX each counter being a 3-byte unsigned
-                             * number. Convert the 3-byte block indexed by the counter number to an
-                             * int.
-                             */
-                            int currentCounterValue = ByteArrayUtils.threeBytesToInt(
-                                    commandResponse.getApduResponse().getBytes(),
-                                    (counterNumber - 1) * 3);
-                            /* Extract the add or subtract value from the modification request */
-                            int addSubtractValue = ByteArrayUtils
-                                    .threeBytesToInt(modCounterApduRequest, OFFSET_DATA);
-                            /* Build the response */
-                            byte[] response = new byte[5];
-                            int newCounterValue;
-                            if (poBuilderParser.getCommandBuilder() instanceof DecreaseCmdBuild) {
-                                newCounterValue = currentCounterValue - addSubtractValue;
-                            } else {
-                                newCounterValue = currentCounterValue + addSubtractValue;
-                            }
-                            response[0] = (byte) ((newCounterValue & 0x00FF0000) >> 16);
-                            response[1] = (byte) ((newCounterValue & 0x0000FF00) >> 8);
-                            response[2] = (byte) ((newCounterValue & 0x000000FF) >> 0);
-                            response[3] = (byte) 0x90;
-                            response[4] = (byte) 0x00;
-                            apduResponses.add(new ApduResponse(response, null));
-                            if (logger.isDebugEnabled()) {
-                                logger.debug(
-                                        "Anticipated response. COMMAND = {}, SFI = {}, COUNTERVALUE = {}, DECREMENT = {}, NEWVALUE = {} ",
-                                        (poBuilderParser
-                                                .getCommandBuilder() instanceof DecreaseCmdBuild)
-                                                        ? "Decrease"
-                                                        : "Increase",
-                                        sfi, currentCounterValue, addSubtractValue,
-                                        newCounterValue);
-                            }
-                        } else {
-                            throw new KeypleCalypsoSecureSessionException(
-                                    "Anticipated response. COMMAND = " + ((poBuilderParser
-                                            .getCommandBuilder() instanceof DecreaseCmdBuild)
-                                                    ? "Decrease"
-                                                    : "Increase")
-                                            + ". Unable to determine anticipated counter value. SFI = "
-                                            + sfi,
-                                    ((PoBuilderParser) poBuilderParser).getCommandBuilder()
-                                            .getApduRequest(),
-                                    null);
+            if (poBuilderParsers == null || poBuilderParsers.isEmpty()) {
+                return apduResponses;
+            }
+            /* the counters are updated only if all the responses are anticipated */
+            Map<Integer, Integer> newCounterValues = new HashMap<Integer, Integer>();
+            for (PoBuilderParser poBuilderParser : poBuilderParsers) {
+                AbstractApduCommandBuilder commandBuilder = poBuilderParser.getCommandBuilder();
+                byte[] request = commandBuilder.getApduRequest().getBytes();
+                byte sfi = (byte) ((request[OFFSET_P2] >> 3) & 0x1F);
+                byte[] response;
+                if (commandBuilder instanceof IncreaseCmdBuild
+                        || commandBuilder instanceof DecreaseCmdBuild) {
+                    /* response = NNNNNN9000 */
+                    response = new byte[5];
+                    if (!anticipateCounter(newCounterValues, sfi, request[OFFSET_P1] & 0xFF,
+                            counterValue(request, OFFSET_DATA),
+                            commandBuilder instanceof DecreaseCmdBuild, response, 0)) {
+                        return null;
+                    }
+                    setSuccessStatus(response);
+                } else if (commandBuilder instanceof AbstractMultipleCounterCmdBuild) {
+                    /* response = [CCNNNNNN]...9000, the same layout as the command data */
+                    int dataLength = request[OFFSET_Lc] & 0xFF;
+                    response = new byte[dataLength + 2];
+                    for (int i = 0; i < dataLength; i += 4) {
+                        int counterNumber = request[OFFSET_DATA + i] & 0xFF;
+                        response[i] = (byte) counterNumber;
+                        if (!anticipateCounter(newCounterValues, sfi, counterNumber,
+                                counterValue(request, OFFSET_DATA + i + 1),
+                                commandBuilder instanceof DecreaseMultipleCmdBuild, response,
+                                i + 1)) {
+                            return null;
                         }
-                    } else {
-                        /* Append/Update/Write Record: response = 9000 */
-                        apduResponses.add(new ApduResponse(ByteArrayUtils.fromHex("9000"), null));
                     }
+                    setSuccessStatus(response);
+                } else if (commandBuilder instanceof PoCustomModificationCommandBuilder) {
+                    response = ((PoCustomModificationCommandBuilder) commandBuilder)
+                            .getAnticipatedResponse();
+                } else if (commandBuilder instanceof PoModificationCommand) {
+                    /* Append/Update Record: response = 9000 */
+                    response = SW_SUCCESS;
+                } else {
+                    /* the response of a read command can't be anticipated */
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Anticipated response. No anticipation for {}",
+                                commandBuilder.getName());
+                    }
+                    return null;
+                }
+                apduResponses.add(new ApduResponse(response, null));
+            }
+            /* the anticipation of a first modification is based on a known value */
+            for (Integer key : newCounterValues.keySet()) {
+                if (!unmodifiedCounterValues.containsKey(key)) {
+                    unmodifiedCounterValues.put(key, counterValues.get(key));
                 }
             }
+            counterValues.putAll(newCounterValues);
             return apduResponses;
         }
+
+        private static void setSuccessStatus(byte[] response) {
+            response[response.length - 2] = SW_SUCCESS[0];
+            response[response.length - 1] = SW_SUCCESS[1];
+        }
+
+        /**
+         * Compute the new value of a counter
+         *
+         * @param newCounterValues the values modified by the previous commands of the list
+         * @param sfi the SFI of the counters EF
+         * @param counterNumber the counter number
+         * @param operand the value to add or subtract
+         * @param decrease true to subtract the operand
+         * @param response the response in which the new value is written
+         * @param offset the offset of the new value in the response
+         * @return false if the new value can't be determined
+         */
+        private boolean anticipateCounter(Map<Integer, Integer> newCounterValues, byte sfi,
+                int counterNumber, int operand, boolean decrease, byte[] response, int offset) {
+            int key = counterKey(sfi, counterNumber);
+            Integer currentCounterValue = newCounterValues.get(key);
+            if (currentCounterValue == null) {
+                currentCounterValue = counterValues.get(key);
+            }
+            if (currentCounterValue == null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Anticipated response. Unknown value: SFI = {}, COUNTER = {}",
+                            sfi, counterNumber);
+                }
+                return false;
+            }
+            int newCounterValue =
+                    decrease ? currentCounterValue - operand : currentCounterValue + operand;
+            if (newCounterValue < 0 || newCounterValue > 0xFFFFFF) {
+                /* the PO will reject the command */
+                return false;
+            }
+            newCounterValues.put(key, newCounterValue);
+            response[offset] = (byte) ((newCounterValue & 0x00FF0000) >> 16);
+            response[offset + 1] = (byte) ((newCounterValue & 0x0000FF00) >> 8);
+            response[offset + 2] = (byte) (newCounterValue & 0x000000FF);
+            if (logger.isDebugEnabled()) {
+                logger.debug(
+                        "Anticipated response. COMMAND = {}, SFI = {}, COUNTER = {}, COUNTERVALUE = {}, OPERAND = {}, NEWVALUE = {} ",
+                        decrease ? "Decrease" : "Increase", sfi, counterNumber,
+                        currentCounterValue, operand, newCounterValue);
+            }
+            return true;
+        }
     }
 
     /**
@@ -1458,11 +1812,34 @@ public final class PoTransaction {
      */
     public boolean processOpening(ModificationMode modificationMode, SessionAccessLevel accessLevel,
             byte openingSfiToSelect, byte openingRecordNumberToRead) throws KeypleReaderException {
+        Probe probe = Probe.start(poReader.getName(), CalypsoMetrics.SESSION_OPENING,
+                TraceEvent.SESSION_OPENING);
+        try {
+            boolean poProcessSuccess = openSession(modificationMode, accessLevel,
+                    openingSfiToSelect, openingRecordNumberToRead);
+            probe.completed(poProcessSuccess);
+            return poProcessSuccess;
+        } finally {
+            endPhase(probe);
+        }
+    }
+
+    /**
+     * Opening phase of {@link #processOpening(ModificationMode, SessionAccessLevel, byte, byte)}
+     */
+    private boolean openSession(ModificationMode modificationMode, SessionAccessLevel accessLevel,
+            byte openingSfiToSelect, byte openingRecordNumberToRead) throws KeypleReaderException {
         currentModificationMode = modificationMode;
         currentAccessLevel = accessLevel;
+        currentOpeningSfi = openingSfiToSelect;
+        currentOpeningRecordNumber = openingRecordNumberToRead;
         byte localOpeningRecordNumberToRead = openingRecordNumberToRead;
         boolean poProcessSuccess = true;
 
+        /* forget the counter values and the modifications of the previous session */
+        anticipatedResponseBuilder.clear();
+        sessionModifications.clear();
+
         /*
          * clear the prepared command list if processed flag is still set (no new command prepared)
          */
@@ -1530,6 +1907,7 @@ public final class PoTransaction {
         if (!createResponseParsers(seResponseOpening, poAtomicCommandList)) {
             poProcessSuccess = false;
         }
+        keepSessionModifications(poAtomicCommandList);
 
         /* sets the flag indicating that the commands have been executed */
         preparedCommandsProcessed = true;
@@ -1591,6 +1969,21 @@ public final class PoTransaction {
      * @throws KeypleReaderException IO Reader exception
      */
     public boolean processPoCommandsInSession() throws KeypleReaderException {
+        Probe probe = Probe.start(poReader.getName(), CalypsoMetrics.SESSION_COMMANDS,
+                TraceEvent.SESSION_COMMANDS);
+        try {
+            boolean poProcessSuccess = processSessionCommands();
+            probe.completed(poProcessSuccess);
+            return poProcessSuccess;
+        } finally {
+            endPhase(probe);
+        }
+    }
+
+    /**
+     * Commands phase of {@link #processPoCommandsInSession()}
+     */
+    private boolean processSessionCommands() throws KeypleReaderException {
 
         /** This method should be called only if a session was previously open */
         if (currentState == SessionState.SESSION_CLOSED) {
@@ -1667,6 +2060,7 @@ public final class PoTransaction {
             if (!createResponseParsers(seResponsePoCommands, poAtomicBuilderParserList)) {
                 poProcessSuccess = false;
             }
+            keepSessionModifications(poAtomicBuilderParserList);
         }
 
         /* sets the flag indicating that the commands have been executed */
@@ -1700,8 +2094,23 @@ public final class PoTransaction {
      */
     public boolean processClosing(TransmissionMode transmissionMode, ChannelState channelState)
             throws KeypleReaderException {
+        Probe probe = Probe.start(poReader.getName(), CalypsoMetrics.SESSION_CLOSING,
+                TraceEvent.SESSION_CLOSING);
+        try {
+            boolean poProcessSuccess = closeSession(transmissionMode, channelState);
+            probe.completed(poProcessSuccess);
+            return poProcessSuccess;
+        } finally {
+            endPhase(probe);
+        }
+    }
+
+    /**
+     * Closing phase of {@link #processClosing(TransmissionMode, ChannelState)}
+     */
+    private boolean closeSession(TransmissionMode transmissionMode, ChannelState channelState)
+            throws KeypleReaderException {
         boolean poProcessSuccess = true;
-        boolean atLeastOneReadCommand = false;
         boolean sessionPreviouslyClosed = false;
 
         /*
@@ -1712,18 +2121,15 @@ public final class PoTransaction {
             preparedCommandsProcessed = false;
         }
 
-        List<PoModificationCommand> poModificationCommandList =
-                new ArrayList<PoModificationCommand>();
         List<PoBuilderParser> poAtomicBuilderParserList = new ArrayList<PoBuilderParser>();
         SeResponse seResponseClosing;
         for (PoBuilderParser poBuilderParser : poBuilderParserList) {
-            if (!(poBuilderParser instanceof PoModificationCommand)) {
+            if (!(poBuilderParser.getCommandBuilder() instanceof PoModificationCommand)) {
                 /*
-                 * This command does not affect the PO modifications buffer. We will call
-                 * processPoCommands first
+                 * This command does not affect the PO modifications buffer. Its response can't be
+                 * anticipated, it will be sent before the closing.
                  */
                 poAtomicBuilderParserList.add(poBuilderParser);
-                atLeastOneReadCommand = true;
             } else {
                 /* This command affects the PO modifications buffer */
                 if (willOverflowBuffer(
@@ -1741,23 +2147,11 @@ public final class PoTransaction {
                         processAtomicOpening(currentAccessLevel, (byte) 0x00, (byte) 0x00, null);
                     }
 
-                    /*
-                     * If at least one non-modifying was prepared, we use processAtomicPoCommands
-                     * instead of processAtomicClosing to send the list
-                     */
-                    if (atLeastOneReadCommand) {
-                        List<PoBuilderParser> poBuilderParsers = new ArrayList<PoBuilderParser>();
-                        poBuilderParsers.addAll(poAtomicBuilderParserList);
-                        seResponseClosing =
-                                processAtomicPoCommands(poBuilderParsers, ChannelState.KEEP_OPEN);
-                        atLeastOneReadCommand = false;
-                    } else {
-                        /* All commands in the list are 'modifying' */
-                        seResponseClosing = processAtomicClosing(poAtomicBuilderParserList,
-                                TransmissionMode.CONTACTS, ChannelState.KEEP_OPEN);
-                        resetModificationsBufferCounter();
-                        sessionPreviouslyClosed = true;
-                    }
+                    /* Close the session to commit the commands already in the buffer */
+                    seResponseClosing = processAtomicClosing(poAtomicBuilderParserList,
+                            TransmissionMode.CONTACTS, ChannelState.KEEP_OPEN);
+                    resetModificationsBufferCounter();
+                    sessionPreviouslyClosed = true;
 
                     if (!createResponseParsers(seResponseClosing, poAtomicBuilderParserList)) {
                         poProcessSuccess = false;
@@ -1789,8 +2183,23 @@ public final class PoTransaction {
         }
 
         /* Finally, close the session as requested */
-        seResponseClosing =
-                processAtomicClosing(poAtomicBuilderParserList, transmissionMode, channelState);
+        poClosingInterrupted = false;
+        try {
+            seResponseClosing =
+                    processAtomicClosing(poAtomicBuilderParserList, transmissionMode, channelState);
+        } catch (KeypleReaderException e) {
+            if (poClosingInterrupted && sessionResumeCache != null && !sessionPreviouslyClosed
+                    && currentModificationMode == ModificationMode.ATOMIC
+                    && transmissionMode == TransmissionMode.CONTACTLESS) {
+                logger.debug("processClosing => PO lost, the session can be resumed");
+                sessionResumeCache.put(poCalypsoInstanceSerial,
+                        new SessionResumeCache.InterruptedSession(currentAccessLevel,
+                                currentOpeningSfi, currentOpeningRecordNumber,
+                                sessionModifications, poBuilderParserList,
+                                anticipatedResponseBuilder.getSessionStartCounterValues()));
+            }
+            throw e;
+        }
 
         /* Update parsers */
         if (!createResponseParsers(seResponseClosing, poAtomicBuilderParserList)) {
@@ -1803,6 +2212,107 @@ public final class PoTransaction {
         return poProcessSuccess;
     }
 
+    /**
+     * Indicates whether a session of the current PO, interrupted in the closing, can be resumed
+     * with {@link #processResume(TransmissionMode, ChannelState)}
+     *
+     * @return true if the session resume cache holds a session of the PO
+     */
+    public boolean isSessionResumable() {
+        return sessionResumeCache != null && sessionResumeCache.contains(poCalypsoInstanceSerial);
+    }
+
+    /**
+     * Complete the transaction of a session interrupted in the closing by the loss of the PO.
+     * <p>
+     * A new session is opened with the parameters of the interrupted one. The ratification status
+     * returned by the PO tells if the interrupted session was committed:
+     * <ul>
+     * <li>not ratified: the PO received the Close Secure Session command but the session was not
+     * ratified, the new session is closed without any command and ratifies it,</li>
+     * <li>ratified: the session was cancelled by the PO, its modification commands are sent again
+     * in the closing of the new session.</li>
+     * </ul>
+     * The transaction is so completed with a single PO exchange for the opening and one for the
+     * closing, the responses of the modification commands being anticipated from the counter
+     * values read at the opening or known before the modifications of the interrupted session. The
+     * response parsers of the commands prepared for the interrupted closing are available with
+     * {@link #getResponseParser(int)} after a replay.
+     *
+     * @param transmissionMode the communication mode (see
+     *        {@link #processClosing(TransmissionMode, ChannelState)})
+     * @param channelState indicates if the SE channel of the PO reader must be closed after the
+     *        last command
+     * @return true if the transaction is completed
+     * @throws KeypleReaderException the IO reader exception
+     * @throws IllegalStateException if no interrupted session of the PO can be resumed
+     */
+    public boolean processResume(TransmissionMode transmissionMode, ChannelState channelState)
+            throws KeypleReaderException {
+        if (currentState != SessionState.SESSION_CLOSED) {
+            throw new IllegalStateException("A session is open");
+        }
+        SessionResumeCache.InterruptedSession interruptedSession = sessionResumeCache != null
+                ? sessionResumeCache.take(poCalypsoInstanceSerial)
+                : null;
+        if (interruptedSession == null) {
+            throw new IllegalStateException("No interrupted session to resume for this PO.");
+        }
+        MetricsRecorder metrics = Metrics.getRecorder();
+        if (metrics != null) {
+            metrics.incrementCounter(poReader.getName(), CalypsoMetrics.SESSION_RESUMES);
+        }
+
+        currentModificationMode = ModificationMode.ATOMIC;
+        currentAccessLevel = interruptedSession.accessLevel;
+        currentOpeningSfi = interruptedSession.openingSfi;
+        currentOpeningRecordNumber = interruptedSession.openingRecordNumber;
+        anticipatedResponseBuilder.clear();
+        sessionModifications.clear();
+        resetModificationsBufferCounter();
+
+        /* the parsers of the interrupted closing are made available again */
+        poBuilderParserList.clear();
+        poBuilderParserList.addAll(interruptedSession.closingCommands);
+        preparedCommandIndex = poBuilderParserList.size();
+        preparedCommandsProcessed = true;
+
+        processAtomicOpening(currentAccessLevel, currentOpeningSfi, currentOpeningRecordNumber,
+                null);
+
+        List<PoBuilderParser> replayedCommands = new ArrayList<PoBuilderParser>();
+        if (wasRatified) {
+            logger.debug("processResume => the interrupted session was cancelled, replay it");
+            /* the counters not read at the opening have their values of the interrupted session */
+            anticipatedResponseBuilder.restoreCounterValues(interruptedSession.counterValues);
+            replayedCommands.addAll(interruptedSession.modificationCommands);
+            replayedCommands.addAll(interruptedSession.closingCommands);
+        } else {
+            logger.debug("processResume => the interrupted session was committed");
+        }
+        SeResponse seResponseClosing =
+                processAtomicClosing(replayedCommands, transmissionMode, channelState);
+
+        return createResponseParsers(seResponseClosing, replayedCommands) && transactionResult;
+    }
+
+    /**
+     * Keep the modification commands sent in the session, to replay them if the session is
+     * interrupted in the closing
+     *
+     * @param poBuilderParsers the commands sent
+     */
+    private void keepSessionModifications(List<PoBuilderParser> poBuilderParsers) {
+        if (sessionResumeCache == null) {
+            return;
+        }
+        for (PoBuilderParser poBuilderParser : poBuilderParsers) {
+            if (poBuilderParser.getCommandBuilder() instanceof PoModificationCommand) {
+                sessionModifications.add(poBuilderParser);
+            }
+        }
+    }
+
     /**
      * Abort a Secure Session.
      * <p>
@@ -1815,6 +2325,12 @@ public final class PoTransaction {
      * @return true if the abort command received a successful response from the PO
      */
     public boolean processCancel(ChannelState channelState) {
+        MetricsRecorder metrics = Metrics.getRecorder();
+        if (metrics != null) {
+            metrics.incrementCounter(poReader.getName(), CalypsoMetrics.SESSION_CANCELLATIONS);
+        }
+        Probe probe = Probe.start(poReader.getName(), null, TraceEvent.SESSION_CANCEL);
+
         /* PO ApduRequest List to hold Close Secure Session command */
         List<ApduRequest> poApduRequestList = new ArrayList<ApduRequest>();
 
@@ -1848,12 +2364,27 @@ public final class PoTransaction {
          */
         currentState = SessionState.SESSION_CLOSED;
 
+        ApduResponse cancelResponse = poSeResponse.getApduResponses().get(0);
+        probe.exchanged(0, 0, cancelResponse.getStatusCode())
+                .completed(cancelResponse.isSuccessful()).end();
+
         /* return the successful status of the abort session command */
-        return poSeResponse.getApduResponses().get(0).isSuccessful();
+        return cancelResponse.isSuccessful();
+    }
+
+    /**
+     * Record the duration of a session phase and end its trace, the phase being successful,
+     * failed or interrupted by an exception
+     *
+     * @param probe the probe started with the phase
+     */
+    private void endPhase(Probe probe) {
+        probe.detail(currentAccessLevel != null ? currentAccessLevel.name() : null).end();
     }
 
     /**
-     * Loops on the SeResponse and create the appropriate builders
+     * Loops on the SeResponse and associate the responses to the builders, the parsers are created
+     * on demand by {@link #getResponseParser(int)}
      * 
      * @param seResponse the seResponse from the PO
      * @param poBuilderParsers the list of {@link PoBuilderParser} (sublist of the global list)
@@ -1869,8 +2400,7 @@ public final class PoTransaction {
                 throw new IllegalStateException("Commands list and responses list mismatch! ");
             }
             PoBuilderParser poBuilderParser = commandIterator.next();
-            poBuilderParser.setResponseParser((AbstractPoResponseParser) (poBuilderParser
-                    .getCommandBuilder().createResponseParser(apduResponse)));
+            poBuilderParser.setApduResponse(apduResponse);
             if (!apduResponse.isSuccessful()) {
                 allSuccessfulCommands = false;
             }
@@ -1891,8 +2421,8 @@ public final class PoTransaction {
     private boolean willOverflowBuffer(PoModificationCommand modificationCommand) {
         boolean willOverflow = false;
         if (modificationsCounterIsInBytes) {
-            int bufferRequirement = ((AbstractApduCommandBuilder) modificationCommand)
-                    .getApduRequest().getBytes()[OFFSET_Lc] + 6;
+            int bufferRequirement = (((AbstractApduCommandBuilder) modificationCommand)
+                    .getApduRequest().getBytes()[OFFSET_Lc] & 0xFF) + 6;
 
             if (modificationsCounter - bufferRequirement > 0) {
                 modificationsCounter = modificationsCounter - bufferRequirement;
@@ -2016,6 +2546,11 @@ public final class PoTransaction {
         boolean readJustOneRecord =
                 !(readDataStructureEnum == ReadDataStructure.MULTIPLE_RECORD_DATA);
 
+        if (readPrefetchLearner != null) {
+            readPrefetchLearner.recordRead(calypsoPo, sfi, readDataStructureEnum,
+                    firstRecordNumber, expectedLength);
+        }
+
         /*
          * create and keep the PoBuilderParser, return the command index
          */
@@ -2031,6 +2566,11 @@ public final class PoTransaction {
      * <p>
      * The expected length is provided and its value is checked between 1 and 250.
      * <p>
+     * A Read Records command is prepared whatever the PO revision: its response is parsed by a
+     * {@link ReadRecordsRespPars}. The Read Record Multiple command, reading a part of the
+     * successive records, is prepared with
+     * {@link #prepareReadRecordMultipleCmd(byte, byte, int, int, String)}.
+     * <p>
      * Returns the associated response parser.
      *
      * @param sfi the sfi top select
@@ -2175,6 +2715,209 @@ public final class PoTransaction {
                 counterNumber, decValue, extraInfo));
     }
 
+    /**
+     * Builds a Read Record Multiple command reading the same part of the successive records of an
+     * EF and add it to the list of commands to be sent with the next process command.
+     * <p>
+     * The command is only supported by the POs selected as supporting the multiple commands (see
+     * {@link PoSelectionRequest#setMultipleCommandsSupported(boolean)}).
+     *
+     * @param sfi the sfi top select
+     * @param firstRecordNumber the first record to read
+     * @param offset the offset of the part to read in each record
+     * @param length the length of the part to read in each record
+     * @param extraInfo extra information included in the logs (can be null or empty)
+     * @return the command index (input order, starting at 0)
+     * @throws java.lang.IllegalStateException - if the PO does not support the command
+     * @throws java.lang.IllegalArgumentException - if the request is inconsistent
+     */
+    public int prepareReadRecordMultipleCmd(byte sfi, byte firstRecordNumber, int offset,
+            int length, String extraInfo) {
+        checkMultipleCommandsSupported("Read Record Multiple");
+        return createAndStoreCommandBuilder(new ReadRecordMultipleCmdBuild(
+                calypsoPo.getPoClass(), sfi, firstRecordNumber, offset, length, extraInfo));
+    }
+
+    /**
+     * Builds a Search Record Multiple command and add it to the list of commands to be sent with
+     * the next process command.
+     * <p>
+     * The command is only supported by the POs selected as supporting the multiple commands (see
+     * {@link PoSelectionRequest#setMultipleCommandsSupported(boolean)}).
+     *
+     * @param sfi the sfi top select
+     * @param firstRecordNumber the record from which the search starts
+     * @param searchOffset the offset of the searched data in the records
+     * @param repeatedOffset true to search the data at each position from the offset to the end
+     *        of the records
+     * @param fetchFirstMatchingResult true to get the content of the first matching record
+     * @param searchData the searched data
+     * @param mask the bits of the searched data taken into account (null to compare all the bits)
+     * @param extraInfo extra information included in the logs (can be null or empty)
+     * @return the command index (input order, starting at 0)
+     * @throws java.lang.IllegalStateException - if the PO does not support the command
+     * @throws java.lang.IllegalArgumentException - if the request is inconsistent
+     */
+    public int prepareSearchRecordMultipleCmd(byte sfi, byte firstRecordNumber, int searchOffset,
+            boolean repeatedOffset, boolean fetchFirstMatchingResult, byte[] searchData,
+            byte[] mask, String extraInfo) {
+        checkMultipleCommandsSupported("Search Record Multiple");
+        return createAndStoreCommandBuilder(new SearchRecordMultipleCmdBuild(
+                calypsoPo.getPoClass(), sfi, firstRecordNumber, searchOffset, repeatedOffset,
+                fetchFirstMatchingResult, searchData, mask, extraInfo));
+    }
+
+    /**
+     * Builds the commands increasing several counters of the same EF and add them to the list of
+     * commands to be sent with the next process command.
+     * <p>
+     * A single Increase Multiple command is prepared when the PO supports it (see
+     * {@link PoSelectionRequest#setMultipleCommandsSupported(boolean)}), otherwise an Increase
+     * command is prepared for each counter, in the ascending order of the counter numbers.
+     *
+     * @param sfi SFI of the file to select or 00h for current EF
+     * @param counterNumberToIncValue the values to add to the counters indexed by counter number
+     * @param extraInfo extra information included in the logs (can be null or empty)
+     * @return the indexes of the commands prepared (input order, starting at 0), to provide to
+     *         {@link #getNewCounterValues(int[])}
+     * @throws java.lang.IllegalArgumentException - if a counter number or a value is out of range
+     */
+    public int[] prepareIncreaseMultipleCmd(byte sfi,
+            SortedMap<Integer, Integer> counterNumberToIncValue, String extraInfo) {
+        if (counterNumberToIncValue == null || counterNumberToIncValue.isEmpty()) {
+            throw new IllegalArgumentException("No counter to increase.");
+        }
+        if (calypsoPo.isMultipleCommandsSupported()) {
+            return new int[] {createAndStoreCommandBuilder(new IncreaseMultipleCmdBuild(
+                    calypsoPo.getPoClass(), sfi, counterNumberToIncValue, extraInfo))};
+        }
+        int[] commandIndexes = new int[counterNumberToIncValue.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : counterNumberToIncValue.entrySet()) {
+            commandIndexes[i++] = prepareIncreaseCmd(sfi, entry.getKey().byteValue(),
+                    entry.getValue(), extraInfo);
+        }
+        return commandIndexes;
+    }
+
+    /**
+     * Builds the commands decreasing several counters of the same EF and add them to the list of
+     * commands to be sent with the next process command.
+     * <p>
+     * A single Decrease Multiple command is prepared when the PO supports it (see
+     * {@link PoSelectionRequest#setMultipleCommandsSupported(boolean)}), otherwise a Decrease
+     * command is prepared for each counter, in the ascending order of the counter numbers.
+     *
+     * @param sfi SFI of the file to select or 00h for current EF
+     * @param counterNumberToDecValue the values to subtract from the counters indexed by counter
+     *        number
+     * @param extraInfo extra information included in the logs (can be null or empty)
+     * @return the indexes of the commands prepared (input order, starting at 0), to provide to
+     *         {@link #getNewCounterValues(int[])}
+     * @throws java.lang.IllegalArgumentException - if a counter number or a value is out of range
+     */
+    public int[] prepareDecreaseMultipleCmd(byte sfi,
+            SortedMap<Integer, Integer> counterNumberToDecValue, String extraInfo) {
+        if (counterNumberToDecValue == null || counterNumberToDecValue.isEmpty()) {
+            throw new IllegalArgumentException("No counter to decrease.");
+        }
+        if (calypsoPo.isMultipleCommandsSupported()) {
+            return new int[] {createAndStoreCommandBuilder(new DecreaseMultipleCmdBuild(
+                    calypsoPo.getPoClass(), sfi, counterNumberToDecValue, extraInfo))};
+        }
+        int[] commandIndexes = new int[counterNumberToDecValue.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : counterNumberToDecValue.entrySet()) {
+            commandIndexes[i++] = prepareDecreaseCmd(sfi, entry.getKey().byteValue(),
+                    entry.getValue(), extraInfo);
+        }
+        return commandIndexes;
+    }
+
+    /**
+     * Builds a custom modification command and add it to the list of commands to be sent with the
+     * next process command.
+     * <p>
+     * The response of the command is anticipated when it is sent in the closing of the session: it
+     * must match the response of the PO for the session to be validated.
+     *
+     * @param name the name of the command (will appear in the ApduRequest log)
+     * @param apduRequest the ApduRequest (the correct instruction byte must be provided)
+     * @param anticipatedResponse the response expected from the PO, including the status word
+     * @return the command index (input order, starting at 0)
+     * @throws java.lang.IllegalArgumentException - if the anticipated response is inconsistent
+     */
+    public int prepareCustomModificationCmd(String name, ApduRequest apduRequest,
+            byte[] anticipatedResponse) {
+        return createAndStoreCommandBuilder(
+                new PoCustomModificationCommandBuilder(name, apduRequest, anticipatedResponse));
+    }
+
+    /**
+     * Declare the current value of a counter of the PO
+     * <p>
+     * The value is used to anticipate the responses of the counter modifications sent in the
+     * closing when the counter has not been read in the session, avoiding a Read Record exchange.
+     * It must be declared after {@link #processOpening}, the values are forgotten at the next
+     * opening. A wrong value makes the closing fail.
+     *
+     * @param sfi SFI of the counters EF
+     * @param counterNumber the number of the counter (starts at 1)
+     * @param value the value of the counter (&lt;= 16777215 [FFFFFFh])
+     * @throws java.lang.IllegalArgumentException - if the counter number or the value is out of
+     *         range
+     */
+    public void setExpectedCounterValue(byte sfi, int counterNumber, int value) {
+        if (counterNumber < 1 || counterNumber > 255) {
+            throw new IllegalArgumentException("Bad counter number: " + counterNumber);
+        }
+        if (value < 0 || value > 0xFFFFFF) {
+            throw new IllegalArgumentException("Bad counter value: " + value);
+        }
+        anticipatedResponseBuilder.setCounterValue(sfi, counterNumber, value);
+    }
+
+    /**
+     * Get the new values of the counters modified by the commands prepared with
+     * {@link #prepareIncreaseMultipleCmd} or {@link #prepareDecreaseMultipleCmd}, whether a single
+     * Increase/Decrease Multiple command or an Increase/Decrease command per counter has been sent
+     *
+     * @param commandIndexes the command indexes returned when the commands were prepared
+     * @return the new values of the counters indexed by counter number
+     * @throws java.lang.IllegalArgumentException - if a command is not a counter modification
+     * @throws java.lang.IllegalStateException - if a new value is not available from the responses
+     */
+    public SortedMap<Integer, Integer> getNewCounterValues(int[] commandIndexes) {
+        SortedMap<Integer, Integer> newCounterValues = new TreeMap<Integer, Integer>();
+        for (int commandIndex : commandIndexes) {
+            AbstractApduResponseParser responseParser = getResponseParser(commandIndex);
+            if (responseParser instanceof AbstractMultipleCounterRespPars) {
+                newCounterValues.putAll(
+                        ((AbstractMultipleCounterRespPars) responseParser).getNewValues());
+            } else if (responseParser instanceof IncreaseRespPars
+                    || responseParser instanceof DecreaseRespPars) {
+                /* the counter number is the P1 of the command */
+                int counterNumber = poBuilderParserList.get(commandIndex).getCommandBuilder()
+                        .getApduRequest().getBytes()[OFFSET_P1] & 0xFF;
+                newCounterValues.put(counterNumber,
+                        responseParser instanceof IncreaseRespPars
+                                ? ((IncreaseRespPars) responseParser).getNewValue()
+                                : ((DecreaseRespPars) responseParser).getNewValue());
+            } else {
+                throw new IllegalArgumentException(
+                        "Not a counter modification command: index = " + commandIndex);
+            }
+        }
+        return newCounterValues;
+    }
+
+    private void checkMultipleCommandsSupported(String commandName) {
+        if (!calypsoPo.isMultipleCommandsSupported()) {
+            throw new IllegalStateException(
+                    commandName + " is not supported by this PO: " + calypsoPo.getRevision());
+        }
+    }
+
     /**
      * Get the response parser matching the prepared command for which the index is provided
      * 
@@ -0,0 +1,432 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction;
+
+import java.util.*;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordsRespPars;
+import org.eclipse.keyple.seproxy.SeSelector;
+import org.eclipse.keyple.transaction.MatchingSelection;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Learns the records read by the {@link PoTransaction}s following the selection of a PO and adds
+ * them to the selection requests, so that they are read during the selection (e.g. in the default
+ * selection) and are already available when the SE is matched.
+ * <p>
+ * The reads are counted per PO profile, identified by the DF name, the startup information and the
+ * revision of the {@link CalypsoPo}. When a selection is prepared, only the AID to select is known:
+ * the prefetched reads are the ones done by at least the given percentage of the transactions of
+ * the profiles matching this AID, the most frequent first.
+ * <p>
+ * Typical use:
+ * <ul>
+ * <li>at the selection preparation, {@link #preparePrefetch(PoSelectionRequest)} adds the reads to
+ * the {@link PoSelectionRequest},</li>
+ * <li>when the SE is matched, {@link PrefetchedReads#getReadRecordsRespPars(MatchingSelection,
+ * byte, byte)} provides the prefetched data,</li>
+ * <li>the {@link PoTransaction} processing the PO reports its reads once
+ * {@link PoTransaction#setReadPrefetchLearner(ReadPrefetchLearner)} is called.</li>
+ * </ul>
+ * The prefetched data is read outside of any secure session.
+ * <p>
+ * This class is thread safe, an instance may be shared by several readers.
+ */
+public final class ReadPrefetchLearner {
+    private static final Logger logger = LoggerFactory.getLogger(ReadPrefetchLearner.class);
+
+    /** default percentage of the transactions doing a read for the read to be prefetched */
+    public static final int DEFAULT_MIN_PERCENTAGE = 50;
+    /** default maximum number of reads added to a selection request */
+    public static final int DEFAULT_MAX_READS = 4;
+    /** default number of transactions to observe before prefetching */
+    public static final int DEFAULT_MIN_TRANSACTIONS = 3;
+
+    private static final String PREFETCH_EXTRA_INFO = "Prefetch";
+
+    private final int minPercentage;
+    private final int maxReads;
+    private final int minTransactions;
+
+    /** observed profiles, by profile key */
+    private final Map<String, Profile> profiles = new HashMap<String, Profile>();
+    /** reads already counted for each PO (the POs are weakly referenced) */
+    private final Map<CalypsoPo, Set<ReadKey>> observedPos =
+            new WeakHashMap<CalypsoPo, Set<ReadKey>>();
+
+    /**
+     * Learner with the default settings
+     */
+    public ReadPrefetchLearner() {
+        this(DEFAULT_MIN_PERCENTAGE, DEFAULT_MAX_READS, DEFAULT_MIN_TRANSACTIONS);
+    }
+
+    /**
+     * @param minPercentage percentage of the transactions doing a read for the read to be
+     *        prefetched (1 to 100)
+     * @param maxReads maximum number of reads added to a selection request
+     * @param minTransactions number of transactions of the matching profiles to observe before
+     *        prefetching
+     */
+    public ReadPrefetchLearner(int minPercentage, int maxReads, int minTransactions) {
+        if (minPercentage < 1 || minPercentage > 100) {
+            throw new IllegalArgumentException("Bad percentage: " + minPercentage);
+        }
+        if (maxReads < 0) {
+            throw new IllegalArgumentException("Bad number of reads: " + maxReads);
+        }
+        if (minTransactions < 1) {
+            throw new IllegalArgumentException("Bad number of transactions: " + minTransactions);
+        }
+        this.minPercentage = minPercentage;
+        this.maxReads = maxReads;
+        this.minTransactions = minTransactions;
+    }
+
+    /**
+     * Add the reads learned for the AID of the selection request to this request
+     * <p>
+     * A read not accepted by the request (e.g. without expected length in contacts mode) is not
+     * prefetched.
+     *
+     * @param poSelectionRequest the selection request to complete
+     * @return the prefetched reads, to retrieve their data from the {@link MatchingSelection}
+     */
+    public PrefetchedReads preparePrefetch(PoSelectionRequest poSelectionRequest) {
+        SeSelector.AidSelector aidSelector =
+                poSelectionRequest.getSeSelector().getAidSelector();
+        List<ReadKey> reads =
+                getPrefetchReads(aidSelector != null ? aidSelector.getAidToSelect() : null);
+        List<ReadKey> preparedReads = new ArrayList<ReadKey>(reads.size());
+        int[] commandIndexes = new int[reads.size()];
+        for (ReadKey read : reads) {
+            int commandIndex;
+            try {
+                if (read.expectedLength > 0) {
+                    commandIndex = poSelectionRequest.prepareReadRecordsCmd(read.sfi,
+                            read.readDataStructure, read.firstRecordNumber,
+                            read.expectedLength, PREFETCH_EXTRA_INFO);
+                } else {
+                    commandIndex = poSelectionRequest.prepareReadRecordsCmd(read.sfi,
+                            read.readDataStructure, read.firstRecordNumber,
+                            PREFETCH_EXTRA_INFO);
+                }
+            } catch (IllegalArgumentException e) {
+                logger.debug("Read not prefetched: {} ({})", read, e.getMessage());
+                continue;
+            }
+            commandIndexes[preparedReads.size()] = commandIndex;
+            preparedReads.add(read);
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("Prefetched reads: {}", preparedReads);
+        }
+        return new PrefetchedReads(preparedReads, commandIndexes);
+    }
+
+    /**
+     * Forget all the observed transactions
+     */
+    public synchronized void clear() {
+        profiles.clear();
+        observedPos.clear();
+    }
+
+    /**
+     * @return the number of PO profiles observed
+     */
+    public synchronized int getProfileCount() {
+        return profiles.size();
+    }
+
+    /**
+     * Determine the reads to prefetch for the profiles matching the AID
+     *
+     * @param aid the AID (or partial AID) to select, null for the POs selected without AID
+     * @return the reads, the most frequent first
+     */
+    private synchronized List<ReadKey> getPrefetchReads(byte[] aid) {
+        int transactions = 0;
+        final Map<ReadKey, ReadStats> reads = new HashMap<ReadKey, ReadStats>();
+        for (Profile profile : profiles.values()) {
+            if (!profile.matches(aid)) {
+                continue;
+            }
+            transactions += profile.transactions;
+            for (Map.Entry<ReadKey, ReadStats> entry : profile.reads.entrySet()) {
+                ReadStats stats = reads.get(entry.getKey());
+                if (stats == null) {
+                    stats = new ReadStats(entry.getValue().expectedLength);
+                    reads.put(entry.getKey(), stats);
+                }
+                stats.add(entry.getValue().count, entry.getValue().expectedLength);
+            }
+        }
+        if (transactions < minTransactions) {
+            return Collections.emptyList();
+        }
+        List<ReadKey> prefetchReads = new ArrayList<ReadKey>();
+        for (Map.Entry<ReadKey, ReadStats> entry : reads.entrySet()) {
+            if (entry.getValue().count * 100L >= (long) minPercentage * transactions) {
+                prefetchReads.add(
+                        entry.getKey().withExpectedLength(entry.getValue().expectedLength));
+            }
+        }
+        Collections.sort(prefetchReads, new Comparator<ReadKey>() {
+            @Override
+            public int compare(ReadKey read1, ReadKey read2) {
+                int count1 = reads.get(read1).count;
+                int count2 = reads.get(read2).count;
+                if (count1 != count2) {
+                    return count1 > count2 ? -1 : 1;
+                }
+                return read1.compareTo(read2);
+            }
+        });
+        return prefetchReads.size() > maxReads ? prefetchReads.subList(0, maxReads)
+                : prefetchReads;
+    }
+
+    /**
+     * Register a PO processed by a transaction, once per PO
+     *
+     * @param calypsoPo the selected PO
+     * @return the reads already counted for this PO
+     */
+    synchronized Set<ReadKey> transactionStarted(CalypsoPo calypsoPo) {
+        Set<ReadKey> poReads = observedPos.get(calypsoPo);
+        if (poReads == null) {
+            poReads = new HashSet<ReadKey>();
+            observedPos.put(calypsoPo, poReads);
+            getProfile(calypsoPo).transactions++;
+        }
+        return poReads;
+    }
+
+    /**
+     * Count a read done for a PO, once per PO
+     *
+     * @param calypsoPo the selected PO
+     * @param sfi the SFI of the file read
+     * @param readDataStructure the read mode
+     * @param firstRecordNumber the (first) record number
+     * @param expectedLength the expected length, 0 if not specified
+     */
+    synchronized void recordRead(CalypsoPo calypsoPo, byte sfi,
+            ReadDataStructure readDataStructure, byte firstRecordNumber, int expectedLength) {
+        ReadKey read = new ReadKey(sfi, readDataStructure, firstRecordNumber, 0);
+        if (transactionStarted(calypsoPo).add(read)) {
+            Profile profile = getProfile(calypsoPo);
+            ReadStats stats = profile.reads.get(read);
+            if (stats == null) {
+                stats = new ReadStats(expectedLength);
+                profile.reads.put(read, stats);
+            }
+            stats.add(1, expectedLength);
+        }
+    }
+
+    private Profile getProfile(CalypsoPo calypsoPo) {
+        String key = ByteArrayUtils.toHex(calypsoPo.getDfName()) + "-"
+                + ByteArrayUtils.toHex(calypsoPo.getStartupInfo()) + "-"
+                + calypsoPo.getRevision();
+        Profile profile = profiles.get(key);
+        if (profile == null) {
+            profile = new Profile(calypsoPo.getDfName());
+            profiles.put(key, profile);
+            if (logger.isDebugEnabled()) {
+                logger.debug("New PO profile: {}", key);
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Reads added to a selection request by {@link #preparePrefetch(PoSelectionRequest)}
+     */
+    public final class PrefetchedReads {
+        private final List<ReadKey> reads;
+        private final int[] commandIndexes;
+
+        private PrefetchedReads(List<ReadKey> reads, int[] commandIndexes) {
+            this.reads = reads;
+            this.commandIndexes = commandIndexes;
+        }
+
+        /**
+         * @return the number of reads added to the selection request
+         */
+        public int getReadCount() {
+            return reads.size();
+        }
+
+        /**
+         * Tell if a read of the record is part of the selection request
+         *
+         * @param sfi the SFI of the file
+         * @param firstRecordNumber the (first) record number
+         * @return true if the record is prefetched
+         */
+        public boolean isPrefetched(byte sfi, byte firstRecordNumber) {
+            return indexOf(sfi, firstRecordNumber) >= 0;
+        }
+
+        /**
+         * Get the data of a prefetched read, counted as read by the PO transaction
+         *
+         * @param matchingSelection the selection matched with the request completed by this
+         *        prefetch
+         * @param sfi the SFI of the file
+         * @param firstRecordNumber the (first) record number
+         * @return the parser of the read response, null if the record is not prefetched or could
+         *         not be read
+         */
+        public ReadRecordsRespPars getReadRecordsRespPars(MatchingSelection matchingSelection,
+                byte sfi, byte firstRecordNumber) {
+            int index = indexOf(sfi, firstRecordNumber);
+            if (index < 0) {
+                return null;
+            }
+            ReadRecordsRespPars parser = (ReadRecordsRespPars) matchingSelection
+                    .getResponseParser(commandIndexes[index]);
+            if (!parser.isSuccessful()) {
+                return null;
+            }
+            ReadKey read = reads.get(index);
+            recordRead((CalypsoPo) matchingSelection.getMatchingSe(), read.sfi,
+                    read.readDataStructure, read.firstRecordNumber, read.expectedLength);
+            return parser;
+        }
+
+        private int indexOf(byte sfi, byte firstRecordNumber) {
+            for (int i = 0; i < reads.size(); i++) {
+                ReadKey read = reads.get(i);
+                if (read.sfi == sfi && read.firstRecordNumber == firstRecordNumber) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Reads observed for a PO profile
+     */
+    private static final class Profile {
+        private final byte[] dfName;
+        private int transactions;
+        private final Map<ReadKey, ReadStats> reads = new HashMap<ReadKey, ReadStats>();
+
+        private Profile(byte[] dfName) {
+            this.dfName = dfName;
+        }
+
+        /**
+         * @param aid the AID (or partial AID) to select
+         * @return true if the DF name of the profile starts with the AID
+         */
+        private boolean matches(byte[] aid) {
+            if (aid == null || dfName == null) {
+                return aid == null && dfName == null;
+            }
+            if (dfName.length < aid.length) {
+                return false;
+            }
+            for (int i = 0; i < aid.length; i++) {
+                if (dfName[i] != aid[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Number of transactions doing a read and expected length of the read
+     */
+    private static final class ReadStats {
+        private int count;
+        /** expected length, 0 if unspecified or not always the same */
+        private int expectedLength;
+
+        private ReadStats(int expectedLength) {
+            this.expectedLength = expectedLength;
+        }
+
+        private void add(int count, int expectedLength) {
+            this.count += count;
+            if (this.expectedLength != expectedLength) {
+                this.expectedLength = 0;
+            }
+        }
+    }
+
+    /**
+     * Read record command parameters (the expected length is not part of the identity)
+     */
+    static final class ReadKey implements Comparable<ReadKey> {
+        private final byte sfi;
+        private final ReadDataStructure readDataStructure;
+        private final byte firstRecordNumber;
+        private final int expectedLength;
+
+        private ReadKey(byte sfi, ReadDataStructure readDataStructure, byte firstRecordNumber,
+                int expectedLength) {
+            this.sfi = sfi;
+            this.readDataStructure = readDataStructure;
+            this.firstRecordNumber = firstRecordNumber;
+            this.expectedLength = expectedLength;
+        }
+
+        private ReadKey withExpectedLength(int expectedLength) {
+            return new ReadKey(sfi, readDataStructure, firstRecordNumber, expectedLength);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ReadKey)) {
+                return false;
+            }
+            ReadKey read = (ReadKey) o;
+            return sfi == read.sfi && firstRecordNumber == read.firstRecordNumber
+                    && readDataStructure == read.readDataStructure;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((sfi & 0xFF) << 8 | (firstRecordNumber & 0xFF)) * 31
+                    + readDataStructure.ordinal();
+        }
+
+        @Override
+        public int compareTo(ReadKey read) {
+            if (sfi != read.sfi) {
+                return (sfi & 0xFF) - (read.sfi & 0xFF);
+            }
+            if (firstRecordNumber != read.firstRecordNumber) {
+                return (firstRecordNumber & 0xFF) - (read.firstRecordNumber & 0xFF);
+            }
+            return readDataStructure.compareTo(read.readDataStructure);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("SFI = %02X, RECNUMBER = %d, %s, EXPECTEDLENGTH = %d", sfi,
+                    firstRecordNumber & 0xFF, readDataStructure, expectedLength);
+        }
+    }
+}
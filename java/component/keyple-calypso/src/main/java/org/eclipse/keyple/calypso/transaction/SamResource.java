@@ -11,11 +11,26 @@
  ********************************************************************************/
 package org.eclipse.keyple.calypso.transaction;
 
+import java.util.Arrays;
 import org.eclipse.keyple.calypso.transaction.sam.CalypsoSam;
 import org.eclipse.keyple.seproxy.SeReader;
 import org.eclipse.keyple.transaction.SeResource;
 
+/**
+ * The SamResource class groups a CalypsoSam and its SeReader, and keeps the state of the SAM
+ * between the transactions using it (see
+ * {@link PoTransaction#PoTransaction(PoResource, SamResource, java.util.EnumMap)}).
+ * <p>
+ * The SAM state allows to skip the SAM commands that would not change it, e.g. the Select
+ * Diversifier of a PO serial number already selected. It is forgotten by the transactions when an
+ * exchange with the SAM fails, when a SAM command of the session fails or when the SAM channel has
+ * been reopened. The application should call {@link #resetState()} when it sends commands to the
+ * SAM or resets it by another mean.
+ */
 public class SamResource extends SeResource<CalypsoSam> {
+    /** The PO serial number selected as diversifier in the SAM, null if unknown */
+    private byte[] diversifier;
+
     /**
      * Constructor
      *
@@ -25,4 +40,26 @@ public class SamResource extends SeResource<CalypsoSam> {
     public SamResource(SeReader seReader, CalypsoSam calypsoSam) {
         super(seReader, calypsoSam);
     }
+
+    /**
+     * Forget the state of the SAM, the next transaction will restore it
+     */
+    public synchronized void resetState() {
+        diversifier = null;
+    }
+
+    /**
+     * @param poSerialNumber the serial number of a PO
+     * @return true if the serial number is known to be the diversifier selected in the SAM
+     */
+    synchronized boolean isDiversifiedWith(byte[] poSerialNumber) {
+        return diversifier != null && Arrays.equals(diversifier, poSerialNumber);
+    }
+
+    /**
+     * @param poSerialNumber the serial number selected as diversifier in the SAM
+     */
+    synchronized void setDiversifier(byte[] poSerialNumber) {
+        diversifier = poSerialNumber.clone();
+    }
 }
@@ -0,0 +1,166 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction;
+
+import java.util.*;
+import org.eclipse.keyple.calypso.command.po.PoBuilderParser;
+import org.eclipse.keyple.util.ByteArrayUtils;
+
+/**
+ * Short-lived cache of the secure sessions interrupted by the tearing of the PO during the closing,
+ * indexed by PO serial number.
+ * <p>
+ * When a {@link PoTransaction} using the cache loses the PO in the closing of a session opened in
+ * {@link PoTransaction.ModificationMode#ATOMIC} mode and closed in contactless mode, it keeps the
+ * parameters of the opening, the modification commands of the session and the values of the
+ * counters known before these modifications. When the same PO comes
+ * back before the end of the resume window, {@link PoTransaction#processResume} completes the
+ * transaction in a single session with the minimum number of APDUs, instead of redoing the whole
+ * transaction.
+ * <p>
+ * This class is thread safe.
+ */
+public final class SessionResumeCache {
+    /** The default resume window, in milliseconds */
+    public static final long DEFAULT_WINDOW = 5000;
+    /** The default maximum number of interrupted sessions kept */
+    public static final int DEFAULT_MAX_SESSIONS = 64;
+
+    /**
+     * A secure session interrupted in the closing
+     */
+    static final class InterruptedSession {
+        final PoTransaction.SessionAccessLevel accessLevel;
+        final byte openingSfi;
+        final byte openingRecordNumber;
+        /** the modification commands sent before the closing */
+        final List<PoBuilderParser> modificationCommands;
+        /** the commands prepared for the closing */
+        final List<PoBuilderParser> closingCommands;
+        /**
+         * the values of the counters known before the modifications of the session, to anticipate
+         * the responses of the replayed modifications
+         */
+        final Map<Integer, Integer> counterValues;
+        final long time;
+
+        InterruptedSession(PoTransaction.SessionAccessLevel accessLevel, byte openingSfi,
+                byte openingRecordNumber, List<PoBuilderParser> modificationCommands,
+                List<PoBuilderParser> closingCommands, Map<Integer, Integer> counterValues) {
+            this.accessLevel = accessLevel;
+            this.openingSfi = openingSfi;
+            this.openingRecordNumber = openingRecordNumber;
+            this.modificationCommands = new ArrayList<PoBuilderParser>(modificationCommands);
+            this.closingCommands = new ArrayList<PoBuilderParser>(closingCommands);
+            this.counterValues = counterValues;
+            this.time = System.nanoTime();
+        }
+    }
+
+    private final long windowNanos;
+    private final int maxSessions;
+    private final Map<String, InterruptedSession> sessions =
+            new LinkedHashMap<String, InterruptedSession>();
+
+    /**
+     * Cache with the default window and size
+     */
+    public SessionResumeCache() {
+        this(DEFAULT_WINDOW, DEFAULT_MAX_SESSIONS);
+    }
+
+    /**
+     * @param window the time during which an interrupted session can be resumed, in milliseconds
+     * @param maxSessions the maximum number of interrupted sessions kept, the oldest ones being
+     *        dropped
+     */
+    public SessionResumeCache(long window, int maxSessions) {
+        if (window <= 0 || maxSessions <= 0) {
+            throw new IllegalArgumentException("Bad window or size of the session resume cache.");
+        }
+        this.windowNanos = window * 1000000L;
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * @param poSerialNumber the serial number of the PO
+     * @return true if an interrupted session of the PO can be resumed
+     */
+    public synchronized boolean contains(byte[] poSerialNumber) {
+        removeExpired(System.nanoTime());
+        return sessions.containsKey(ByteArrayUtils.toHex(poSerialNumber));
+    }
+
+    /**
+     * Forget the interrupted session of a PO, e.g. when the transaction has been completed by other
+     * means
+     *
+     * @param poSerialNumber the serial number of the PO
+     */
+    public synchronized void remove(byte[] poSerialNumber) {
+        sessions.remove(ByteArrayUtils.toHex(poSerialNumber));
+    }
+
+    /**
+     * @return the number of interrupted sessions which can be resumed
+     */
+    public synchronized int size() {
+        removeExpired(System.nanoTime());
+        return sessions.size();
+    }
+
+    /**
+     * Forget all the interrupted sessions
+     */
+    public synchronized void clear() {
+        sessions.clear();
+    }
+
+    /**
+     * Keep an interrupted session, replacing the previous one of the PO if any
+     *
+     * @param poSerialNumber the serial number of the PO
+     * @param session the interrupted session
+     */
+    synchronized void put(byte[] poSerialNumber, InterruptedSession session) {
+        removeExpired(session.time);
+        String key = ByteArrayUtils.toHex(poSerialNumber);
+        sessions.remove(key);
+        sessions.put(key, session);
+        Iterator<InterruptedSession> iterator = sessions.values().iterator();
+        while (sessions.size() > maxSessions) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Get and forget the interrupted session of a PO
+     *
+     * @param poSerialNumber the serial number of the PO
+     * @return the interrupted session, null if none or expired
+     */
+    synchronized InterruptedSession take(byte[] poSerialNumber) {
+        removeExpired(System.nanoTime());
+        return sessions.remove(ByteArrayUtils.toHex(poSerialNumber));
+    }
+
+    /**
+     * Drop the sessions older than the window, the sessions being in insertion order
+     */
+    private void removeExpired(long now) {
+        Iterator<InterruptedSession> iterator = sessions.values().iterator();
+        while (iterator.hasNext() && now - iterator.next().time > windowNanos) {
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction.perso;
+
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.seproxy.SeReader;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+
+/**
+ * Handling of the cards in the PO readers of a personalization station (e.g. by a card feeder)
+ * <p>
+ * The methods are called concurrently for the different PO readers.
+ */
+public interface CardHandler {
+
+    /**
+     * Get the card of the job in the PO reader if needed and select it
+     * <p>
+     * Called before each attempt of the job.
+     *
+     * @param poReader the PO reader
+     * @param job the job to be run
+     * @return the selected PO, null if there is no card to personalize
+     * @throws KeypleReaderException if a reader error occurs
+     */
+    CalypsoPo selectCard(SeReader poReader, PersonalizationJob job) throws KeypleReaderException;
+
+    /**
+     * Release the card once its job is done (e.g. eject it to the output or reject bin)
+     *
+     * @param poReader the PO reader
+     * @param job the job done
+     * @param successful true if the card is personalized
+     */
+    void releaseCard(SeReader poReader, PersonalizationJob job, boolean successful);
+}
@@ -0,0 +1,273 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction.perso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.keyple.calypso.transaction.CalypsoMetrics;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoResource;
+import org.eclipse.keyple.calypso.transaction.SamResource;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.metrics.MetricsRecorder;
+import org.eclipse.keyple.seproxy.SeReader;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Personalization of batches of POs with all the PO readers and SAMs of a station in parallel.
+ * <p>
+ * Each PO reader has its own thread taking the next job from the batch: the card is selected by
+ * the {@link CardHandler}, a SAM is taken from the pool of the station, then the job is run. The
+ * SAM is given back to the pool as soon as the attempt is done, so a station may have less SAMs
+ * than PO readers. A failed attempt (false returned or exception) is retried up to the maximum
+ * number of attempts, with the same PO reader.
+ * <p>
+ * A runtime exception thrown by the {@link PersonalizationListener} or by
+ * {@link CardHandler#releaseCard} is logged, the PO reader goes on with the next job.
+ * <p>
+ * The throughput therefore grows with the number of PO readers, as long as there are enough SAMs
+ * for the jobs in progress.
+ */
+public final class PersonalizationEngine {
+    private static final Logger logger = LoggerFactory.getLogger(PersonalizationEngine.class);
+
+    /** default number of attempts of a job */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private final List<SeReader> poReaders;
+    private final BlockingQueue<SamResource> samPool;
+    private final CardHandler cardHandler;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private PersonalizationListener listener;
+
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private volatile boolean running;
+    private volatile boolean cancelled;
+
+    /**
+     * @param poReaders the PO readers of the station
+     * @param samResources the selected SAMs of the station
+     * @param cardHandler the handler of the cards in the PO readers
+     */
+    public PersonalizationEngine(List<? extends SeReader> poReaders,
+            List<SamResource> samResources, CardHandler cardHandler) {
+        if (poReaders == null || poReaders.isEmpty() || samResources == null
+                || samResources.isEmpty() || cardHandler == null) {
+            throw new IllegalArgumentException(
+                    "PO readers, SAM resources and card handler are mandatory.");
+        }
+        this.poReaders = new ArrayList<SeReader>(poReaders);
+        this.samPool = new LinkedBlockingQueue<SamResource>(samResources);
+        this.cardHandler = cardHandler;
+    }
+
+    /**
+     * @param maxAttempts the number of attempts of a job before it is reported as failed
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Bad number of attempts: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param listener notified of the result of each job, null for none
+     */
+    public void setListener(PersonalizationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Run the jobs until the batch is exhausted or the run is cancelled
+     * <p>
+     * The jobs are read from the iterator as the PO readers become available, the batch may
+     * therefore be produced while the personalization is in progress.
+     *
+     * @param jobs the batch of jobs
+     * @return the results, in the completion order
+     * @throws InterruptedException if the calling thread is interrupted, the run is then cancelled
+     * @throws IllegalStateException if a run is already in progress
+     */
+    public List<PersonalizationResult> run(final Iterator<? extends PersonalizationJob> jobs)
+            throws InterruptedException {
+        synchronized (this) {
+            if (running) {
+                throw new IllegalStateException("A personalization is already running.");
+            }
+            running = true;
+        }
+        cancelled = false;
+        completedCount.set(0);
+        failedCount.set(0);
+        final List<PersonalizationResult> results =
+                Collections.synchronizedList(new ArrayList<PersonalizationResult>());
+        List<Thread> threads = new ArrayList<Thread>(poReaders.size());
+        try {
+            for (final SeReader poReader : poReaders) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        runJobs(poReader, jobs, results);
+                    }
+                }, "perso-" + poReader.getName());
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw e;
+        } finally {
+            running = false;
+        }
+        logger.info("Personalization done: {} card(s), {} failed", completedCount.get(),
+                failedCount.get());
+        return new ArrayList<PersonalizationResult>(results);
+    }
+
+    /**
+     * Stop taking new jobs, the jobs in progress are completed
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return the number of jobs done by the current (or last) run
+     */
+    public int getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return the number of failed jobs of the current (or last) run
+     */
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Loop of a PO reader thread
+     */
+    private void runJobs(SeReader poReader, Iterator<? extends PersonalizationJob> jobs,
+            List<PersonalizationResult> results) {
+        try {
+            PersonalizationJob job;
+            while ((job = nextJob(jobs)) != null) {
+                PersonalizationResult result = runJob(poReader, job);
+                results.add(result);
+                int completed = completedCount.incrementAndGet();
+                int failed = result.isSuccessful() ? failedCount.get()
+                        : failedCount.incrementAndGet();
+                if (!result.isSuccessful()) {
+                    logger.warn("{}", result);
+                } else if (logger.isDebugEnabled()) {
+                    logger.debug("{}", result);
+                }
+                PersonalizationListener currentListener = listener;
+                if (currentListener != null) {
+                    try {
+                        currentListener.onResult(result, completed, failed);
+                    } catch (RuntimeException e) {
+                        // the other jobs of the PO reader are not affected by the listener
+                        logger.error("Listener failure on the result of card {}",
+                                result.getCardId(), e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.info("Personalization interrupted on {}", poReader.getName());
+        }
+    }
+
+    private PersonalizationJob nextJob(Iterator<? extends PersonalizationJob> jobs) {
+        if (cancelled) {
+            return null;
+        }
+        synchronized (jobs) {
+            return jobs.hasNext() ? jobs.next() : null;
+        }
+    }
+
+    /**
+     * Run a job with its retries
+     */
+    private PersonalizationResult runJob(SeReader poReader, PersonalizationJob job)
+            throws InterruptedException {
+        MetricsRecorder metrics = Metrics.getRecorder();
+        long start = System.nanoTime();
+        int attempts = 0;
+        boolean successful = false;
+        Exception error = null;
+        String samReaderName = null;
+        try {
+            while (!successful && attempts < maxAttempts) {
+                if (attempts > 0 && metrics != null) {
+                    metrics.incrementCounter(poReader.getName(),
+                            CalypsoMetrics.PERSONALIZATION_RETRIES);
+                }
+                attempts++;
+                error = null;
+                try {
+                    CalypsoPo calypsoPo = cardHandler.selectCard(poReader, job);
+                    if (calypsoPo == null) {
+                        continue;
+                    }
+                    SamResource samResource = samPool.take();
+                    try {
+                        samReaderName = samResource.getSeReader().getName();
+                        successful = job.personalize(new PoResource(poReader, calypsoPo),
+                                samResource);
+                    } finally {
+                        samPool.add(samResource);
+                    }
+                } catch (KeypleReaderException e) {
+                    error = e;
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                if (!successful && logger.isDebugEnabled()) {
+                    logger.debug("Attempt {} of card {} failed on {}", attempts, job.getCardId(),
+                            poReader.getName(), error);
+                }
+            }
+        } finally {
+            try {
+                cardHandler.releaseCard(poReader, job, successful);
+            } catch (RuntimeException e) {
+                // the result of the job is kept, the card handler is in charge of its own errors
+                logger.error("Release of card {} failed on {}", job.getCardId(),
+                        poReader.getName(), e);
+            }
+        }
+        long duration = System.nanoTime() - start;
+        if (metrics != null) {
+            metrics.recordDuration(poReader.getName(), CalypsoMetrics.PERSONALIZATION, duration);
+        }
+        return new PersonalizationResult(job.getCardId(), successful, attempts,
+                poReader.getName(), samReaderName, duration, error);
+    }
+}
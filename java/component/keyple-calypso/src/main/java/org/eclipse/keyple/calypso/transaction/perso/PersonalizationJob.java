@@ -0,0 +1,42 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction.perso;
+
+import org.eclipse.keyple.calypso.transaction.PoResource;
+import org.eclipse.keyple.calypso.transaction.SamResource;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+
+/**
+ * Personalization of a single PO, run by the {@link PersonalizationEngine}
+ * <p>
+ * The job is run on the thread of a PO reader, possibly several times when it fails. It is given
+ * exclusive use of the PO and of the SAM during the call.
+ */
+public interface PersonalizationJob {
+
+    /**
+     * @return the identifier of the card in the results (e.g. its position in the batch)
+     */
+    String getCardId();
+
+    /**
+     * Personalize the PO, e.g. with a {@link org.eclipse.keyple.calypso.transaction.PoTransaction}
+     * updating its records and loading its keys
+     *
+     * @param poResource the selected PO and its reader
+     * @param samResource the SAM allocated to this attempt and its reader
+     * @return true if the PO is personalized, false to retry the job
+     * @throws KeypleReaderException if a reader error occurs, the job is then retried
+     */
+    boolean personalize(PoResource poResource, SamResource samResource)
+            throws KeypleReaderException;
+}
@@ -0,0 +1,27 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction.perso;
+
+/**
+ * Notified of the progress of a {@link PersonalizationEngine}
+ */
+public interface PersonalizationListener {
+
+    /**
+     * Called by the thread of the PO reader when a job is done
+     *
+     * @param result the result of the job
+     * @param completedCount the number of jobs done so far, this one included
+     * @param failedCount the number of failed jobs so far
+     */
+    void onResult(PersonalizationResult result, int completedCount, int failedCount);
+}
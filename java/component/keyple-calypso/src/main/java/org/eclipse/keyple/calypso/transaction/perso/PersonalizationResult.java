@@ -0,0 +1,92 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction.perso;
+
+/**
+ * Result of a {@link PersonalizationJob}
+ */
+public final class PersonalizationResult {
+    private final String cardId;
+    private final boolean successful;
+    private final int attempts;
+    private final String poReaderName;
+    private final String samReaderName;
+    private final long durationNanos;
+    private final Exception error;
+
+    PersonalizationResult(String cardId, boolean successful, int attempts, String poReaderName,
+            String samReaderName, long durationNanos, Exception error) {
+        this.cardId = cardId;
+        this.successful = successful;
+        this.attempts = attempts;
+        this.poReaderName = poReaderName;
+        this.samReaderName = samReaderName;
+        this.durationNanos = durationNanos;
+        this.error = error;
+    }
+
+    /**
+     * @return the identifier of the card, see {@link PersonalizationJob#getCardId()}
+     */
+    public String getCardId() {
+        return cardId;
+    }
+
+    /**
+     * @return true if the card is personalized
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    /**
+     * @return the number of attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return the name of the PO reader
+     */
+    public String getPoReaderName() {
+        return poReaderName;
+    }
+
+    /**
+     * @return the name of the SAM reader of the last attempt, null if no SAM was used
+     */
+    public String getSamReaderName() {
+        return samReaderName;
+    }
+
+    /**
+     * @return the duration of the job, all attempts included, in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the error of the last attempt, null if none
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Card %s: %s after %d attempt(s) on %s/%s%s", cardId,
+                successful ? "personalized" : "FAILED", attempts, poReaderName, samReaderName,
+                error != null ? " (" + error + ")" : "");
+    }
+}
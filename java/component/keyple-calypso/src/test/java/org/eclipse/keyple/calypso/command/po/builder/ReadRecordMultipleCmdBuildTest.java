@@ -0,0 +1,95 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.builder;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.eclipse.keyple.calypso.command.PoClass;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordMultipleRespPars;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReadRecordMultipleCmdBuildTest {
+
+    private final byte sfi = (byte) 0x08;
+
+    @Test
+    public void readRecordMultiple() {
+        ReadRecordMultipleCmdBuild builder =
+                new ReadRecordMultipleCmdBuild(PoClass.ISO, sfi, (byte) 0x02, 3, 4, "Test");
+        Assert.assertEquals("00B302450454020304" + "00",
+                ByteArrayUtils.toHex(builder.getApduRequest().getBytes()));
+        Assert.assertTrue(builder.getApduRequest().isCase4());
+
+        // a partial read is successful
+        ReadRecordMultipleRespPars pars = builder.createResponseParser(new ApduResponse(
+                ByteArrayUtils.fromHex("11111111222222226200"),
+                builder.getApduRequest().getSuccessfulStatusCodes()));
+        Assert.assertTrue(pars.isSuccessful());
+        Assert.assertTrue(pars.isPartialRead());
+        Assert.assertEquals(4, pars.getNextRecordNumber());
+        Assert.assertEquals("22222222", ByteArrayUtils.toHex(pars.getRecords().get(3)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readRecordMultiple_badLength() {
+        new ReadRecordMultipleCmdBuild(PoClass.ISO, sfi, (byte) 0x01, 200, 51, "Test");
+    }
+
+    @Test
+    public void searchRecordMultiple() {
+        SearchRecordMultipleCmdBuild builder = new SearchRecordMultipleCmdBuild(PoClass.ISO, sfi,
+                (byte) 0x01, 5, true, true, ByteArrayUtils.fromHex("1234"),
+                ByteArrayUtils.fromHex("FFF0"), "Test");
+        Assert.assertEquals("00A20147" + "07" + "0581021234FFF0" + "00",
+                ByteArrayUtils.toHex(builder.getApduRequest().getBytes()));
+    }
+
+    @Test
+    public void increaseDecreaseMultiple() {
+        SortedMap<Integer, Integer> values = new TreeMap<Integer, Integer>();
+        values.put(3, 0x010203);
+        values.put(1, 10);
+        Assert.assertEquals("003A0040" + "08" + "0100000A03010203" + "00",
+                ByteArrayUtils.toHex(new IncreaseMultipleCmdBuild(PoClass.ISO, sfi, values, null)
+                        .getApduRequest().getBytes()));
+        Assert.assertEquals("94380040" + "08" + "0100000A03010203" + "00",
+                ByteArrayUtils.toHex(new DecreaseMultipleCmdBuild(PoClass.LEGACY, sfi, values,
+                        null).getApduRequest().getBytes()));
+    }
+
+    @Test
+    public void increaseDecreaseMultiple_newValues() {
+        SortedMap<Integer, Integer> values = new TreeMap<Integer, Integer>();
+        values.put(1, 10);
+        ApduResponse response =
+                new ApduResponse(ByteArrayUtils.fromHex("0100000A03FF00019000"), null);
+        Assert.assertEquals("{1=10, 3=16711681}",
+                new IncreaseMultipleCmdBuild(PoClass.ISO, sfi, values, null)
+                        .createResponseParser(response).getNewValues().toString());
+        Assert.assertEquals("{1=10, 3=16711681}",
+                new DecreaseMultipleCmdBuild(PoClass.ISO, sfi, values, null)
+                        .createResponseParser(response).getNewValues().toString());
+        Assert.assertTrue(new DecreaseMultipleCmdBuild(PoClass.ISO, sfi, values, null)
+                .createResponseParser(new ApduResponse(ByteArrayUtils.fromHex("6A80"), null))
+                .getNewValues().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void increaseMultiple_badCounterNumber() {
+        SortedMap<Integer, Integer> values = new TreeMap<Integer, Integer>();
+        values.put(0, 10);
+        new IncreaseMultipleCmdBuild(PoClass.ISO, sfi, values, null);
+    }
+}
@@ -12,6 +12,10 @@
 package org.eclipse.keyple.calypso.command.po.parser;
 
 
+import static org.junit.Assert.*;
+import java.util.SortedMap;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -19,18 +23,108 @@ import org.mockito.junit.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class ReadRecordsRespParsTest {
 
+    private static final String RECORD1 = "00112233445566778899";
+    private static final String RECORD2 = "AABBCCDDEEFF";
+
+    private static ReadRecordsRespPars parser(String response,
+            ReadDataStructure readDataStructure) {
+        return new ReadRecordsRespPars(new ApduResponse(ByteArrayUtils.fromHex(response), null),
+                readDataStructure, (byte) 3);
+    }
+
+    @Test
+    public void readRecordRespPars_one_record() {
+        ReadRecordsRespPars parser =
+                parser(RECORD1 + "9000", ReadDataStructure.SINGLE_RECORD_DATA);
+
+        assertTrue(parser.isSuccessful());
+        assertFalse(parser.isCounterFile());
+        SortedMap<Integer, byte[]> records = parser.getRecords();
+        assertEquals(1, records.size());
+        assertEquals(RECORD1, ByteArrayUtils.toHex(records.get(3)));
+        // each call returns a copy
+        records.clear();
+        assertEquals(1, parser.getRecords().size());
+    }
+
+    @Test
+    public void readRecordRespPars_records() {
+        ReadRecordsRespPars parser = parser("010A" + RECORD1 + "0206" + RECORD2 + "9000",
+                ReadDataStructure.MULTIPLE_RECORD_DATA);
+
+        SortedMap<Integer, byte[]> records = parser.getRecords();
+        assertEquals(2, records.size());
+        assertEquals(RECORD1, ByteArrayUtils.toHex(records.get(1)));
+        assertEquals(RECORD2, ByteArrayUtils.toHex(records.get(2)));
+    }
+
     @Test
-    public void readRecordRespPars_one_record() {}
+    public void sampleMultipleRecordsParsing() {
+        ReadRecordsRespPars parser = parser("010A" + RECORD1 + "0206" + RECORD2 + "9000",
+                ReadDataStructure.MULTIPLE_RECORD_DATA);
+        byte[] bytes = parser.getApduResponse().getBytes();
+
+        assertEquals(2, parser.getRecordCount());
+        assertEquals(1, parser.getRecordNumber(0));
+        assertEquals(2, parser.getRecordOffset(0));
+        assertEquals(10, parser.getRecordLength(0));
+        assertEquals(2, parser.getRecordNumber(1));
+        assertEquals(6, parser.getRecordLength(1));
+        assertEquals((byte) 0xAA, bytes[parser.getRecordOffset(1)]);
+        assertEquals(RECORD2, ByteArrayUtils.toHex(parser.getRecord(2)));
+        assertNull(parser.getRecord(3));
+    }
 
     @Test
-    public void readRecordRespPars_records() {}
+    public void readRecordRespPars_one_record_sfi() {
+        ReadRecordsRespPars parser = parser("6A82", ReadDataStructure.SINGLE_RECORD_DATA);
+
+        assertFalse(parser.isSuccessful());
+        assertEquals("File not found", parser.getStatusInformation());
+        assertEquals(0, parser.getRecordCount());
+        assertTrue(parser.getRecords().isEmpty());
+    }
 
     @Test
-    public void sampleMultipleRecordsParsing() {}
+    public void readRecordRespPars_records_sfi() {
+        // the last record is truncated
+        ReadRecordsRespPars parser =
+                parser("010A" + RECORD1 + "0206AABB9000", ReadDataStructure.MULTIPLE_RECORD_DATA);
+
+        assertEquals(1, parser.getRecordCount());
+        assertEquals(RECORD1, ByteArrayUtils.toHex(parser.getRecord(1)));
+    }
 
     @Test
-    public void readRecordRespPars_one_record_sfi() {}
+    public void counters() {
+        ReadRecordsRespPars parser =
+                parser("0000010000FFFFFFFF9000", ReadDataStructure.MULTIPLE_COUNTER);
+
+        assertTrue(parser.isCounterFile());
+        assertEquals(3, parser.getCounterCount());
+        assertEquals(1, parser.getCounterValue(1));
+        assertEquals(255, parser.getCounterValue(2));
+        assertEquals(0xFFFFFF, parser.getCounterValue(3));
+        assertEquals(Integer.valueOf(0xFFFFFF), parser.getCounters().get(3));
+        parser.getCounters().put(3, 0);
+        assertEquals(Integer.valueOf(0xFFFFFF), parser.getCounters().get(3));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void counters_outOfRange() {
+        parser("0000019000", ReadDataStructure.SINGLE_COUNTER).getCounterValue(2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void records_ofCounterFile() {
+        parser("0000019000", ReadDataStructure.SINGLE_COUNTER).getRecordCount();
+    }
 
     @Test
-    public void readRecordRespPars_records_sfi() {}
+    public void records_areCopies() {
+        ReadRecordsRespPars parser =
+                parser(RECORD1 + "9000", ReadDataStructure.SINGLE_RECORD_DATA);
+        parser.getRecords().get(3)[0] = (byte) 0xFF;
+        assertEquals(RECORD1, ByteArrayUtils.toHex(parser.getRecords().get(3)));
+    }
 }
@@ -0,0 +1,85 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.command.po.parser;
+
+import static org.junit.Assert.*;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Test;
+
+public class SelectFileRespParsTest {
+
+    /* linear EF 2001h, SFI 07h, 3 records of 29 bytes */
+    private static final String EF_INFO = "85170704021D031F101F1F0101010000000000000000002001";
+
+    @Test
+    public void linearEf() {
+        SelectFileRespPars parser = new SelectFileRespPars(
+                new ApduResponse(ByteArrayUtils.fromHex(EF_INFO + "9000"), null));
+
+        assertTrue(parser.isSelectionSuccessful());
+        assertEquals(0x07, parser.getSfi());
+        assertEquals(SelectFileRespPars.FILE_TYPE_EF, parser.getFileType());
+        assertEquals(SelectFileRespPars.EF_TYPE_LINEAR, parser.getEfType());
+        assertEquals(0x1D, parser.getRecSize());
+        assertEquals(3, parser.getNumRec());
+        assertEquals("1F101F1F", ByteArrayUtils.toHex(parser.getAccessConditions()));
+        assertEquals("01010100", ByteArrayUtils.toHex(parser.getKeyIndexes()));
+        assertEquals(0x2001, parser.getLid());
+        assertEquals(EF_INFO, ByteArrayUtils.toHex(parser.getFileBinaryData()));
+    }
+
+    @Test
+    public void inFcpTemplate() {
+        SelectFileRespPars parser = new SelectFileRespPars(
+                new ApduResponse(ByteArrayUtils.fromHex("6219" + EF_INFO + "9000"), null));
+
+        assertTrue(parser.isSelectionSuccessful());
+        assertEquals(0x2001, parser.getLid());
+        assertEquals(3, parser.getNumRec());
+    }
+
+    @Test
+    public void notSuccessful() {
+        SelectFileRespPars parser =
+                new SelectFileRespPars(new ApduResponse(ByteArrayUtils.fromHex("6A82"), null));
+
+        assertFalse(parser.isSelectionSuccessful());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unexpectedFormat() {
+        SelectFileRespPars parser = new SelectFileRespPars(
+                new ApduResponse(ByteArrayUtils.fromHex("8402AABB9000"), null));
+        // parsed on first access
+        parser.isSelectionSuccessful();
+    }
+
+    @Test
+    public void unexpectedFormat_everyGetter() {
+        SelectFileRespPars parser = new SelectFileRespPars(
+                new ApduResponse(ByteArrayUtils.fromHex("8402AABB9000"), null));
+        try {
+            parser.getLid();
+            fail("Unexpected FCI format");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // no default value is returned after the first failure
+        try {
+            parser.getSfi();
+            fail("Unexpected FCI format");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
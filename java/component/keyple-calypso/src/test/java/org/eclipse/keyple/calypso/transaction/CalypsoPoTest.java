@@ -30,6 +30,11 @@ import org.mockito.junit.MockitoJUnitRunner;
 public class CalypsoPoTest {
     /* Building FCI data with the application byte as a variant and initialize PO */
     public static CalypsoPo getPoApplicationByte(byte applicationByte) {
+        return getPoApplicationByte(applicationByte, false);
+    }
+
+    public static CalypsoPo getPoApplicationByte(byte applicationByte,
+            boolean multipleCommandsSupported) {
         AnswerToReset atr = new AnswerToReset(ByteArrayUtils.fromHex("3B8880010000000000718100F9"));
         ApduResponse fciData =
                 new ApduResponse(ByteArrayUtils.fromHex(String.format("6F 22 84 08 315449432E494341"
@@ -44,7 +49,8 @@ public class CalypsoPoTest {
                                         ByteArrayUtils.fromHex("315449432E494341"), null),
                                 null, null),
                         ChannelState.KEEP_OPEN, ContactlessProtocols.PROTOCOL_ISO14443_4);
-        CalypsoPo calypsoPo = new CalypsoPo(selectionData, null);
+        poSelectionRequest.setMultipleCommandsSupported(multipleCommandsSupported);
+        CalypsoPo calypsoPo = poSelectionRequest.parse(selectionData);
         return calypsoPo;
     }
 
@@ -65,5 +71,26 @@ public class CalypsoPoTest {
         Assert.assertEquals(getPoApplicationByte((byte) 0x28).getRevision(), PoRevision.REV3_2);
 
         Assert.assertEquals(getPoApplicationByte((byte) 0x2F).getRevision(), PoRevision.REV3_2);
+
+        Assert.assertEquals(getPoApplicationByte((byte) 0x30).getRevision(), PoRevision.REV3_1);
+
+        Assert.assertEquals(getPoApplicationByte((byte) 0x38).getRevision(), PoRevision.REV3_2);
+    }
+
+    @Test
+    public void multipleCommandsSupported() {
+        /* not derived from the application type */
+        Assert.assertFalse(getPoApplicationByte((byte) 0x30).isMultipleCommandsSupported());
+
+        Assert.assertFalse(getPoApplicationByte((byte) 0x38).isMultipleCommandsSupported());
+
+        /* declared by the application for the rev3.1 and rev3.2 POs */
+        Assert.assertTrue(getPoApplicationByte((byte) 0x20, true).isMultipleCommandsSupported());
+
+        Assert.assertTrue(getPoApplicationByte((byte) 0x28, true).isMultipleCommandsSupported());
+
+        Assert.assertFalse(getPoApplicationByte((byte) 0x1F, true).isMultipleCommandsSupported());
+
+        Assert.assertFalse(getPoApplicationByte((byte) 0x90, true).isMultipleCommandsSupported());
     }
 }
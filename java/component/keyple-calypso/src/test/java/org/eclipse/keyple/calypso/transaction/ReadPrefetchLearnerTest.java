@@ -0,0 +1,146 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.calypso.transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordsRespPars;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.SeSelector;
+import org.eclipse.keyple.seproxy.message.AnswerToReset;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.seproxy.message.SeResponse;
+import org.eclipse.keyple.seproxy.message.SelectionStatus;
+import org.eclipse.keyple.seproxy.protocol.ContactlessProtocols;
+import org.eclipse.keyple.transaction.MatchingSelection;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReadPrefetchLearnerTest {
+    private static final byte[] AID = ByteArrayUtils.fromHex("315449432E494341");
+    private static final byte SFI_ENVIRONMENT = (byte) 0x07;
+    private static final byte SFI_EVENT_LOG = (byte) 0x08;
+    private static final byte SFI_CONTRACTS = (byte) 0x09;
+
+    private static PoSelectionRequest newSelectionRequest(byte[] aid) {
+        return new PoSelectionRequest(
+                new SeSelector(new SeSelector.AidSelector(aid, null), null, null),
+                ChannelState.KEEP_OPEN, ContactlessProtocols.PROTOCOL_ISO14443_4);
+    }
+
+    private static void readSingleRecord(ReadPrefetchLearner learner, CalypsoPo calypsoPo,
+            byte sfi) {
+        learner.recordRead(calypsoPo, sfi, ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1, 29);
+    }
+
+    @Test
+    public void noPrefetchBeforeMinTransactions() {
+        ReadPrefetchLearner learner = new ReadPrefetchLearner();
+        for (int i = 0; i < ReadPrefetchLearner.DEFAULT_MIN_TRANSACTIONS - 1; i++) {
+            readSingleRecord(learner, CalypsoPoTest.getPoApplicationByte((byte) 0x20),
+                    SFI_ENVIRONMENT);
+        }
+        Assert.assertEquals(0, learner.preparePrefetch(newSelectionRequest(AID)).getReadCount());
+    }
+
+    @Test
+    public void frequentReadsPrefetched() {
+        ReadPrefetchLearner learner = new ReadPrefetchLearner();
+        for (int i = 0; i < 4; i++) {
+            CalypsoPo calypsoPo = CalypsoPoTest.getPoApplicationByte((byte) 0x20);
+            readSingleRecord(learner, calypsoPo, SFI_ENVIRONMENT);
+            /* counted once per PO */
+            readSingleRecord(learner, calypsoPo, SFI_ENVIRONMENT);
+            if (i < 2) {
+                readSingleRecord(learner, calypsoPo, SFI_EVENT_LOG);
+            }
+            if (i == 0) {
+                readSingleRecord(learner, calypsoPo, SFI_CONTRACTS);
+            }
+        }
+        Assert.assertEquals(1, learner.getProfileCount());
+
+        ReadPrefetchLearner.PrefetchedReads prefetchedReads =
+                learner.preparePrefetch(newSelectionRequest(AID));
+        Assert.assertEquals(2, prefetchedReads.getReadCount());
+        Assert.assertTrue(prefetchedReads.isPrefetched(SFI_ENVIRONMENT, (byte) 1));
+        Assert.assertTrue(prefetchedReads.isPrefetched(SFI_EVENT_LOG, (byte) 1));
+        Assert.assertFalse(prefetchedReads.isPrefetched(SFI_CONTRACTS, (byte) 1));
+
+        /* other application */
+        Assert.assertEquals(0, learner
+                .preparePrefetch(newSelectionRequest(ByteArrayUtils.fromHex("A000000291")))
+                .getReadCount());
+        /* partial AID */
+        Assert.assertEquals(2,
+                learner.preparePrefetch(newSelectionRequest(ByteArrayUtils.fromHex("315449432E")))
+                        .getReadCount());
+    }
+
+    @Test
+    public void profilesCombinedForTheAid() {
+        ReadPrefetchLearner learner = new ReadPrefetchLearner(50, 1, 1);
+        /* two profiles differing by their application type */
+        for (int i = 0; i < 3; i++) {
+            CalypsoPo calypsoPo = CalypsoPoTest.getPoApplicationByte((byte) 0x20);
+            readSingleRecord(learner, calypsoPo, SFI_EVENT_LOG);
+            readSingleRecord(learner, calypsoPo, SFI_ENVIRONMENT);
+        }
+        readSingleRecord(learner, CalypsoPoTest.getPoApplicationByte((byte) 0x28),
+                SFI_ENVIRONMENT);
+        Assert.assertEquals(2, learner.getProfileCount());
+
+        /* capped to the most frequent read */
+        ReadPrefetchLearner.PrefetchedReads prefetchedReads =
+                learner.preparePrefetch(newSelectionRequest(AID));
+        Assert.assertEquals(1, prefetchedReads.getReadCount());
+        Assert.assertTrue(prefetchedReads.isPrefetched(SFI_ENVIRONMENT, (byte) 1));
+
+        learner.clear();
+        Assert.assertEquals(0, learner.getProfileCount());
+    }
+
+    @Test
+    public void prefetchedDataFromTheMatchingSelection() {
+        ReadPrefetchLearner learner = new ReadPrefetchLearner(50, 4, 1);
+        readSingleRecord(learner, CalypsoPoTest.getPoApplicationByte((byte) 0x20),
+                SFI_ENVIRONMENT);
+        learner.recordRead(CalypsoPoTest.getPoApplicationByte((byte) 0x20), SFI_EVENT_LOG,
+                ReadDataStructure.SINGLE_RECORD_DATA, (byte) 2, 29);
+
+        PoSelectionRequest poSelectionRequest = newSelectionRequest(AID);
+        ReadPrefetchLearner.PrefetchedReads prefetchedReads =
+                learner.preparePrefetch(poSelectionRequest);
+        Assert.assertEquals(2, prefetchedReads.getReadCount());
+
+        CalypsoPo calypsoPo = CalypsoPoTest.getPoApplicationByte((byte) 0x20);
+        List<ApduResponse> apduResponses = new ArrayList<ApduResponse>();
+        apduResponses.add(new ApduResponse(ByteArrayUtils.fromHex("01020304059000"), null));
+        apduResponses.add(new ApduResponse(ByteArrayUtils.fromHex("6A83"), null));
+        SeResponse seResponse = new SeResponse(true, false,
+                new SelectionStatus(new AnswerToReset(new byte[0]), null, true), apduResponses);
+        MatchingSelection matchingSelection =
+                new MatchingSelection(0, poSelectionRequest, calypsoPo, seResponse);
+
+        ReadRecordsRespPars environment = prefetchedReads
+                .getReadRecordsRespPars(matchingSelection, SFI_ENVIRONMENT, (byte) 1);
+        Assert.assertArrayEquals(ByteArrayUtils.fromHex("0102030405"), environment.getRecord(1));
+        /* record not found */
+        Assert.assertNull(prefetchedReads.getReadRecordsRespPars(matchingSelection,
+                SFI_EVENT_LOG, (byte) 2));
+        /* not prefetched */
+        Assert.assertNull(prefetchedReads.getReadRecordsRespPars(matchingSelection,
+                SFI_CONTRACTS, (byte) 1));
+    }
+}
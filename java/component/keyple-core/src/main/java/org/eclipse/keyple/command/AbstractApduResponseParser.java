@@ -13,10 +13,16 @@ package org.eclipse.keyple.command;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.eclipse.keyple.seproxy.message.ApduResponse;
 
 /**
  * Base class for parsing APDU
+ * <p>
+ * The parsers decode the response lazily: the status word is looked up on the first call to
+ * {@link #isSuccessful()} or {@link #getStatusInformation()}, and the subclasses decode their data
+ * on first access.
  */
 public abstract class AbstractApduResponseParser {
 
@@ -30,8 +36,19 @@ public abstract class AbstractApduResponseParser {
         STATUS_TABLE = m;
     }
 
+    /** primitive status tables, indexed once per parser class */
+    private static final ConcurrentMap<Class<?>, StatusTable> STATUS_TABLES =
+            new ConcurrentHashMap<Class<?>, StatusTable>();
+
+    /** properties of the status word of the response, valid if statusResolved is set */
+    private StatusProperties statusProperties;
+    private boolean statusResolved;
+
     /**
      * Get the internal status table
+     * <p>
+     * The table must be the same for all the instances of a parser class: it is converted once per
+     * class into a table indexed by primitive status words.
      * 
      * @return Status table
      */
@@ -62,7 +79,16 @@ public abstract class AbstractApduResponseParser {
     }
 
     private StatusProperties getPropertiesForStatusCode() {
-        return getStatusTable().get(getStatusCode());
+        if (!statusResolved) {
+            StatusTable statusTable = STATUS_TABLES.get(getClass());
+            if (statusTable == null) {
+                statusTable = new StatusTable(getStatusTable());
+                STATUS_TABLES.putIfAbsent(getClass(), statusTable);
+            }
+            statusProperties = statusTable.get(getStatusCode());
+            statusResolved = true;
+        }
+        return statusProperties;
     }
 
     /**
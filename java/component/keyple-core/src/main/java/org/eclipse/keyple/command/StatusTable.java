@@ -0,0 +1,50 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.command;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Status table of a parser class indexed by primitive status words, built once from the map
+ * returned by {@link AbstractApduResponseParser#getStatusTable()}
+ */
+final class StatusTable {
+
+    /** sorted status words */
+    private final int[] statusCodes;
+    private final AbstractApduResponseParser.StatusProperties[] properties;
+
+    StatusTable(Map<Integer, AbstractApduResponseParser.StatusProperties> statusTable) {
+        int size = statusTable.size();
+        int[] codes = new int[size];
+        int i = 0;
+        for (Integer statusCode : statusTable.keySet()) {
+            codes[i++] = statusCode;
+        }
+        Arrays.sort(codes);
+        statusCodes = codes;
+        properties = new AbstractApduResponseParser.StatusProperties[size];
+        for (i = 0; i < size; i++) {
+            properties[i] = statusTable.get(codes[i]);
+        }
+    }
+
+    /**
+     * @param statusCode the status word
+     * @return the properties of the status word, null if unknown
+     */
+    AbstractApduResponseParser.StatusProperties get(int statusCode) {
+        int index = Arrays.binarySearch(statusCodes, statusCode);
+        return index >= 0 ? properties[index] : null;
+    }
+}
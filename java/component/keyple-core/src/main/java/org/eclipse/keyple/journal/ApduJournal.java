@@ -0,0 +1,40 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.journal;
+
+/**
+ * Journal of the APDU exchanges of the readers, e.g. a {@link MappedApduJournal}
+ * <p>
+ * A journal is attached with <code>setApduJournal</code> to a reader
+ * ({@link org.eclipse.keyple.seproxy.plugin.AbstractLocalReader}) or to the remote SE plugin for
+ * all its virtual readers. It is called by the thread doing the exchange, it must be thread safe,
+ * return quickly and never throw.
+ */
+public interface ApduJournal {
+
+    /**
+     * Unknown status word
+     */
+    int NO_STATUS_WORD = -1;
+
+    /**
+     * Record an APDU exchange
+     *
+     * @param readerName : name of the reader
+     * @param request : APDU sent to the SE
+     * @param response : APDU received from the SE, null if the exchange failed with an IO error
+     * @param statusWord : status word of the response, {@link #NO_STATUS_WORD} if none
+     * @param successful : true if the status word is one of the expected successful status words
+     */
+    void append(String readerName, byte[] request, byte[] response, int statusWord,
+            boolean successful);
+}
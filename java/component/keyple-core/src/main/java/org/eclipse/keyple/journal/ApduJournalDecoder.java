@@ -0,0 +1,158 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.journal;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Offline decoder of the segment files written by a {@link MappedApduJournal}
+ * <p>
+ * Command line usage, the records are printed in chronological order of the segments:
+ *
+ * <pre>
+ * java -cp keyple-core.jar:slf4j-api.jar org.eclipse.keyple.journal.ApduJournalDecoder \
+ *     &lt;journal directory or segment files&gt;
+ * </pre>
+ */
+public final class ApduJournalDecoder {
+
+    private ApduJournalDecoder() {}
+
+    /**
+     * @param directory : journal directory
+     * @return the segment files of the directory, the oldest first
+     */
+    public static List<File> listSegments(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(MappedApduJournal.SEGMENT_PREFIX)
+                        && name.endsWith(MappedApduJournal.SEGMENT_SUFFIX);
+            }
+        });
+        List<File> segments = new ArrayList<File>();
+        if (files != null) {
+            // the sequence numbers are zero padded
+            Arrays.sort(files);
+            segments.addAll(Arrays.asList(files));
+        }
+        return segments;
+    }
+
+    /**
+     * Read the committed records of a segment file
+     *
+     * @param segment : segment file
+     * @return the records in the order they were reserved
+     * @throws IOException if the file can't be read or is not a journal segment
+     */
+    public static List<ApduJournalRecord> decode(File segment) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segment, "r");
+        ByteBuffer buffer;
+        try {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+        if (buffer.limit() < MappedApduJournal.HEADER_SIZE
+                || buffer.getInt(0) != MappedApduJournal.MAGIC) {
+            throw new IOException("Not an APDU journal segment: " + segment);
+        }
+
+        List<ApduJournalRecord> records = new ArrayList<ApduJournalRecord>();
+        int offset = buffer.getInt(4);
+        while (offset <= buffer.limit() - MappedApduJournal.RECORD_OVERHEAD) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length > 0) {
+                records.add(decodeRecord(buffer, offset));
+            }
+            // negative: record not committed, skipped
+            offset += Math.abs(length);
+        }
+        return records;
+    }
+
+    private static ApduJournalRecord decodeRecord(ByteBuffer buffer, int offset)
+            throws UnsupportedEncodingException {
+        buffer.position(offset + 4);
+        long timestamp = buffer.getLong();
+        int flags = buffer.get();
+        int statusWord = buffer.getShort() & 0xFFFF;
+        byte[] name = new byte[buffer.get() & 0xFF];
+        buffer.get(name);
+        byte[] request = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(request);
+        byte[] response = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(response);
+        return new ApduJournalRecord(timestamp, new String(name, "UTF-8"), request,
+                (flags & MappedApduJournal.FLAG_IO_ERROR) != 0 ? null : response,
+                (flags & MappedApduJournal.FLAG_STATUS_WORD) != 0 ? statusWord
+                        : ApduJournal.NO_STATUS_WORD,
+                (flags & MappedApduJournal.FLAG_SUCCESSFUL) != 0);
+    }
+
+    /**
+     * Print the records of journal directories or segment files
+     *
+     * @param args : journal directories or segment files
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println(
+                    "Usage: ApduJournalDecoder <journal directory or segment files>...");
+            System.exit(1);
+        }
+        List<File> segments = new ArrayList<File>();
+        for (String arg : args) {
+            File file = new File(arg);
+            if (file.isDirectory()) {
+                segments.addAll(listSegments(file));
+            } else {
+                segments.add(file);
+            }
+        }
+        int errors = 0;
+        for (File segment : segments) {
+            try {
+                print(segment, System.out);
+            } catch (IOException e) {
+                System.err.println(segment + ": " + e.getMessage());
+                errors++;
+            }
+        }
+        if (errors > 0) {
+            System.exit(2);
+        }
+    }
+
+    static void print(File segment, PrintStream out) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        out.println("# " + segment);
+        for (ApduJournalRecord record : decode(segment)) {
+            out.println(format.format(new Date(record.getTimestamp())) + " " + record);
+        }
+    }
+}
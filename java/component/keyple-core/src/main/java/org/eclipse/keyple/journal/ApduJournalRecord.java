@@ -0,0 +1,86 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.journal;
+
+import org.eclipse.keyple.util.ByteArrayUtils;
+
+/**
+ * APDU exchange read from a journal segment by the {@link ApduJournalDecoder}
+ */
+public final class ApduJournalRecord {
+
+    private final long timestamp;
+    private final String readerName;
+    private final byte[] request;
+    private final byte[] response;
+    private final int statusWord;
+    private final boolean successful;
+
+    ApduJournalRecord(long timestamp, String readerName, byte[] request, byte[] response,
+            int statusWord, boolean successful) {
+        this.timestamp = timestamp;
+        this.readerName = readerName;
+        this.request = request;
+        this.response = response;
+        this.statusWord = statusWord;
+        this.successful = successful;
+    }
+
+    /**
+     * @return the time of the end of the exchange, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getReaderName() {
+        return readerName;
+    }
+
+    public byte[] getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the response of the SE, null if the exchange failed with an IO error
+     */
+    public byte[] getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the status word, {@link ApduJournal#NO_STATUS_WORD} if none
+     */
+    public int getStatusWord() {
+        return statusWord;
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(readerName).append(" > ").append(ByteArrayUtils.toHex(request));
+        if (response == null) {
+            sb.append(" < IO ERROR");
+        } else {
+            sb.append(" < ").append(ByteArrayUtils.toHex(response));
+        }
+        if (statusWord != ApduJournal.NO_STATUS_WORD) {
+            sb.append(" SW=").append(String.format("%04X", statusWord));
+        }
+        sb.append(successful ? " SUCCESS" : " FAILURE");
+        return sb.toString();
+    }
+}
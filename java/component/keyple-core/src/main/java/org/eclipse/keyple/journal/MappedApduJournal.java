@@ -0,0 +1,324 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only APDU journal writing compact binary records into rotating memory-mapped segment
+ * files.
+ * <p>
+ * Each segment is a file of a fixed size named <code>apdu-NNNNNNNNNN.journal</code> in the
+ * journal directory, a new segment is created when the current one is full and the oldest
+ * segments are deleted beyond the maximum number of segments. A new segment is always started
+ * when the journal is opened, the existing segments are kept.
+ * <p>
+ * The threads append concurrently without lock: a record is reserved in the current segment with
+ * an atomic increment of its position and then copied into the mapped buffer. Only the creation
+ * of a new segment is synchronized. The records are written in the page cache by the system,
+ * they survive a crash of the JVM. A record is committed by writing its length last, the records
+ * partially written are skipped by the {@link ApduJournalDecoder}.
+ * <p>
+ * Segment format (big endian):
+ *
+ * <pre>
+ * header: int magic "KAJ1", int header size
+ * record: int   length (0: end of the records, negative: record not committed)
+ *         long  timestamp (milliseconds since the epoch)
+ *         byte  flags (successful, IO error, status word)
+ *         short status word
+ *         byte  reader name length, reader name (UTF-8)
+ *         short request length, request
+ *         short response length, response
+ * </pre>
+ */
+public final class MappedApduJournal implements ApduJournal, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedApduJournal.class);
+
+    /** Default size of a segment file: 16 MiB */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /** Default number of segment files kept */
+    public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+    static final int MAGIC = 0x4B414A31;
+    static final int HEADER_SIZE = 8;
+    /** length, timestamp, flags, status word, name length, request length, response length */
+    static final int RECORD_OVERHEAD = 4 + 8 + 1 + 2 + 1 + 2 + 2;
+
+    static final int FLAG_SUCCESSFUL = 0x01;
+    static final int FLAG_IO_ERROR = 0x02;
+    static final int FLAG_STATUS_WORD = 0x04;
+
+    static final String SEGMENT_PREFIX = "apdu-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int MAX_NAME_LENGTH = 0xFF;
+    private static final int MAX_APDU_LENGTH = 0xFFFF;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    /** encoded reader names */
+    private final ConcurrentMap<String, byte[]> readerNames =
+            new ConcurrentHashMap<String, byte[]>();
+
+    /** segment files, the oldest first */
+    private final LinkedList<File> segmentFiles = new LinkedList<File>();
+
+    private volatile Segment current;
+    private long nextSequence;
+    private boolean closed;
+
+    /**
+     * Open a journal with the default segment size and number of segments
+     *
+     * @param directory : directory of the segment files, created if needed
+     * @throws IOException if the first segment can't be created
+     */
+    public MappedApduJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * Open a journal
+     *
+     * @param directory : directory of the segment files, created if needed
+     * @param segmentSize : size of a segment file in bytes
+     * @param maxSegments : number of segment files kept, 0 to keep all of them
+     * @throws IOException if the first segment can't be created
+     * @throws IllegalArgumentException if the segment size or the number of segments is invalid
+     */
+    public MappedApduJournal(File directory, int segmentSize, int maxSegments)
+            throws IOException {
+        if (segmentSize < HEADER_SIZE + RECORD_OVERHEAD) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (maxSegments < 0) {
+            throw new IllegalArgumentException("Invalid number of segments: " + maxSegments);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create the journal directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+
+        List<File> existing = ApduJournalDecoder.listSegments(directory);
+        segmentFiles.addAll(existing);
+        nextSequence = existing.isEmpty() ? 0
+                : sequenceOf(existing.get(existing.size() - 1).getName()) + 1;
+        synchronized (this) {
+            current = openSegment();
+        }
+    }
+
+    public void append(String readerName, byte[] request, byte[] response, int statusWord,
+            boolean successful) {
+        byte[] name = encodedName(readerName);
+        int requestLength = Math.min(request.length, MAX_APDU_LENGTH);
+        int responseLength = response != null ? Math.min(response.length, MAX_APDU_LENGTH) : 0;
+        int length = RECORD_OVERHEAD + name.length + requestLength + responseLength;
+        if (length > segmentSize - HEADER_SIZE) {
+            logger.warn("APDU exchange of {} bytes too large for the journal segments", length);
+            return;
+        }
+        int flags = (successful ? FLAG_SUCCESSFUL : 0) | (response == null ? FLAG_IO_ERROR : 0)
+                | (statusWord != NO_STATUS_WORD ? FLAG_STATUS_WORD : 0);
+        long timestamp = System.currentTimeMillis();
+
+        Segment segment = current;
+        while (segment != null) {
+            int offset = segment.reserve(length);
+            if (offset >= 0) {
+                segment.write(offset, length, timestamp, flags, statusWord, name, request,
+                        requestLength, response, responseLength);
+                return;
+            }
+            segment = rotate(segment);
+        }
+    }
+
+    /**
+     * Flush the current segment to the storage device
+     */
+    public void force() {
+        Segment segment = current;
+        if (segment != null) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * Close the journal, the records appended later are ignored
+     */
+    public synchronized void close() {
+        closed = true;
+        Segment segment = current;
+        current = null;
+        if (segment != null) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * @return the segment files of this journal, the oldest first
+     */
+    public synchronized List<File> getSegmentFiles() {
+        return new LinkedList<File>(segmentFiles);
+    }
+
+    /**
+     * Replace the full segment by a new one if not already done by another thread
+     *
+     * @return the segment to use, null if the journal is closed or broken
+     */
+    private synchronized Segment rotate(Segment full) {
+        if (current != full || closed) {
+            return current;
+        }
+        full.buffer.force();
+        try {
+            current = openSegment();
+        } catch (IOException e) {
+            logger.error("Can't create a new APDU journal segment, the journal is stopped", e);
+            current = null;
+        }
+        return current;
+    }
+
+    /**
+     * Create the next segment file, map it and delete the oldest segments if needed (called
+     * under lock)
+     */
+    private Segment openSegment() throws IOException {
+        File file = new File(directory,
+                SEGMENT_PREFIX + String.format("%010d", nextSequence++) + SEGMENT_SUFFIX);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        MappedByteBuffer buffer;
+        try {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } finally {
+            // the mapping stays valid after the file is closed
+            raf.close();
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, HEADER_SIZE);
+
+        segmentFiles.add(file);
+        while (maxSegments > 0 && segmentFiles.size() > maxSegments) {
+            File oldest = segmentFiles.removeFirst();
+            if (!oldest.delete()) {
+                logger.warn("Can't delete the APDU journal segment {}", oldest);
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("New APDU journal segment {}", file);
+        }
+        return new Segment(buffer, segmentSize);
+    }
+
+    private byte[] encodedName(String readerName) {
+        byte[] name = readerNames.get(readerName);
+        if (name == null) {
+            try {
+                name = readerName.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            if (name.length > MAX_NAME_LENGTH) {
+                byte[] truncated = new byte[MAX_NAME_LENGTH];
+                System.arraycopy(name, 0, truncated, 0, MAX_NAME_LENGTH);
+                name = truncated;
+            }
+            readerNames.putIfAbsent(readerName, name);
+        }
+        return name;
+    }
+
+    static long sequenceOf(String segmentName) {
+        return Long.parseLong(segmentName.substring(SEGMENT_PREFIX.length(),
+                segmentName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Mapped segment file, written concurrently at reserved offsets
+     */
+    private static final class Segment {
+
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final AtomicInteger position = new AtomicInteger(HEADER_SIZE);
+
+        Segment(MappedByteBuffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return the offset of the reserved record, -1 if the segment is full
+         */
+        int reserve(int length) {
+            if (position.get() > capacity - length) {
+                return -1;
+            }
+            int offset = position.getAndAdd(length);
+            return offset <= capacity - length ? offset : -1;
+        }
+
+        /**
+         * Write a record with absolute puts only, the buffer position is shared by the threads
+         */
+        void write(int offset, int length, long timestamp, int flags, int statusWord,
+                byte[] name, byte[] request, int requestLength, byte[] response,
+                int responseLength) {
+            MappedByteBuffer b = buffer;
+            // not committed until the length is written back positive
+            b.putInt(offset, -length);
+            int index = offset + 4;
+            b.putLong(index, timestamp);
+            index += 8;
+            b.put(index++, (byte) flags);
+            b.putShort(index, (short) statusWord);
+            index += 2;
+            b.put(index++, (byte) name.length);
+            index = put(b, index, name, name.length);
+            b.putShort(index, (short) requestLength);
+            index = put(b, index + 2, request, requestLength);
+            b.putShort(index, (short) responseLength);
+            put(b, index + 2, response, responseLength);
+            b.putInt(offset, length);
+        }
+
+        private static int put(MappedByteBuffer b, int index, byte[] bytes, int length) {
+            for (int i = 0; i < length; i++) {
+                b.put(index + i, bytes[i]);
+            }
+            return index + length;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link MetricsRecorder}, keeping the measures in memory to be queried by the
+ * application.
+ * <p>
+ * Durations and sampled values are kept in a {@link Histogram} per source and metric, the
+ * durations being in nanoseconds. Counters are kept per source and metric too.
+ */
+public class InMemoryMetricsRecorder implements MetricsRecorder {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Histogram>> histograms =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Histogram>>();
+
+    private final ConcurrentMap<String, ConcurrentMap<String, AtomicLong>> counters =
+            new ConcurrentHashMap<String, ConcurrentMap<String, AtomicLong>>();
+
+    private static <T> ConcurrentMap<String, T> metricsOf(
+            ConcurrentMap<String, ConcurrentMap<String, T>> sources, String source) {
+        ConcurrentMap<String, T> metrics = sources.get(source);
+        if (metrics == null) {
+            metrics = new ConcurrentHashMap<String, T>();
+            ConcurrentMap<String, T> existing = sources.putIfAbsent(source, metrics);
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+    private Histogram histogram(String source, String metric) {
+        ConcurrentMap<String, Histogram> metrics = metricsOf(histograms, source);
+        Histogram histogram = metrics.get(metric);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram existing = metrics.putIfAbsent(metric, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    @Override
+    public void recordDuration(String source, String metric, long nanos) {
+        histogram(source, metric).record(nanos);
+    }
+
+    @Override
+    public void recordValue(String source, String metric, long value) {
+        histogram(source, metric).record(value);
+    }
+
+    @Override
+    public void incrementCounter(String source, String metric) {
+        ConcurrentMap<String, AtomicLong> metrics = metricsOf(counters, source);
+        AtomicLong counter = metrics.get(metric);
+        if (counter == null) {
+            counter = new AtomicLong();
+            AtomicLong existing = metrics.putIfAbsent(metric, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * @return the names of the sources having at least one measure, sorted
+     */
+    public Set<String> getSources() {
+        Set<String> sources = new TreeSet<String>(histograms.keySet());
+        sources.addAll(counters.keySet());
+        return sources;
+    }
+
+    /**
+     * Get the histogram of a metric
+     *
+     * @param source : name of the source (e.g. the reader name)
+     * @param metric : name of the metric
+     * @return the live histogram, null if nothing was recorded
+     */
+    public Histogram getHistogram(String source, String metric) {
+        Map<String, Histogram> metrics = histograms.get(source);
+        return metrics == null ? null : metrics.get(metric);
+    }
+
+    /**
+     * Get the value of a counter
+     *
+     * @param source : name of the source (e.g. the reader name)
+     * @param metric : name of the metric
+     * @return the value of the counter, 0 if it was never incremented
+     */
+    public long getCounter(String source, String metric) {
+        Map<String, AtomicLong> metrics = counters.get(source);
+        AtomicLong counter = metrics == null ? null : metrics.get(metric);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * @param source : name of the source
+     * @return the names of the metrics having a histogram for this source, sorted
+     */
+    public Set<String> getHistogramNames(String source) {
+        Map<String, Histogram> metrics = histograms.get(source);
+        return metrics == null ? Collections.<String>emptySet()
+                : new TreeSet<String>(metrics.keySet());
+    }
+
+    /**
+     * @param source : name of the source
+     * @return the names of the counters of this source, sorted
+     */
+    public Set<String> getCounterNames(String source) {
+        Map<String, AtomicLong> metrics = counters.get(source);
+        return metrics == null ? Collections.<String>emptySet()
+                : new TreeSet<String>(metrics.keySet());
+    }
+
+    /**
+     * Forget all the measures
+     */
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * @return a report of all the measures, one line per source and metric
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        for (String source : getSources()) {
+            Map<String, Object> metrics = new TreeMap<String, Object>();
+            Map<String, Histogram> sourceHistograms = histograms.get(source);
+            if (sourceHistograms != null) {
+                metrics.putAll(sourceHistograms);
+            }
+            Map<String, AtomicLong> sourceCounters = counters.get(source);
+            if (sourceCounters != null) {
+                metrics.putAll(sourceCounters);
+            }
+            for (Map.Entry<String, Object> metric : metrics.entrySet()) {
+                report.append(source).append(' ').append(metric.getKey()).append(": ")
+                        .append(metric.getValue()).append('\n');
+            }
+        }
+        return report.toString();
+    }
+}
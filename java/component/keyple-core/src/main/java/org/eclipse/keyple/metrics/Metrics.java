@@ -0,0 +1,86 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+/**
+ * Entry point of the metrics collected by Keyple.
+ * <p>
+ * The metrics are disabled by default. They are enabled by registering a {@link MetricsRecorder},
+ * e.g. an {@link InMemoryMetricsRecorder} that can be queried by the application:
+ *
+ * <pre>
+ * InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+ * Metrics.setRecorder(metrics);
+ * ...
+ * Histogram apduLatencies = metrics.getHistogram(readerName, Metrics.APDU_EXCHANGE);
+ * </pre>
+ * <p>
+ * When disabled, the instrumented code only reads the registered recorder: no time is measured
+ * and nothing is allocated.
+ */
+public final class Metrics {
+
+    /** Duration of an APDU exchange, including the internal get response if any */
+    public static final String APDU_EXCHANGE = "apdu.exchange";
+
+    /** Number of APDU exchanges that failed */
+    public static final String APDU_ERRORS = "apdu.errors";
+
+    /** Duration of the selection of an application (logical channel opening) */
+    public static final String SELECTION = "selection";
+
+    /** Duration of the opening of the physical channel */
+    public static final String CHANNEL_OPEN = "channel.open";
+
+    /** Duration of the closing of the physical channel */
+    public static final String CHANNEL_CLOSE = "channel.close";
+
+    /** Number of SeRequest or SeRequestSet transmissions interrupted by an IO error */
+    public static final String TRANSMIT_IO_ERRORS = "transmit.errors.io";
+
+    /** Number of SeRequest or SeRequestSet transmissions interrupted by a channel error */
+    public static final String TRANSMIT_CHANNEL_ERRORS = "transmit.errors.channel";
+
+    /** Time elapsed between the insertion and the removal of a SE (observable readers) */
+    public static final String SE_PRESENCE = "se.presence";
+
+    private static volatile MetricsRecorder recorder;
+
+    private Metrics() {}
+
+    /**
+     * Enable the metrics
+     *
+     * @param metricsRecorder : recorder of the measures, null to disable the metrics
+     */
+    public static void setRecorder(MetricsRecorder metricsRecorder) {
+        recorder = metricsRecorder;
+    }
+
+    /**
+     * Get the current recorder
+     * <p>
+     * The instrumented code reads the recorder once and measures nothing when it is null.
+     *
+     * @return the registered recorder, null if the metrics are disabled
+     */
+    public static MetricsRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * @return true if a recorder is registered
+     */
+    public static boolean isEnabled() {
+        return recorder != null;
+    }
+}
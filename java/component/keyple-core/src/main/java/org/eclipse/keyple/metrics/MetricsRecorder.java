@@ -0,0 +1,51 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+/**
+ * Service provider interface of the metrics collected by Keyple.
+ * <p>
+ * An implementation is registered with {@link Metrics#setRecorder(MetricsRecorder)}. Each
+ * measure is identified by its source (the name of the reader in most cases) and by the name of
+ * the metric (see the constants of {@link Metrics} and of the Keyple modules).
+ * <p>
+ * The methods are called by the reader threads while exchanging with the SE, they must be thread
+ * safe and return quickly.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * Record the duration of an operation
+     *
+     * @param source : name of the reader (or of the component) that did the operation
+     * @param metric : name of the metric
+     * @param nanos : duration in nanoseconds
+     */
+    void recordDuration(String source, String metric, long nanos);
+
+    /**
+     * Record a sampled value (e.g. the depth of a queue)
+     *
+     * @param source : name of the reader (or of the component) the value relates to
+     * @param metric : name of the metric
+     * @param value : sampled value
+     */
+    void recordValue(String source, String metric, long value);
+
+    /**
+     * Increment a counter (e.g. of errors)
+     *
+     * @param source : name of the reader (or of the component) the event relates to
+     * @param metric : name of the metric
+     */
+    void incrementCounter(String source, String metric);
+}
@@ -0,0 +1,155 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+/**
+ * Measure of an operation with the {@link Metrics} and the {@link Tracing} together.
+ * <p>
+ * The probe reads the recorder and the tracer once when the operation starts. It must be ended in
+ * a finally block so that an operation interrupted by an exception is measured as well:
+ *
+ * <pre>
+ * Probe probe = Probe.start(getName(), Metrics.CHANNEL_OPEN, TraceEvent.PHYSICAL_CHANNEL_OPEN);
+ * try {
+ *     openPhysicalChannel();
+ *     probe.completed(true);
+ * } finally {
+ *     probe.end();
+ * }
+ * </pre>
+ * <p>
+ * An operation not marked completed when the probe is ended is considered failed: its trace is
+ * ended unsuccessful and the error counter, if any, is incremented instead of the duration.
+ * <p>
+ * When neither the metrics nor the tracing are enabled, a shared inactive probe is returned and
+ * nothing is measured.
+ */
+public final class Probe {
+
+    private static final Probe INACTIVE = new Probe(null, null, null, null, null, 0);
+
+    private final String source;
+    private final String metric;
+    private final String errorMetric;
+    private final MetricsRecorder metrics;
+    private final TraceSpan span;
+    private final long start;
+
+    private String detail;
+    private int bytesOut;
+    private int bytesIn;
+    private int statusWord = TraceSpan.NO_STATUS_WORD;
+    private boolean completed;
+    private boolean success;
+
+    private Probe(String source, String metric, String errorMetric, MetricsRecorder metrics,
+            TraceSpan span, long start) {
+        this.source = source;
+        this.metric = metric;
+        this.errorMetric = errorMetric;
+        this.metrics = metrics;
+        this.span = span;
+        this.start = start;
+    }
+
+    /**
+     * Start measuring an operation
+     *
+     * @param source : name of the reader (or of the component) doing the operation
+     * @param metric : name of the duration metric, null if the duration is not recorded
+     * @param event : kind of operation traced
+     * @return the probe to end when the operation is done
+     */
+    public static Probe start(String source, String metric, TraceEvent event) {
+        return start(source, metric, null, event);
+    }
+
+    /**
+     * Start measuring an operation whose failures are counted
+     *
+     * @param source : name of the reader (or of the component) doing the operation
+     * @param metric : name of the duration metric, null if the duration is not recorded
+     * @param errorMetric : name of the counter incremented when the operation fails, null to
+     *        record the duration of the failed operations too
+     * @param event : kind of operation traced
+     * @return the probe to end when the operation is done
+     */
+    public static Probe start(String source, String metric, String errorMetric,
+            TraceEvent event) {
+        MetricsRecorder metrics =
+                metric != null || errorMetric != null ? Metrics.getRecorder() : null;
+        TraceSpan span = Tracing.begin(event);
+        if (metrics == null && span == null) {
+            return INACTIVE;
+        }
+        return new Probe(source, metric, errorMetric, metrics, span, System.nanoTime());
+    }
+
+    /**
+     * @param detail : detail of the operation (see {@link TraceSpan#end})
+     * @return this probe
+     */
+    public Probe detail(String detail) {
+        if (this != INACTIVE) {
+            this.detail = detail;
+        }
+        return this;
+    }
+
+    /**
+     * @param bytesOut : number of bytes sent
+     * @param bytesIn : number of bytes received
+     * @param statusWord : status word of the SE response, {@link TraceSpan#NO_STATUS_WORD} if none
+     * @return this probe
+     */
+    public Probe exchanged(int bytesOut, int bytesIn, int statusWord) {
+        if (this != INACTIVE) {
+            this.bytesOut = bytesOut;
+            this.bytesIn = bytesIn;
+            this.statusWord = statusWord;
+        }
+        return this;
+    }
+
+    /**
+     * Mark the operation as completed (i.e. not interrupted by an exception)
+     *
+     * @param success : result of the operation
+     * @return this probe
+     */
+    public Probe completed(boolean success) {
+        if (this != INACTIVE) {
+            this.completed = true;
+            this.success = success;
+        }
+        return this;
+    }
+
+    /**
+     * Record the measures of the operation and end its trace
+     */
+    public void end() {
+        if (this == INACTIVE) {
+            return;
+        }
+        if (metrics != null) {
+            if (!completed && errorMetric != null) {
+                metrics.incrementCounter(source, errorMetric);
+            } else if (metric != null) {
+                metrics.recordDuration(source, metric, System.nanoTime() - start);
+            }
+        }
+        if (span != null) {
+            span.end(source, detail, bytesOut, bytesIn, statusWord, completed && success);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+/**
+ * Kinds of operations traced by Keyple (see {@link Tracer})
+ */
+public enum TraceEvent {
+    /** exchange of an APDU with the SE, including the internal get response if any */
+    APDU_EXCHANGE,
+    /** opening of the physical channel */
+    PHYSICAL_CHANNEL_OPEN,
+    /** closing of the physical channel */
+    PHYSICAL_CHANNEL_CLOSE,
+    /** opening of a logical channel, i.e. the selection of an application */
+    LOGICAL_CHANNEL_OPEN,
+    /** closing of the logical channel */
+    LOGICAL_CHANNEL_CLOSE,
+    /** processing of the default selection request when a SE is inserted */
+    DEFAULT_SELECTION,
+    /** notification of a reader or plugin event to the observers */
+    OBSERVER_DISPATCH,
+    /** opening of a Calypso secure session */
+    SESSION_OPENING,
+    /** processing of the Calypso commands in a secure session */
+    SESSION_COMMANDS,
+    /** closing of a Calypso secure session */
+    SESSION_CLOSING,
+    /** cancellation of a Calypso secure session */
+    SESSION_CANCEL,
+    /** sending of a remote method request */
+    DTO_SEND,
+    /** processing of a remote method response */
+    DTO_RECEIVE
+}
@@ -0,0 +1,41 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+/**
+ * Traced operation in progress, started by {@link Tracer#begin(TraceEvent)}
+ * <p>
+ * A span is used by a single thread and ended once.
+ */
+public interface TraceSpan {
+
+    /**
+     * Unknown status word
+     */
+    int NO_STATUS_WORD = -1;
+
+    /**
+     * End the operation and emit the trace
+     * <p>
+     * The arguments not relevant for the kind of operation are ignored.
+     *
+     * @param readerName : name of the reader
+     * @param detail : detail of the operation (event type, remote method, session phase...), may
+     *        be null
+     * @param bytesOut : number of bytes sent
+     * @param bytesIn : number of bytes received
+     * @param statusWord : status word of the SE response, {@link #NO_STATUS_WORD} if none
+     * @param success : false if the operation failed
+     */
+    void end(String readerName, String detail, int bytesOut, int bytesIn, int statusWord,
+            boolean success);
+}
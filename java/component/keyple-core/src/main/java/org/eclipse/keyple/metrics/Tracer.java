@@ -0,0 +1,33 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+/**
+ * Service provider interface of the traces of the operations done by Keyple, e.g. to feed Java
+ * Flight Recorder timelines.
+ * <p>
+ * An implementation is registered with {@link Tracing#setTracer(Tracer)}, the Java Flight
+ * Recorder one with {@link Tracing#enableFlightRecorder()}.
+ */
+public interface Tracer {
+
+    /**
+     * Start tracing an operation
+     * <p>
+     * Called by the thread doing the operation, must be thread safe and return quickly.
+     *
+     * @param event : kind of operation
+     * @return the span to end when the operation is done, null if this kind of operation is not
+     *         traced
+     */
+    TraceSpan begin(TraceEvent event);
+}
@@ -0,0 +1,91 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point of the traces of the operations done by Keyple.
+ * <p>
+ * The tracing is disabled by default. The Java Flight Recorder events are enabled with
+ * {@link #enableFlightRecorder()} when the keyple-jfr library is in the classpath and the JVM
+ * provides JFR (Java 11 or later). The events are then recorded by the JFR recordings, e.g. a
+ * continuous recording started with <code>-XX:StartFlightRecording</code>.
+ * <p>
+ * When disabled, the instrumented code only reads the registered tracer.
+ */
+public final class Tracing {
+
+    private static final Logger logger = LoggerFactory.getLogger(Tracing.class);
+
+    /** implementation provided by the keyple-jfr library */
+    static final String FLIGHT_RECORDER_TRACER = "org.eclipse.keyple.jfr.FlightRecorderTracer";
+
+    private static volatile Tracer tracer;
+
+    private Tracing() {}
+
+    /**
+     * Enable the tracing
+     *
+     * @param tracer : tracer of the operations, null to disable the tracing
+     */
+    public static void setTracer(Tracer tracer) {
+        Tracing.tracer = tracer;
+    }
+
+    /**
+     * @return the registered tracer, null if the tracing is disabled
+     */
+    public static Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Start tracing an operation with the registered tracer
+     *
+     * @param event : kind of operation
+     * @return the span to end when the operation is done, null if the operation is not traced
+     */
+    public static TraceSpan begin(TraceEvent event) {
+        Tracer currentTracer = tracer;
+        return currentTracer == null ? null : currentTracer.begin(event);
+    }
+
+    /**
+     * Register the Java Flight Recorder tracer if JFR and the keyple-jfr library are available
+     * <p>
+     * The JFR classes are only loaded when this method is called.
+     *
+     * @return true if the JFR events are enabled
+     */
+    public static boolean enableFlightRecorder() {
+        try {
+            Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+            if (!Boolean.TRUE.equals(flightRecorder.getMethod("isAvailable").invoke(null))) {
+                logger.info("Java Flight Recorder is not available in this JVM");
+                return false;
+            }
+            setTracer((Tracer) Class.forName(FLIGHT_RECORDER_TRACER).newInstance());
+            return true;
+        } catch (ClassNotFoundException e) {
+            logger.info("Java Flight Recorder events not available: {} not found",
+                    e.getMessage());
+        } catch (LinkageError e) {
+            logger.info("Java Flight Recorder events not available: {}", e.toString());
+        } catch (Exception e) {
+            logger.warn("Java Flight Recorder events could not be enabled", e);
+        }
+        return false;
+    }
+}
@@ -20,12 +20,34 @@ import org.eclipse.keyple.seproxy.message.SeResponseSet;
 public class SelectionResponse {
     /** The {@link SeResponseSet} */
     private final SeResponseSet selectionSeResponseSet;
+    /** The responses to the read plan executed after the selection, null if none */
+    private final SeResponseSet readPlanResponseSet;
 
     public SelectionResponse(SeResponseSet selectionSeResponseSet) {
+        this(selectionSeResponseSet, null);
+    }
+
+    /**
+     * Selection response completed by the responses to a read plan executed in the logical channel
+     * left open by the selection (e.g. by a remote reader)
+     *
+     * @param selectionSeResponseSet the responses to the selection
+     * @param readPlanResponseSet the responses to the read plan (can be null)
+     */
+    public SelectionResponse(SeResponseSet selectionSeResponseSet,
+            SeResponseSet readPlanResponseSet) {
         this.selectionSeResponseSet = selectionSeResponseSet;
+        this.readPlanResponseSet = readPlanResponseSet;
     }
 
     public SeResponseSet getSelectionSeResponseSet() {
         return selectionSeResponseSet;
     }
+
+    /**
+     * @return the responses to the read plan executed after the selection, null if none
+     */
+    public SeResponseSet getReadPlanResponseSet() {
+        return readPlanResponseSet;
+    }
 }
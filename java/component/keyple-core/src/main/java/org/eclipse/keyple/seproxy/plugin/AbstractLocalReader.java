@@ -12,6 +12,13 @@
 package org.eclipse.keyple.seproxy.plugin;
 
 import java.util.*;
+import org.eclipse.keyple.journal.ApduJournal;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.metrics.MetricsRecorder;
+import org.eclipse.keyple.metrics.Probe;
+import org.eclipse.keyple.metrics.TraceEvent;
+import org.eclipse.keyple.metrics.TraceSpan;
+import org.eclipse.keyple.metrics.Tracing;
 import org.eclipse.keyple.seproxy.SeSelector;
 import org.eclipse.keyple.seproxy.event.DefaultSelectionRequest;
 import org.eclipse.keyple.seproxy.event.ObservableReader;
@@ -54,6 +61,15 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
     /** Timestamp recorder */
     private long before;
 
+    /** insertion time of the current SE, valid if presenceMeasured is set */
+    private long presenceStart;
+
+    /** flag set when the insertion time of the current SE was recorded for the metrics */
+    private boolean presenceMeasured = false;
+
+    /** journal of the APDU exchanges, null if none */
+    private volatile ApduJournal apduJournal;
+
     /** ==== Constructor =================================================== */
 
     /**
@@ -131,6 +147,10 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
      * the selection.
      */
     protected final void cardInserted() {
+        presenceMeasured = Metrics.isEnabled();
+        if (presenceMeasured) {
+            presenceStart = System.nanoTime();
+        }
         if (defaultSelectionRequest == null) {
             /* no default request is defined, just notify the SE insertion */
             notifyObservers(new ReaderEvent(this.pluginName, this.name,
@@ -143,14 +163,20 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
              */
             boolean aSeMatched = false;
             try {
-                SeResponseSet seResponseSet =
-                        processSeRequestSet(defaultSelectionRequest.getSelectionSeRequestSet());
-
-                for (SeResponse seResponse : seResponseSet.getResponses()) {
-                    if (seResponse != null && seResponse.getSelectionStatus().hasMatched()) {
-                        aSeMatched = true;
-                        break;
+                SeResponseSet seResponseSet;
+                Probe probe = Probe.start(getName(), null, TraceEvent.DEFAULT_SELECTION);
+                try {
+                    seResponseSet =
+                            processSeRequestSet(defaultSelectionRequest.getSelectionSeRequestSet());
+                    for (SeResponse seResponse : seResponseSet.getResponses()) {
+                        if (seResponse != null && seResponse.getSelectionStatus().hasMatched()) {
+                            aSeMatched = true;
+                            break;
+                        }
                     }
+                    probe.completed(aSeMatched);
+                } finally {
+                    probe.end();
                 }
                 if (notificationMode == ObservableReader.NotificationMode.MATCHED_ONLY) {
                     /* notify only if a SE matched the selection, just ignore if not */
@@ -200,6 +226,14 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
      * reader only)
      */
     protected final void cardRemoved() throws NoStackTraceThrowable {
+        if (presenceMeasured) {
+            MetricsRecorder metrics = Metrics.getRecorder();
+            if (metrics != null) {
+                metrics.recordDuration(getName(), Metrics.SE_PRESENCE,
+                        System.nanoTime() - presenceStart);
+            }
+            presenceMeasured = false;
+        }
         if (presenceNotified) {
             notifyObservers(new ReaderEvent(this.pluginName, this.name,
                     ReaderEvent.EventType.SE_REMOVAL, null));
@@ -207,7 +241,7 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
         }
         closeLogicalChannel();
         try {
-            closePhysicalChannel();
+            closeMeasuredPhysicalChannel();
         } catch (KeypleChannelStateException e) {
             logger.trace("[{}] Exception occured in waitForCardAbsent. Message: {}", this.getName(),
                     e.getMessage());
@@ -280,14 +314,31 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
              * channel
              */
             if (!isPhysicalChannelOpen()) {
-                openPhysicalChannel();
+                Probe probe = Probe.start(getName(), Metrics.CHANNEL_OPEN,
+                        TraceEvent.PHYSICAL_CHANNEL_OPEN);
+                try {
+                    openPhysicalChannel();
+                    probe.completed(true);
+                } finally {
+                    probe.end();
+                }
             }
             if (!isPhysicalChannelOpen()) {
                 throw new KeypleChannelStateException("Fail to open physical channel.");
             }
         }
 
-        selectionStatus = openLogicalChannel(seSelector);
+        Probe probe =
+                Probe.start(getName(), Metrics.SELECTION, TraceEvent.LOGICAL_CHANNEL_OPEN);
+        probe.detail(seSelector.getExtraInfo());
+        try {
+            selectionStatus = openLogicalChannel(seSelector);
+            ApduResponse fci = selectionStatus.getFci();
+            probe.exchanged(0, responseLength(fci), statusWordOf(fci))
+                    .completed(selectionStatus.hasMatched());
+        } finally {
+            probe.end();
+        }
 
         return selectionStatus;
     }
@@ -308,6 +359,39 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
      */
     protected abstract void closePhysicalChannel() throws KeypleChannelStateException;
 
+    /**
+     * @return the length of the response, 0 if none
+     */
+    private static int responseLength(ApduResponse response) {
+        return response != null && response.getBytes() != null ? response.getBytes().length : 0;
+    }
+
+    /**
+     * @return the status word of the response, -1 ({@link TraceSpan#NO_STATUS_WORD},
+     *         {@link ApduJournal#NO_STATUS_WORD}) if none (e.g. no FCI)
+     */
+    private static int statusWordOf(ApduResponse response) {
+        return response != null && response.getBytes() != null
+                && response.getBytes().length >= 2 ? response.getStatusCode()
+                        : TraceSpan.NO_STATUS_WORD;
+    }
+
+    /**
+     * Closes the current physical channel, measuring the closing time if the metrics are enabled
+     *
+     * @throws KeypleChannelStateException if a reader error occurs
+     */
+    private void closeMeasuredPhysicalChannel() throws KeypleChannelStateException {
+        Probe probe =
+                Probe.start(getName(), Metrics.CHANNEL_CLOSE, TraceEvent.PHYSICAL_CHANNEL_CLOSE);
+        try {
+            closePhysicalChannel();
+            probe.completed(true);
+        } finally {
+            probe.end();
+        }
+    }
+
     /**
      * Tells if the physical channel is open or not
      * <p>
@@ -331,9 +415,11 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
      */
     private void closeLogicalChannel() {
         logger.trace("[{}] closeLogicalChannel => Closing of the logical channel.", this.getName());
+        Probe probe = Probe.start(getName(), null, TraceEvent.LOGICAL_CHANNEL_CLOSE);
         logicalChannelIsOpen = false;
         aidCurrentlySelected = null;
         currentSelectionStatus = null;
+        probe.completed(true).end();
     }
 
     /** ==== Protocol management =========================================== */
@@ -460,7 +546,7 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
                          * SE reader status, if the logical channel doesn't require to be kept open,
                          * then the physical channel is closed.
                          */
-                        closePhysicalChannel();
+                        closeMeasuredPhysicalChannel();
 
                         logger.debug("[{}] processSeRequestSet => Closing of the physical channel.",
                                 this.getName());
@@ -501,7 +587,7 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
 
         /* close the physical channel if CLOSE_AFTER is requested */
         if (!seRequest.isKeepChannelOpen()) {
-            closePhysicalChannel();
+            closeMeasuredPhysicalChannel();
         }
 
         return seResponse;
@@ -655,6 +741,11 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
      * <p>
      * The time measurement is carried out and logged with the detailed information of the exchanges
      * (TRACE level).
+     * <p>
+     * The exchange duration and the failures are also recorded when the metrics are enabled (see
+     * {@link Metrics}), and the exchange is traced when the tracing is enabled (see
+     * {@link Tracing}), and recorded in the APDU journal if one is attached (see
+     * {@link #setApduJournal(ApduJournal)}).
      *
      * @param apduRequest APDU request
      * @return APDU response
@@ -671,14 +762,36 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
                     apduRequest, elapsedMs);
         }
 
+        Probe probe = Probe.start(getName(), Metrics.APDU_EXCHANGE, Metrics.APDU_ERRORS,
+                TraceEvent.APDU_EXCHANGE);
+
         byte[] buffer = apduRequest.getBytes();
-        apduResponse =
-                new ApduResponse(transmitApdu(buffer), apduRequest.getSuccessfulStatusCodes());
+        probe.detail(apduRequest.getName()).exchanged(buffer.length, 0, TraceSpan.NO_STATUS_WORD);
+        try {
+            apduResponse = new ApduResponse(transmitApdu(buffer),
+                    apduRequest.getSuccessfulStatusCodes());
 
-        if (apduRequest.isCase4() && apduResponse.getDataOut().length == 0
-                && apduResponse.isSuccessful()) {
-            // do the get response command but keep the original status code
-            apduResponse = case4HackGetResponse(apduResponse.getStatusCode());
+            if (apduRequest.isCase4() && apduResponse.getDataOut().length == 0
+                    && apduResponse.isSuccessful()) {
+                // do the get response command but keep the original status code
+                apduResponse = case4HackGetResponse(apduResponse.getStatusCode());
+            }
+            probe.exchanged(buffer.length, responseLength(apduResponse),
+                    statusWordOf(apduResponse)).completed(apduResponse.isSuccessful());
+        } catch (KeypleIOReaderException ex) {
+            ApduJournal journal = apduJournal;
+            if (journal != null) {
+                journal.append(getName(), buffer, null, ApduJournal.NO_STATUS_WORD, false);
+            }
+            throw ex;
+        } finally {
+            probe.end();
+        }
+
+        ApduJournal journal = apduJournal;
+        if (journal != null) {
+            journal.append(getName(), buffer, apduResponse.getBytes(), statusWordOf(apduResponse),
+                    apduResponse.isSuccessful());
         }
 
         if (logger.isTraceEnabled()) {
@@ -691,6 +804,23 @@ public abstract class AbstractLocalReader extends AbstractObservableReader {
         return apduResponse;
     }
 
+    /**
+     * Attach a journal recording all the APDU exchanges of this reader, e.g. a
+     * {@link org.eclipse.keyple.journal.MappedApduJournal}
+     *
+     * @param apduJournal : journal of the APDU exchanges, null to detach the current journal
+     */
+    public final void setApduJournal(ApduJournal apduJournal) {
+        this.apduJournal = apduJournal;
+    }
+
+    /**
+     * @return the attached APDU journal, null if none
+     */
+    public final ApduJournal getApduJournal() {
+        return apduJournal;
+    }
+
     /**
      * Execute a get response command in order to get outgoing data from specific cards answering
      * 9000 with no data although the command has outgoing data. Note that this method relies on the
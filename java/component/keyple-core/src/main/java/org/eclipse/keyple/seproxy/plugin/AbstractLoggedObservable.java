@@ -13,6 +13,8 @@ package org.eclipse.keyple.seproxy.plugin;
 
 
 import java.util.Map;
+import org.eclipse.keyple.metrics.Probe;
+import org.eclipse.keyple.metrics.TraceEvent;
 import org.eclipse.keyple.seproxy.event.PluginEvent;
 import org.eclipse.keyple.seproxy.event.ReaderEvent;
 import org.eclipse.keyple.seproxy.exception.KeypleBaseException;
@@ -110,7 +112,18 @@ abstract class AbstractLoggedObservable<T> extends Observable<T> implements Name
 
         setChanged();
 
-        super.notifyObservers(event);
+        Probe probe = Probe.start(getName(), null, TraceEvent.OBSERVER_DISPATCH);
+        try {
+            super.notifyObservers(event);
+            probe.completed(true);
+        } finally {
+            probe.detail(event instanceof ReaderEvent
+                    ? ((ReaderEvent) event).getEventType().getName()
+                    : event instanceof PluginEvent
+                            ? ((PluginEvent) event).getEventType().getName()
+                            : null);
+            probe.end();
+        }
     }
 
     /**
@@ -12,6 +12,8 @@
 package org.eclipse.keyple.seproxy.plugin;
 
 
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.metrics.MetricsRecorder;
 import org.eclipse.keyple.seproxy.SeReader;
 import org.eclipse.keyple.seproxy.event.DefaultSelectionRequest;
 import org.eclipse.keyple.seproxy.event.ObservableReader;
@@ -32,6 +34,7 @@ import org.slf4j.LoggerFactory;
  * Abstract definition of an observable reader.
  * <ul>
  * <li>High level logging and benchmarking of SeRequestSet and SeRequest transmission</li>
+ * <li>Counting of the failed transmissions (see {@link Metrics})</li>
  * <li>Observability management</li>
  * <li>Name-based comparison of ProxyReader (required for SortedSet&lt;ProxyReader&gt;)</li>
  * <li>Plugin naming management</li>
@@ -139,6 +142,7 @@ public abstract class AbstractObservableReader extends AbstractLoggedObservable<
             double elapsedMs = (double) ((timeStamp - this.before) / 100000) / 10;
             this.before = timeStamp;
             logger.debug("[{}] transmit => SEREQUESTSET channel failure. elapsed {}", elapsedMs);
+            countError(Metrics.TRANSMIT_CHANNEL_ERRORS);
             /* Throw an exception with the responses collected so far. */
             throw ex;
         } catch (KeypleIOReaderException ex) {
@@ -146,6 +150,7 @@ public abstract class AbstractObservableReader extends AbstractLoggedObservable<
             double elapsedMs = (double) ((timeStamp - this.before) / 100000) / 10;
             this.before = timeStamp;
             logger.debug("[{}] transmit => SEREQUESTSET IO failure. elapsed {}", elapsedMs);
+            countError(Metrics.TRANSMIT_IO_ERRORS);
             /* Throw an exception with the responses collected so far. */
             throw ex;
         }
@@ -161,6 +166,18 @@ public abstract class AbstractObservableReader extends AbstractLoggedObservable<
         return responseSet;
     }
 
+    /**
+     * Count a failed transmission if the metrics are enabled
+     *
+     * @param metric : name of the error counter
+     */
+    private void countError(String metric) {
+        MetricsRecorder metrics = Metrics.getRecorder();
+        if (metrics != null) {
+            metrics.incrementCounter(getName(), metric);
+        }
+    }
+
     /**
      * Abstract method implemented by the AbstractLocalReader and VirtualReader classes.
      * <p>
@@ -208,6 +225,7 @@ public abstract class AbstractObservableReader extends AbstractLoggedObservable<
             this.before = timeStamp;
             logger.debug("[{}] transmit => SEREQUEST channel failure. elapsed {}", this.getName(),
                     elapsedMs);
+            countError(Metrics.TRANSMIT_CHANNEL_ERRORS);
             /* Throw an exception with the responses collected so far (ex.getSeResponse()). */
             throw ex;
         } catch (KeypleIOReaderException ex) {
@@ -216,6 +234,7 @@ public abstract class AbstractObservableReader extends AbstractLoggedObservable<
             this.before = timeStamp;
             logger.debug("[{}] transmit => SEREQUEST IO failure. elapsed {}", this.getName(),
                     elapsedMs);
+            countError(Metrics.TRANSMIT_IO_ERRORS);
             /* Throw an exception with the responses collected so far (ex.getSeResponse()). */
             throw ex;
         }
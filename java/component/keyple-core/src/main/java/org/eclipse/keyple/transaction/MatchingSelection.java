@@ -13,6 +13,7 @@ package org.eclipse.keyple.transaction;
 
 import org.eclipse.keyple.command.AbstractApduResponseParser;
 import org.eclipse.keyple.seproxy.message.SeResponse;
+import org.eclipse.keyple.seproxy.message.SeResponseSet;
 
 /**
  * The MatchingSelection class holds the result of a single selection case.
@@ -22,6 +23,9 @@ public class MatchingSelection {
     private final SeSelectionRequest seSelectionRequest;
     private final SeResponse selectionSeResponse;
     private final int selectionIndex;
+    private final SeResponseSet readPlanResponseSet;
+    /** parsers created on demand, by command index */
+    private AbstractApduResponseParser[] responseParsers;
 
     /**
      * Constructor
@@ -33,10 +37,26 @@ public class MatchingSelection {
      */
     public MatchingSelection(int selectionIndex, SeSelectionRequest seSelectionRequest,
             MatchingSe matchingSe, SeResponse selectionSeResponse) {
+        this(selectionIndex, seSelectionRequest, matchingSe, selectionSeResponse, null);
+    }
+
+    /**
+     * Constructor of a selection whose logical channel was used to execute a read plan
+     *
+     * @param selectionIndex
+     * @param seSelectionRequest
+     * @param matchingSe
+     * @param selectionSeResponse
+     * @param readPlanResponseSet the responses to the read plan (can be null)
+     */
+    public MatchingSelection(int selectionIndex, SeSelectionRequest seSelectionRequest,
+            MatchingSe matchingSe, SeResponse selectionSeResponse,
+            SeResponseSet readPlanResponseSet) {
         this.selectionIndex = selectionIndex;
         this.seSelectionRequest = seSelectionRequest;
         this.matchingSe = matchingSe;
         this.selectionSeResponse = selectionSeResponse;
+        this.readPlanResponseSet = readPlanResponseSet;
     }
 
     /**
@@ -48,12 +68,38 @@ public class MatchingSelection {
 
     /**
      * Get the parser for the targeted response.
+     * <p>
+     * The parser is created on the first call and then reused.
      * 
      * @param commandIndex
      * @return a parser object
      */
     public AbstractApduResponseParser getResponseParser(int commandIndex) {
-        return seSelectionRequest.getCommandParser(selectionSeResponse, commandIndex);
+        if (responseParsers == null) {
+            int size = selectionSeResponse.getApduResponses() != null
+                    ? selectionSeResponse.getApduResponses().size()
+                    : 0;
+            responseParsers = new AbstractApduResponseParser[size];
+        }
+        if (commandIndex < 0 || commandIndex >= responseParsers.length) {
+            /* let the selection request report the bad index */
+            return seSelectionRequest.getCommandParser(selectionSeResponse, commandIndex);
+        }
+        AbstractApduResponseParser parser = responseParsers[commandIndex];
+        if (parser == null) {
+            parser = seSelectionRequest.getCommandParser(selectionSeResponse, commandIndex);
+            responseParsers[commandIndex] = parser;
+        }
+        return parser;
+    }
+
+    /**
+     * @return the responses to the read plan executed in the logical channel left open by this
+     *         selection (see {@link org.eclipse.keyple.seproxy.event.SelectionResponse}), null if
+     *         none
+     */
+    public SeResponseSet getReadPlanResponseSet() {
+        return readPlanResponseSet;
     }
 
     /**
@@ -106,8 +106,14 @@ public final class SeSelection {
                     MatchingSe matchingSe =
                             seSelectionRequestList.get(selectionIndex).parse(seResponse);
 
+                    /* the read plan, if any, was executed in the logical channel left open */
+                    SeResponseSet readPlanResponseSet = seResponse.isLogicalChannelOpen()
+                            ? selectionResponse.getReadPlanResponseSet()
+                            : null;
+
                     selectionsResult.addMatchingSelection(new MatchingSelection(selectionIndex,
-                            seSelectionRequestList.get(selectionIndex), matchingSe, seResponse));
+                            seSelectionRequestList.get(selectionIndex), matchingSe, seResponse,
+                            readPlanResponseSet));
                 }
             }
             selectionIndex++;
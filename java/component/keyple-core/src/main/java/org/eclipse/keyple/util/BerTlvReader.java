@@ -0,0 +1,225 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.util;
+
+/**
+ * Cursor over the BER-TLV data objects of a byte array (ISO/IEC 7816-4 encoding).
+ * <p>
+ * The data objects are decoded in place: the reader only provides the tag and the offset and
+ * length of the value in the original array, nothing is copied unless {@link #getValue()} is
+ * called. A missing tag or a malformed structure is reported by the return value of
+ * {@link #next()} and {@link #find(int)}, no exception is thrown.
+ * <p>
+ * Example, walk of a FCI:
+ *
+ * <pre>
+ * BerTlvReader tlv = new BerTlvReader(fci, 0, fci.length);
+ * if (tlv.find(0x6F)) {
+ *     tlv.enter();
+ *     while (tlv.next()) {
+ *         switch (tlv.getTag()) {
+ *             ...
+ *         }
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * Supported encodings: tags up to 3 bytes, definite lengths up to 3 bytes. The padding bytes '00'
+ * and 'FF' between the data objects are skipped. A reader is not thread safe, it can be reused
+ * with {@link #reset(byte[], int, int)}.
+ */
+public final class BerTlvReader {
+
+    private byte[] data;
+    /** offset of the next data object */
+    private int position;
+    /** end of the current level (exclusive) */
+    private int end;
+
+    private int tag;
+    private int valueOffset;
+    private int valueLength;
+    private boolean malformed;
+
+    /**
+     * Create a reader of the data objects of a byte array range
+     *
+     * @param data : the encoded data objects
+     * @param offset : offset of the first data object
+     * @param length : length of the data objects
+     */
+    public BerTlvReader(byte[] data, int offset, int length) {
+        reset(data, offset, length);
+    }
+
+    /**
+     * Restart the reader on a new byte array range
+     *
+     * @param data : the encoded data objects
+     * @param offset : offset of the first data object
+     * @param length : length of the data objects
+     * @throws IllegalArgumentException if the range is out of the array
+     */
+    public void reset(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IllegalArgumentException("Bad range: offset " + offset + ", length "
+                    + length + ", array length " + data.length);
+        }
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+        this.tag = 0;
+        this.valueOffset = offset;
+        this.valueLength = 0;
+        this.malformed = false;
+    }
+
+    /**
+     * Move to the next data object of the current level
+     *
+     * @return true if a data object was decoded, false at the end of the level or if the data
+     *         object is malformed (see {@link #isMalformed()})
+     */
+    public boolean next() {
+        int i = position;
+        // skip the padding bytes
+        while (i < end && (data[i] == (byte) 0x00 || data[i] == (byte) 0xFF)) {
+            i++;
+        }
+        if (i >= end || malformed) {
+            position = end;
+            return false;
+        }
+
+        /* tag: the subsequent bytes are announced by 1F in the first byte, b8 set if more */
+        int t = data[i++] & 0xFF;
+        if ((t & 0x1F) == 0x1F) {
+            int count = 0;
+            int b;
+            do {
+                if (i >= end || ++count > 2) {
+                    return fail();
+                }
+                b = data[i++] & 0xFF;
+                t = (t << 8) | b;
+            } while ((b & 0x80) != 0);
+        }
+
+        /* length: short form, or long form with the number of subsequent bytes */
+        if (i >= end) {
+            return fail();
+        }
+        int l = data[i++] & 0xFF;
+        if (l > 0x7F) {
+            int count = l & 0x7F;
+            // the indefinite form (80) is not allowed in ISO/IEC 7816
+            if (count == 0 || count > 3 || i + count > end) {
+                return fail();
+            }
+            l = 0;
+            while (count-- > 0) {
+                l = (l << 8) | (data[i++] & 0xFF);
+            }
+        }
+        if (l > end - i) {
+            return fail();
+        }
+
+        tag = t;
+        valueOffset = i;
+        valueLength = l;
+        position = i + l;
+        return true;
+    }
+
+    /**
+     * Move to the next data object of the current level with the given tag, the other data
+     * objects are skipped
+     *
+     * @param tag : the tag, e.g. 0x6F, 0xBF0C
+     * @return true if found, false otherwise
+     */
+    public boolean find(int tag) {
+        while (next()) {
+            if (this.tag == tag) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move into the value of the current data object: the next data object decoded is the first
+     * one of its value
+     * <p>
+     * The data objects following the current one at its level are no longer reachable, except by
+     * calling {@link #reset(byte[], int, int)} with a range saved by the caller.
+     */
+    public void enter() {
+        position = valueOffset;
+        end = valueOffset + valueLength;
+    }
+
+    /**
+     * @return the tag of the current data object, e.g. 0x6F, 0xBF0C
+     */
+    public int getTag() {
+        return tag;
+    }
+
+    /**
+     * @return true if the current data object is constructed (b6 of the first tag byte set)
+     */
+    public boolean isConstructed() {
+        int firstByte = tag;
+        while (firstByte > 0xFF) {
+            firstByte >>>= 8;
+        }
+        return (firstByte & 0x20) != 0;
+    }
+
+    /**
+     * @return the offset of the value of the current data object in the array
+     */
+    public int getValueOffset() {
+        return valueOffset;
+    }
+
+    /**
+     * @return the length of the value of the current data object
+     */
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    /**
+     * @return a copy of the value of the current data object
+     */
+    public byte[] getValue() {
+        byte[] value = new byte[valueLength];
+        System.arraycopy(data, valueOffset, value, 0, valueLength);
+        return value;
+    }
+
+    /**
+     * @return true if the decoding stopped on a malformed data object
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    private boolean fail() {
+        malformed = true;
+        position = end;
+        return false;
+    }
+}
@@ -0,0 +1,61 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.command;
+
+import static org.junit.Assert.*;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Test;
+
+public class AbstractApduResponseParserTest {
+
+    static final class TestRespPars extends AbstractApduResponseParser {
+
+        private static final Map<Integer, StatusProperties> STATUS_TABLE;
+
+        static {
+            Map<Integer, StatusProperties> m =
+                    new HashMap<Integer, StatusProperties>(AbstractApduResponseParser.STATUS_TABLE);
+            m.put(0x6283, new StatusProperties(true, "Warning"));
+            m.put(0x6A82, new StatusProperties(false, "File not found"));
+            STATUS_TABLE = m;
+        }
+
+        TestRespPars(String response) {
+            super(new ApduResponse(ByteArrayUtils.fromHex(response), null));
+        }
+
+        @Override
+        protected Map<Integer, StatusProperties> getStatusTable() {
+            return STATUS_TABLE;
+        }
+    }
+
+    @Test
+    public void statusTable() {
+        assertTrue(new TestRespPars("9000").isSuccessful());
+        assertEquals("Success", new TestRespPars("9000").getStatusInformation());
+        assertTrue(new TestRespPars("AA6283").isSuccessful());
+        assertEquals("Warning", new TestRespPars("6283").getStatusInformation());
+        assertFalse(new TestRespPars("6A82").isSuccessful());
+        assertEquals("File not found", new TestRespPars("6A82").getStatusInformation());
+    }
+
+    @Test
+    public void unknownStatus() {
+        TestRespPars parser = new TestRespPars("6D00");
+        assertFalse(parser.isSuccessful());
+        assertNull(parser.getStatusInformation());
+    }
+}
@@ -0,0 +1,183 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.journal;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedApduJournalTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("apdu-journal", "");
+        assertTrue(directory.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void appendAndDecode() throws IOException {
+        MappedApduJournal journal = new MappedApduJournal(directory, 4096, 0);
+        long before = System.currentTimeMillis();
+        journal.append("reader1", ByteArrayUtils.fromHex("00B2014400"),
+                ByteArrayUtils.fromHex("0102039000"), 0x9000, true);
+        journal.append("reader2", ByteArrayUtils.fromHex("00B2014400"),
+                ByteArrayUtils.fromHex("6A82"), 0x6A82, false);
+        journal.append("reader1", ByteArrayUtils.fromHex("00C0000000"), null,
+                ApduJournal.NO_STATUS_WORD, false);
+        journal.close();
+        // ignored once closed
+        journal.append("reader1", ByteArrayUtils.fromHex("00"), ByteArrayUtils.fromHex("9000"),
+                0x9000, true);
+
+        List<File> segments = ApduJournalDecoder.listSegments(directory);
+        assertEquals(1, segments.size());
+        assertEquals(4096, segments.get(0).length());
+        List<ApduJournalRecord> records = ApduJournalDecoder.decode(segments.get(0));
+        assertEquals(3, records.size());
+
+        ApduJournalRecord record = records.get(0);
+        assertEquals("reader1", record.getReaderName());
+        assertEquals("00B2014400", ByteArrayUtils.toHex(record.getRequest()));
+        assertEquals("0102039000", ByteArrayUtils.toHex(record.getResponse()));
+        assertEquals(0x9000, record.getStatusWord());
+        assertTrue(record.isSuccessful());
+        assertTrue(record.getTimestamp() >= before);
+
+        record = records.get(1);
+        assertEquals("reader2", record.getReaderName());
+        assertEquals(0x6A82, record.getStatusWord());
+        assertFalse(record.isSuccessful());
+
+        record = records.get(2);
+        assertNull(record.getResponse());
+        assertEquals(ApduJournal.NO_STATUS_WORD, record.getStatusWord());
+        assertEquals("reader1 > 00C0000000 < IO ERROR FAILURE", record.toString());
+    }
+
+    @Test
+    public void rotationAndRetention() throws IOException {
+        // 8 bytes header + 2 records of 20 + 7 + 5 + 2 bytes per segment
+        MappedApduJournal journal = new MappedApduJournal(directory, 8 + 2 * 34, 3);
+        for (int i = 0; i < 10; i++) {
+            journal.append("reader1", new byte[] {0x00, (byte) 0xB2, (byte) i, 0x44, 0x00},
+                    ByteArrayUtils.fromHex("9000"), 0x9000, true);
+        }
+        journal.close();
+
+        List<File> segments = ApduJournalDecoder.listSegments(directory);
+        assertEquals(journal.getSegmentFiles(), segments);
+        assertEquals(3, segments.size());
+        assertTrue(segments.get(0).getName().endsWith("0000000002.journal"));
+        List<ApduJournalRecord> records = new ArrayList<ApduJournalRecord>();
+        for (File segment : segments) {
+            records.addAll(ApduJournalDecoder.decode(segment));
+        }
+        assertEquals(6, records.size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(4 + i, records.get(i).getRequest()[2]);
+        }
+
+        // a new journal starts a new segment after the existing ones
+        journal = new MappedApduJournal(directory, 8 + 2 * 34, 3);
+        journal.close();
+        segments = ApduJournalDecoder.listSegments(directory);
+        assertEquals(3, segments.size());
+        assertTrue(segments.get(2).getName().endsWith("0000000005.journal"));
+    }
+
+    @Test
+    public void uncommittedRecordSkipped() throws IOException {
+        MappedApduJournal journal = new MappedApduJournal(directory, 4096, 0);
+        for (int i = 0; i < 3; i++) {
+            journal.append("reader1", new byte[] {(byte) i}, ByteArrayUtils.fromHex("9000"),
+                    0x9000, true);
+        }
+        journal.close();
+        File segment = ApduJournalDecoder.listSegments(directory).get(0);
+        // simulate a crash while the second record was written
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.seek(MappedApduJournal.HEADER_SIZE + 30);
+            raf.writeInt(-30);
+        } finally {
+            raf.close();
+        }
+
+        List<ApduJournalRecord> records = ApduJournalDecoder.decode(segment);
+        assertEquals(2, records.size());
+        assertEquals(0, records.get(0).getRequest()[0]);
+        assertEquals(2, records.get(1).getRequest()[0]);
+    }
+
+    @Test
+    public void concurrentAppends() throws Exception {
+        final MappedApduJournal journal = new MappedApduJournal(directory, 64 * 1024, 0);
+        final int threads = 4;
+        final int perThread = 5000;
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final String readerName = "reader" + t;
+            Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        journal.append(readerName,
+                                new byte[] {0x00, (byte) 0xB2, (byte) (i >> 8), (byte) i},
+                                ByteArrayUtils.fromHex("9000"), 0x9000, true);
+                    }
+                }
+            };
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        journal.close();
+
+        Set<String> exchanges = new HashSet<String>();
+        for (File segment : ApduJournalDecoder.listSegments(directory)) {
+            for (ApduJournalRecord record : ApduJournalDecoder.decode(segment)) {
+                assertEquals("9000", ByteArrayUtils.toHex(record.getResponse()));
+                exchanges.add(record.getReaderName() + ByteArrayUtils.toHex(record.getRequest()));
+            }
+        }
+        assertEquals(threads * perThread, exchanges.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void segmentTooSmall() throws IOException {
+        new MappedApduJournal(directory, 16, 0);
+    }
+}
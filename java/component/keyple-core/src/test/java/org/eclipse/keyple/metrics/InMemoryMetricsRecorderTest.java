@@ -0,0 +1,75 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+public class InMemoryMetricsRecorderTest {
+
+    @After
+    public void tearDown() {
+        Metrics.setRecorder(null);
+    }
+
+    @Test
+    public void perSourceHistograms() {
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        recorder.recordDuration("reader1", Metrics.APDU_EXCHANGE, 1000);
+        recorder.recordDuration("reader1", Metrics.APDU_EXCHANGE, 3000);
+        recorder.recordDuration("reader2", Metrics.APDU_EXCHANGE, 5000);
+        recorder.recordValue("reader2", "queue", 7);
+
+        assertEquals(2, recorder.getHistogram("reader1", Metrics.APDU_EXCHANGE).getCount());
+        assertEquals(3000, recorder.getHistogram("reader1", Metrics.APDU_EXCHANGE).getMax());
+        assertEquals(1, recorder.getHistogram("reader2", Metrics.APDU_EXCHANGE).getCount());
+        assertEquals(7, recorder.getHistogram("reader2", "queue").getMax());
+        assertNull(recorder.getHistogram("reader1", "queue"));
+        assertNull(recorder.getHistogram("reader3", Metrics.APDU_EXCHANGE));
+        assertEquals("[reader1, reader2]", recorder.getSources().toString());
+        assertEquals("[apdu.exchange, queue]", recorder.getHistogramNames("reader2").toString());
+    }
+
+    @Test
+    public void counters() {
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        recorder.incrementCounter("reader1", Metrics.APDU_ERRORS);
+        recorder.incrementCounter("reader1", Metrics.APDU_ERRORS);
+
+        assertEquals(2, recorder.getCounter("reader1", Metrics.APDU_ERRORS));
+        assertEquals(0, recorder.getCounter("reader1", Metrics.TRANSMIT_IO_ERRORS));
+        assertEquals(0, recorder.getCounter("reader2", Metrics.APDU_ERRORS));
+        assertEquals("[apdu.errors]", recorder.getCounterNames("reader1").toString());
+        assertTrue(recorder.getCounterNames("reader2").isEmpty());
+        assertTrue(recorder.toString().contains("reader1 apdu.errors: 2"));
+    }
+
+    @Test
+    public void reset() {
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        recorder.recordDuration("reader1", Metrics.SELECTION, 1000);
+        recorder.incrementCounter("reader1", Metrics.APDU_ERRORS);
+        recorder.reset();
+        assertTrue(recorder.getSources().isEmpty());
+    }
+
+    @Test
+    public void registration() {
+        assertFalse(Metrics.isEnabled());
+        assertNull(Metrics.getRecorder());
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        Metrics.setRecorder(recorder);
+        assertTrue(Metrics.isEnabled());
+        assertSame(recorder, Metrics.getRecorder());
+    }
+}
@@ -0,0 +1,119 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.metrics;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProbeTest {
+
+    InMemoryMetricsRecorder metrics;
+    List<String> spans;
+
+    @Before
+    public void setUp() {
+        metrics = new InMemoryMetricsRecorder();
+        spans = new ArrayList<String>();
+        Metrics.setRecorder(metrics);
+        Tracing.setTracer(new Tracer() {
+            @Override
+            public TraceSpan begin(final TraceEvent event) {
+                return new TraceSpan() {
+                    @Override
+                    public void end(String readerName, String detail, int bytesOut, int bytesIn,
+                            int statusWord, boolean success) {
+                        spans.add(event + " " + readerName + " " + detail + " " + bytesOut + " "
+                                + bytesIn + " " + statusWord + " " + success);
+                    }
+                };
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setRecorder(null);
+        Tracing.setTracer(null);
+    }
+
+    @Test
+    public void completedOperation() {
+        Probe probe = Probe.start("reader1", Metrics.APDU_EXCHANGE, Metrics.APDU_ERRORS,
+                TraceEvent.APDU_EXCHANGE);
+        probe.detail("Read Records").exchanged(5, 31, 0x9000).completed(true).end();
+
+        assertEquals(1, metrics.getHistogram("reader1", Metrics.APDU_EXCHANGE).getCount());
+        assertEquals(0, metrics.getCounter("reader1", Metrics.APDU_ERRORS));
+        assertEquals("[APDU_EXCHANGE reader1 Read Records 5 31 36864 true]", spans.toString());
+    }
+
+    @Test
+    public void interruptedOperationWithErrorCounter() {
+        Probe probe = Probe.start("reader1", Metrics.APDU_EXCHANGE, Metrics.APDU_ERRORS,
+                TraceEvent.APDU_EXCHANGE);
+        try {
+            throw new IllegalStateException("IO error");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            probe.end();
+        }
+
+        assertNull(metrics.getHistogram("reader1", Metrics.APDU_EXCHANGE));
+        assertEquals(1, metrics.getCounter("reader1", Metrics.APDU_ERRORS));
+        assertEquals("[APDU_EXCHANGE reader1 null 0 0 -1 false]", spans.toString());
+    }
+
+    @Test
+    public void interruptedOperationDurationIsRecorded() {
+        Probe probe = Probe.start("reader1", "session.opening", TraceEvent.SESSION_OPENING);
+        probe.detail("LOGIN").end();
+
+        assertEquals(1, metrics.getHistogram("reader1", "session.opening").getCount());
+        assertEquals("[SESSION_OPENING reader1 LOGIN 0 0 -1 false]", spans.toString());
+    }
+
+    @Test
+    public void failedOperation() {
+        Probe.start("reader1", Metrics.SELECTION, TraceEvent.LOGICAL_CHANNEL_OPEN).completed(false)
+                .end();
+
+        assertEquals(1, metrics.getHistogram("reader1", Metrics.SELECTION).getCount());
+        assertEquals("[LOGICAL_CHANNEL_OPEN reader1 null 0 0 -1 false]", spans.toString());
+    }
+
+    @Test
+    public void tracingOnly() {
+        Metrics.setRecorder(null);
+        Probe.start("reader1", null, TraceEvent.OBSERVER_DISPATCH).completed(true).end();
+
+        assertTrue(metrics.getSources().isEmpty());
+        assertEquals("[OBSERVER_DISPATCH reader1 null 0 0 -1 true]", spans.toString());
+    }
+
+    @Test
+    public void inactiveProbeIsShared() {
+        Metrics.setRecorder(null);
+        Tracing.setTracer(null);
+        Probe probe1 = Probe.start("reader1", Metrics.SELECTION, TraceEvent.LOGICAL_CHANNEL_OPEN);
+        Probe probe2 = Probe.start("reader2", Metrics.APDU_EXCHANGE, TraceEvent.APDU_EXCHANGE);
+        assertSame(probe1, probe2);
+        probe1.detail("detail").completed(true).end();
+
+        assertTrue(metrics.getSources().isEmpty());
+        assertTrue(spans.isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class BerTlvReaderTest {
+
+    private static final byte[] FCI = ByteArrayUtils.fromHex(
+            "6F25840BA000000291A00000019102A516BF0C13C70800000000C0E11FA653070A3C230C1410019000");
+
+    @Test
+    public void walk_fci() {
+        BerTlvReader tlv = new BerTlvReader(FCI, 0, FCI.length - 2);
+
+        assertTrue(tlv.next());
+        assertEquals(0x6F, tlv.getTag());
+        assertTrue(tlv.isConstructed());
+        assertEquals(2, tlv.getValueOffset());
+        assertEquals(0x25, tlv.getValueLength());
+        tlv.enter();
+
+        assertTrue(tlv.next());
+        assertEquals(0x84, tlv.getTag());
+        assertFalse(tlv.isConstructed());
+        assertEquals("A000000291A00000019102", ByteArrayUtils.toHex(tlv.getValue()));
+
+        assertTrue(tlv.next());
+        assertEquals(0xA5, tlv.getTag());
+        tlv.enter();
+        assertTrue(tlv.next());
+        assertEquals(0xBF0C, tlv.getTag());
+        assertTrue(tlv.isConstructed());
+        tlv.enter();
+        assertTrue(tlv.find(0x53));
+        assertEquals("0A3C230C141001", ByteArrayUtils.toHex(tlv.getValue()));
+        assertFalse(tlv.next());
+        assertFalse(tlv.isMalformed());
+    }
+
+    @Test
+    public void find_missingTag() {
+        BerTlvReader tlv = new BerTlvReader(FCI, 0, FCI.length - 2);
+        assertTrue(tlv.find(0x6F));
+        tlv.enter();
+        assertFalse(tlv.find(0xC7));
+        assertFalse(tlv.isMalformed());
+    }
+
+    @Test
+    public void longFormLengths() {
+        byte[] data = new byte[3 + 200 + 6 + 300];
+        data[0] = (byte) 0xC1;
+        data[1] = (byte) 0x81;
+        data[2] = (byte) 200;
+        data[3 + 200] = (byte) 0xDF;
+        data[4 + 200] = (byte) 0x81;
+        data[5 + 200] = (byte) 0x02;
+        data[6 + 200] = (byte) 0x82;
+        data[7 + 200] = (byte) 0x01;
+        data[8 + 200] = (byte) 0x2C;
+        BerTlvReader tlv = new BerTlvReader(data, 0, data.length);
+
+        assertTrue(tlv.next());
+        assertEquals(0xC1, tlv.getTag());
+        assertEquals(3, tlv.getValueOffset());
+        assertEquals(200, tlv.getValueLength());
+        assertTrue(tlv.next());
+        assertEquals(0xDF8102, tlv.getTag());
+        assertEquals(300, tlv.getValueLength());
+        assertFalse(tlv.next());
+    }
+
+    @Test
+    public void padding_skipped() {
+        byte[] data = ByteArrayUtils.fromHex("00FF8401AA0000C70155FF");
+        BerTlvReader tlv = new BerTlvReader(data, 0, data.length);
+        assertTrue(tlv.find(0xC7));
+        assertEquals(0x55, tlv.getValue()[0]);
+        assertFalse(tlv.next());
+        assertFalse(tlv.isMalformed());
+    }
+
+    @Test
+    public void malformed_lengthBeyondEnd() {
+        byte[] data = ByteArrayUtils.fromHex("84020102C705AABB");
+        BerTlvReader tlv = new BerTlvReader(data, 0, data.length);
+        assertTrue(tlv.next());
+        assertFalse(tlv.next());
+        assertTrue(tlv.isMalformed());
+        // stays at the end
+        assertFalse(tlv.find(0xC7));
+    }
+
+    @Test
+    public void malformed_truncatedHeaders() {
+        String[] headers = {"BF", "BF0C", "84", "8481", "8480", "84850000000001", "BF8F8F0100"};
+        for (String header : headers) {
+            byte[] data = ByteArrayUtils.fromHex(header);
+            BerTlvReader tlv = new BerTlvReader(data, 0, data.length);
+            assertFalse(header, tlv.next());
+            assertTrue(header, tlv.isMalformed());
+        }
+    }
+
+    @Test
+    public void reset_reusesReader() {
+        BerTlvReader tlv = new BerTlvReader(new byte[] {(byte) 0x84}, 0, 1);
+        assertFalse(tlv.next());
+        assertTrue(tlv.isMalformed());
+
+        tlv.reset(FCI, 4, 11);
+        assertFalse(tlv.isMalformed());
+        // value of the DF name read as a data object: A0 00 is a 0-length tag A0
+        assertTrue(tlv.next());
+        assertEquals(0xA0, tlv.getTag());
+        assertEquals(0, tlv.getValueLength());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reset_badRange() {
+        new BerTlvReader(FCI, 10, FCI.length);
+    }
+}
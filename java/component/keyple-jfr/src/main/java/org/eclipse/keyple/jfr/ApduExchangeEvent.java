@@ -0,0 +1,47 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.eclipse.keyple.ApduExchange")
+@Label("APDU Exchange")
+@Description("Exchange of an APDU with the SE, including the internal get response if any")
+@Category({"Keyple", "Reader"})
+final class ApduExchangeEvent extends KeypleEvent {
+
+    @Label("Command")
+    String command;
+
+    @Label("Request Length")
+    @DataAmount
+    int requestLength;
+
+    @Label("Response Length")
+    @DataAmount
+    int responseLength;
+
+    @Label("Status Word")
+    int statusWord;
+
+    @Override
+    void setFields(String detail, int bytesOut, int bytesIn, int statusWord) {
+        this.command = detail;
+        this.requestLength = bytesOut;
+        this.responseLength = bytesIn;
+        this.statusWord = statusWord;
+    }
+}
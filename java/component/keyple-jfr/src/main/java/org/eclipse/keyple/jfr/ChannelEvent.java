@@ -0,0 +1,51 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.jfr;
+
+import org.eclipse.keyple.metrics.TraceEvent;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.eclipse.keyple.Channel")
+@Label("Channel Operation")
+@Description("Opening or closing of the physical channel or of a logical channel")
+@Category({"Keyple", "Reader"})
+final class ChannelEvent extends KeypleEvent {
+
+    @Label("Operation")
+    final String operation;
+
+    @Label("Selection")
+    @Description("Extra information of the selector of the application")
+    String selection;
+
+    @Label("FCI Length")
+    @DataAmount
+    int fciLength;
+
+    @Label("Status Word")
+    int statusWord;
+
+    ChannelEvent(TraceEvent operation) {
+        this.operation = operation.name();
+    }
+
+    @Override
+    void setFields(String detail, int bytesOut, int bytesIn, int statusWord) {
+        this.selection = detail;
+        this.fciLength = bytesIn;
+        this.statusWord = statusWord;
+    }
+}
@@ -0,0 +1,28 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.eclipse.keyple.DefaultSelection")
+@Label("Default Selection")
+@Description("Processing of the default selection request when a SE is inserted, "
+        + "successful if a SE matched")
+@Category({"Keyple", "Reader"})
+final class DefaultSelectionEvent extends KeypleEvent {
+
+    @Override
+    void setFields(String detail, int bytesOut, int bytesIn, int statusWord) {}
+}
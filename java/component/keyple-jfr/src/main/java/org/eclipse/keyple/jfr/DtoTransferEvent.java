@@ -0,0 +1,46 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.jfr;
+
+import org.eclipse.keyple.metrics.TraceEvent;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.eclipse.keyple.DtoTransfer")
+@Label("Remote Method DTO")
+@Description("Sending of a remote method request or processing of its response")
+@Category({"Keyple", "Remote SE"})
+final class DtoTransferEvent extends KeypleEvent {
+
+    @Label("Direction")
+    final String direction;
+
+    @Label("Action")
+    String action;
+
+    @Label("Body Length")
+    @DataAmount
+    int bodyLength;
+
+    DtoTransferEvent(TraceEvent direction) {
+        this.direction = direction.name();
+    }
+
+    @Override
+    void setFields(String detail, int bytesOut, int bytesIn, int statusWord) {
+        this.action = detail;
+        this.bodyLength = bytesOut + bytesIn;
+    }
+}
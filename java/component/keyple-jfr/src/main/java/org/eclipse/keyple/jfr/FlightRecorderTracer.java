@@ -0,0 +1,92 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.jfr;
+
+import org.eclipse.keyple.metrics.TraceEvent;
+import org.eclipse.keyple.metrics.TraceSpan;
+import org.eclipse.keyple.metrics.Tracer;
+import org.eclipse.keyple.metrics.Tracing;
+import jdk.jfr.EventType;
+
+/**
+ * Tracer emitting Java Flight Recorder events, registered with
+ * {@link Tracing#enableFlightRecorder()}.
+ * <p>
+ * No event is created while no recording is running or when the kind of event is disabled in the
+ * recording settings, e.g. with <code>jfr configure</code> or
+ * <code>-XX:StartFlightRecording:settings=...</code>. The events are named
+ * <code>org.eclipse.keyple.*</code>.
+ */
+public final class FlightRecorderTracer implements Tracer {
+
+    private final EventType apduExchangeType = EventType.getEventType(ApduExchangeEvent.class);
+    private final EventType channelType = EventType.getEventType(ChannelEvent.class);
+    private final EventType defaultSelectionType =
+            EventType.getEventType(DefaultSelectionEvent.class);
+    private final EventType observerDispatchType =
+            EventType.getEventType(ObserverDispatchEvent.class);
+    private final EventType sessionPhaseType = EventType.getEventType(SessionPhaseEvent.class);
+    private final EventType dtoTransferType = EventType.getEventType(DtoTransferEvent.class);
+
+    public TraceSpan begin(TraceEvent event) {
+        KeypleEvent span;
+        switch (event) {
+            case APDU_EXCHANGE:
+                if (!apduExchangeType.isEnabled()) {
+                    return null;
+                }
+                span = new ApduExchangeEvent();
+                break;
+            case PHYSICAL_CHANNEL_OPEN:
+            case PHYSICAL_CHANNEL_CLOSE:
+            case LOGICAL_CHANNEL_OPEN:
+            case LOGICAL_CHANNEL_CLOSE:
+                if (!channelType.isEnabled()) {
+                    return null;
+                }
+                span = new ChannelEvent(event);
+                break;
+            case DEFAULT_SELECTION:
+                if (!defaultSelectionType.isEnabled()) {
+                    return null;
+                }
+                span = new DefaultSelectionEvent();
+                break;
+            case OBSERVER_DISPATCH:
+                if (!observerDispatchType.isEnabled()) {
+                    return null;
+                }
+                span = new ObserverDispatchEvent();
+                break;
+            case SESSION_OPENING:
+            case SESSION_COMMANDS:
+            case SESSION_CLOSING:
+            case SESSION_CANCEL:
+                if (!sessionPhaseType.isEnabled()) {
+                    return null;
+                }
+                span = new SessionPhaseEvent(event);
+                break;
+            case DTO_SEND:
+            case DTO_RECEIVE:
+                if (!dtoTransferType.isEnabled()) {
+                    return null;
+                }
+                span = new DtoTransferEvent(event);
+                break;
+            default:
+                return null;
+        }
+        span.begin();
+        return span;
+    }
+}
@@ -0,0 +1,47 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.jfr;
+
+import org.eclipse.keyple.metrics.TraceSpan;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the Keyple flight recorder events, the event is committed when the span is ended
+ */
+@Category("Keyple")
+@StackTrace(false)
+abstract class KeypleEvent extends jdk.jfr.Event implements TraceSpan {
+
+    @Label("Reader")
+    String readerName;
+
+    @Label("Successful")
+    boolean successful;
+
+    public final void end(String readerName, String detail, int bytesOut, int bytesIn,
+            int statusWord, boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.readerName = readerName;
+            this.successful = success;
+            setFields(detail, bytesOut, bytesIn, statusWord);
+            commit();
+        }
+    }
+
+    /**
+     * Set the fields specific to the kind of event, see {@link TraceSpan#end}
+     */
+    abstract void setFields(String detail, int bytesOut, int bytesIn, int statusWord);
+}
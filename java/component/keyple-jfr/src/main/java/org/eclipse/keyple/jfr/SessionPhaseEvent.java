@@ -0,0 +1,44 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.jfr;
+
+import org.eclipse.keyple.metrics.TraceEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.eclipse.keyple.SessionPhase")
+@Label("Session Phase")
+@Description("Opening, commands processing, closing or cancellation of a Calypso secure session")
+@Category({"Keyple", "Calypso"})
+final class SessionPhaseEvent extends KeypleEvent {
+
+    @Label("Phase")
+    final String phase;
+
+    @Label("Access Level")
+    String accessLevel;
+
+    @Label("Status Word")
+    int statusWord;
+
+    SessionPhaseEvent(TraceEvent phase) {
+        this.phase = phase.name();
+    }
+
+    @Override
+    void setFields(String detail, int bytesOut, int bytesIn, int statusWord) {
+        this.accessLevel = detail;
+        this.statusWord = statusWord;
+    }
+}
@@ -0,0 +1,102 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.jfr;
+
+import static org.junit.Assert.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.eclipse.keyple.metrics.TraceEvent;
+import org.eclipse.keyple.metrics.TraceSpan;
+import org.eclipse.keyple.metrics.Tracing;
+import org.junit.After;
+import org.junit.Test;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderTracerTest {
+
+    @After
+    public void tearDown() {
+        Tracing.setTracer(null);
+    }
+
+    @Test
+    public void enableFlightRecorder() {
+        assertTrue(Tracing.enableFlightRecorder());
+        assertTrue(Tracing.getTracer() instanceof FlightRecorderTracer);
+    }
+
+    @Test
+    public void noSpanWithoutRecording() {
+        FlightRecorderTracer tracer = new FlightRecorderTracer();
+        for (TraceEvent event : TraceEvent.values()) {
+            assertNull(tracer.begin(event));
+        }
+    }
+
+    @Test
+    public void recordedEvents() throws Exception {
+        FlightRecorderTracer tracer = new FlightRecorderTracer();
+        List<RecordedEvent> events;
+        Recording recording = new Recording();
+        try {
+            recording.enable(ApduExchangeEvent.class);
+            recording.enable(SessionPhaseEvent.class);
+            recording.disable(ObserverDispatchEvent.class);
+            recording.start();
+
+            tracer.begin(TraceEvent.APDU_EXCHANGE).end("reader1", "Read Records", 5, 31, 0x9000,
+                    true);
+            tracer.begin(TraceEvent.SESSION_CLOSING).end("reader1", "SESSION_LVL_DEBIT", 0, 0,
+                    0x6988, false);
+            // not enabled in the recording
+            assertNull(tracer.begin(TraceEvent.OBSERVER_DISPATCH));
+
+            recording.stop();
+            Path file = Files.createTempFile("keyple", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        } finally {
+            recording.close();
+        }
+
+        assertEquals(2, events.size());
+        RecordedEvent apdu = events.get(0);
+        assertEquals("org.eclipse.keyple.ApduExchange", apdu.getEventType().getName());
+        assertEquals("reader1", apdu.getString("readerName"));
+        assertEquals("Read Records", apdu.getString("command"));
+        assertEquals(5, apdu.getInt("requestLength"));
+        assertEquals(31, apdu.getInt("responseLength"));
+        assertEquals(0x9000, apdu.getInt("statusWord"));
+        assertTrue(apdu.getBoolean("successful"));
+
+        RecordedEvent closing = events.get(1);
+        assertEquals("org.eclipse.keyple.SessionPhase", closing.getEventType().getName());
+        assertEquals("SESSION_CLOSING", closing.getString("phase"));
+        assertEquals("SESSION_LVL_DEBIT", closing.getString("accessLevel"));
+        assertEquals(0x6988, closing.getInt("statusWord"));
+        assertFalse(closing.getBoolean("successful"));
+    }
+
+    @Test
+    public void spanIgnoresNotRelevantArguments() {
+        TraceSpan span = new DefaultSelectionEvent();
+        // no recording running: nothing committed, no failure
+        span.end(null, null, 0, 0, TraceSpan.NO_STATUS_WORD, true);
+    }
+}
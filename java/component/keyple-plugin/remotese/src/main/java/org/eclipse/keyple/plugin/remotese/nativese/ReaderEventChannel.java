@@ -0,0 +1,359 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.remotese.nativese;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.metrics.MetricsRecorder;
+import org.eclipse.keyple.plugin.remotese.exception.KeypleRemoteException;
+import org.eclipse.keyple.plugin.remotese.rm.RemoteMethod;
+import org.eclipse.keyple.plugin.remotese.transport.DtoSender;
+import org.eclipse.keyple.plugin.remotese.transport.RemoteSeMetrics;
+import org.eclipse.keyple.plugin.remotese.transport.json.JsonParser;
+import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
+import org.eclipse.keyple.seproxy.event.ReaderEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Asynchronous channel streaming the reader events of a {@link SlaveAPI} to the master.
+ * <p>
+ * Events are queued by the monitoring threads of the native readers, which never block, and sent
+ * by a dedicated thread in READER_EVENT_BATCH frames of at most maxBatchSize events.
+ * <p>
+ * Flow control is credit based: each frame consumes one credit and the master grants credits back
+ * in the response of each frame it has processed. When no credit is left, events keep being queued
+ * and coalesced until the master catches up. The number of queued events is bounded by
+ * maxPendingEvents, new events are dropped beyond this limit. The events of a frame that could not
+ * be sent are dropped as well.
+ * <p>
+ * The support of READER_EVENT_BATCH is declared by the master in its response to READER_CONNECT.
+ * The events are kept queued until the master has answered a READER_CONNECT, a master that does
+ * not declare the support gets the events one by one in READER_EVENT requests, without flow
+ * control.
+ * <p>
+ * The sending thread runs until {@link #close()} is called.
+ */
+public class ReaderEventChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReaderEventChannel.class);
+
+    /**
+     * Policy applied to presence flapping, i.e. a SE inserted then removed before its insertion
+     * event has been sent
+     */
+    public enum FlappingPolicy {
+        /**
+         * all events are sent in order
+         */
+        KEEP_ALL,
+        /**
+         * the insertion and the removal events cancel each other, the master never sees the SE
+         */
+        MERGE
+    }
+
+    private final int maxBatchSize;
+    private final int maxPendingEvents;
+    private final FlappingPolicy flappingPolicy;
+
+    private final LinkedList<PendingEvent> pendingEvents;
+    // last pending event of each reader, used to merge flapping events
+    private final Map<String, PendingEvent> lastPendingEvents;
+    private int credits;
+    private int droppedEvents;
+    private int mergedEvents;
+    // support of READER_EVENT_BATCH by the master, null until a READER_CONNECT has been answered
+    private Boolean batchSupported;
+
+    private DtoSender dtoSender;
+    private String masterNodeId;
+    private Thread senderThread;
+    private boolean closed;
+
+    /**
+     * Create a reader event channel, to be provided to the {@link SlaveAPI}
+     *
+     * @param maxBatchSize : max number of events in a frame
+     * @param credits : number of frames that can be sent before being acknowledged by the master
+     * @param maxPendingEvents : max number of events waiting to be sent
+     * @param flappingPolicy : policy applied to presence flapping
+     */
+    public ReaderEventChannel(int maxBatchSize, int credits, int maxPendingEvents,
+            FlappingPolicy flappingPolicy) {
+        if (maxBatchSize < 1 || credits < 1 || maxPendingEvents < 1) {
+            throw new IllegalArgumentException(
+                    "maxBatchSize, credits and maxPendingEvents must be positive");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.credits = credits;
+        this.maxPendingEvents = maxPendingEvents;
+        this.flappingPolicy = flappingPolicy;
+        this.pendingEvents = new LinkedList<PendingEvent>();
+        this.lastPendingEvents = new HashMap<String, PendingEvent>();
+    }
+
+    /**
+     * Bind the channel to the link with the master and start the sending thread (called by
+     * {@link SlaveAPI})
+     *
+     * @param dtoSender : outgoing node
+     * @param masterNodeId : master node id
+     */
+    synchronized void bind(DtoSender dtoSender, String masterNodeId) {
+        if (closed) {
+            throw new IllegalStateException("ReaderEventChannel is closed");
+        }
+        if (senderThread != null) {
+            throw new IllegalStateException("ReaderEventChannel is already bound");
+        }
+        this.dtoSender = dtoSender;
+        this.masterNodeId = masterNodeId;
+        this.senderThread = new Thread("reader-event-channel-" + dtoSender.getNodeId()) {
+            @Override
+            public void run() {
+                sendLoop();
+            }
+        };
+        senderThread.setDaemon(true);
+        senderThread.start();
+    }
+
+    /**
+     * Stop the sending thread, the pending and the next events are dropped
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (senderThread != null) {
+            senderThread.interrupt();
+            senderThread = null;
+        }
+        droppedEvents += pendingEvents.size();
+        pendingEvents.clear();
+        lastPendingEvents.clear();
+        logger.debug("Reader event channel closed");
+    }
+
+    /**
+     * Queue a reader event, never blocks
+     *
+     * @param readerName : native reader name
+     * @param eventType : type of the event
+     * @param data : json representation of the event
+     * @return false if the event was dropped
+     */
+    synchronized boolean offer(String readerName, ReaderEvent.EventType eventType,
+            JsonObject data) {
+        if (closed) {
+            droppedEvents++;
+            logger.debug("Reader event channel is closed, drop event {} of reader {}", eventType,
+                    readerName);
+            return false;
+        }
+
+        if (flappingPolicy == FlappingPolicy.MERGE
+                && eventType == ReaderEvent.EventType.SE_REMOVAL) {
+            PendingEvent last = lastPendingEvents.get(readerName);
+            if (last != null && (last.eventType == ReaderEvent.EventType.SE_INSERTED
+                    || last.eventType == ReaderEvent.EventType.SE_MATCHED)) {
+                // the master has not been told about this SE yet
+                pendingEvents.remove(last);
+                lastPendingEvents.remove(readerName);
+                mergedEvents += 2;
+                logger.trace("Merge flapping events of reader {}", readerName);
+                return true;
+            }
+        }
+
+        if (pendingEvents.size() >= maxPendingEvents) {
+            droppedEvents++;
+            logger.warn("Reader event channel is full, drop event {} of reader {}", eventType,
+                    readerName);
+            return false;
+        }
+
+        PendingEvent pendingEvent = new PendingEvent(readerName, eventType, data);
+        pendingEvents.add(pendingEvent);
+        lastPendingEvents.put(readerName, pendingEvent);
+        MetricsRecorder metrics = Metrics.getRecorder();
+        if (metrics != null) {
+            metrics.recordValue(readerName, RemoteSeMetrics.EVENT_QUEUE_DEPTH,
+                    pendingEvents.size());
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Credits granted back by the master (called by {@link SlaveAPI})
+     *
+     * @param grantedCredits : number of frames the channel can send
+     */
+    synchronized void grantCredits(int grantedCredits) {
+        credits += grantedCredits;
+        notifyAll();
+    }
+
+    /**
+     * Support of READER_EVENT_BATCH declared by the master in its response to READER_CONNECT
+     * (called by {@link SlaveAPI})
+     *
+     * @param batchSupported : false if the events have to be sent one by one
+     */
+    synchronized void setBatchSupported(boolean batchSupported) {
+        if (this.batchSupported == null || this.batchSupported != batchSupported) {
+            logger.info("Master {} {} READER_EVENT_BATCH", masterNodeId,
+                    batchSupported ? "supports" : "does not support");
+            this.batchSupported = batchSupported;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return number of events waiting to be sent
+     */
+    public synchronized int getPendingEventCount() {
+        return pendingEvents.size();
+    }
+
+    /**
+     * @return number of events dropped because the channel was full, because they could not be
+     *         sent or because the channel was closed
+     */
+    public synchronized int getDroppedEventCount() {
+        return droppedEvents;
+    }
+
+    /**
+     * @return number of events merged by the {@link FlappingPolicy#MERGE} policy
+     */
+    public synchronized int getMergedEventCount() {
+        return mergedEvents;
+    }
+
+    /**
+     * Wait for pending events and, when the master supports READER_EVENT_BATCH, for a credit, then
+     * build the next frame
+     * <p>
+     * The frame holds a single event when the master does not support READER_EVENT_BATCH.
+     */
+    private synchronized Frame takeFrame() throws InterruptedException {
+        while (pendingEvents.isEmpty() || batchSupported == null
+                || (batchSupported && credits == 0)) {
+            wait();
+        }
+        int batchSize = maxBatchSize;
+        if (batchSupported) {
+            credits--;
+        } else {
+            batchSize = 1;
+        }
+        List<PendingEvent> batch = new LinkedList<PendingEvent>();
+        while (!pendingEvents.isEmpty() && batch.size() < batchSize) {
+            PendingEvent pendingEvent = pendingEvents.removeFirst();
+            if (lastPendingEvents.get(pendingEvent.readerName) == pendingEvent) {
+                lastPendingEvents.remove(pendingEvent.readerName);
+            }
+            batch.add(pendingEvent);
+        }
+        return new Frame(batch, batchSupported);
+    }
+
+    /**
+     * Count the events of a frame that could not be sent, the frame will never be acknowledged
+     */
+    private synchronized void frameLost(Frame frame) {
+        droppedEvents += frame.events.size();
+        for (PendingEvent pendingEvent : frame.events) {
+            logger.warn("Event {} of reader {} is lost", pendingEvent.eventType,
+                    pendingEvent.readerName);
+        }
+        if (frame.batched) {
+            credits++;
+            notifyAll();
+        }
+    }
+
+    private void sendLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Frame frame = takeFrame();
+
+                KeypleDto dto;
+                if (frame.batched) {
+                    JsonArray events = new JsonArray();
+                    for (PendingEvent pendingEvent : frame.events) {
+                        events.add(pendingEvent.data);
+                    }
+                    JsonObject body = new JsonObject();
+                    body.add("events", events);
+                    dto = new KeypleDto(RemoteMethod.READER_EVENT_BATCH.getName(),
+                            JsonParser.getGson().toJson(body, JsonObject.class), true, null, null,
+                            null, dtoSender.getNodeId(), masterNodeId);
+                } else {
+                    PendingEvent pendingEvent = frame.events.get(0);
+                    dto = new KeypleDto(RemoteMethod.READER_EVENT.getName(),
+                            JsonParser.getGson().toJson(pendingEvent.data, JsonObject.class),
+                            true, null, pendingEvent.readerName, null, dtoSender.getNodeId(),
+                            masterNodeId);
+                }
+
+                try {
+                    dtoSender.sendDTO(dto);
+                } catch (KeypleRemoteException e) {
+                    logger.error("A frame of " + frame.events.size()
+                            + " events could not be sent though Remote Service Interface", e);
+                    frameLost(frame);
+                } catch (RuntimeException e) {
+                    logger.error("A frame of " + frame.events.size() + " events could not be sent",
+                            e);
+                    frameLost(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.debug("Reader event channel thread was interrupted");
+        }
+    }
+
+    /**
+     * Events sent in a READER_EVENT_BATCH request, or a single event sent in a READER_EVENT request
+     */
+    private static final class Frame {
+        private final List<PendingEvent> events;
+        private final boolean batched;
+
+        Frame(List<PendingEvent> events, boolean batched) {
+            this.events = events;
+            this.batched = batched;
+        }
+    }
+
+    private static final class PendingEvent {
+        private final String readerName;
+        private final ReaderEvent.EventType eventType;
+        private final JsonObject data;
+
+        PendingEvent(String readerName, ReaderEvent.EventType eventType, JsonObject data) {
+            this.readerName = readerName;
+            this.eventType = eventType;
+            this.data = data;
+        }
+    }
+}
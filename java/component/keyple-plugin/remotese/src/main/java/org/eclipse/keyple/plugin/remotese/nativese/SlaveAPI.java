@@ -12,6 +12,8 @@
 package org.eclipse.keyple.plugin.remotese.nativese;
 
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.keyple.plugin.remotese.exception.KeypleRemoteException;
 import org.eclipse.keyple.plugin.remotese.nativese.method.*;
 import org.eclipse.keyple.plugin.remotese.rm.RemoteMethod;
@@ -29,9 +31,12 @@ import org.eclipse.keyple.seproxy.event.ReaderEvent;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderNotFoundException;
 import org.eclipse.keyple.seproxy.message.ProxyReader;
+import org.eclipse.keyple.seproxy.message.SeRequestSet;
+import org.eclipse.keyple.seproxy.message.SeResponseSet;
 import org.eclipse.keyple.seproxy.plugin.AbstractObservableReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.google.gson.JsonObject;
 
 
 /**
@@ -46,6 +51,8 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
     private final SeProxyService seProxyService;
     private final RemoteMethodTxEngine rmTxEngine;// rm command processor
     private final String masterNodeId;// master node id to connect to
+    private final Map<String, SeRequestSet> readPlans;// read plans by native reader name
+    private final ReaderEventChannel eventChannel;// null if events are sent synchronously
 
     /**
      * Constructor
@@ -53,10 +60,28 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
      * @param dtoNode : Define which DTO sender will be called when a DTO needs to be sent.
      */
     public SlaveAPI(SeProxyService seProxyService, DtoNode dtoNode, String masterNodeId) {
+        this(seProxyService, dtoNode, masterNodeId, null);
+    }
+
+    /**
+     * Constructor with a reader event channel, reader events are then sent asynchronously in
+     * batches
+     *
+     * @param dtoNode : Define which DTO sender will be called when a DTO needs to be sent.
+     * @param eventChannel : channel streaming the reader events to the master, null to send each
+     *        event synchronously from the monitoring thread of the reader
+     */
+    public SlaveAPI(SeProxyService seProxyService, DtoNode dtoNode, String masterNodeId,
+            ReaderEventChannel eventChannel) {
         this.seProxyService = seProxyService;
         this.dtoNode = dtoNode;
         this.rmTxEngine = new RemoteMethodTxEngine(dtoNode);
         this.masterNodeId = masterNodeId;
+        this.readPlans = new ConcurrentHashMap<String, SeRequestSet>();
+        this.eventChannel = eventChannel;
+        if (eventChannel != null) {
+            eventChannel.bind(dtoNode, masterNodeId);
+        }
 
 
         this.bindDtoEndpoint(dtoNode);
@@ -84,7 +109,10 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
         KeypleDto keypleDTO = transportDto.getKeypleDTO();
         TransportDto out;
 
-        logger.trace("onDto {}", KeypleDtoHelper.toJson(keypleDTO));
+        if (logger.isTraceEnabled()) {
+            // do not serialize the dto payload unless needed
+            logger.trace("onDto {}", KeypleDtoHelper.toJson(keypleDTO));
+        }
 
         RemoteMethod method = RemoteMethod.get(keypleDTO.getAction());
         logger.debug("Remote Method called : {} - isRequest : {}", method, keypleDTO.isRequest());
@@ -104,8 +132,9 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
             case READER_DISCONNECT:
                 // process READER_DISCONNECT response
                 if (keypleDTO.isRequest()) {
-                    throw new IllegalStateException(
-                            "a READER_DISCONNECT request has been received by SlaveAPI");
+                    // the master has expired the session of the reader
+                    onSessionExpired(keypleDTO.getSessionId(), keypleDTO.getNativeReaderName());
+                    out = transportDto.nextTransportDTO(KeypleDtoHelper.NoResponse());
                 } else {
                     // send DTO to TxEngine
                     out = this.rmTxEngine.onDTO(transportDto);
@@ -136,6 +165,21 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
                 }
                 break;
 
+            case READER_EVENT_BATCH:
+                // process READER_EVENT_BATCH acknowledgement
+                if (keypleDTO.isRequest()) {
+                    throw new IllegalStateException(
+                            "a READER_EVENT_BATCH request has been received by SlaveAPI");
+                } else {
+                    if (eventChannel != null) {
+                        JsonObject body = JsonParser.getGson().fromJson(keypleDTO.getBody(),
+                                JsonObject.class);
+                        eventChannel.grantCredits(body.get("credits").getAsInt());
+                    }
+                    out = transportDto.nextTransportDTO(KeypleDtoHelper.NoResponse());
+                }
+                break;
+
             default:
                 logger.warn("**** ERROR - UNRECOGNIZED ****");
                 logger.warn("Receive unrecognized message action : {} {} {} {}",
@@ -145,7 +189,10 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
                         "a  ERROR - UNRECOGNIZED request has been received by SlaveAPI");
         }
 
-        logger.trace("onDto response to be sent {}", KeypleDtoHelper.toJson(out.getKeypleDTO()));
+        if (logger.isTraceEnabled()) {
+            logger.trace("onDto response to be sent {}",
+                    KeypleDtoHelper.toJson(out.getKeypleDTO()));
+        }
         return out;
 
 
@@ -166,7 +213,11 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
                 masterNodeId, localReader, dtoNode.getNodeId(), this);
         try {
             rmTxEngine.register(connect);
-            return connect.get();
+            String sessionId = connect.get();
+            if (eventChannel != null) {
+                eventChannel.setBatchSupported(connect.isEventBatchSupported());
+            }
+            return sessionId;
         } catch (KeypleRemoteException e) {
             throw new KeypleReaderException("An error occurred while calling connectReader", e);
         }
@@ -184,6 +235,7 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
         try {
             rmTxEngine.register(disconnect);
             disconnect.get();
+            readPlans.remove(nativeReaderName);
             ProxyReader nativeReader = findLocalReader(nativeReaderName);
             if (nativeReader instanceof AbstractObservableReader) {
                 // stop propagating the local reader events
@@ -196,6 +248,29 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
         }
     }
 
+    /**
+     * Stop propagating the events of a native reader whose session has expired on the master
+     * <p>
+     * The reader has to be connected again with {@link #connectReader(ProxyReader)} to be used by
+     * the master.
+     *
+     * @param sessionId : expired session
+     * @param nativeReaderName : name of the native reader
+     */
+    private void onSessionExpired(String sessionId, String nativeReaderName) {
+        logger.info("Session {} of native reader {} has expired on the master", sessionId,
+                nativeReaderName);
+        readPlans.remove(nativeReaderName);
+        try {
+            ProxyReader nativeReader = findLocalReader(nativeReaderName);
+            if (nativeReader instanceof AbstractObservableReader) {
+                ((AbstractObservableReader) nativeReader).removeObserver(this);
+            }
+        } catch (KeypleReaderNotFoundException e) {
+            logger.warn("Expired native reader {} not found", nativeReaderName);
+        }
+    }
+
     /**
      * Internal method to find a local reader by its name across multiple plugins
      * 
@@ -217,6 +292,24 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
         throw new KeypleReaderNotFoundException(nativeReaderName);
     }
 
+    /**
+     * Register the read plan of a native reader (called when the master sets the default selection
+     * request). The read plan is executed locally each time a SE matches the default selection,
+     * its responses are pushed to the master with the READER_EVENT.
+     *
+     * @param nativeReaderName : name of the native reader
+     * @param readPlan : SeRequestSet to be executed in the logical channel left open by the
+     *        default selection, null removes the current read plan
+     */
+    public void setReadPlan(String nativeReaderName, SeRequestSet readPlan) {
+        if (readPlan == null) {
+            readPlans.remove(nativeReaderName);
+        } else {
+            logger.debug("Register a read plan for native reader {}", nativeReaderName);
+            readPlans.put(nativeReaderName, readPlan);
+        }
+    }
+
     /**
      * Do not call this method directly This method is called by a
      * Observable&lt;{@link ReaderEvent}&gt;
@@ -229,10 +322,27 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
                 event.getEventType());
 
         // construct json data
-        String data = JsonParser.getGson().toJson(event);
+        JsonObject data = JsonParser.getGson().toJsonTree(event).getAsJsonObject();
+
+        // piggyback the read plan responses if the SE matched the default selection
+        SeRequestSet readPlan = readPlans.get(event.getReaderName());
+        if (readPlan != null && event.getEventType() == ReaderEvent.EventType.SE_MATCHED) {
+            SeResponseSet readPlanResponse = executeReadPlan(event.getReaderName(), readPlan);
+            if (readPlanResponse != null) {
+                data.addProperty("readPlanResponse",
+                        JsonParser.getGson().toJson(readPlanResponse, SeResponseSet.class));
+            }
+        }
+
+        if (eventChannel != null) {
+            // queue the event, the monitoring thread is not blocked
+            eventChannel.offer(event.getReaderName(), event.getEventType(), data);
+            return;
+        }
 
         try {
-            dtoNode.sendDTO(new KeypleDto(RemoteMethod.READER_EVENT.getName(), data, true, null,
+            dtoNode.sendDTO(new KeypleDto(RemoteMethod.READER_EVENT.getName(),
+                    JsonParser.getGson().toJson(data, JsonObject.class), true, null,
                     event.getReaderName(), null, this.dtoNode.getNodeId(), masterNodeId));
         } catch (KeypleRemoteException e) {
             logger.error("Event " + event.toString()
@@ -240,5 +350,23 @@ public class SlaveAPI implements INativeReaderService, DtoHandler, ObservableRea
         }
     }
 
+    /**
+     * Execute locally the read plan of a native reader
+     *
+     * @param nativeReaderName : name of the native reader
+     * @param readPlan : SeRequestSet to be transmitted
+     * @return the SeResponseSet or null if the read plan could not be executed (the event is then
+     *         sent without it and the master falls back on regular transmissions)
+     */
+    private SeResponseSet executeReadPlan(String nativeReaderName, SeRequestSet readPlan) {
+        try {
+            return findLocalReader(nativeReaderName).transmitSet(readPlan);
+        } catch (KeypleReaderException e) {
+            logger.warn("Read plan could not be executed on native reader {} : {}",
+                    nativeReaderName, e.getMessage());
+            return null;
+        }
+    }
+
 
 }
@@ -32,6 +32,8 @@ public class RmConnectReaderTx extends RemoteMethodTx<String> {
 
     private final ProxyReader localReader;
     private final INativeReaderService slaveAPI;
+    // support of READER_EVENT_BATCH declared by the master
+    private boolean eventBatchSupported;
 
 
     public RmConnectReaderTx(String sessionId, String nativeReaderName, String virtualReaderName,
@@ -76,6 +78,10 @@ public class RmConnectReaderTx extends RemoteMethodTx<String> {
                 JsonObject body =
                         JsonParser.getGson().fromJson(keypleDto.getBody(), JsonObject.class);
 
+                // absent from the response of a master that does not support it
+                eventBatchSupported = body.has("eventBatchSupported")
+                        && body.get("eventBatchSupported").getAsBoolean();
+
                 // sessionId is returned here
                 return body.get("sessionId").getAsString();
 
@@ -88,6 +94,13 @@ public class RmConnectReaderTx extends RemoteMethodTx<String> {
         }
     }
 
+    /**
+     * @return true if the master declared the support of READER_EVENT_BATCH in its response
+     */
+    public boolean isEventBatchSupported() {
+        return eventBatchSupported;
+    }
+
     @Override
     public KeypleDto dto() {
         return new KeypleDto(RemoteMethod.READER_CONNECT.getName(), "{}", true, null,
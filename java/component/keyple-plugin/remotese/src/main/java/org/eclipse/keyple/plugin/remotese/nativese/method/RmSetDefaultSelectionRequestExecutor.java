@@ -22,6 +22,7 @@ import org.eclipse.keyple.seproxy.event.DefaultSelectionRequest;
 import org.eclipse.keyple.seproxy.event.ObservableReader;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
 import org.eclipse.keyple.seproxy.message.ProxyReader;
+import org.eclipse.keyple.seproxy.message.SeRequestSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.google.gson.JsonObject;
@@ -59,6 +60,14 @@ public class RmSetDefaultSelectionRequestExecutor implements RemoteMethodExecuto
         ObservableReader.NotificationMode notificationMode =
                 ObservableReader.NotificationMode.get(notificationModeJson.getAsString());
 
+        // optional read plan to be executed when the SE matches the default selection
+        SeRequestSet readPlan = null;
+        if (jsonObject.has("readPlan")) {
+            readPlan = JsonParser.getGson().fromJson(
+                    jsonObject.getAsJsonPrimitive("readPlan").getAsString(), SeRequestSet.class);
+            logger.trace("Read Plan : {}", readPlan);
+        }
+
         String nativeReaderName = keypleDto.getNativeReaderName();
         logger.trace("Execute locally SetDefaultSelectionRequest : {} - {}", notificationMode,
                 defaultSelectionRequest);
@@ -73,6 +82,9 @@ public class RmSetDefaultSelectionRequestExecutor implements RemoteMethodExecuto
                 ((ObservableReader) reader).setDefaultSelectionRequest(defaultSelectionRequest,
                         notificationMode);
 
+                // register (or clear) the read plan for this reader
+                slaveAPI.setReadPlan(nativeReaderName, readPlan);
+
                 // prepare response
                 String parseBody = "{}";
                 return transportDto.nextTransportDTO(
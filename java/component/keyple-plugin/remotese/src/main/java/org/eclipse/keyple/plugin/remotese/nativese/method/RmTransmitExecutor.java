@@ -42,8 +42,13 @@ public class RmTransmitExecutor implements RemoteMethodExecutor {
         SeResponseSet seResponseSet = null;
 
         // Extract info from keypleDto
-        SeRequestSet seRequestSet =
-                JsonParser.getGson().fromJson(keypleDto.getBody(), SeRequestSet.class);
+        SeRequestSet seRequestSet;
+        if (keypleDto.getPayload() instanceof SeRequestSet) {
+            // handed over by an in-JVM transport
+            seRequestSet = (SeRequestSet) keypleDto.getPayload();
+        } else {
+            seRequestSet = JsonParser.getGson().fromJson(keypleDto.getBody(), SeRequestSet.class);
+        }
         String nativeReaderName = keypleDto.getNativeReaderName();
         logger.trace("Execute locally seRequestSet : {}", seRequestSet);
 
@@ -54,12 +59,11 @@ public class RmTransmitExecutor implements RemoteMethodExecutor {
             // execute transmitSet
             seResponseSet = reader.transmitSet(seRequestSet);
 
-            // prepare response
-            String parseBody = JsonParser.getGson().toJson(seResponseSet, SeResponseSet.class);
-            out = transportDto
-                    .nextTransportDTO(new KeypleDto(RemoteMethod.READER_TRANSMIT.getName(),
-                            parseBody, false, keypleDto.getSessionId(), nativeReaderName,
-                            keypleDto.getVirtualReaderName(), keypleDto.getRequesterNodeId()));
+            // prepare response, only serialized if the transport needs it
+            out = transportDto.nextTransportDTO(KeypleDto.withPayload(
+                    RemoteMethod.READER_TRANSMIT.getName(), seResponseSet, false,
+                    keypleDto.getSessionId(), nativeReaderName, keypleDto.getVirtualReaderName(),
+                    keypleDto.getRequesterNodeId(), null));
 
         } catch (KeypleReaderException e) {
             // if an exception occurs, send it into a keypleDto to the Master
@@ -17,8 +17,6 @@ import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
 import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDtoHelper;
 import org.eclipse.keyple.plugin.remotese.transport.model.TransportDto;
 import org.eclipse.keyple.seproxy.SeProxyService;
-import org.eclipse.keyple.seproxy.SeReader;
-import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,13 +45,35 @@ public class MasterAPI implements DtoHandler {
      * @param dtoNode : outgoing node to send Dto to Slave
      */
     public MasterAPI(SeProxyService seProxyService, DtoNode dtoNode) {
+        this(seProxyService, dtoNode, 0, 0);
+    }
+
+    /**
+     * Build a new MasterAPI whose idle sessions are passivated and expired
+     * <p>
+     * A passivated virtual reader is removed from the plugin readers list and notified as
+     * disconnected until a Dto is received for its session, only readers without observers are
+     * passivated. An expired session is disconnected as if the slave had disconnected its reader,
+     * the slave is then notified so it stops sending the reader events.
+     * <p>
+     * The idle sessions are checked by a timer thread, stopped by {@link #shutdown()}.
+     *
+     * @param seProxyService : SeProxyService
+     * @param dtoNode : outgoing node to send Dto to Slave
+     * @param passivationDelay : idle time in milliseconds before a virtual reader is passivated
+     *        (0 to disable)
+     * @param sessionTimeout : idle time in milliseconds before a session expires (0 to disable)
+     */
+    public MasterAPI(SeProxyService seProxyService, DtoNode dtoNode, long passivationDelay,
+            long sessionTimeout) {
         this.dtoTransportNode = dtoNode;
 
         // Instantiate Session Manager
         VirtualReaderSessionFactory sessionManager = new VirtualReaderSessionFactory();
 
         // Instantiate Plugin
-        this.plugin = new RemoteSePlugin(sessionManager, dtoNode);
+        this.plugin = new RemoteSePlugin(sessionManager, dtoNode, passivationDelay,
+                sessionTimeout);
         seProxyService.addPlugin(this.plugin);
 
         // Set this service as the Dto Handler for the node
@@ -78,6 +98,14 @@ public class MasterAPI implements DtoHandler {
         return plugin;
     }
 
+    /**
+     * Stop the background activity of the Master API (the idle sessions checks), the virtual
+     * readers are kept
+     */
+    public void shutdown() {
+        plugin.shutdown();
+    }
+
     /**
      * Handles incoming transportDTO
      * 
@@ -89,8 +117,11 @@ public class MasterAPI implements DtoHandler {
 
         KeypleDto keypleDTO = transportDto.getKeypleDTO();
         RemoteMethod method = RemoteMethod.get(keypleDTO.getAction());
-        logger.trace("onDTO, Remote Method called : {} - isRequest : {} - keypleDto : {}", method,
-                keypleDTO.isRequest(), KeypleDtoHelper.toJson(keypleDTO));
+        if (logger.isTraceEnabled()) {
+            // do not serialize the dto payload unless needed
+            logger.trace("onDTO, Remote Method called : {} - isRequest : {} - keypleDto : {}",
+                    method, keypleDTO.isRequest(), KeypleDtoHelper.toJson(keypleDTO));
+        }
 
 
         switch (method) {
@@ -111,6 +142,13 @@ public class MasterAPI implements DtoHandler {
                 }
             case READER_EVENT:
                 return new RmEventExecutor(plugin).execute(transportDto);
+            case READER_EVENT_BATCH:
+                if (keypleDTO.isRequest()) {
+                    return new RmEventBatchExecutor(plugin).execute(transportDto);
+                } else {
+                    throw new IllegalStateException(
+                            "a READER_EVENT_BATCH response has been received by MasterAPI");
+                }
             case READER_TRANSMIT:
                 // can be more general
                 if (keypleDTO.isRequest()) {
@@ -120,7 +158,8 @@ public class MasterAPI implements DtoHandler {
                     // dispatch dto to the appropriate reader
                     try {
                         // find reader by sessionId
-                        VirtualReader reader = getReaderBySessionId(keypleDTO.getSessionId());
+                        VirtualReader reader =
+                                plugin.getReaderBySessionId(keypleDTO.getSessionId());
 
                         // process response with the reader rm method engine
                         return reader.getRmTxEngine().onDTO(transportDto);
@@ -130,9 +169,6 @@ public class MasterAPI implements DtoHandler {
                         throw new IllegalStateException(
                                 "Virtual Reader was not found while receiving a transmitSet response",
                                 e);
-                    } catch (KeypleReaderException e) {
-                        // reader not found;
-                        throw new IllegalStateException("Readers list has not been initiated", e);
                     }
                 }
 
@@ -144,7 +180,8 @@ public class MasterAPI implements DtoHandler {
                     // dispatch dto to the appropriate reader
                     try {
                         // find reader by sessionId
-                        VirtualReader reader = getReaderBySessionId(keypleDTO.getSessionId());
+                        VirtualReader reader =
+                                plugin.getReaderBySessionId(keypleDTO.getSessionId());
 
                         // process response with the reader rmtx engine
                         return reader.getRmTxEngine().onDTO(transportDto);
@@ -154,9 +191,6 @@ public class MasterAPI implements DtoHandler {
                         throw new IllegalStateException(
                                 "Virtual Reader was not found while receiving a transmitSet response",
                                 e);
-                    } catch (KeypleReaderException e) {
-                        // reader not found;
-                        throw new IllegalStateException("Readers list has not been initiated", e);
                     }
                 }
             default:
@@ -167,22 +201,4 @@ public class MasterAPI implements DtoHandler {
 
 
 
-    /**
-     * Retrieve reader by its session Id
-     * 
-     * @param sessionId : sessionId which virtual reader is tight to
-     * @return VirtualReader matching the sessionId
-     * @throws KeypleReaderNotFoundException : if none reader was found
-     */
-    private VirtualReader getReaderBySessionId(String sessionId) throws KeypleReaderException {
-        for (SeReader reader : plugin.getReaders()) {
-
-            if (((VirtualReader) reader).getSession().getSessionId().equals(sessionId)) {
-                return (VirtualReader) reader;
-            }
-        }
-        throw new KeypleReaderNotFoundException(
-                "Reader session was not found for session : " + sessionId);
-    }
-
 }
@@ -14,23 +14,45 @@ package org.eclipse.keyple.plugin.remotese.pluginse;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentSkipListSet;
+import org.eclipse.keyple.journal.ApduJournal;
+import org.eclipse.keyple.plugin.remotese.exception.KeypleRemoteException;
+import org.eclipse.keyple.plugin.remotese.rm.RemoteMethod;
 import org.eclipse.keyple.plugin.remotese.rm.RemoteMethodTxEngine;
 import org.eclipse.keyple.plugin.remotese.transport.DtoSender;
+import org.eclipse.keyple.plugin.remotese.transport.json.JsonParser;
+import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
 import org.eclipse.keyple.seproxy.event.PluginEvent;
 import org.eclipse.keyple.seproxy.event.ReaderEvent;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderNotFoundException;
 import org.eclipse.keyple.seproxy.message.ProxyReader;
+import org.eclipse.keyple.seproxy.message.SeResponseSet;
 import org.eclipse.keyple.seproxy.plugin.AbstractObservablePlugin;
 import org.eclipse.keyple.seproxy.plugin.AbstractObservableReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.google.gson.JsonObject;
 
 
 /**
  * Remote SE Plugin Creates a virtual reader when a remote readers connect Manages the dispatch of
  * events received from remote readers
+ * <p>
+ * Sessions are kept in a {@link VirtualReaderSessionStore}. Optionally, idle sessions can be:
+ * <ul>
+ * <li>passivated: the virtual reader is removed from the readers list (if it has no observers) and
+ * notified as disconnected, it is rehydrated and notified as connected again as soon as a Dto is
+ * received for its session,</li>
+ * <li>expired: the virtual reader is disconnected as if the slave had disconnected it (if it has
+ * no observers), the slave is notified with a READER_DISCONNECT request.</li>
+ * </ul>
+ * The idle sessions are checked by a timer thread until {@link MasterAPI#shutdown()} is called.
+ * <p>
+ * The APDU journal is held by the plugin and applied to all its virtual readers, including the
+ * readers rehydrated or rebuilt after a passivation.
  */
 public final class RemoteSePlugin extends AbstractObservablePlugin {
 
@@ -40,18 +62,43 @@ public final class RemoteSePlugin extends AbstractObservablePlugin {
     // private final VirtualReaderSessionFactory sessionManager;
 
     private final VirtualReaderSessionFactory sessionManager;
+    private final VirtualReaderSessionStore sessionStore;
     private final DtoSender sender;
     private final Map<String, String> parameters;
+    private final long passivationDelay;
+    private final long sessionTimeout;
+    private Timer idleSessionTimer;
+    // journal of the APDU exchanges of the virtual readers, null if none
+    private volatile ApduJournal apduJournal;
+    // serializes the changes of the readers list and their notification
+    private final Object readersLock = new Object();
 
     /**
      * Only {@link MasterAPI} can instanciate a RemoteSePlugin
      */
     RemoteSePlugin(VirtualReaderSessionFactory sessionManager, DtoSender sender) {
+        this(sessionManager, sender, 0, 0);
+    }
+
+    /**
+     * Only {@link MasterAPI} can instanciate a RemoteSePlugin
+     *
+     * @param passivationDelay : idle time in milliseconds after which a virtual reader is
+     *        passivated (0 to disable)
+     * @param sessionTimeout : idle time in milliseconds after which a session is expired and its
+     *        virtual reader disconnected (0 to disable)
+     */
+    RemoteSePlugin(VirtualReaderSessionFactory sessionManager, DtoSender sender,
+            long passivationDelay, long sessionTimeout) {
         super(PLUGIN_NAME);
         this.sessionManager = sessionManager;
         logger.info("Init RemoteSePlugin");
         this.sender = sender;
         this.parameters = new HashMap<String, String>();
+        this.sessionStore = new VirtualReaderSessionStore();
+        this.passivationDelay = passivationDelay;
+        this.sessionTimeout = sessionTimeout;
+        startIdleSessionTimer();
     }
 
     /**
@@ -63,12 +110,27 @@ public final class RemoteSePlugin extends AbstractObservablePlugin {
      */
     public VirtualReader getReaderByRemoteName(String remoteName)
             throws KeypleReaderNotFoundException {
-        for (AbstractObservableReader virtualReader : readers) {
-            if (((VirtualReader) virtualReader).getNativeReaderName().equals(remoteName)) {
-                return (VirtualReader) virtualReader;
-            }
+        VirtualReaderSessionStore.Entry entry = sessionStore.getByNativeReaderName(remoteName);
+        if (entry == null) {
+            throw new KeypleReaderNotFoundException(remoteName);
+        }
+        return activate(entry);
+    }
+
+    /**
+     * Retrieve a reader by its session id, the reader is rehydrated if it was passivated
+     *
+     * @param sessionId : session id of the virtual reader
+     * @return corresponding Virtual reader if exists
+     * @throws KeypleReaderNotFoundException if no virtual reader match the session id
+     */
+    VirtualReader getReaderBySessionId(String sessionId) throws KeypleReaderNotFoundException {
+        VirtualReaderSessionStore.Entry entry = sessionStore.getBySessionId(sessionId);
+        if (entry == null) {
+            throw new KeypleReaderNotFoundException(
+                    "Reader session was not found for session : " + sessionId);
         }
-        throw new KeypleReaderNotFoundException(remoteName);
+        return activate(entry);
     }
 
     /**
@@ -79,21 +141,17 @@ public final class RemoteSePlugin extends AbstractObservablePlugin {
         logger.debug("createVirtualReader for slaveNodeId {} and reader {}", slaveNodeId,
                 nativeReaderName);
 
+        // check if reader is not already connected (by localReaderName)
+        if (sessionStore.getByNativeReaderName(nativeReaderName) != null) {
+            throw new KeypleReaderException(
+                    "Virtual Reader already exists for reader " + nativeReaderName);
+        }
+
         // create a new session for the new reader
         VirtualReaderSession session =
                 sessionManager.createSession(nativeReaderName, slaveNodeId, dtoSender.getNodeId());
 
-        try {
-            if (getReaderByRemoteName(nativeReaderName) != null) {
-                throw new KeypleReaderException(
-                        "Virtual Reader already exists for reader " + nativeReaderName);
-            }
-        } catch (KeypleReaderNotFoundException e) {
-            // no reader found, continue
-        }
-
 
-        // check if reader is not already connected (by localReaderName)
         logger.info("Create a new Virtual Reader with localReaderName {} with session {}",
                 nativeReaderName, session.getSessionId());
 
@@ -102,14 +160,19 @@ public final class RemoteSePlugin extends AbstractObservablePlugin {
         // and the provided name
         final VirtualReader virtualReader =
                 new VirtualReader(session, nativeReaderName, new RemoteMethodTxEngine(sender));
-        readers.add(virtualReader);
+        if (!sessionStore.add(
+                new VirtualReaderSessionStore.Entry(session, nativeReaderName, virtualReader))) {
+            throw new KeypleReaderException(
+                    "Virtual Reader already exists for reader " + nativeReaderName);
+        }
+        // after the entry is stored: a concurrent setApduJournal is seen here or applied to it
+        virtualReader.setApduJournal(apduJournal);
 
         // notify that a new reader is connected in a separated thread
         /*
          * new Thread() { public void run() { } }.start();
          */
-        notifyObservers(new PluginEvent(getName(), virtualReader.getName(),
-                PluginEvent.EventType.READER_CONNECTED));
+        addReader(virtualReader);
 
         return virtualReader;
 
@@ -124,38 +187,246 @@ public final class RemoteSePlugin extends AbstractObservablePlugin {
 
         logger.debug("Disconnect Virtual reader {}", nativeReaderName);
 
-        // retrieve virtual reader to delete
-        final VirtualReader virtualReader = this.getReaderByRemoteName(nativeReaderName);
+        // retrieve session to delete
+        VirtualReaderSessionStore.Entry entry =
+                sessionStore.getByNativeReaderName(nativeReaderName);
+        if (entry == null || !sessionStore.remove(entry)) {
+            throw new KeypleReaderNotFoundException(nativeReaderName);
+        }
 
-        logger.info("Disconnect VirtualReader with name {} with session {}", nativeReaderName);
+        logger.info("Disconnect VirtualReader with name {} with session {}", nativeReaderName,
+                entry.getSession().getSessionId());
 
-        // remove observers of reader
-        virtualReader.clearObservers();
+        removeReader(entry);
+    }
 
-        // remove reader
-        readers.remove(virtualReader);
+    /**
+     * Remove the virtual reader of an unregistered session and notify it
+     */
+    private void removeReader(VirtualReaderSessionStore.Entry entry) {
+        final VirtualReader virtualReader;
+        final boolean passivated;
+        synchronized (entry) {
+            virtualReader = entry.peekReader();
+            passivated = entry.isPassivated();
+        }
+        if (virtualReader != null) {
+            // remove observers of reader
+            virtualReader.clearObservers();
+        }
+        if (passivated) {
+            // already removed and notified at its passivation
+            return;
+        }
 
         // send event READER_DISCONNECTED in a separate thread
         // new Thread() {public void run() { }}.start();
 
-        notifyObservers(new PluginEvent(getName(), virtualReader.getName(),
-                PluginEvent.EventType.READER_DISCONNECTED));
+        removeReader(virtualReader, entry.getNativeReaderName());
+    }
+
+    /**
+     * Add a reader to the readers list and notify it as connected
+     */
+    private void addReader(VirtualReader virtualReader) {
+        synchronized (readersLock) {
+            readers.add(virtualReader);
+            notifyObservers(new PluginEvent(getName(), virtualReader.getName(),
+                    PluginEvent.EventType.READER_CONNECTED));
+        }
+    }
+
+    /**
+     * Remove a reader from the readers list and notify it as disconnected
+     *
+     * @param virtualReader : reader to remove, null if it is no longer referenced
+     * @param nativeReaderName : name of the native reader
+     */
+    private void removeReader(VirtualReader virtualReader, String nativeReaderName) {
+        synchronized (readersLock) {
+            if (virtualReader != null) {
+                readers.remove(virtualReader);
+            }
+            notifyObservers(new PluginEvent(getName(),
+                    VirtualReader.getVirtualReaderName(nativeReaderName),
+                    PluginEvent.EventType.READER_DISCONNECTED));
+        }
+    }
 
+    /**
+     * Return the virtual reader of a session, rehydrate it if the session was passivated
+     */
+    private VirtualReader activate(VirtualReaderSessionStore.Entry entry) {
+        entry.touch();
+        synchronized (entry) {
+            VirtualReader virtualReader = entry.getReader();
+            if (virtualReader != null) {
+                return virtualReader;
+            }
+            virtualReader = entry.rehydrate();
+            if (virtualReader == null) {
+                // the passivated reader has been collected, rebuild it from its session
+                virtualReader = new VirtualReader(entry.getSession(), entry.getNativeReaderName(),
+                        new RemoteMethodTxEngine(sender));
+                entry.restore(virtualReader);
+            }
+            // the journal may have changed while the reader was passivated
+            virtualReader.setApduJournal(apduJournal);
+            logger.debug("Rehydrate VirtualReader {} with session {}", virtualReader.getName(),
+                    entry.getSession().getSessionId());
+            addReader(virtualReader);
+            return virtualReader;
+        }
+    }
+
+    /**
+     * Passivate or expire idle sessions (internal method, called periodically when idle delays are
+     * configured)
+     *
+     * @param now : current time in milliseconds
+     */
+    void checkIdleSessions(long now) {
+        for (VirtualReaderSessionStore.Entry entry : sessionStore.entries()) {
+            VirtualReader virtualReader = entry.getReader();
+            if (virtualReader != null && virtualReader.countObservers() > 0) {
+                // the readers observed by the application are neither passivated nor expired
+                continue;
+            }
+            long idleTime = now - entry.getLastActivity();
+            if (sessionTimeout > 0 && idleTime > sessionTimeout) {
+                if (sessionStore.remove(entry)) {
+                    logger.info("Session {} of VirtualReader {} has expired",
+                            entry.getSession().getSessionId(), entry.getNativeReaderName());
+                    removeReader(entry);
+                    notifySessionExpired(entry);
+                }
+            } else if (passivationDelay > 0 && idleTime > passivationDelay) {
+                passivate(entry);
+            }
+        }
+    }
+
+    /**
+     * Tell the slave that the session of its reader has expired, so it stops sending its events
+     */
+    private void notifySessionExpired(VirtualReaderSessionStore.Entry entry) {
+        VirtualReaderSession session = entry.getSession();
+        JsonObject body = new JsonObject();
+        body.addProperty("sessionId", session.getSessionId());
+        try {
+            sender.sendDTO(new KeypleDto(RemoteMethod.READER_DISCONNECT.getName(),
+                    JsonParser.getGson().toJson(body, JsonObject.class), true,
+                    session.getSessionId(), entry.getNativeReaderName(),
+                    VirtualReader.getVirtualReaderName(entry.getNativeReaderName()),
+                    sender.getNodeId(), session.getSlaveNodeId()));
+        } catch (KeypleRemoteException e) {
+            logger.warn("Slave {} could not be notified of the expiry of session {} : {}",
+                    session.getSlaveNodeId(), session.getSessionId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Drop an idle virtual reader from the readers list, readers with observers are kept active
+     */
+    private void passivate(VirtualReaderSessionStore.Entry entry) {
+        synchronized (entry) {
+            VirtualReader virtualReader = entry.getReader();
+            if (virtualReader == null || virtualReader.countObservers() > 0) {
+                return;
+            }
+            entry.passivate();
+            removeReader(virtualReader, entry.getNativeReaderName());
+            logger.debug("Passivate VirtualReader {} with session {}", virtualReader.getName(),
+                    entry.getSession().getSessionId());
+        }
+    }
+
+    /**
+     * Attach a journal recording the APDU exchanges done through the virtual readers of this
+     * plugin, e.g. a {@link org.eclipse.keyple.journal.MappedApduJournal}
+     * <p>
+     * The journal is applied to the connected readers and to the readers connected, rehydrated or
+     * rebuilt later, so that no exchange escapes the journal after a passivation.
+     *
+     * @param apduJournal : journal of the APDU exchanges, null to detach the current journal
+     */
+    public void setApduJournal(ApduJournal apduJournal) {
+        this.apduJournal = apduJournal;
+        for (VirtualReaderSessionStore.Entry entry : sessionStore.entries()) {
+            // serialized with the rehydration of the reader (see activate)
+            synchronized (entry) {
+                VirtualReader virtualReader = entry.getReader();
+                if (virtualReader != null) {
+                    virtualReader.setApduJournal(apduJournal);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the APDU journal of the virtual readers, null if none
+     */
+    public ApduJournal getApduJournal() {
+        return apduJournal;
+    }
+
+    /**
+     * Number of sessions, active or passivated
+     * <p>
+     * Passivated sessions are no longer listed by {@link #getReaders()}, this is then the only
+     * figure giving the number of native readers connected to this plugin. It is meant for the
+     * monitoring of the master (e.g. the sizing of the session store under load).
+     *
+     * @return number of connected native readers
+     */
+    public int getSessionCount() {
+        return sessionStore.size();
+    }
+
+    private void startIdleSessionTimer() {
+        long period = passivationDelay;
+        if (sessionTimeout > 0 && (period <= 0 || sessionTimeout < period)) {
+            period = sessionTimeout;
+        }
+        if (period <= 0) {
+            return;
+        }
+        idleSessionTimer = new Timer("RemoteSePlugin-idleSessions", true);
+        idleSessionTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                checkIdleSessions(System.currentTimeMillis());
+            }
+        }, period, period);
+    }
+
+    /**
+     * Stop checking the idle sessions, the current sessions are kept
+     * <p>
+     * To be called when the plugin is no longer used (see {@link MasterAPI#shutdown()}).
+     */
+    void shutdown() {
+        if (idleSessionTimer != null) {
+            idleSessionTimer.cancel();
+            logger.info("Idle sessions are no longer checked");
+        }
     }
 
     /**
      * Propagate a received event from slave device (internal method)
      * 
      * @param event : Reader Event to be propagated
-     * @param sessionId : not used yet
+     * @param sessionId : session of the reader, the reader is retrieved by its name if null
+     * @param readPlanResponse : responses to the read plan executed by the slave (can be null)
      */
-    void onReaderEvent(ReaderEvent event, String sessionId) {
+    void onReaderEvent(ReaderEvent event, String sessionId, SeResponseSet readPlanResponse) {
         logger.debug("OnReaderEvent {}", event);
         logger.debug("Dispatch ReaderEvent to the appropriate Reader : {} sessionId : {}",
                 event.getReaderName(), sessionId);
         try {
-            VirtualReader virtualReader = getReaderByRemoteName(event.getReaderName());
-            virtualReader.onRemoteReaderEvent(event);
+            VirtualReader virtualReader = sessionId != null ? getReaderBySessionId(sessionId)
+                    : getReaderByRemoteName(event.getReaderName());
+            virtualReader.onRemoteReaderEvent(event, readPlanResponse);
 
         } catch (KeypleReaderNotFoundException e) {
             e.printStackTrace();
@@ -165,11 +436,11 @@ public final class RemoteSePlugin extends AbstractObservablePlugin {
 
 
     /**
-     * Init Native Readers to empty Set
+     * Init Native Readers to empty Set (readers are added and removed concurrently)
      */
     @Override
     protected SortedSet<AbstractObservableReader> initNativeReaders() {
-        return new TreeSet<AbstractObservableReader>();
+        return new ConcurrentSkipListSet<AbstractObservableReader>();
     }
 
     /**
@@ -54,6 +54,8 @@ class RmConnectReaderExecutor implements RemoteMethodExecutor {
             JsonObject respBody = new JsonObject();
             respBody.add("statusCode", new JsonPrimitive(0));
             respBody.add("sessionId", new JsonPrimitive(virtualReader.getSession().getSessionId()));
+            // the reader events of the slave can be sent in READER_EVENT_BATCH requests
+            respBody.add("eventBatchSupported", new JsonPrimitive(true));
 
             // build transport DTO with body
             return transportDto.nextTransportDTO(new KeypleDto(keypleDto.getAction(),
@@ -0,0 +1,60 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.remotese.pluginse;
+
+import org.eclipse.keyple.plugin.remotese.rm.RemoteMethod;
+import org.eclipse.keyple.plugin.remotese.rm.RemoteMethodExecutor;
+import org.eclipse.keyple.plugin.remotese.transport.json.JsonParser;
+import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
+import org.eclipse.keyple.plugin.remotese.transport.model.TransportDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Dispatch a batch of reader events sent by a slave reader event channel, then grant the slave a
+ * credit to send its next batch
+ */
+class RmEventBatchExecutor implements RemoteMethodExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RmEventBatchExecutor.class);
+
+    private final RmEventExecutor eventExecutor;
+
+    public RmEventBatchExecutor(RemoteSePlugin plugin) {
+        this.eventExecutor = new RmEventExecutor(plugin);
+    }
+
+    @Override
+    public TransportDto execute(TransportDto transportDto) {
+        KeypleDto keypleDto = transportDto.getKeypleDTO();
+
+        JsonObject body = JsonParser.getGson().fromJson(keypleDto.getBody(), JsonObject.class);
+        for (JsonElement event : body.getAsJsonArray("events")) {
+            try {
+                eventExecutor.dispatchEvent(event.getAsJsonObject(), null);
+            } catch (RuntimeException e) {
+                // one faulty event must not stall the channel
+                logger.error("Reader event could not be dispatched", e);
+            }
+        }
+
+        // acknowledge the batch
+        JsonObject respBody = new JsonObject();
+        respBody.addProperty("credits", 1);
+        return transportDto.nextTransportDTO(new KeypleDto(
+                RemoteMethod.READER_EVENT_BATCH.getName(),
+                JsonParser.getGson().toJson(respBody, JsonObject.class), false, null, null, null,
+                keypleDto.getRequesterNodeId()));
+    }
+}
@@ -17,6 +17,8 @@ import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
 import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDtoHelper;
 import org.eclipse.keyple.plugin.remotese.transport.model.TransportDto;
 import org.eclipse.keyple.seproxy.event.ReaderEvent;
+import org.eclipse.keyple.seproxy.message.SeResponseSet;
+import com.google.gson.JsonObject;
 
 class RmEventExecutor implements RemoteMethodExecutor {
 
@@ -31,10 +33,10 @@ class RmEventExecutor implements RemoteMethodExecutor {
         KeypleDto keypleDto = transportDto.getKeypleDTO();
 
         // parseResponse body
-        ReaderEvent event = JsonParser.getGson().fromJson(keypleDto.getBody(), ReaderEvent.class);
+        JsonObject body = JsonParser.getGson().fromJson(keypleDto.getBody(), JsonObject.class);
 
         // dispatch reader event
-        plugin.onReaderEvent(event, keypleDto.getSessionId());
+        dispatchEvent(body, keypleDto.getSessionId());
 
         // chain response if needed
         // try {
@@ -63,4 +65,24 @@ class RmEventExecutor implements RemoteMethodExecutor {
         return transportDto.nextTransportDTO(KeypleDtoHelper.NoResponse());
 
     }
+
+    /**
+     * Parse a reader event and dispatch it to its virtual reader
+     *
+     * @param data : json representation of the event
+     * @param sessionId : session of the reader (can be null)
+     */
+    void dispatchEvent(JsonObject data, String sessionId) {
+        ReaderEvent event = JsonParser.getGson().fromJson(data, ReaderEvent.class);
+
+        // read plan responses pushed along with the event if any
+        SeResponseSet readPlanResponse = null;
+        if (data.has("readPlanResponse")) {
+            readPlanResponse = JsonParser.getGson().fromJson(
+                    data.getAsJsonPrimitive("readPlanResponse").getAsString(),
+                    SeResponseSet.class);
+        }
+
+        plugin.onReaderEvent(event, sessionId, readPlanResponse);
+    }
 }
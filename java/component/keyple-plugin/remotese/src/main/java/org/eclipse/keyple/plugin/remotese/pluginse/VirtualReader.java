@@ -11,7 +11,10 @@
  ********************************************************************************/
 package org.eclipse.keyple.plugin.remotese.pluginse;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import org.eclipse.keyple.journal.ApduJournal;
 import org.eclipse.keyple.plugin.remotese.exception.KeypleRemoteException;
 import org.eclipse.keyple.plugin.remotese.exception.KeypleRemoteReaderException;
 import org.eclipse.keyple.plugin.remotese.pluginse.method.RmSetDefaultSelectionRequestTx;
@@ -20,7 +23,10 @@ import org.eclipse.keyple.plugin.remotese.rm.RemoteMethodTxEngine;
 import org.eclipse.keyple.plugin.remotese.transport.DtoNode;
 import org.eclipse.keyple.seproxy.event.DefaultSelectionRequest;
 import org.eclipse.keyple.seproxy.event.ReaderEvent;
+import org.eclipse.keyple.seproxy.event.SelectionResponse;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
 import org.eclipse.keyple.seproxy.message.SeRequest;
 import org.eclipse.keyple.seproxy.message.SeRequestSet;
 import org.eclipse.keyple.seproxy.message.SeResponse;
@@ -40,6 +46,15 @@ public final class VirtualReader extends AbstractObservableReader {
     private final String nativeReaderName;
     private final RemoteMethodTxEngine rmTxEngine;
 
+    /** responses to the read plan pushed with the last SE_MATCHED event */
+    private volatile SeResponseSet readPlanResponse;
+
+    /** read plan set with the default selection request, null if none */
+    private volatile SeRequestSet readPlan;
+
+    /** journal of the APDU exchanges, null if none */
+    private volatile ApduJournal apduJournal;
+
     private static final Logger logger = LoggerFactory.getLogger(VirtualReader.class);
 
     /**
@@ -50,13 +65,23 @@ public final class VirtualReader extends AbstractObservableReader {
      */
     VirtualReader(VirtualReaderSession session, String nativeReaderName,
             RemoteMethodTxEngine rmTxEngine) {
-        super(RemoteSePlugin.PLUGIN_NAME, "remote-" + nativeReaderName);
+        super(RemoteSePlugin.PLUGIN_NAME, getVirtualReaderName(nativeReaderName));
         this.session = session;
         this.nativeReaderName = nativeReaderName;
         this.rmTxEngine = rmTxEngine;
         logger.info("A new virtual reader was created with session {}", session);
     }
 
+    /**
+     * Name of the virtual reader of a native reader
+     *
+     * @param nativeReaderName local name of the native reader on slave side
+     * @return name of the virtual reader
+     */
+    static String getVirtualReaderName(String nativeReaderName) {
+        return "remote-" + nativeReaderName;
+    }
+
     /**
      * TODO change this to handle the right transmission mode
      *
@@ -80,6 +105,21 @@ public final class VirtualReader extends AbstractObservableReader {
         return session;
     }
 
+    /**
+     * Responses to the read plan executed by the slave when the current SE matched the default
+     * selection (see
+     * {@link #setDefaultSelectionRequest(DefaultSelectionRequest, NotificationMode, SeRequestSet)})
+     * <p>
+     * The responses are available from the SE_MATCHED notification until the SE is removed. They
+     * are also part of the default selection response of the event, and thus provided by the
+     * {@link org.eclipse.keyple.transaction.MatchingSelection} of the processed default selection.
+     *
+     * @return the read plan SeResponseSet, null if no read plan was executed for the current SE
+     */
+    public SeResponseSet getReadPlanResponse() {
+        return readPlanResponse;
+    }
+
     RemoteMethodTxEngine getRmTxEngine() {
         return rmTxEngine;
     }
@@ -91,6 +131,56 @@ public final class VirtualReader extends AbstractObservableReader {
         return false;// not implemented
     }
 
+    /**
+     * Record the APDU exchanges done by the native reader, the selection APDUs are not known on
+     * this side
+     */
+    private void journalExchanges(ApduJournal journal, SeRequestSet seRequestSet,
+            SeResponseSet seResponseSet) {
+        Iterator<SeResponse> seResponses = seResponseSet.getResponses().iterator();
+        for (SeRequest seRequest : seRequestSet.getRequests()) {
+            if (!seResponses.hasNext()) {
+                break;
+            }
+            SeResponse seResponse = seResponses.next();
+            if (seResponse == null || seRequest.getApduRequests() == null) {
+                continue;
+            }
+            List<ApduResponse> apduResponses = seResponse.getApduResponses();
+            int i = 0;
+            for (ApduRequest apduRequest : seRequest.getApduRequests()) {
+                if (i >= apduResponses.size()) {
+                    break;
+                }
+                ApduResponse apduResponse = apduResponses.get(i++);
+                if (apduResponse == null) {
+                    continue;
+                }
+                byte[] response = apduResponse.getBytes();
+                journal.append(getName(), apduRequest.getBytes(), response,
+                        response != null && response.length >= 2 ? apduResponse.getStatusCode()
+                                : ApduJournal.NO_STATUS_WORD,
+                        apduResponse.isSuccessful());
+            }
+        }
+    }
+
+    /**
+     * Attach the journal of the plugin (see {@link RemoteSePlugin#setApduJournal(ApduJournal)})
+     *
+     * @param apduJournal : journal of the APDU exchanges, null to detach the current journal
+     */
+    void setApduJournal(ApduJournal apduJournal) {
+        this.apduJournal = apduJournal;
+    }
+
+    /**
+     * @return the attached APDU journal, null if none
+     */
+    public ApduJournal getApduJournal() {
+        return apduJournal;
+    }
+
     /**
      * Blocking TransmitSet
      * 
@@ -108,7 +198,12 @@ public final class VirtualReader extends AbstractObservableReader {
                         this.getName(), session.getMasterNodeId(), session.getSlaveNodeId());
         try {
             rmTxEngine.register(transmit);
-            return transmit.get();
+            SeResponseSet seResponseSet = transmit.get();
+            ApduJournal journal = apduJournal;
+            if (journal != null && seResponseSet != null) {
+                journalExchanges(journal, seRequestSet, seResponseSet);
+            }
+            return seResponseSet;
         } catch (KeypleRemoteException e) {
             e.printStackTrace();
             throw (KeypleReaderException) e.getCause();
@@ -159,10 +254,23 @@ public final class VirtualReader extends AbstractObservableReader {
      * When an event occurs on the Remote LocalReader, notify Observers
      * 
      * @param event
+     * @param readPlanResponse responses to the read plan pushed with the event (can be null)
      */
-    void onRemoteReaderEvent(final ReaderEvent event) {
+    void onRemoteReaderEvent(ReaderEvent event, SeResponseSet readPlanResponse) {
         final VirtualReader thisReader = this;
 
+        // keep the read plan responses for the SE that has just been presented
+        this.readPlanResponse = readPlanResponse;
+
+        // and hand them over to the selection processed by the observers
+        if (readPlanResponse != null && event.getDefaultSelectionResponse() != null) {
+            event = new ReaderEvent(event.getPluginName(), event.getReaderName(),
+                    event.getEventType(),
+                    new SelectionResponse(
+                            event.getDefaultSelectionResponse().getSelectionSeResponseSet(),
+                            readPlanResponse));
+        }
+
         logger.debug(" EVENT {} ", event.getEventType());
 
         if (thisReader.countObservers() > 0) {
@@ -196,16 +304,37 @@ public final class VirtualReader extends AbstractObservableReader {
     @Override
     public void setDefaultSelectionRequest(DefaultSelectionRequest defaultSelectionRequest,
             NotificationMode notificationMode) {
+        setDefaultSelectionRequest(defaultSelectionRequest, notificationMode, null);
+    }
+
+    /**
+     * Set the default selection request along with a read plan.
+     * <p>
+     * The read plan is executed by the slave in the logical channel left open by the default
+     * selection as soon as a SE matches it. Its responses are pushed with the SE_MATCHED event and
+     * made available through {@link #getReadPlanResponse()}, thus saving a round trip with the
+     * slave.
+     * <p>
+     * The SeRequests of the read plan must not define a SeSelector.
+     *
+     * @param defaultSelectionRequest the {@link DefaultSelectionRequest} to be executed when a SE
+     *        is inserted
+     * @param notificationMode the notification mode enum (ALWAYS or MATCHED_ONLY)
+     * @param readPlan the SeRequestSet to be executed when a SE matched (can be null)
+     */
+    public void setDefaultSelectionRequest(DefaultSelectionRequest defaultSelectionRequest,
+            NotificationMode notificationMode, SeRequestSet readPlan) {
 
         RmSetDefaultSelectionRequestTx setDefaultSelectionRequest =
                 new RmSetDefaultSelectionRequestTx(defaultSelectionRequest, notificationMode,
-                        this.getNativeReaderName(), this.getName(),
+                        readPlan, this.getNativeReaderName(), this.getName(),
                         this.getSession().getSessionId(), session.getSlaveNodeId(),
                         session.getMasterNodeId());
 
         try {
             rmTxEngine.register(setDefaultSelectionRequest);
             setDefaultSelectionRequest.get();
+            restoreDefaultSelectionRequest(defaultSelectionRequest, notificationMode, readPlan);
         } catch (KeypleRemoteException e) {
             logger.error(
                     "setDefaultSelectionRequest encounters an exception while communicating with slave",
@@ -213,5 +342,29 @@ public final class VirtualReader extends AbstractObservableReader {
         }
     }
 
+    /**
+     * Keep the default selection request set on the slave, without sending it again
+     *
+     * @param defaultSelectionRequest the default selection request, null if none
+     * @param notificationMode the notification mode
+     * @param readPlan the read plan, null if none
+     */
+    void restoreDefaultSelectionRequest(DefaultSelectionRequest defaultSelectionRequest,
+            NotificationMode notificationMode, SeRequestSet readPlan) {
+        this.defaultSelectionRequest = defaultSelectionRequest;
+        this.notificationMode = notificationMode;
+        this.readPlan = readPlan;
+    }
 
+    DefaultSelectionRequest getDefaultSelectionRequest() {
+        return defaultSelectionRequest;
+    }
+
+    NotificationMode getNotificationMode() {
+        return notificationMode;
+    }
+
+    SeRequestSet getReadPlan() {
+        return readPlan;
+    }
 }
@@ -11,11 +11,16 @@
  ********************************************************************************/
 package org.eclipse.keyple.plugin.remotese.pluginse;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Create Virtual Reader Sessions
  */
 class VirtualReaderSessionFactory {
 
+    // distinguishes the sessions of successive factories (i.e. master restarts)
+    private final String factoryId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sessionCounter = new AtomicLong();
 
 
     /**
@@ -38,13 +43,17 @@ class VirtualReaderSessionFactory {
 
     /**
      * Generate a unique sessionId for a new connecting localreader
+     * <p>
+     * Ids are built from a sequence number so two readers connecting within the same millisecond
+     * never share an id.
      * 
      * @param nativeReaderName : Local Reader Name
      * @param nodeId : Node Id from which the local reader name connect to
      * @return unique sessionId
      */
     private String generateSessionId(String nativeReaderName, String nodeId) {
-        return nativeReaderName + nodeId + String.valueOf(System.currentTimeMillis());
+        return nativeReaderName + nodeId + "-" + factoryId + "-"
+                + Long.toString(sessionCounter.incrementAndGet(), 36);
     }
 
 
@@ -0,0 +1,197 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.remotese.pluginse;
+
+import java.lang.ref.SoftReference;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.eclipse.keyple.seproxy.event.DefaultSelectionRequest;
+import org.eclipse.keyple.seproxy.event.ObservableReader;
+import org.eclipse.keyple.seproxy.message.SeRequestSet;
+
+/**
+ * Concurrent store of the Virtual Reader Sessions of the {@link RemoteSePlugin}
+ * <p>
+ * Sessions are indexed by session id and by native reader name, both lookups are O(1). Each entry
+ * keeps the time of its last activity so idle sessions can be passivated or expired by the plugin.
+ */
+class VirtualReaderSessionStore {
+
+    private final ConcurrentMap<String, Entry> sessionsById;
+    private final ConcurrentMap<String, Entry> sessionsByNativeReaderName;
+
+    VirtualReaderSessionStore() {
+        this.sessionsById = new ConcurrentHashMap<String, Entry>();
+        this.sessionsByNativeReaderName = new ConcurrentHashMap<String, Entry>();
+    }
+
+    /**
+     * Register a new session
+     *
+     * @param entry : entry to be registered
+     * @return false if a session already exists for the native reader name, the entry is then not
+     *         registered
+     */
+    boolean add(Entry entry) {
+        if (sessionsByNativeReaderName.putIfAbsent(entry.getNativeReaderName(), entry) != null) {
+            return false;
+        }
+        sessionsById.put(entry.getSession().getSessionId(), entry);
+        return true;
+    }
+
+    /**
+     * Unregister a session
+     *
+     * @param entry : entry to be removed
+     * @return true if the entry was registered
+     */
+    boolean remove(Entry entry) {
+        sessionsById.remove(entry.getSession().getSessionId(), entry);
+        return sessionsByNativeReaderName.remove(entry.getNativeReaderName(), entry);
+    }
+
+    Entry getBySessionId(String sessionId) {
+        return sessionId != null ? sessionsById.get(sessionId) : null;
+    }
+
+    Entry getByNativeReaderName(String nativeReaderName) {
+        return nativeReaderName != null ? sessionsByNativeReaderName.get(nativeReaderName) : null;
+    }
+
+    Collection<Entry> entries() {
+        return sessionsById.values();
+    }
+
+    int size() {
+        return sessionsById.size();
+    }
+
+    /**
+     * Session of a connected native reader and its Virtual Reader.
+     * <p>
+     * When passivated, the Virtual Reader is only softly referenced: it is reused on rehydration if
+     * it is still referenced elsewhere (or not collected yet), otherwise a new one is built from
+     * the session and gets back the default selection request and the read plan kept by the entry.
+     */
+    static final class Entry {
+
+        private final VirtualReaderSession session;
+        private final String nativeReaderName;
+        private VirtualReader reader;
+        private SoftReference<VirtualReader> passivatedReader;
+        // default selection of the passivated reader, known by the slave
+        private DefaultSelectionRequest defaultSelectionRequest;
+        private ObservableReader.NotificationMode notificationMode;
+        private SeRequestSet readPlan;
+        private volatile long lastActivity;
+
+        Entry(VirtualReaderSession session, String nativeReaderName, VirtualReader reader) {
+            this.session = session;
+            this.nativeReaderName = nativeReaderName;
+            this.reader = reader;
+            this.lastActivity = System.currentTimeMillis();
+        }
+
+        VirtualReaderSession getSession() {
+            return session;
+        }
+
+        String getNativeReaderName() {
+            return nativeReaderName;
+        }
+
+        long getLastActivity() {
+            return lastActivity;
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        /**
+         * @return the active Virtual Reader, null if the session is passivated
+         */
+        synchronized VirtualReader getReader() {
+            return reader;
+        }
+
+        synchronized boolean isPassivated() {
+            return reader == null;
+        }
+
+        /**
+         * Release the strong reference to the Virtual Reader
+         *
+         * @return the passivated reader, null if the session was already passivated
+         */
+        synchronized VirtualReader passivate() {
+            VirtualReader passivated = reader;
+            if (passivated != null) {
+                passivatedReader = new SoftReference<VirtualReader>(passivated);
+                defaultSelectionRequest = passivated.getDefaultSelectionRequest();
+                notificationMode = passivated.getNotificationMode();
+                readPlan = passivated.getReadPlan();
+                reader = null;
+            }
+            return passivated;
+        }
+
+        /**
+         * Retrieve the passivated Virtual Reader and make it active again
+         *
+         * @return the previous Virtual Reader if it has not been collected, null otherwise (the
+         *         caller then provides a new one with {@link #activate(VirtualReader)})
+         */
+        synchronized VirtualReader rehydrate() {
+            if (reader != null) {
+                return reader;
+            }
+            VirtualReader previous = passivatedReader != null ? passivatedReader.get() : null;
+            if (previous != null) {
+                activate(previous);
+            }
+            return previous;
+        }
+
+        synchronized void activate(VirtualReader reader) {
+            this.reader = reader;
+            this.passivatedReader = null;
+            this.defaultSelectionRequest = null;
+            this.notificationMode = null;
+            this.readPlan = null;
+        }
+
+        /**
+         * Activate a Virtual Reader rebuilt after the passivated one has been collected
+         *
+         * @param reader : new Virtual Reader of the session, it gets the default selection
+         *        request and the read plan of the passivated one
+         */
+        synchronized void restore(VirtualReader reader) {
+            reader.restoreDefaultSelectionRequest(defaultSelectionRequest, notificationMode,
+                    readPlan);
+            activate(reader);
+        }
+
+        /**
+         * @return the active or passivated Virtual Reader if any
+         */
+        synchronized VirtualReader peekReader() {
+            if (reader != null) {
+                return reader;
+            }
+            return passivatedReader != null ? passivatedReader.get() : null;
+        }
+    }
+}
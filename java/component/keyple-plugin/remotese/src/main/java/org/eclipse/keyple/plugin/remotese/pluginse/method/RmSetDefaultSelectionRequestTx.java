@@ -17,22 +17,38 @@ import org.eclipse.keyple.plugin.remotese.transport.json.JsonParser;
 import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
 import org.eclipse.keyple.seproxy.event.DefaultSelectionRequest;
 import org.eclipse.keyple.seproxy.event.ObservableReader;
+import org.eclipse.keyple.seproxy.message.SeRequestSet;
 import com.google.gson.JsonObject;
 
 public class RmSetDefaultSelectionRequestTx extends RemoteMethodTx {
 
     private final DefaultSelectionRequest defaultSelectionRequest;
     private final ObservableReader.NotificationMode notificationMode;
+    private final SeRequestSet readPlan;
 
 
     public RmSetDefaultSelectionRequestTx(DefaultSelectionRequest defaultSelectionRequest,
             ObservableReader.NotificationMode notificationMode, String nativeReaderName,
             String virtualReaderName, String sessionId, String slaveNodeId,
             String requesterNodeId) {
+        this(defaultSelectionRequest, notificationMode, null, nativeReaderName, virtualReaderName,
+                sessionId, slaveNodeId, requesterNodeId);
+    }
+
+    /**
+     * Set the default selection request along with a read plan
+     *
+     * @param readPlan : SeRequestSet executed by the slave right after the default selection when
+     *        the SE matched, its responses are pushed with the READER_EVENT (can be null)
+     */
+    public RmSetDefaultSelectionRequestTx(DefaultSelectionRequest defaultSelectionRequest,
+            ObservableReader.NotificationMode notificationMode, SeRequestSet readPlan,
+            String nativeReaderName, String virtualReaderName, String sessionId,
+            String slaveNodeId, String requesterNodeId) {
         super(sessionId, nativeReaderName, virtualReaderName, slaveNodeId, requesterNodeId);
         this.defaultSelectionRequest = defaultSelectionRequest;
         this.notificationMode = notificationMode;
-
+        this.readPlan = readPlan;
     }
 
 
@@ -48,6 +64,9 @@ public class RmSetDefaultSelectionRequestTx extends RemoteMethodTx {
         body.addProperty("defaultSelectionRequest",
                 JsonParser.getGson().toJson(defaultSelectionRequest));
         body.addProperty("notificationMode", notificationMode.getName());
+        if (readPlan != null) {
+            body.addProperty("readPlan", JsonParser.getGson().toJson(readPlan, SeRequestSet.class));
+        }
 
         return new KeypleDto(RemoteMethod.DEFAULT_SELECTION_REQUEST.getName(),
                 JsonParser.getGson().toJson(body, JsonObject.class), true, sessionId,
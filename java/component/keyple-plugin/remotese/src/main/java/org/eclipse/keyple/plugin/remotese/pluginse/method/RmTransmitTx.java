@@ -38,9 +38,10 @@ public class RmTransmitTx extends RemoteMethodTx<SeResponseSet> {
 
     @Override
     public KeypleDto dto() {
-        return new KeypleDto(RemoteMethod.READER_TRANSMIT.getName(),
-                JsonParser.getGson().toJson(seRequestSet, SeRequestSet.class), true, this.sessionId,
-                this.nativeReaderName, this.virtualReaderName, requesterNodeId, targetNodeId);
+        // the request set is only serialized if the transport needs it
+        return KeypleDto.withPayload(RemoteMethod.READER_TRANSMIT.getName(), seRequestSet, true,
+                this.sessionId, this.nativeReaderName, this.virtualReaderName, requesterNodeId,
+                targetNodeId);
     }
 
 
@@ -56,6 +57,10 @@ public class RmTransmitTx extends RemoteMethodTx<SeResponseSet> {
                     "An exception occurs while calling the remote method transmitSet", ex);
         } else {
             logger.trace("KeypleDto contains a response: {}", keypleDto);
+            if (keypleDto.getPayload() instanceof SeResponseSet) {
+                // handed over by an in-JVM transport
+                return (SeResponseSet) keypleDto.getPayload();
+            }
             return JsonParser.getGson().fromJson(keypleDto.getBody(), SeResponseSet.class);
         }
     }
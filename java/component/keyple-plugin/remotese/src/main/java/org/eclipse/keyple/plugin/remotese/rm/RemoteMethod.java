@@ -17,8 +17,8 @@ import java.util.Map;
 public enum RemoteMethod {
 
     READER_TRANSMIT("reader_transmit"), READER_CONNECT("reader_connect"), READER_DISCONNECT(
-            "reader_disconnect"), READER_EVENT(
-                    "reader_event"), DEFAULT_SELECTION_REQUEST("default_selection_request");
+            "reader_disconnect"), READER_EVENT("reader_event"), READER_EVENT_BATCH(
+                    "reader_event_batch"), DEFAULT_SELECTION_REQUEST("default_selection_request");
 
     private String name;
 
@@ -12,8 +12,14 @@
 package org.eclipse.keyple.plugin.remotese.rm;
 
 import java.util.concurrent.CountDownLatch;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.metrics.MetricsRecorder;
+import org.eclipse.keyple.metrics.TraceEvent;
+import org.eclipse.keyple.metrics.TraceSpan;
+import org.eclipse.keyple.metrics.Tracing;
 import org.eclipse.keyple.plugin.remotese.exception.KeypleRemoteException;
 import org.eclipse.keyple.plugin.remotese.transport.DtoSender;
+import org.eclipse.keyple.plugin.remotese.transport.RemoteSeMetrics;
 import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,7 +78,31 @@ public abstract class RemoteMethodTx<T> {
      */
     private void asyncGet(RemoteMethodTxCallback<T> callback) throws KeypleRemoteException {
         this.callback = callback;
-        sender.sendDTO(this.dto());
+        KeypleDto keypleDto = this.dto();
+        TraceSpan span = Tracing.begin(TraceEvent.DTO_SEND);
+        boolean sent = false;
+        try {
+            sender.sendDTO(keypleDto);
+            sent = true;
+        } finally {
+            if (span != null) {
+                span.end(RemoteSeMetrics.source(virtualReaderName, nativeReaderName),
+                        keypleDto.getAction(), bodyLength(keypleDto), 0,
+                        TraceSpan.NO_STATUS_WORD, sent);
+            }
+        }
+    }
+
+    /**
+     * @return the length of the json body, 0 if the Dto is handed over with its payload
+     */
+    private static int bodyLength(KeypleDto keypleDto) {
+        if (keypleDto.getPayload() != null) {
+            // do not serialize the payload only for the trace
+            return 0;
+        }
+        String body = keypleDto.getBody();
+        return body != null ? body.length() : 0;
     }
 
 
@@ -105,6 +135,9 @@ public abstract class RemoteMethodTx<T> {
             }
         };
 
+        MetricsRecorder metrics = Metrics.getRecorder();
+        long start = metrics != null ? System.nanoTime() : 0;
+
         try {
             lock = new CountDownLatch(1);
             logger.trace("" + "" + "Set callback on RemoteMethodTx {} {}",
@@ -113,6 +146,14 @@ public abstract class RemoteMethodTx<T> {
             logger.trace("Lock {}, {}", this.getClass().getCanonicalName(), this.hashCode());
             lock.await();
             logger.trace("Unlock {}, {}", this.getClass().getCanonicalName(), this.hashCode());
+            if (metrics != null) {
+                String source = RemoteSeMetrics.source(virtualReaderName, nativeReaderName);
+                metrics.recordDuration(source, RemoteSeMetrics.DTO_ROUND_TRIP,
+                        System.nanoTime() - start);
+                if (this.remoteException != null) {
+                    metrics.incrementCounter(source, RemoteSeMetrics.DTO_ERRORS);
+                }
+            }
             if (this.remoteException != null) {
                 throw remoteException;
             } else {
@@ -132,10 +173,21 @@ public abstract class RemoteMethodTx<T> {
      * @param keypleDto
      */
     void asyncSetResponse(KeypleDto keypleDto) {
+        TraceSpan span = Tracing.begin(TraceEvent.DTO_RECEIVE);
         try {
             this.response = parseResponse(keypleDto);
+            if (span != null) {
+                span.end(RemoteSeMetrics.source(virtualReaderName, nativeReaderName),
+                        keypleDto.getAction(), 0, bodyLength(keypleDto),
+                        TraceSpan.NO_STATUS_WORD, true);
+            }
             this.callback.get(response, null);
         } catch (KeypleRemoteException e) {
+            if (span != null) {
+                span.end(RemoteSeMetrics.source(virtualReaderName, nativeReaderName),
+                        keypleDto.getAction(), 0, bodyLength(keypleDto),
+                        TraceSpan.NO_STATUS_WORD, false);
+            }
             this.remoteException = e;
             this.callback.get(null, e);
         }
@@ -27,7 +27,7 @@ public class RemoteMethodTxEngine implements DtoHandler {
     private static final Logger logger = LoggerFactory.getLogger(RemoteMethodTxEngine.class);
 
     // waiting transaction, supports only one at the time
-    private RemoteMethodTx remoteMethodTx;
+    private volatile RemoteMethodTx remoteMethodTx;
 
     // Dto Sender
     private final DtoSender sender;
@@ -52,18 +52,19 @@ public class RemoteMethodTxEngine implements DtoHandler {
             throw new IllegalArgumentException(
                     "RemoteMethodTxEngine expects a KeypleDto response. " + message.getKeypleDTO());
         }
-        if (remoteMethodTx == null) {
+        RemoteMethodTx pendingTx = remoteMethodTx;
+        if (pendingTx == null) {
             throw new IllegalStateException(
                     "RemoteMethodTxEngine receives a KeypleDto response but no remoteMethodTx are defined : "
                             + message.getKeypleDTO());
         }
 
-        // only one operation is allowed at the time
-        remoteMethodTx.asyncSetResponse(keypleDto);
-
-        // re init remoteMethod
+        // re init remoteMethod before releasing the caller, which may register the next one
         remoteMethodTx = null;
 
+        // only one operation is allowed at the time
+        pendingTx.asyncSetResponse(keypleDto);
+
         return message.nextTransportDTO(KeypleDtoHelper.NoResponse());
     }
 
@@ -0,0 +1,59 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.remotese.transport;
+
+/**
+ * Names of the metrics recorded by the Remote SE plugin when the metrics are enabled (see
+ * {@link org.eclipse.keyple.metrics.Metrics}).
+ * <p>
+ * The source of the measures is the name of the virtual reader when known, the name of the native
+ * reader otherwise, or {@link #NO_READER} for the messages not related to a reader.
+ */
+public final class RemoteSeMetrics {
+
+    /** Time between the sending of a remote method request and the reception of its response */
+    public static final String DTO_ROUND_TRIP = "remotese.dto.roundtrip";
+
+    /** Number of remote method calls that ended with an exception */
+    public static final String DTO_ERRORS = "remotese.dto.errors";
+
+    /** Duration of the serialization of a KeypleDto to json */
+    public static final String DTO_SERIALIZATION = "remotese.dto.serialization";
+
+    /** Duration of the deserialization of a KeypleDto from json */
+    public static final String DTO_DESERIALIZATION = "remotese.dto.deserialization";
+
+    /** Number of reader events waiting to be sent to the master, sampled at each new event */
+    public static final String EVENT_QUEUE_DEPTH = "remotese.event.queue.depth";
+
+    /** Source of the measures not related to a reader */
+    public static final String NO_READER = "remotese";
+
+    private RemoteSeMetrics() {}
+
+    /**
+     * Get the source of a measure
+     *
+     * @param virtualReaderName : name of the virtual reader, may be null or empty
+     * @param nativeReaderName : name of the native reader, may be null or empty
+     * @return the name of the reader the measure relates to
+     */
+    public static String source(String virtualReaderName, String nativeReaderName) {
+        if (virtualReaderName != null && virtualReaderName.length() > 0) {
+            return virtualReaderName;
+        }
+        if (nativeReaderName != null && nativeReaderName.length() > 0) {
+            return nativeReaderName;
+        }
+        return NO_READER;
+    }
+}
@@ -37,7 +37,8 @@ public class LocalClient implements ClientNode {
 
     public void onLocalMessage(KeypleDto keypleDto) {
         if (dtoHandler != null) {
-            TransportDto response = dtoHandler.onDTO(new LocalTransportDto(keypleDto, this));
+            TransportDto response =
+                    dtoHandler.onDTO(new LocalTransportDto(theServer.handOver(keypleDto), this));
             // send back response
             this.sendDTO(response);
         } else {
@@ -32,10 +32,30 @@ public class LocalServer implements ServerNode {
     private DtoHandler dtoHandler;
     private final String serverNodeId;
     private final Map<String, LocalClient> client_ids;
+    private final boolean zeroSerialization;
 
     public LocalServer(String serverNodeId) {
+        this(serverNodeId, false);
+    }
+
+    /**
+     * @param serverNodeId : node id of the server
+     * @param zeroSerialization : if true, Dto payloads are handed over without being serialized
+     */
+    public LocalServer(String serverNodeId, boolean zeroSerialization) {
         this.client_ids = new HashMap<String, LocalClient>();
         this.serverNodeId = serverNodeId;
+        this.zeroSerialization = zeroSerialization;
+    }
+
+    /**
+     * Prepare a Dto to be handed over to the other end
+     *
+     * @param keypleDto : Dto sent
+     * @return Dto received
+     */
+    KeypleDto handOver(KeypleDto keypleDto) {
+        return zeroSerialization ? keypleDto : KeypleDtoHelper.withoutPayload(keypleDto);
     }
 
     public void onLocalMessage(TransportDto transportDto) {
@@ -43,8 +63,8 @@ public class LocalServer implements ServerNode {
         client_ids.put(transportDto.getKeypleDTO().getRequesterNodeId(), theClient);
 
         if (dtoHandler != null) {
-            TransportDto response =
-                    dtoHandler.onDTO(new LocalTransportDto(transportDto.getKeypleDTO(), theClient));
+            TransportDto response = dtoHandler.onDTO(
+                    new LocalTransportDto(handOver(transportDto.getKeypleDTO()), theClient));
             // send back response
             this.sendDTO(response);
         } else {
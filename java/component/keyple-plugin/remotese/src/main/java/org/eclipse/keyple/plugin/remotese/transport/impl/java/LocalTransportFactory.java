@@ -27,7 +27,19 @@ public class LocalTransportFactory extends TransportFactory {
     private final LocalServer theServer;
 
     public LocalTransportFactory(String serverNodeId) {
-        theServer = new LocalServer(serverNodeId);
+        this(serverNodeId, false);
+    }
+
+    /**
+     * Local transport factory
+     *
+     * @param serverNodeId : node id of the server
+     * @param zeroSerialization : if true, Dto payloads (SeRequestSet, SeResponseSet) are handed
+     *        over between client and server without being serialized to json, for co-located
+     *        master and slave
+     */
+    public LocalTransportFactory(String serverNodeId, boolean zeroSerialization) {
+        theServer = new LocalServer(serverNodeId, zeroSerialization);
     }
 
     @Override
@@ -11,6 +11,8 @@
  ********************************************************************************/
 package org.eclipse.keyple.plugin.remotese.transport.model;
 
+import org.eclipse.keyple.plugin.remotese.transport.json.JsonParser;
+
 /**
  * Data Transfer Object used to common an API call from a Master Reader to a Slave Reader (and vice
  * versa)
@@ -36,8 +38,11 @@ public class KeypleDto {
     // API method to be called
     private final String action;
 
-    // Arguments of the API (json)
-    private final String body;
+    // Arguments of the API (json), computed from the payload when needed
+    private String body;
+
+    // Arguments of the API as objects, only handed over by in-JVM transports (not serialized)
+    private transient Object payload;
 
     // Is a request or a response
     private final Boolean isRequest;
@@ -100,6 +105,33 @@ public class KeypleDto {
         this.targetNodeId = targetNodeId;
     }
 
+    /**
+     * Build a Dto whose arguments are kept as an object. The json body is only computed if the Dto
+     * goes through a serializing transport, in-JVM transports can hand over the payload directly.
+     * <p>
+     * The payload is not copied: it is shared with the receiver and serialized at the first
+     * {@link #getBody()} call, which may happen long after this call. It must therefore not be
+     * modified once the Dto is built, or the receiver gets the modified arguments.
+     * <p>
+     * A transport serializing the Dto fields itself (e.g. with its own Gson instance) must first
+     * build the body, for instance with {@link KeypleDtoHelper#withoutPayload(KeypleDto)}, since
+     * the payload is transient.
+     *
+     * @param action : API method to be called
+     * @param payload : Arguments of the API
+     * @param isRequest : Is a request or a response
+     * @param sessionId : Session Id of current Virtual Reader Session Id
+     * @return a new KeypleDto
+     */
+    public static KeypleDto withPayload(String action, Object payload, Boolean isRequest,
+            String sessionId, String nativeReaderName, String virtualReaderName,
+            String requesterNodeId, String targetNodeId) {
+        KeypleDto keypleDto = new KeypleDto(action, null, isRequest, sessionId, nativeReaderName,
+                virtualReaderName, requesterNodeId, targetNodeId);
+        keypleDto.payload = payload;
+        return keypleDto;
+    }
+
     /*
      * Getters and Setters
      */
@@ -113,9 +145,25 @@ public class KeypleDto {
     }
 
     public String getBody() {
+        if (body == null && payload != null) {
+            body = JsonParser.getGson().toJson(payload);
+        }
         return body;
     }
 
+    /**
+     * Arguments of the API as an object, only available when the Dto was built with
+     * {@link #withPayload(String, Object, Boolean, String, String, String, String, String)} and
+     * handed over in the same JVM
+     * <p>
+     * The payload is shared with the sender and must not be modified.
+     *
+     * @return payload or null
+     */
+    public Object getPayload() {
+        return payload;
+    }
+
     public String getSessionId() {
         return sessionId;
     }
@@ -11,6 +11,9 @@
  ********************************************************************************/
 package org.eclipse.keyple.plugin.remotese.transport.model;
 
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.metrics.MetricsRecorder;
+import org.eclipse.keyple.plugin.remotese.transport.RemoteSeMetrics;
 import org.eclipse.keyple.plugin.remotese.transport.json.JsonParser;
 import com.google.gson.JsonObject;
 
@@ -21,15 +24,61 @@ public class KeypleDtoHelper {
 
 
     static public String toJson(KeypleDto keypleDto) {
-        return JsonParser.getGson().toJson(keypleDto);
+        MetricsRecorder metrics = Metrics.getRecorder();
+        long start = metrics != null ? System.nanoTime() : 0;
+        // compute the body from the payload if any
+        keypleDto.getBody();
+        String json = JsonParser.getGson().toJson(keypleDto);
+        if (metrics != null) {
+            metrics.recordDuration(
+                    RemoteSeMetrics.source(keypleDto.getVirtualReaderName(),
+                            keypleDto.getNativeReaderName()),
+                    RemoteSeMetrics.DTO_SERIALIZATION, System.nanoTime() - start);
+        }
+        return json;
+    }
+
+    /**
+     * Drop the payload of a KeypleDto so the receiver parses its json body as it would over a
+     * network
+     *
+     * @param keypleDto : dto to be serialized
+     * @return the same dto if it has no payload, a copy with its body otherwise
+     */
+    static public KeypleDto withoutPayload(KeypleDto keypleDto) {
+        if (keypleDto.getPayload() == null) {
+            return keypleDto;
+        }
+        return new KeypleDto(keypleDto.getAction(), keypleDto.getBody(), keypleDto.isRequest(),
+                keypleDto.getSessionId(), keypleDto.getNativeReaderName(),
+                keypleDto.getVirtualReaderName(), keypleDto.getRequesterNodeId(),
+                keypleDto.getTargetNodeId());
     }
 
     static public KeypleDto fromJson(String json) {
-        return JsonParser.getGson().fromJson(json, KeypleDto.class);
+        MetricsRecorder metrics = Metrics.getRecorder();
+        long start = metrics != null ? System.nanoTime() : 0;
+        KeypleDto keypleDto = JsonParser.getGson().fromJson(json, KeypleDto.class);
+        recordDeserialization(metrics, keypleDto, start);
+        return keypleDto;
     }
 
     static public KeypleDto fromJsonObject(JsonObject jsonObj) {
-        return JsonParser.getGson().fromJson(jsonObj, KeypleDto.class);
+        MetricsRecorder metrics = Metrics.getRecorder();
+        long start = metrics != null ? System.nanoTime() : 0;
+        KeypleDto keypleDto = JsonParser.getGson().fromJson(jsonObj, KeypleDto.class);
+        recordDeserialization(metrics, keypleDto, start);
+        return keypleDto;
+    }
+
+    static private void recordDeserialization(MetricsRecorder metrics, KeypleDto keypleDto,
+            long start) {
+        if (metrics != null && keypleDto != null) {
+            metrics.recordDuration(
+                    RemoteSeMetrics.source(keypleDto.getVirtualReaderName(),
+                            keypleDto.getNativeReaderName()),
+                    RemoteSeMetrics.DTO_DESERIALIZATION, System.nanoTime() - start);
+        }
     }
 
     static public KeypleDto NoResponse() {
@@ -53,6 +102,10 @@ public class KeypleDtoHelper {
     }
 
     static public Boolean containsException(KeypleDto keypleDto) {
+        if (keypleDto.getPayload() != null) {
+            // exceptions are always sent as a json body (see ExceptionDTO)
+            return false;
+        }
         return keypleDto.getBody().contains("stackTrace");
     }
 
@@ -60,7 +60,7 @@ public class VirtualReaderBaseTest {
         logger.info("*** Init LocalTransportFactory");
         // use a local transport factory for testing purposes (only java calls between client and
         // server). Only one client and one server bound together.
-        factory = new LocalTransportFactory(SERVER_NODE_ID);
+        factory = createTransportFactory();
 
         logger.info("*** Bind Master Services");
         // bind Master services to server
@@ -74,6 +74,13 @@ public class VirtualReaderBaseTest {
 
     }
 
+    /**
+     * Transport used between master and slave, can be overridden to test other transports
+     */
+    protected TransportFactory createTransportFactory() {
+        return new LocalTransportFactory(SERVER_NODE_ID);
+    }
+
     protected void clearStubpluginReaders() throws Exception {
 
         logger.info("Cleaning of the stub plugin");
@@ -22,8 +22,10 @@ import org.eclipse.keyple.seproxy.event.ObservableReader;
 import org.eclipse.keyple.seproxy.event.ReaderEvent;
 import org.eclipse.keyple.seproxy.exception.KeypleIOReaderException;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.SeResponseSet;
 import org.eclipse.keyple.seproxy.protocol.Protocol;
 import org.eclipse.keyple.transaction.MatchingSe;
+import org.eclipse.keyple.transaction.MatchingSelection;
 import org.eclipse.keyple.transaction.SeSelection;
 import org.eclipse.keyple.transaction.SeSelectionRequest;
 import org.eclipse.keyple.transaction.SelectionsResult;
@@ -233,6 +235,79 @@ public class VirtualReaderEventTest extends VirtualReaderBaseTest {
     }
 
 
+    @Test
+    public void testInsertMatchingSeWithReadPlan() throws InterruptedException {
+
+        // CountDown lock
+        final CountDownLatch lock = new CountDownLatch(1);
+        final CountDownLatch removalLock = new CountDownLatch(1);
+        final String poAid = "A000000291A000000191";
+
+        final SeSelection seSelection = new SeSelection();
+
+        SeSelectionRequest seSelectionRequest = new SeSelectionRequest(
+                new SeSelector(new SeSelector.AidSelector(ByteArrayUtils.fromHex(poAid), null),
+                        null, "AID: " + poAid),
+                ChannelState.KEEP_OPEN, Protocol.ANY);
+
+        seSelection.prepareSelection(seSelectionRequest);
+
+        // add observer
+        virtualReader.addObserver(new ObservableReader.ReaderObserver() {
+            @Override
+            public void update(ReaderEvent event) {
+                if (event.getEventType() == ReaderEvent.EventType.SE_REMOVAL) {
+                    removalLock.countDown();
+                    return;
+                }
+                Assert.assertEquals(ReaderEvent.EventType.SE_MATCHED, event.getEventType());
+
+                // the read plan has been executed by the slave and pushed with the event
+                SeResponseSet readPlanResponse = virtualReader.getReadPlanResponse();
+                Assert.assertNotNull(readPlanResponse);
+                Assert.assertArrayEquals(ByteArrayUtils.fromHex(
+                        "00000000000000000000000000000000000000000000000000000000000000009000"),
+                        readPlanResponse.getSingleResponse().getApduResponses().get(0)
+                                .getBytes());
+
+                // and handed over to the matching selection
+                MatchingSelection matchingSelection = seSelection
+                        .processDefaultSelection(event.getDefaultSelectionResponse())
+                        .getActiveSelection();
+                Assert.assertSame(readPlanResponse, matchingSelection.getReadPlanResponseSet());
+
+                logger.debug("match event and read plan are correct");
+                // unlock thread
+                lock.countDown();
+            }
+        });
+
+        // read record SFI 14h, record 1 in the logical channel opened by the default selection
+        virtualReader.setDefaultSelectionRequest(seSelection.getSelectionOperation(),
+                ObservableReader.NotificationMode.MATCHED_ONLY,
+                StubReaderTest.getRequestIsoDepSetSample());
+
+        // wait 1 second
+        Thread.sleep(1000);
+
+        // test
+        nativeReader.insertSe(StubReaderTest.hoplinkSE());
+
+        // lock thread for 5 seconds max to wait for the event
+        lock.await(5, TimeUnit.SECONDS);
+        Assert.assertEquals(0, lock.getCount());
+
+        // let the monitoring thread complete the insertion before removing the SE
+        Thread.sleep(500);
+
+        // the read plan responses are dropped when the SE is removed
+        nativeReader.removeSe();
+        removalLock.await(5, TimeUnit.SECONDS);
+        Assert.assertEquals(0, removalLock.getCount());
+        Assert.assertNull(virtualReader.getReadPlanResponse());
+    }
+
+
     @Test
     public void testInsertNotMatching_MatchedOnly() throws InterruptedException {
 
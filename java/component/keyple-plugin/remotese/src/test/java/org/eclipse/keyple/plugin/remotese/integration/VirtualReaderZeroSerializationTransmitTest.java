@@ -0,0 +1,26 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.remotese.integration;
+
+import org.eclipse.keyple.plugin.remotese.transport.factory.TransportFactory;
+import org.eclipse.keyple.plugin.remotese.transport.impl.java.LocalTransportFactory;
+
+/**
+ * Run the transmit scenarii with the zero serialization local transport
+ */
+public class VirtualReaderZeroSerializationTransmitTest extends VirtualReaderTransmitTest {
+
+    @Override
+    protected TransportFactory createTransportFactory() {
+        return new LocalTransportFactory(SERVER_NODE_ID, true);
+    }
+}
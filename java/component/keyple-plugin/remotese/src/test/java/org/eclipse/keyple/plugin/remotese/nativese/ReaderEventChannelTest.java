@@ -0,0 +1,286 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.remotese.nativese;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.plugin.remotese.exception.KeypleRemoteException;
+import org.eclipse.keyple.plugin.remotese.rm.RemoteMethod;
+import org.eclipse.keyple.plugin.remotese.transport.DtoSender;
+import org.eclipse.keyple.plugin.remotese.transport.json.JsonParser;
+import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
+import org.eclipse.keyple.plugin.remotese.transport.model.TransportDto;
+import org.eclipse.keyple.seproxy.event.ReaderEvent;
+import org.junit.Assert;
+import org.junit.Test;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Test the batching, the flow control and the flapping policies of the ReaderEventChannel
+ */
+public class ReaderEventChannelTest {
+
+    // batches sent by the channel, not acknowledged
+    private final BlockingQueue<KeypleDto> sentDtos = new LinkedBlockingQueue<KeypleDto>();
+
+    private final DtoSender sender = new DtoSender() {
+        @Override
+        public void sendDTO(TransportDto message) {
+            sentDtos.add(message.getKeypleDTO());
+        }
+
+        @Override
+        public void sendDTO(KeypleDto message) {
+            sentDtos.add(message);
+        }
+
+        @Override
+        public String getNodeId() {
+            return "slaveNodeId";
+        }
+    };
+
+    private static JsonObject event(String readerName, ReaderEvent.EventType eventType) {
+        JsonObject data = new JsonObject();
+        data.addProperty("readerName", readerName);
+        data.addProperty("eventType", eventType.name());
+        return data;
+    }
+
+    private void offer(ReaderEventChannel channel, String readerName,
+            ReaderEvent.EventType eventType) {
+        channel.offer(readerName, eventType, event(readerName, eventType));
+    }
+
+    /**
+     * Bind the channel to a master that supports READER_EVENT_BATCH
+     */
+    private void bind(ReaderEventChannel channel) {
+        channel.bind(sender, "masterNodeId");
+        channel.setBatchSupported(true);
+    }
+
+    private JsonArray nextBatch() throws InterruptedException {
+        KeypleDto dto = sentDtos.poll(2, TimeUnit.SECONDS);
+        Assert.assertNotNull(dto);
+        Assert.assertEquals(RemoteMethod.READER_EVENT_BATCH.getName(), dto.getAction());
+        Assert.assertEquals("masterNodeId", dto.getTargetNodeId());
+        return JsonParser.getGson().fromJson(dto.getBody(), JsonObject.class)
+                .getAsJsonArray("events");
+    }
+
+    @Test
+    public void testEventsAreBatchedUntilCreditsAreGranted() throws Exception {
+        ReaderEventChannel channel =
+                new ReaderEventChannel(10, 1, 100, ReaderEventChannel.FlappingPolicy.KEEP_ALL);
+        bind(channel);
+
+        offer(channel, "reader1", ReaderEvent.EventType.SE_INSERTED);
+        Assert.assertEquals(1, nextBatch().size());
+
+        // no credit left : the events are queued
+        for (int i = 0; i < 15; i++) {
+            offer(channel, "reader" + i, ReaderEvent.EventType.SE_INSERTED);
+        }
+        Assert.assertNull(sentDtos.poll(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(15, channel.getPendingEventCount());
+
+        // each credit releases a batch of at most 10 events
+        channel.grantCredits(1);
+        Assert.assertEquals(10, nextBatch().size());
+        channel.grantCredits(1);
+        Assert.assertEquals(5, nextBatch().size());
+        Assert.assertEquals(0, channel.getPendingEventCount());
+    }
+
+    @Test
+    public void testMergeFlappingEvents() throws Exception {
+        ReaderEventChannel channel =
+                new ReaderEventChannel(10, 1, 100, ReaderEventChannel.FlappingPolicy.MERGE);
+        bind(channel);
+
+        // consume the credit
+        offer(channel, "reader1", ReaderEvent.EventType.SE_INSERTED);
+        nextBatch();
+
+        // reader1 : removal, then a SE is presented and removed before being notified
+        offer(channel, "reader1", ReaderEvent.EventType.SE_REMOVAL);
+        offer(channel, "reader1", ReaderEvent.EventType.SE_MATCHED);
+        offer(channel, "reader1", ReaderEvent.EventType.SE_REMOVAL);
+        // reader2 : a SE is presented
+        offer(channel, "reader2", ReaderEvent.EventType.SE_INSERTED);
+
+        Assert.assertEquals(2, channel.getMergedEventCount());
+
+        channel.grantCredits(1);
+        JsonArray events = nextBatch();
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("SE_REMOVAL",
+                events.get(0).getAsJsonObject().get("eventType").getAsString());
+        Assert.assertEquals("reader2",
+                events.get(1).getAsJsonObject().get("readerName").getAsString());
+    }
+
+    @Test
+    public void testKeepAllFlappingEvents() throws Exception {
+        ReaderEventChannel channel =
+                new ReaderEventChannel(10, 1, 100, ReaderEventChannel.FlappingPolicy.KEEP_ALL);
+        bind(channel);
+
+        offer(channel, "reader1", ReaderEvent.EventType.SE_INSERTED);
+        nextBatch();
+
+        offer(channel, "reader1", ReaderEvent.EventType.SE_REMOVAL);
+        offer(channel, "reader1", ReaderEvent.EventType.SE_INSERTED);
+        offer(channel, "reader1", ReaderEvent.EventType.SE_REMOVAL);
+
+        channel.grantCredits(1);
+        Assert.assertEquals(3, nextBatch().size());
+        Assert.assertEquals(0, channel.getMergedEventCount());
+    }
+
+    @Test
+    public void testDropEventsWhenFull() throws Exception {
+        ReaderEventChannel channel =
+                new ReaderEventChannel(10, 1, 3, ReaderEventChannel.FlappingPolicy.KEEP_ALL);
+        bind(channel);
+
+        offer(channel, "reader0", ReaderEvent.EventType.SE_INSERTED);
+        nextBatch();
+
+        for (int i = 1; i <= 5; i++) {
+            offer(channel, "reader" + i, ReaderEvent.EventType.SE_INSERTED);
+        }
+
+        Assert.assertEquals(3, channel.getPendingEventCount());
+        Assert.assertEquals(2, channel.getDroppedEventCount());
+    }
+
+    @Test
+    public void testLostFrameIsCounted() throws Exception {
+        ReaderEventChannel channel =
+                new ReaderEventChannel(10, 1, 100, ReaderEventChannel.FlappingPolicy.KEEP_ALL);
+        channel.bind(new DtoSender() {
+            private boolean failed;
+
+            @Override
+            public void sendDTO(TransportDto message) {}
+
+            @Override
+            public synchronized void sendDTO(KeypleDto message) throws KeypleRemoteException {
+                if (!failed) {
+                    failed = true;
+                    throw new KeypleRemoteException("link down");
+                }
+                sentDtos.add(message);
+            }
+
+            @Override
+            public String getNodeId() {
+                return "slaveNodeId";
+            }
+        }, "masterNodeId");
+        channel.setBatchSupported(true);
+
+        offer(channel, "reader1", ReaderEvent.EventType.SE_INSERTED);
+        // let the first frame fail before queuing the next event
+        Thread.sleep(200);
+        Assert.assertEquals(1, channel.getDroppedEventCount());
+        offer(channel, "reader2", ReaderEvent.EventType.SE_INSERTED);
+
+        // the credit of the lost frame is given back
+        JsonArray events = nextBatch();
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("reader2",
+                events.get(0).getAsJsonObject().get("readerName").getAsString());
+        channel.close();
+    }
+
+    @Test
+    public void testEventsAreQueuedUntilTheMasterAnswersTheConnection() throws Exception {
+        ReaderEventChannel channel =
+                new ReaderEventChannel(10, 1, 100, ReaderEventChannel.FlappingPolicy.KEEP_ALL);
+        channel.bind(sender, "masterNodeId");
+
+        offer(channel, "reader1", ReaderEvent.EventType.SE_INSERTED);
+        offer(channel, "reader2", ReaderEvent.EventType.SE_INSERTED);
+        Assert.assertNull(sentDtos.poll(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, channel.getPendingEventCount());
+
+        channel.setBatchSupported(true);
+        Assert.assertEquals(2, nextBatch().size());
+        channel.close();
+    }
+
+    @Test
+    public void testSingleEventsWhenBatchIsNotSupported() throws Exception {
+        ReaderEventChannel channel =
+                new ReaderEventChannel(10, 1, 100, ReaderEventChannel.FlappingPolicy.KEEP_ALL);
+        channel.bind(sender, "masterNodeId");
+        channel.setBatchSupported(false);
+
+        // no credit is ever granted by such a master
+        for (String readerName : new String[] {"reader1", "reader2", "reader3"}) {
+            offer(channel, readerName, ReaderEvent.EventType.SE_INSERTED);
+        }
+        for (String readerName : new String[] {"reader1", "reader2", "reader3"}) {
+            KeypleDto dto = sentDtos.poll(2, TimeUnit.SECONDS);
+            Assert.assertNotNull(dto);
+            Assert.assertEquals(RemoteMethod.READER_EVENT.getName(), dto.getAction());
+            Assert.assertEquals(readerName, dto.getNativeReaderName());
+        }
+        channel.close();
+    }
+
+    @Test
+    public void testMissingCreditKeepsEventsQueued() throws Exception {
+        ReaderEventChannel channel =
+                new ReaderEventChannel(10, 1, 100, ReaderEventChannel.FlappingPolicy.KEEP_ALL);
+        bind(channel);
+
+        // the master does not acknowledge the batch
+        offer(channel, "reader1", ReaderEvent.EventType.SE_INSERTED);
+        nextBatch();
+
+        offer(channel, "reader2", ReaderEvent.EventType.SE_INSERTED);
+        Assert.assertNull(sentDtos.poll(1, TimeUnit.SECONDS));
+        Assert.assertEquals(1, channel.getPendingEventCount());
+        Assert.assertEquals(0, channel.getDroppedEventCount());
+        channel.close();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        ReaderEventChannel channel =
+                new ReaderEventChannel(10, 1, 100, ReaderEventChannel.FlappingPolicy.KEEP_ALL);
+        bind(channel);
+        offer(channel, "reader1", ReaderEvent.EventType.SE_INSERTED);
+        nextBatch();
+        offer(channel, "reader2", ReaderEvent.EventType.SE_INSERTED);
+
+        channel.close();
+
+        Assert.assertFalse(channel.offer("reader3", ReaderEvent.EventType.SE_INSERTED,
+                event("reader3", ReaderEvent.EventType.SE_INSERTED)));
+        Assert.assertEquals(0, channel.getPendingEventCount());
+        Assert.assertEquals(2, channel.getDroppedEventCount());
+        channel.grantCredits(1);
+        Assert.assertNull(sentDtos.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSettings() {
+        new ReaderEventChannel(0, 1, 1, ReaderEventChannel.FlappingPolicy.MERGE);
+    }
+}
@@ -0,0 +1,251 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.remotese.pluginse;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.keyple.journal.ApduJournal;
+import org.eclipse.keyple.plugin.remotese.rm.RemoteMethod;
+import org.eclipse.keyple.plugin.remotese.transport.DtoSender;
+import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
+import org.eclipse.keyple.plugin.remotese.transport.model.TransportDto;
+import org.eclipse.keyple.seproxy.event.DefaultSelectionRequest;
+import org.eclipse.keyple.seproxy.event.ObservablePlugin;
+import org.eclipse.keyple.seproxy.event.ObservableReader;
+import org.eclipse.keyple.seproxy.event.PluginEvent;
+import org.eclipse.keyple.seproxy.event.ReaderEvent;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderNotFoundException;
+import org.eclipse.keyple.seproxy.message.SeRequest;
+import org.eclipse.keyple.seproxy.message.SeRequestSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the session management of the RemoteSePlugin : lookups, passivation and expiry
+ */
+public class VirtualReaderSessionStoreTest {
+
+    private static final long PASSIVATION_DELAY = 1000;
+    private static final long SESSION_TIMEOUT = 5000;
+
+    private RemoteSePlugin plugin;
+
+    private final List<KeypleDto> sentDtos = new ArrayList<KeypleDto>();
+
+    private final List<PluginEvent.EventType> pluginEvents = new ArrayList<PluginEvent.EventType>();
+
+    private final DtoSender sender = new DtoSender() {
+        @Override
+        public void sendDTO(TransportDto message) {}
+
+        @Override
+        public void sendDTO(KeypleDto message) {
+            sentDtos.add(message);
+        }
+
+        @Override
+        public String getNodeId() {
+            return "masterNodeId";
+        }
+    };
+
+    @Before
+    public void setUp() {
+        // idle sessions are checked by the test with a time in the future
+        plugin = new RemoteSePlugin(new VirtualReaderSessionFactory(), sender, PASSIVATION_DELAY,
+                SESSION_TIMEOUT);
+        plugin.addObserver(new ObservablePlugin.PluginObserver() {
+            @Override
+            public void update(PluginEvent event) {
+                pluginEvents.add(event.getEventType());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        plugin.shutdown();
+    }
+
+    @Test
+    public void testSessionIdsAreUnique() {
+        VirtualReaderSessionFactory factory = new VirtualReaderSessionFactory();
+        Set<String> sessionIds = new HashSet<String>();
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertTrue(sessionIds.add(
+                    factory.createSession("reader", "slaveNodeId", "masterNodeId").getSessionId()));
+        }
+    }
+
+    @Test
+    public void testGetReaderBySessionId() throws Exception {
+        VirtualReader reader =
+                (VirtualReader) plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+        plugin.createVirtualReader("slaveNodeId", "reader2", sender);
+
+        Assert.assertSame(reader, plugin.getReaderBySessionId(reader.getSession().getSessionId()));
+        Assert.assertSame(reader, plugin.getReaderByRemoteName("reader1"));
+        Assert.assertEquals(2, plugin.getSessionCount());
+    }
+
+    @Test(expected = KeypleReaderNotFoundException.class)
+    public void testGetReaderByUnknownSessionId() throws Exception {
+        plugin.getReaderBySessionId("unknown");
+    }
+
+    @Test(expected = KeypleReaderException.class)
+    public void testCreateTwiceSameReader() throws Exception {
+        plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+        plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+    }
+
+    @Test
+    public void testPassivateAndRehydrate() throws Exception {
+        VirtualReader reader =
+                (VirtualReader) plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+        String sessionId = reader.getSession().getSessionId();
+
+        plugin.checkIdleSessions(System.currentTimeMillis() + PASSIVATION_DELAY + 1);
+
+        // reader is no longer listed but its session is kept
+        Assert.assertEquals(0, plugin.getReaders().size());
+        Assert.assertEquals(1, plugin.getSessionCount());
+
+        // a dto for the session rehydrates the same reader (still referenced by the test)
+        Assert.assertSame(reader, plugin.getReaderBySessionId(sessionId));
+        Assert.assertEquals(1, plugin.getReaders().size());
+        Assert.assertSame(reader, plugin.getReader(reader.getName()));
+
+        // the observers of the plugin follow the readers list
+        Assert.assertEquals(PluginEvent.EventType.READER_CONNECTED, pluginEvents.get(0));
+        Assert.assertEquals(PluginEvent.EventType.READER_DISCONNECTED, pluginEvents.get(1));
+        Assert.assertEquals(PluginEvent.EventType.READER_CONNECTED, pluginEvents.get(2));
+        Assert.assertEquals(3, pluginEvents.size());
+    }
+
+    @Test
+    public void testRebuiltReaderKeepsDefaultSelection() throws Exception {
+        VirtualReader reader =
+                (VirtualReader) plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+        DefaultSelectionRequest defaultSelectionRequest =
+                new DefaultSelectionRequest(new SeRequestSet(new HashSet<SeRequest>()));
+        SeRequestSet readPlan = new SeRequestSet(new HashSet<SeRequest>());
+        reader.restoreDefaultSelectionRequest(defaultSelectionRequest,
+                ObservableReader.NotificationMode.MATCHED_ONLY, readPlan);
+        VirtualReaderSessionStore.Entry entry =
+                new VirtualReaderSessionStore.Entry(reader.getSession(), "reader1", reader);
+        entry.passivate();
+
+        // the passivated reader has been collected
+        VirtualReader rebuiltReader = new VirtualReader(reader.getSession(), "reader1", null);
+        entry.restore(rebuiltReader);
+
+        Assert.assertSame(rebuiltReader, entry.getReader());
+        Assert.assertSame(defaultSelectionRequest, rebuiltReader.getDefaultSelectionRequest());
+        Assert.assertEquals(ObservableReader.NotificationMode.MATCHED_ONLY,
+                rebuiltReader.getNotificationMode());
+        Assert.assertSame(readPlan, rebuiltReader.getReadPlan());
+    }
+
+    @Test
+    public void testApduJournalOfThePlugin() throws Exception {
+        ApduJournal journal = new ApduJournal() {
+            @Override
+            public void append(String readerName, byte[] request, byte[] response,
+                    int statusWord, boolean successful) {}
+        };
+        VirtualReader reader1 =
+                (VirtualReader) plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+        plugin.setApduJournal(journal);
+        VirtualReader reader2 =
+                (VirtualReader) plugin.createVirtualReader("slaveNodeId", "reader2", sender);
+        Assert.assertSame(journal, reader1.getApduJournal());
+        Assert.assertSame(journal, reader2.getApduJournal());
+
+        // the journal detached while the reader was passivated is detached at its rehydration
+        plugin.checkIdleSessions(System.currentTimeMillis() + PASSIVATION_DELAY + 1);
+        plugin.setApduJournal(null);
+        Assert.assertSame(reader1,
+                plugin.getReaderBySessionId(reader1.getSession().getSessionId()));
+        Assert.assertNull(reader1.getApduJournal());
+    }
+
+    @Test
+    public void testObservedReaderIsNotPassivated() throws Exception {
+        VirtualReader reader =
+                (VirtualReader) plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+        reader.addObserver(new ObservableReader.ReaderObserver() {
+            @Override
+            public void update(ReaderEvent event) {}
+        });
+
+        plugin.checkIdleSessions(System.currentTimeMillis() + PASSIVATION_DELAY + 1);
+
+        Assert.assertEquals(1, plugin.getReaders().size());
+    }
+
+    @Test
+    public void testObservedReaderDoesNotExpire() throws Exception {
+        VirtualReader reader =
+                (VirtualReader) plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+        reader.addObserver(new ObservableReader.ReaderObserver() {
+            @Override
+            public void update(ReaderEvent event) {}
+        });
+
+        plugin.checkIdleSessions(System.currentTimeMillis() + SESSION_TIMEOUT + 1);
+
+        Assert.assertEquals(1, plugin.getReaders().size());
+        Assert.assertEquals(1, plugin.getSessionCount());
+        Assert.assertTrue(sentDtos.isEmpty());
+    }
+
+    @Test
+    public void testSessionExpiry() throws Exception {
+        plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+
+        plugin.checkIdleSessions(System.currentTimeMillis() + SESSION_TIMEOUT + 1);
+
+        Assert.assertEquals(0, plugin.getReaders().size());
+        Assert.assertEquals(0, plugin.getSessionCount());
+
+        // the slave is told to stop sending the events of the reader
+        Assert.assertEquals(1, sentDtos.size());
+        Assert.assertEquals(RemoteMethod.READER_DISCONNECT.getName(), sentDtos.get(0).getAction());
+        Assert.assertTrue(sentDtos.get(0).isRequest());
+        Assert.assertEquals("reader1", sentDtos.get(0).getNativeReaderName());
+        Assert.assertEquals("slaveNodeId", sentDtos.get(0).getTargetNodeId());
+
+        // the reader can connect again
+        plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+        Assert.assertEquals(1, plugin.getReaders().size());
+    }
+
+    @Test
+    public void testDisconnectPassivatedReader() throws Exception {
+        plugin.createVirtualReader("slaveNodeId", "reader1", sender);
+        plugin.checkIdleSessions(System.currentTimeMillis() + PASSIVATION_DELAY + 1);
+
+        plugin.disconnectRemoteReader("reader1");
+
+        Assert.assertEquals(0, plugin.getReaders().size());
+        Assert.assertEquals(0, plugin.getSessionCount());
+
+        // the disconnection was notified at the passivation
+        Assert.assertEquals(2, pluginEvents.size());
+    }
+}
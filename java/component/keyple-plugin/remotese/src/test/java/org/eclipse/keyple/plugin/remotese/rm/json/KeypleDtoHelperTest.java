@@ -13,9 +13,12 @@ package org.eclipse.keyple.plugin.remotese.rm.json;
 
 
 import java.io.IOException;
+import org.eclipse.keyple.plugin.remotese.transport.json.JsonParser;
 import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDto;
 import org.eclipse.keyple.plugin.remotese.transport.model.KeypleDtoHelper;
 import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.SeRequestSet;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -40,4 +43,24 @@ public class KeypleDtoHelperTest {
 
     }
 
+    @Test
+    public void testPayloadIsSerializedOnDemand() {
+        SeRequestSet seRequestSet = SampleFactory.getCompleteRequestSet();
+        KeypleDto dtoWithPayload = KeypleDto.withPayload("any", seRequestSet, true, "any", "any",
+                "any", "any", "any");
+
+        Assert.assertSame(seRequestSet, dtoWithPayload.getPayload());
+        Assert.assertFalse(KeypleDtoHelper.containsException(dtoWithPayload));
+
+        // the receiver of a serialized dto only gets the json body
+        KeypleDto received = KeypleDtoHelper.fromJson(KeypleDtoHelper.toJson(dtoWithPayload));
+        Assert.assertNull(received.getPayload());
+        Assert.assertEquals(JsonParser.getGson().toJson(seRequestSet), received.getBody());
+
+        KeypleDto withoutPayload = KeypleDtoHelper.withoutPayload(dtoWithPayload);
+        Assert.assertNull(withoutPayload.getPayload());
+        Assert.assertEquals(received.getBody(), withoutPayload.getBody());
+        Assert.assertEquals("any", withoutPayload.getTargetNodeId());
+    }
+
 }
@@ -0,0 +1,131 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Faults injected by a {@link StubReader} in the APDU exchanges
+ * <p>
+ * Each fault is triggered once, on the APDU following the given number of APDUs transmitted since
+ * the schedule was set on the reader (or reset):
+ * <ul>
+ * <li>an IO exception, the SE remaining in the reader,</li>
+ * <li>the removal of the SE (tearing): the APDU fails with an IO exception, the physical channel
+ * is closed and the SE is removed from the reader,</li>
+ * <li>the removal of the SE after the processing of the APDU: same as above, the SE having
+ * processed the command whose response is lost,</li>
+ * <li>a status word returned instead of the SE response, the APDU not being sent to the SE.</li>
+ * </ul>
+ */
+public final class StubFaultSchedule {
+
+    enum FaultType {
+        IO_EXCEPTION, SE_REMOVAL, SE_REMOVAL_AFTER_COMMAND, STATUS_WORD
+    }
+
+    static final class Fault {
+        final FaultType type;
+        final byte[] statusWord;
+
+        Fault(FaultType type, byte[] statusWord) {
+            this.type = type;
+            this.statusWord = statusWord;
+        }
+    }
+
+    private final Map<Integer, Fault> faults = new HashMap<Integer, Fault>();
+
+    private int apduCount;
+
+    /**
+     * Throw an IO exception on the APDU following the given number of APDUs
+     *
+     * @param apduCount : number of APDUs successfully transmitted before the fault
+     */
+    public synchronized void ioExceptionAfter(int apduCount) {
+        addFault(apduCount, new Fault(FaultType.IO_EXCEPTION, null));
+    }
+
+    /**
+     * Remove the SE on the APDU following the given number of APDUs
+     *
+     * @param apduCount : number of APDUs successfully transmitted before the fault
+     */
+    public synchronized void removeSeAfter(int apduCount) {
+        addFault(apduCount, new Fault(FaultType.SE_REMOVAL, null));
+    }
+
+    /**
+     * Remove the SE once it has processed the APDU following the given number of APDUs, the
+     * response being lost
+     *
+     * @param apduCount : number of APDUs successfully transmitted before the fault
+     */
+    public synchronized void removeSeAfterCommand(int apduCount) {
+        addFault(apduCount, new Fault(FaultType.SE_REMOVAL_AFTER_COMMAND, null));
+    }
+
+    /**
+     * Answer the APDU following the given number of APDUs with a status word
+     *
+     * @param apduCount : number of APDUs transmitted before the fault
+     * @param statusWord : status word returned, e.g. 0x6400
+     */
+    public synchronized void statusWordAfter(int apduCount, int statusWord) {
+        addFault(apduCount, new Fault(FaultType.STATUS_WORD,
+                new byte[] {(byte) (statusWord >> 8), (byte) statusWord}));
+    }
+
+    private void addFault(int apduCount, Fault fault) {
+        if (apduCount < 0) {
+            throw new IllegalArgumentException("The APDU count must not be negative");
+        }
+        if (faults.containsKey(apduCount)) {
+            throw new IllegalArgumentException("A fault is already scheduled after " + apduCount
+                    + " APDUs");
+        }
+        faults.put(apduCount, fault);
+    }
+
+    /**
+     * @return number of APDUs transmitted since the schedule was set or reset, the APDUs failing
+     *         with a fault included
+     */
+    public synchronized int getApduCount() {
+        return apduCount;
+    }
+
+    /**
+     * @return true if all the scheduled faults have been triggered
+     */
+    public synchronized boolean isCompleted() {
+        return faults.isEmpty();
+    }
+
+    /**
+     * Restart counting the APDUs, the faults already triggered are not scheduled again
+     */
+    public synchronized void reset() {
+        apduCount = 0;
+    }
+
+    /**
+     * Count an APDU to transmit
+     *
+     * @return the fault to apply to this APDU, null if none
+     */
+    synchronized Fault nextApdu() {
+        return faults.remove(apduCount++);
+    }
+}
@@ -13,6 +13,7 @@ package org.eclipse.keyple.plugin.stub;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import org.eclipse.keyple.seproxy.exception.KeypleChannelStateException;
 import org.eclipse.keyple.seproxy.exception.KeypleIOReaderException;
@@ -36,7 +37,17 @@ public final class StubReader extends AbstractThreadedLocalReader {
 
     private StubSecureElement se;
 
-    private boolean sePresent;
+    private volatile boolean sePresent;
+
+    // notified on each insertion or removal of the SE, the monitoring thread waits on it
+    private final Object presenceMonitor = new Object();
+
+    // time of the last insertion or removal of the SE, guarded by presenceMonitor
+    private long presenceChangeTime;
+
+    private volatile StubTimingProfile timingProfile;
+
+    private volatile StubFaultSchedule faultSchedule;
 
     private Map<String, String> parameters = new HashMap<String, String>();
 
@@ -70,6 +81,10 @@ public final class StubReader extends AbstractThreadedLocalReader {
     @Override
     protected void openPhysicalChannel() throws KeypleChannelStateException {
         if (se != null) {
+            StubTimingProfile profile = timingProfile;
+            if (profile != null && !pause(profile.getConnectDelay())) {
+                throw new KeypleChannelStateException("Interrupted while connecting to the SE");
+            }
             se.openPhysicalChannel();
         }
     }
@@ -83,7 +98,105 @@ public final class StubReader extends AbstractThreadedLocalReader {
 
     @Override
     public byte[] transmitApdu(byte[] apduIn) throws KeypleIOReaderException {
-        return se.processApdu(apduIn);
+        StubTimingProfile profile = timingProfile;
+        if (profile != null && !pause(profile.nextApduLatency())) {
+            throw new KeypleIOReaderException("Interrupted while transmitting the APDU");
+        }
+        StubSecureElement currentSe = se;
+        if (currentSe == null) {
+            throw new KeypleIOReaderException("No SE available.");
+        }
+        StubFaultSchedule schedule = faultSchedule;
+        StubFaultSchedule.Fault fault = schedule != null ? schedule.nextApdu() : null;
+        if (fault != null) {
+            switch (fault.type) {
+                case STATUS_WORD:
+                    logger.trace("[{}] Injected status word", readerName);
+                    return fault.statusWord.clone();
+                case SE_REMOVAL_AFTER_COMMAND:
+                    logger.trace("[{}] Injected SE removal after the command", readerName);
+                    currentSe.processApdu(apduIn);
+                    tearing(currentSe);
+                    throw new KeypleIOReaderException("SE removed during the APDU exchange");
+                case SE_REMOVAL:
+                    logger.trace("[{}] Injected SE removal", readerName);
+                    tearing(currentSe);
+                    throw new KeypleIOReaderException("SE removed during the APDU exchange");
+                default:
+                    logger.trace("[{}] Injected IO exception", readerName);
+                    throw new KeypleIOReaderException("Injected IO exception");
+            }
+        }
+        return currentSe.processApdu(apduIn);
+    }
+
+    /**
+     * Remove the SE from the field
+     */
+    private void tearing(StubSecureElement currentSe) {
+        try {
+            currentSe.closePhysicalChannel();
+        } catch (KeypleChannelStateException e) {
+            logger.trace("[{}] Channel already closed", readerName);
+        }
+        removeSe();
+    }
+
+    /**
+     * Sleep to simulate a delay
+     *
+     * @param nanos : delay in nanoseconds
+     * @return false if the thread was interrupted
+     */
+    private static boolean pause(long nanos) {
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Set the timings simulated by this reader
+     *
+     * @param timingProfile : profile to use, null to remove all delays
+     */
+    public void setTimingProfile(StubTimingProfile timingProfile) {
+        this.timingProfile = timingProfile;
+        synchronized (presenceMonitor) {
+            // the waiting threads take the new presence delay into account
+            presenceMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * @return the timings simulated by this reader, null if none
+     */
+    public StubTimingProfile getTimingProfile() {
+        return timingProfile;
+    }
+
+    /**
+     * Set the faults to inject in the APDU exchanges of this reader
+     *
+     * @param faultSchedule : faults to inject, null for none
+     */
+    public void setFaultSchedule(StubFaultSchedule faultSchedule) {
+        if (faultSchedule != null) {
+            faultSchedule.reset();
+        }
+        this.faultSchedule = faultSchedule;
+    }
+
+    /**
+     * @return the faults injected in the APDU exchanges of this reader, null if none
+     */
+    public StubFaultSchedule getFaultSchedule() {
+        return faultSchedule;
     }
 
     @Override
@@ -180,13 +293,57 @@ public final class StubReader extends AbstractThreadedLocalReader {
                 e.printStackTrace();
             }
         }
-        se = _se;
-        sePresent = true;
+        synchronized (presenceMonitor) {
+            se = _se;
+            sePresent = true;
+            presenceChangeTime = System.currentTimeMillis();
+            presenceMonitor.notifyAll();
+        }
     }
 
     public void removeSe() {
-        se = null;
-        sePresent = false;
+        synchronized (presenceMonitor) {
+            se = null;
+            sePresent = false;
+            presenceChangeTime = System.currentTimeMillis();
+            presenceMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the SE presence reaches the expected state and is detected, after the presence
+     * delay of the timing profile
+     *
+     * @param present : expected presence
+     * @param timeout : max delay in milliseconds
+     * @return true if the expected state was reached and detected
+     */
+    private boolean waitForSePresence(boolean present, long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (presenceMonitor) {
+            while (true) {
+                long now = System.currentTimeMillis();
+                long wait = deadline - now;
+                if (sePresent == present) {
+                    StubTimingProfile profile = timingProfile;
+                    long detection = profile == null ? 0
+                            : presenceChangeTime + profile.getPresenceDelayMillis() - now;
+                    if (detection <= 0) {
+                        return true;
+                    }
+                    wait = Math.min(wait, detection);
+                }
+                if (wait <= 0) {
+                    return false;
+                }
+                try {
+                    presenceMonitor.wait(wait);
+                } catch (InterruptedException e) {
+                    logger.debug("Wait was interrupted");
+                    return false;
+                }
+            }
+        }
     }
 
     /**
@@ -198,17 +355,7 @@ public final class StubReader extends AbstractThreadedLocalReader {
      */
     @Override
     protected boolean waitForCardPresent(long timeout) throws NoStackTraceThrowable {
-        for (int i = 0; i < timeout / 10; i++) {
-            if (sePresent) {
-                break;
-            }
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                logger.debug("Sleep was interrupted");
-            }
-        }
-        return sePresent;
+        return waitForSePresence(true, timeout);
     }
 
     /**
@@ -220,16 +367,6 @@ public final class StubReader extends AbstractThreadedLocalReader {
      */
     @Override
     protected boolean waitForCardAbsent(long timeout) throws NoStackTraceThrowable {
-        for (int i = 0; i < timeout / 10; i++) {
-            if (!sePresent) {
-                break;
-            }
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                logger.debug("Sleep was interrupted");
-            }
-        }
-        return !sePresent;
+        return waitForSePresence(false, timeout);
     }
 }
@@ -11,7 +11,10 @@
  ********************************************************************************/
 package org.eclipse.keyple.plugin.stub;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.eclipse.keyple.seproxy.exception.KeypleChannelStateException;
 import org.eclipse.keyple.seproxy.exception.KeypleIOReaderException;
@@ -48,7 +51,11 @@ public abstract class StubSecureElement {
     public abstract String getSeProcotol();
 
 
-    Map<String, String> hexCommands = new HashMap<String, String>();
+    /* responses to the exact commands, pre-decoded */
+    final Map<ApduKey, byte[]> commands = new HashMap<ApduKey, byte[]>();
+
+    /* prefix and masked commands, checked in insertion order when no exact command matches */
+    final List<CommandRule> commandRules = new ArrayList<CommandRule>();
 
     /**
      * Add more simulated commands to the Stub SE
@@ -58,8 +65,61 @@ public abstract class StubSecureElement {
      */
     public void addHexCommand(String command, String response) {
         assert command != null && response != null : "command and response should not be null";
-        // add commands without space
-        hexCommands.put(command.replace(" ", ""), response.replace(" ", ""));
+        addCommand(fromHex(command), fromHex(response));
+    }
+
+    /**
+     * Add a simulated command to the Stub SE
+     *
+     * @param command : command to react to
+     * @param response : response to be sent in reaction to command
+     */
+    public void addCommand(byte[] command, byte[] response) {
+        assert command != null && response != null : "command and response should not be null";
+        commands.put(new ApduKey(command.clone()), response.clone());
+    }
+
+    /**
+     * Add a simulated command matching all the commands starting with a prefix
+     * <p>
+     * Prefix and masked commands are checked in the order they were added, after the exact
+     * commands.
+     *
+     * @param prefix : hexadecimal beginning of the commands to react to (e.g. "00B2" for all
+     *        the Read Records commands)
+     * @param response : hexadecimal response to be sent in reaction to the commands
+     */
+    public void addHexPrefixCommand(String prefix, String response) {
+        assert prefix != null && response != null : "prefix and response should not be null";
+        byte[] prefixBytes = fromHex(prefix);
+        byte[] mask = new byte[prefixBytes.length];
+        Arrays.fill(mask, (byte) 0xFF);
+        commandRules.add(new CommandRule(mask, prefixBytes, true, fromHex(response)));
+    }
+
+    /**
+     * Add a simulated command matching all the commands <code>c</code> of the length of the mask
+     * such as <code>c[i] &amp; mask[i] == value[i]</code>
+     * <p>
+     * Prefix and masked commands are checked in the order they were added, after the exact
+     * commands.
+     *
+     * @param mask : hexadecimal mask applied to the commands (00 for the ignored bytes)
+     * @param value : hexadecimal value expected once the mask applied
+     * @param response : hexadecimal response to be sent in reaction to the commands
+     */
+    public void addHexMaskedCommand(String mask, String value, String response) {
+        assert mask != null && value != null
+                && response != null : "mask, value and response should not be null";
+        byte[] maskBytes = fromHex(mask);
+        byte[] valueBytes = fromHex(value);
+        if (maskBytes.length != valueBytes.length) {
+            throw new IllegalArgumentException("Mask and value must have the same length");
+        }
+        for (int i = 0; i < valueBytes.length; i++) {
+            valueBytes[i] &= maskBytes[i];
+        }
+        commandRules.add(new CommandRule(maskBytes, valueBytes, false, fromHex(response)));
     }
 
     /**
@@ -69,7 +129,7 @@ public abstract class StubSecureElement {
      */
     public void removeHexCommand(String command) {
         assert command != null : "command should not be null";
-        hexCommands.remove(command.trim());
+        commands.remove(new ApduKey(fromHex(command)));
     }
 
     /**
@@ -85,15 +145,78 @@ public abstract class StubSecureElement {
             return null;
         }
 
-        // convert apduIn to hexa
-        String hexApdu = ByteArrayUtils.toHex(apduIn);
-
-        // return matching hexa response if found
-        if (hexCommands.containsKey(hexApdu)) {
-            return ByteArrayUtils.fromHex(hexCommands.get(hexApdu));
+        // return matching response if found
+        byte[] response = commands.get(new ApduKey(apduIn));
+        if (response == null) {
+            for (CommandRule rule : commandRules) {
+                if (rule.matches(apduIn)) {
+                    response = rule.response;
+                    break;
+                }
+            }
+        }
+        if (response != null) {
+            // the stored response is protected from changes made by the caller
+            return response.clone();
         }
 
         // throw a KeypleIOReaderException if not found
         throw new KeypleIOReaderException("No response available for this request.");
     }
+
+    private static byte[] fromHex(String hex) {
+        return ByteArrayUtils.fromHex(hex.replace(" ", ""));
+    }
+
+    /**
+     * Command bytes usable as a map key
+     */
+    static final class ApduKey {
+        private final byte[] apdu;
+        private final int hash;
+
+        ApduKey(byte[] apdu) {
+            this.apdu = apdu;
+            this.hash = Arrays.hashCode(apdu);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ApduKey && Arrays.equals(apdu, ((ApduKey) o).apdu);
+        }
+    }
+
+    /**
+     * Prefix or masked command
+     */
+    static final class CommandRule {
+        private final byte[] mask;
+        private final byte[] value;
+        private final boolean prefix;
+        private final byte[] response;
+
+        CommandRule(byte[] mask, byte[] value, boolean prefix, byte[] response) {
+            this.mask = mask;
+            this.value = value;
+            this.prefix = prefix;
+            this.response = response;
+        }
+
+        boolean matches(byte[] apdu) {
+            if (prefix ? apdu.length < mask.length : apdu.length != mask.length) {
+                return false;
+            }
+            for (int i = 0; i < mask.length; i++) {
+                if ((apdu[i] & mask[i]) != value[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
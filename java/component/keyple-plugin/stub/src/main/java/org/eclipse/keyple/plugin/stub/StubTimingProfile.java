@@ -0,0 +1,168 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings simulated by a {@link StubReader}
+ * <p>
+ * A profile defines:
+ * <ul>
+ * <li>the latency added to each APDU exchange, fixed or drawn from a uniform or a gaussian
+ * distribution,</li>
+ * <li>the delay to connect to the SE (ATR retrieval when the physical channel is opened),</li>
+ * <li>the delay between the insertion or the removal of the SE and its detection by the
+ * reader.</li>
+ * </ul>
+ * The random latencies are drawn from a seeded generator: a given profile produces the same
+ * sequence of latencies at each run.
+ * <p>
+ * By default all the delays are null.
+ */
+public final class StubTimingProfile {
+
+    private enum Distribution {
+        FIXED, UNIFORM, GAUSSIAN
+    }
+
+    private final Random random;
+
+    private Distribution apduLatencyDistribution = Distribution.FIXED;
+    /* fixed latency, mean or min depending on the distribution, in nanoseconds */
+    private long apduLatency1;
+    /* standard deviation or max depending on the distribution, in nanoseconds */
+    private long apduLatency2;
+
+    private long connectDelay;
+    private long presenceDelay;
+
+    /**
+     * Profile using the default seed (0)
+     */
+    public StubTimingProfile() {
+        this(0);
+    }
+
+    /**
+     * @param seed : seed of the generator of random latencies
+     */
+    public StubTimingProfile(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Set a fixed latency for each APDU
+     *
+     * @param latency : latency, 0 for none
+     * @param unit : time unit of the latency
+     */
+    public void setApduLatency(long latency, TimeUnit unit) {
+        checkNotNegative(latency);
+        setApduLatency(Distribution.FIXED, unit.toNanos(latency), 0);
+    }
+
+    /**
+     * Set a latency uniformly distributed between two bounds for each APDU
+     *
+     * @param min : lowest latency
+     * @param max : highest latency
+     * @param unit : time unit of the latencies
+     */
+    public void setUniformApduLatency(long min, long max, TimeUnit unit) {
+        checkNotNegative(min);
+        if (max < min) {
+            throw new IllegalArgumentException("The max latency is lower than the min latency");
+        }
+        setApduLatency(Distribution.UNIFORM, unit.toNanos(min), unit.toNanos(max));
+    }
+
+    /**
+     * Set a latency following a normal distribution for each APDU, the negative values being
+     * replaced by 0
+     *
+     * @param mean : mean latency
+     * @param standardDeviation : standard deviation of the latency
+     * @param unit : time unit of the latencies
+     */
+    public void setGaussianApduLatency(long mean, long standardDeviation, TimeUnit unit) {
+        checkNotNegative(mean);
+        checkNotNegative(standardDeviation);
+        setApduLatency(Distribution.GAUSSIAN, unit.toNanos(mean), unit.toNanos(standardDeviation));
+    }
+
+    private synchronized void setApduLatency(Distribution distribution, long latency1,
+            long latency2) {
+        apduLatencyDistribution = distribution;
+        apduLatency1 = latency1;
+        apduLatency2 = latency2;
+    }
+
+    /**
+     * Set the delay to open the physical channel and retrieve the ATR
+     *
+     * @param delay : delay, 0 for none
+     * @param unit : time unit of the delay
+     */
+    public void setConnectDelay(long delay, TimeUnit unit) {
+        checkNotNegative(delay);
+        connectDelay = unit.toNanos(delay);
+    }
+
+    /**
+     * Set the delay to detect the insertion or the removal of the SE
+     *
+     * @param delay : delay, 0 for none
+     * @param unit : time unit of the delay
+     */
+    public void setPresenceDelay(long delay, TimeUnit unit) {
+        checkNotNegative(delay);
+        presenceDelay = unit.toNanos(delay);
+    }
+
+    /**
+     * @return the latency of the next APDU in nanoseconds
+     */
+    synchronized long nextApduLatency() {
+        switch (apduLatencyDistribution) {
+            case UNIFORM:
+                return apduLatency1
+                        + (long) (random.nextDouble() * (apduLatency2 - apduLatency1 + 1));
+            case GAUSSIAN:
+                return Math.max(0,
+                        apduLatency1 + (long) (random.nextGaussian() * apduLatency2));
+            default:
+                return apduLatency1;
+        }
+    }
+
+    /**
+     * @return the connect delay in nanoseconds
+     */
+    long getConnectDelay() {
+        return connectDelay;
+    }
+
+    /**
+     * @return the presence detection delay in milliseconds
+     */
+    long getPresenceDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(presenceDelay);
+    }
+
+    private static void checkNotNegative(long delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Delays must not be negative");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub.calypso;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Test-key cryptography shared by the simulated PO and SAM.
+ * <p>
+ * This is NOT the Calypso cryptography: keys and signatures are derived with HMAC-SHA1 from a
+ * public test key. Both simulators compute the same session digest, so the signatures exchanged
+ * by a PoTransaction are checked for real and any change in the exchanged data makes the session
+ * fail.
+ */
+final class CalypsoTestCrypto {
+
+    private static final String HMAC = "HmacSHA1";
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    static final int KEY_CRYPTOGRAM_LENGTH = 32;
+    /* key used by Card Generate Key when no ciphering key is given */
+    static final byte[] NULL_KEY = new byte[16];
+
+    private CalypsoTestCrypto() {}
+
+    /**
+     * Diversified test key
+     *
+     * @param kif : key identifier
+     * @param kvc : key version
+     * @param serialNumber : application serial number of the PO (diversifier)
+     * @return the key
+     */
+    static byte[] diversifiedKey(byte kif, byte kvc, byte[] serialNumber) {
+        byte[] masterKey =
+                String.format("keyple-test-key-%02X%02X", kif, kvc).getBytes(ASCII);
+        return hmac(masterKey, serialNumber);
+    }
+
+    /**
+     * Cryptogram of a key to be loaded in a PO with Change Key
+     * <p>
+     * The test keys being derived from their KIF and KVC, only these are transported:
+     * <code>KIF KVC MAC(20) 00..00(10)</code>, the MAC being computed with the ciphering key over
+     * the PO challenge and the KIF/KVC.
+     *
+     * @param cipheringKey : key protecting the transport (key #1 of the PO)
+     * @param poChallenge : challenge returned by the PO Get Challenge command
+     * @param kif : KIF of the new key
+     * @param kvc : KVC of the new key
+     * @return the 32-byte cryptogram
+     */
+    static byte[] keyCryptogram(byte[] cipheringKey, byte[] poChallenge, byte kif, byte kvc) {
+        byte[] cryptogram = new byte[KEY_CRYPTOGRAM_LENGTH];
+        cryptogram[0] = kif;
+        cryptogram[1] = kvc;
+        byte[] mac = hmac(cipheringKey, poChallenge, new byte[] {kif, kvc});
+        System.arraycopy(mac, 0, cryptogram, 2, mac.length);
+        return cryptogram;
+    }
+
+    static byte[] hmac(byte[] key, byte[]... data) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(key, HMAC));
+            for (byte[] block : data) {
+                mac.update(block);
+            }
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA1 is not available", e);
+        }
+    }
+
+    /**
+     * Digest of a secure session
+     * <p>
+     * Initialized with the terminal challenge and the data of the Open Secure Session response,
+     * then updated with each command (without Le for case 4 commands) and each response (with the
+     * status word) exchanged in the session.
+     */
+    static final class SessionDigest {
+
+        private static final byte[] TERMINAL_LABEL = "T".getBytes(ASCII);
+        private static final byte[] PO_LABEL = "P".getBytes(ASCII);
+
+        private final byte[] sessionKey;
+        private final MessageDigest digest;
+        private byte[] digestValue;
+
+        SessionDigest(byte[] key, byte[] terminalChallenge, byte[] openSessionData) {
+            this.sessionKey = hmac(key, terminalChallenge, openSessionData);
+            try {
+                this.digest = MessageDigest.getInstance("SHA-1");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA-1 is not available", e);
+            }
+        }
+
+        /**
+         * Add a command or a response to the digest
+         */
+        void update(byte[] block, int offset, int length) {
+            if (digestValue != null) {
+                throw new IllegalStateException("The session digest is closed");
+            }
+            digest.update((byte) (length >> 8));
+            digest.update((byte) length);
+            digest.update(block, offset, length);
+        }
+
+        void update(byte[] block) {
+            update(block, 0, block.length);
+        }
+
+        /**
+         * Close the digest, no more data can be added
+         */
+        private byte[] value() {
+            if (digestValue == null) {
+                digestValue = digest.digest();
+            }
+            return digestValue;
+        }
+
+        /**
+         * @param length : 4 or 8 bytes
+         * @return signature of the terminal (SAM)
+         */
+        byte[] terminalSignature(int length) {
+            return Arrays.copyOf(hmac(sessionKey, TERMINAL_LABEL, value()), length);
+        }
+
+        /**
+         * @return signature of the PO, 4 bytes
+         */
+        byte[] poSignature() {
+            return Arrays.copyOf(hmac(sessionKey, PO_LABEL, value()), 4);
+        }
+    }
+}
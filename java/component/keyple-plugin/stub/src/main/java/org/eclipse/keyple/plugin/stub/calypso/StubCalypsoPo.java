@@ -0,0 +1,1188 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub.calypso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.eclipse.keyple.plugin.stub.StubSecureElement;
+import org.eclipse.keyple.seproxy.exception.KeypleChannelStateException;
+import org.eclipse.keyple.seproxy.exception.KeypleIOReaderException;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stateful simulation of a Calypso PO.
+ * <p>
+ * Unlike a plain {@link StubSecureElement} replaying recorded exchanges, this PO holds an
+ * application with linear, cyclic and counters EFs and processes the commands issued by a
+ * PoTransaction: Select Application, Select File, Get Data (FCI), Read Records, Update Record,
+ * Append Record, Increase, Decrease, Get Challenge, Change Key and the secure session commands,
+ * plus Read Record Multiple, Search Record Multiple, Increase Multiple and Decrease Multiple for
+ * the {@link Revision#REV3_3} POs.
+ * <p>
+ * Secure sessions behave as on a real PO:
+ * <ul>
+ * <li>the Open Secure Session response follows the format of the configured {@link Revision},
+ * with a transaction counter decremented at each opening and the ratification status of the
+ * previous session,</li>
+ * <li>the modifications are limited by the modification buffer announced in the FCI (in bytes for
+ * rev3, in number of commands for rev2.4),</li>
+ * <li>the modifications are committed only when Close Secure Session succeeds, they are cancelled
+ * by an abort, a wrong terminal signature or a tearing (channel closed during the session),</li>
+ * <li>the session is ratified by the Close Secure Session command (contacts mode) or by the next
+ * command received (contactless mode).</li>
+ * </ul>
+ * Signatures and key cryptograms are computed with test keys, not with the Calypso algorithms: a
+ * PoTransaction involving this PO must be run with a {@link StubCalypsoSam}.
+ * <p>
+ * Commands not handled by the simulation fall back to the hexadecimal commands added with
+ * {@link #addHexCommand(String, String)}.
+ * <p>
+ * This class is not thread safe, as a real PO it processes one command at a time.
+ */
+public class StubCalypsoPo extends StubSecureElement {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubCalypsoPo.class);
+
+    /**
+     * Simulated PO revisions
+     */
+    public enum Revision {
+        /** Rev2.4: legacy class byte, modifications counted in number of commands */
+        REV2_4((byte) 0x04, 4),
+        /** Rev3.1 */
+        REV3_1((byte) 0x20, 4),
+        /** Rev3.1 with the rev3.2 mode: 8-byte challenges and terminal signature */
+        REV3_2((byte) 0x28, 8),
+        /** Rev3.2 mode with the multiple record and counter commands (rev3.3) */
+        REV3_3((byte) 0x38, 8);
+
+        private final byte applicationType;
+        private final int terminalSignatureLength;
+
+        Revision(byte applicationType, int terminalSignatureLength) {
+            this.applicationType = applicationType;
+            this.terminalSignatureLength = terminalSignatureLength;
+        }
+    }
+
+    private static final String ATR = "3B8880010000000000718100F9";
+    private static final String PROTOCOL = "PROTOCOL_ISO14443_4";
+
+    /* instruction bytes, see CalypsoPoCommands */
+    private static final byte INS_SELECT_FILE = (byte) 0xA4;
+    private static final byte INS_GET_DATA = (byte) 0xCA;
+    private static final byte INS_GET_CHALLENGE = (byte) 0x84;
+    private static final byte INS_OPEN_SESSION = (byte) 0x8A;
+    private static final byte INS_CLOSE_SESSION = (byte) 0x8E;
+    private static final byte INS_READ_RECORDS = (byte) 0xB2;
+    private static final byte INS_UPDATE_RECORD = (byte) 0xDC;
+    private static final byte INS_APPEND_RECORD = (byte) 0xE2;
+    private static final byte INS_INCREASE = (byte) 0x32;
+    private static final byte INS_DECREASE = (byte) 0x30;
+    private static final byte INS_CHANGE_KEY = (byte) 0xD8;
+    private static final byte INS_READ_RECORD_MULTIPLE = (byte) 0xB3;
+    private static final byte INS_SEARCH_RECORD_MULTIPLE = (byte) 0xA2;
+    private static final byte INS_INCREASE_MULTIPLE = (byte) 0x3A;
+    private static final byte INS_DECREASE_MULTIPLE = (byte) 0x38;
+
+    /* status words */
+    private static final int SW_SUCCESS = 0x9000;
+    private static final int SW_PARTIAL_READ = 0x6200;
+    private static final int SW_TOO_MANY_MODIFICATIONS = 0x6400;
+    private static final int SW_WRONG_LENGTH = 0x6700;
+    private static final int SW_TRANSACTION_COUNTER_IS_ZERO = 0x6900;
+    private static final int SW_INCOMPATIBLE_FILE = 0x6981;
+    private static final int SW_INCORRECT_SIGNATURE = 0x6988;
+    private static final int SW_ACCESS_FORBIDDEN = 0x6985;
+    private static final int SW_NO_CURRENT_EF = 0x6986;
+    private static final int SW_OVERFLOW = 0x6A80;
+    private static final int SW_WRONG_KEY_INDEX = 0x6A81;
+    private static final int SW_INCORRECT_DATA = 0x6A80;
+    private static final int SW_FILE_NOT_FOUND = 0x6A82;
+    private static final int SW_RECORD_NOT_FOUND = 0x6A83;
+    private static final int SW_WRONG_P1_P2 = 0x6B00;
+    private static final int SW_INS_NOT_SUPPORTED = 0x6D00;
+
+    /* buffer size indicator of the startup information (0x0A: 430 bytes) */
+    private static final byte BUFFER_SIZE_INDICATOR = (byte) 0x0A;
+    private static final int BUFFER_SIZE = 430;
+    /* number of modification commands accepted in a rev2.4 session */
+    private static final int REV2_MODIFICATION_COMMANDS = 6;
+    /* overhead of a modification command in the modification buffer (rev3) */
+    private static final int MODIFICATION_OVERHEAD = 6;
+    /* size of the record data in a rev2.4 Open Secure Session response */
+    private static final int REV2_OPEN_RECORD_SIZE = 29;
+    private static final int MAX_COUNTER_VALUE = 0xFFFFFF;
+
+    private static final byte EF_TYPE_LINEAR = 0x02;
+    private static final byte EF_TYPE_CYCLIC = 0x04;
+    private static final byte EF_TYPE_COUNTERS = 0x09;
+
+    private final Revision revision;
+    private final byte[] aid;
+    private final byte[] serialNumber;
+    private final byte[] fci;
+    private final Random random;
+
+    /* EFs of the application, by SFI, in creation order */
+    private final Map<Byte, ElementaryFile> files = new LinkedHashMap<Byte, ElementaryFile>();
+    /* KIF and KVC of the keys 1 (perso), 2 (load), 3 (debit) */
+    private final byte[][] keys = new byte[][] {{(byte) 0x21, (byte) 0x79},
+            {(byte) 0x27, (byte) 0x79}, {(byte) 0x30, (byte) 0x79}};
+    private int transactionCounter = 0x00FFFF;
+
+    private boolean applicationSelected;
+    private ElementaryFile currentFile;
+    private byte[] challenge;
+
+    /* secure session state */
+    private boolean sessionOpen;
+    private CalypsoTestCrypto.SessionDigest sessionDigest;
+    private int modificationsUsed;
+    // records of the EFs modified in the session, as they were at the opening
+    private final Map<ElementaryFile, byte[][]> sessionBackup =
+            new IdentityHashMap<ElementaryFile, byte[][]>();
+    private boolean ratificationPending;
+    private boolean lastSessionRatified = true;
+    private int closedSessionCount;
+
+    /**
+     * Create a PO with an empty application
+     *
+     * @param revision : revision of the PO, determines the FCI and the secure session formats
+     * @param aid : AID of the application
+     * @param serialNumber : 8-byte application serial number, also used as key diversifier
+     */
+    public StubCalypsoPo(Revision revision, byte[] aid, byte[] serialNumber) {
+        if (revision == null || aid == null) {
+            throw new IllegalArgumentException("Revision and AID are mandatory");
+        }
+        if (serialNumber == null || serialNumber.length != 8) {
+            throw new IllegalArgumentException("The serial number must be 8-byte long");
+        }
+        this.revision = revision;
+        this.aid = aid.clone();
+        this.serialNumber = serialNumber.clone();
+        this.fci = buildFci();
+        // a deterministic random makes the exchanges reproducible from one run to another
+        this.random = new Random(Arrays.hashCode(serialNumber));
+    }
+
+    @Override
+    public byte[] getATR() {
+        return ByteArrayUtils.fromHex(ATR);
+    }
+
+    @Override
+    public String getSeProcotol() {
+        return PROTOCOL;
+    }
+
+    public Revision getRevision() {
+        return revision;
+    }
+
+    public byte[] getSerialNumber() {
+        return serialNumber.clone();
+    }
+
+    /**
+     * Add a linear EF to the application
+     *
+     * @param sfi : short file identifier
+     * @param lid : long identifier (used by Select File)
+     * @param numberOfRecords : number of records
+     * @param recordSize : size of the records
+     * @return the PO
+     */
+    public StubCalypsoPo addLinearFile(byte sfi, int lid, int numberOfRecords, int recordSize) {
+        return addFile(new ElementaryFile(sfi, lid, EF_TYPE_LINEAR, numberOfRecords, recordSize));
+    }
+
+    /**
+     * Add a cyclic EF to the application, record 1 is the most recent record
+     *
+     * @param sfi : short file identifier
+     * @param lid : long identifier (used by Select File)
+     * @param numberOfRecords : number of records
+     * @param recordSize : size of the records
+     * @return the PO
+     */
+    public StubCalypsoPo addCyclicFile(byte sfi, int lid, int numberOfRecords, int recordSize) {
+        return addFile(new ElementaryFile(sfi, lid, EF_TYPE_CYCLIC, numberOfRecords, recordSize));
+    }
+
+    /**
+     * Add a counters EF to the application: one record holding 3-byte counters numbered from 1
+     *
+     * @param sfi : short file identifier
+     * @param lid : long identifier (used by Select File)
+     * @param numberOfCounters : number of counters
+     * @return the PO
+     */
+    public StubCalypsoPo addCountersFile(byte sfi, int lid, int numberOfCounters) {
+        return addFile(new ElementaryFile(sfi, lid, EF_TYPE_COUNTERS, 1, 3 * numberOfCounters));
+    }
+
+    private StubCalypsoPo addFile(ElementaryFile file) {
+        if (files.containsKey(file.sfi)) {
+            throw new IllegalArgumentException(
+                    String.format("The SFI %02X is already used", file.sfi));
+        }
+        files.put(file.sfi, file);
+        return this;
+    }
+
+    /**
+     * Set the content of a record, the data is padded with zeros up to the record size
+     *
+     * @param sfi : short file identifier
+     * @param recordNumber : record number, from 1
+     * @param data : record data
+     */
+    public void setRecord(byte sfi, int recordNumber, byte[] data) {
+        ElementaryFile file = getFile(sfi);
+        if (data.length > file.recordSize) {
+            throw new IllegalArgumentException("The data is longer than the record");
+        }
+        Arrays.fill(file.records[recordIndex(file, recordNumber)], (byte) 0);
+        System.arraycopy(data, 0, file.records[recordIndex(file, recordNumber)], 0, data.length);
+    }
+
+    /**
+     * @param sfi : short file identifier
+     * @param recordNumber : record number, from 1
+     * @return a copy of the record content
+     */
+    public byte[] getRecord(byte sfi, int recordNumber) {
+        ElementaryFile file = getFile(sfi);
+        return file.records[recordIndex(file, recordNumber)].clone();
+    }
+
+    /**
+     * @param sfi : short file identifier of a counters EF
+     * @param counterNumber : counter number, from 1
+     * @param value : value of the counter, from 0 to 16777215
+     */
+    public void setCounter(byte sfi, int counterNumber, int value) {
+        if (value < 0 || value > MAX_COUNTER_VALUE) {
+            throw new IllegalArgumentException("Counter value out of range: " + value);
+        }
+        ElementaryFile file = getFile(sfi);
+        writeCounter(file.records[0], counterOffset(file, counterNumber), value);
+    }
+
+    /**
+     * @param sfi : short file identifier of a counters EF
+     * @param counterNumber : counter number, from 1
+     * @return value of the counter
+     */
+    public int getCounter(byte sfi, int counterNumber) {
+        ElementaryFile file = getFile(sfi);
+        return readCounter(file.records[0], counterOffset(file, counterNumber));
+    }
+
+    /**
+     * Set the key used for a session access level
+     *
+     * @param keyIndex : 1 (personalization), 2 (load) or 3 (debit)
+     * @param kif : key identifier, returned by the Open Secure Session command in rev3
+     * @param kvc : key version
+     */
+    public void setKey(int keyIndex, byte kif, byte kvc) {
+        if (keyIndex < 1 || keyIndex > keys.length) {
+            throw new IllegalArgumentException("Wrong key index: " + keyIndex);
+        }
+        keys[keyIndex - 1] = new byte[] {kif, kvc};
+    }
+
+    /**
+     * @param keyIndex : 1 (personalization), 2 (load) or 3 (debit)
+     * @return KIF and KVC of the key
+     */
+    public byte[] getKey(int keyIndex) {
+        if (keyIndex < 1 || keyIndex > keys.length) {
+            throw new IllegalArgumentException("Wrong key index: " + keyIndex);
+        }
+        return keys[keyIndex - 1].clone();
+    }
+
+    public void setTransactionCounter(int transactionCounter) {
+        if (transactionCounter < 0 || transactionCounter > MAX_COUNTER_VALUE) {
+            throw new IllegalArgumentException(
+                    "Transaction counter out of range: " + transactionCounter);
+        }
+        this.transactionCounter = transactionCounter;
+    }
+
+    public int getTransactionCounter() {
+        return transactionCounter;
+    }
+
+    public boolean isSessionOpen() {
+        return sessionOpen;
+    }
+
+    /**
+     * @return true if the last closed session has been ratified (or is not yet known as not
+     *         ratified because the PO is still in the field)
+     */
+    public boolean isLastSessionRatified() {
+        return lastSessionRatified;
+    }
+
+    /**
+     * @return number of secure sessions successfully closed
+     */
+    public int getClosedSessionCount() {
+        return closedSessionCount;
+    }
+
+    /**
+     * A new communication (the PO enters the field) cancels any pending session
+     */
+    @Override
+    public void openPhysicalChannel() throws KeypleChannelStateException {
+        tearing();
+        super.openPhysicalChannel();
+    }
+
+    /**
+     * The PO leaving the field cancels the current session, a session closed without ratification
+     * stays not ratified
+     */
+    @Override
+    public void closePhysicalChannel() throws KeypleChannelStateException {
+        tearing();
+        super.closePhysicalChannel();
+    }
+
+    private void tearing() {
+        if (sessionOpen) {
+            logger.trace("Tearing during the session: the modifications are cancelled");
+            cancelSession();
+        }
+        if (ratificationPending) {
+            ratificationPending = false;
+            lastSessionRatified = false;
+        }
+        applicationSelected = false;
+        currentFile = null;
+        challenge = null;
+    }
+
+    @Override
+    public byte[] processApdu(byte[] apduIn) throws KeypleIOReaderException {
+        if (apduIn == null) {
+            return null;
+        }
+        if (apduIn.length < 4) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+
+        // any command received after the closing ratifies the session
+        if (ratificationPending) {
+            ratificationPending = false;
+            lastSessionRatified = true;
+        }
+
+        Apdu apdu = new Apdu(apduIn);
+        byte[] response;
+        switch (apdu.ins) {
+            case INS_SELECT_FILE:
+                response = apdu.p1 == 0x04 ? selectApplication(apdu) : selectFile(apdu);
+                break;
+            case INS_GET_DATA:
+                response = getData(apdu);
+                break;
+            case INS_GET_CHALLENGE:
+                challenge = randomBytes(8);
+                response = response(challenge, SW_SUCCESS);
+                break;
+            case INS_CHANGE_KEY:
+                response = changeKey(apdu);
+                break;
+            case INS_OPEN_SESSION:
+                return openSession(apdu);
+            case INS_CLOSE_SESSION:
+                return closeSession(apdu);
+            case INS_READ_RECORDS:
+                response = readRecords(apdu);
+                break;
+            case INS_UPDATE_RECORD:
+                response = updateRecord(apdu);
+                break;
+            case INS_APPEND_RECORD:
+                response = appendRecord(apdu);
+                break;
+            case INS_INCREASE:
+            case INS_DECREASE:
+                response = increaseOrDecrease(apdu);
+                break;
+            case INS_READ_RECORD_MULTIPLE:
+                response = readRecordMultiple(apdu);
+                break;
+            case INS_SEARCH_RECORD_MULTIPLE:
+                response = searchRecordMultiple(apdu);
+                break;
+            case INS_INCREASE_MULTIPLE:
+            case INS_DECREASE_MULTIPLE:
+                response = increaseOrDecreaseMultiple(apdu);
+                break;
+            default:
+                try {
+                    response = super.processApdu(apduIn);
+                } catch (KeypleIOReaderException e) {
+                    response = statusWord(SW_INS_NOT_SUPPORTED);
+                }
+                break;
+        }
+
+        if (sessionOpen) {
+            // Le is not part of the digest for case 4 commands
+            sessionDigest.update(apduIn, 0, apdu.isCase4() ? apduIn.length - 1 : apduIn.length);
+            sessionDigest.update(response);
+        }
+        return response;
+    }
+
+    private byte[] selectApplication(Apdu apdu) {
+        if (apdu.data.length == 0 || apdu.data.length > aid.length
+                || !Arrays.equals(apdu.data, Arrays.copyOf(aid, apdu.data.length))) {
+            applicationSelected = false;
+            return statusWord(SW_FILE_NOT_FOUND);
+        }
+        if (sessionOpen) {
+            cancelSession();
+        }
+        applicationSelected = true;
+        currentFile = null;
+        return response(fci, SW_SUCCESS);
+    }
+
+    private byte[] getData(Apdu apdu) {
+        if (apdu.p1 != 0x00 || apdu.p2 != (byte) 0x6F) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        return response(fci, SW_SUCCESS);
+    }
+
+    private byte[] selectFile(Apdu apdu) {
+        List<ElementaryFile> fileList = new ArrayList<ElementaryFile>(files.values());
+        ElementaryFile file = null;
+        if (apdu.p1 == 0x02) {
+            /* first or next EF of the current DF */
+            int index = apdu.p2 == 0x02 && currentFile != null
+                    ? fileList.indexOf(currentFile) + 1
+                    : 0;
+            if (index < fileList.size()) {
+                file = fileList.get(index);
+            }
+        } else if (apdu.p1 == 0x09 || apdu.p1 == 0x08) {
+            if (apdu.data.length < 2 || apdu.data.length % 2 != 0) {
+                return statusWord(SW_WRONG_LENGTH);
+            }
+            int lid = ((apdu.data[apdu.data.length - 2] & 0xFF) << 8)
+                    | (apdu.data[apdu.data.length - 1] & 0xFF);
+            if (lid == 0x0000) {
+                return response(dfDescriptor(), SW_SUCCESS);
+            }
+            for (ElementaryFile candidate : fileList) {
+                if (candidate.lid == lid) {
+                    file = candidate;
+                    break;
+                }
+            }
+        } else {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        if (file == null) {
+            return statusWord(SW_FILE_NOT_FOUND);
+        }
+        currentFile = file;
+        return response(file.descriptor(), SW_SUCCESS);
+    }
+
+    private byte[] readRecords(Apdu apdu) {
+        int mode = apdu.p2 & 0x07;
+        if (apdu.p1 == 0x00 || (mode != 0x04 && mode != 0x05)) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        ElementaryFile file = selectEf(apdu.p2);
+        if (file == null) {
+            return statusWord(currentFileStatus(apdu.p2));
+        }
+        int recordNumber = apdu.p1 & 0xFF;
+        if (recordNumber > file.records.length) {
+            return statusWord(SW_RECORD_NOT_FOUND);
+        }
+        if (mode == 0x04) {
+            return response(file.records[recordNumber - 1], SW_SUCCESS);
+        }
+        /* multiple records: [number, length, data] for each record up to Le (or the last one) */
+        int maxLength = apdu.le == 0 ? 256 : apdu.le;
+        byte[] buffer = new byte[maxLength];
+        int length = 0;
+        for (int i = recordNumber - 1; i < file.records.length; i++) {
+            byte[] record = file.records[i];
+            if (length + 2 + record.length > maxLength) {
+                break;
+            }
+            buffer[length++] = (byte) (i + 1);
+            buffer[length++] = (byte) record.length;
+            System.arraycopy(record, 0, buffer, length, record.length);
+            length += record.length;
+        }
+        return response(Arrays.copyOf(buffer, length), SW_SUCCESS);
+    }
+
+    private byte[] updateRecord(Apdu apdu) {
+        if ((apdu.p2 & 0x07) != 0x04) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        ElementaryFile file = selectEf(apdu.p2);
+        if (file == null) {
+            return statusWord(currentFileStatus(apdu.p2));
+        }
+        int recordNumber = apdu.p1 & 0xFF;
+        if (recordNumber == 0 || recordNumber > file.records.length) {
+            return statusWord(SW_RECORD_NOT_FOUND);
+        }
+        if (apdu.data.length > file.recordSize) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        if (!useModificationBuffer(apdu)) {
+            return statusWord(SW_TOO_MANY_MODIFICATIONS);
+        }
+        backup(file);
+        byte[] record = file.records[recordNumber - 1];
+        Arrays.fill(record, (byte) 0);
+        System.arraycopy(apdu.data, 0, record, 0, apdu.data.length);
+        return statusWord(SW_SUCCESS);
+    }
+
+    private byte[] appendRecord(Apdu apdu) {
+        if (apdu.p1 != 0x00 || (apdu.p2 & 0x07) != 0x00) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        ElementaryFile file = selectEf(apdu.p2);
+        if (file == null) {
+            return statusWord(currentFileStatus(apdu.p2));
+        }
+        if (file.efType != EF_TYPE_CYCLIC) {
+            return statusWord(SW_INCOMPATIBLE_FILE);
+        }
+        if (apdu.data.length > file.recordSize) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        if (!useModificationBuffer(apdu)) {
+            return statusWord(SW_TOO_MANY_MODIFICATIONS);
+        }
+        backup(file);
+        /* the oldest record is replaced, the new one becomes record 1 */
+        byte[] record = file.records[file.records.length - 1];
+        System.arraycopy(file.records, 0, file.records, 1, file.records.length - 1);
+        Arrays.fill(record, (byte) 0);
+        System.arraycopy(apdu.data, 0, record, 0, apdu.data.length);
+        file.records[0] = record;
+        return statusWord(SW_SUCCESS);
+    }
+
+    private byte[] increaseOrDecrease(Apdu apdu) {
+        if ((apdu.p2 & 0x07) != 0x00) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        if (apdu.data.length != 3) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        ElementaryFile file = selectEf(apdu.p2);
+        if (file == null) {
+            return statusWord(currentFileStatus(apdu.p2));
+        }
+        if (file.efType != EF_TYPE_COUNTERS) {
+            return statusWord(SW_INCOMPATIBLE_FILE);
+        }
+        int counterNumber = apdu.p1 & 0xFF;
+        if (counterNumber == 0 || counterNumber * 3 > file.recordSize) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        int offset = (counterNumber - 1) * 3;
+        int operand = readCounter(apdu.data, 0);
+        int value = readCounter(file.records[0], offset)
+                + (apdu.ins == INS_INCREASE ? operand : -operand);
+        if (value < 0 || value > MAX_COUNTER_VALUE) {
+            return statusWord(SW_OVERFLOW);
+        }
+        if (!useModificationBuffer(apdu)) {
+            return statusWord(SW_TOO_MANY_MODIFICATIONS);
+        }
+        backup(file);
+        writeCounter(file.records[0], offset, value);
+        return response(Arrays.copyOfRange(file.records[0], offset, offset + 3), SW_SUCCESS);
+    }
+
+    /**
+     * Read Record Multiple: data = 54h 02h offset length, the same part of the records from P1
+     */
+    private byte[] readRecordMultiple(Apdu apdu) {
+        if (revision != Revision.REV3_3) {
+            return statusWord(SW_INS_NOT_SUPPORTED);
+        }
+        if ((apdu.p2 & 0x07) != 0x05) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        if (apdu.data.length != 4 || apdu.data[0] != 0x54 || apdu.data[1] != 0x02) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        ElementaryFile file = selectEf(apdu.p2);
+        if (file == null) {
+            return statusWord(currentFileStatus(apdu.p2));
+        }
+        int recordNumber = apdu.p1 & 0xFF;
+        if (recordNumber == 0 || recordNumber > file.records.length) {
+            return statusWord(SW_RECORD_NOT_FOUND);
+        }
+        int offset = apdu.data[2] & 0xFF;
+        int length = apdu.data[3] & 0xFF;
+        if (length == 0 || offset + length > file.recordSize) {
+            return statusWord(SW_INCORRECT_DATA);
+        }
+        int maxLength = apdu.le == 0 ? 256 : apdu.le;
+        byte[] buffer = new byte[maxLength];
+        int bufferLength = 0;
+        for (int i = recordNumber - 1; i < file.records.length; i++) {
+            if (bufferLength + length > maxLength) {
+                return response(Arrays.copyOf(buffer, bufferLength), SW_PARTIAL_READ);
+            }
+            System.arraycopy(file.records[i], offset, buffer, bufferLength, length);
+            bufferLength += length;
+        }
+        return response(Arrays.copyOf(buffer, bufferLength), SW_SUCCESS);
+    }
+
+    /**
+     * Search Record Multiple: data = offset, flags, length, searched data [, mask]
+     */
+    private byte[] searchRecordMultiple(Apdu apdu) {
+        if (revision != Revision.REV3_3) {
+            return statusWord(SW_INS_NOT_SUPPORTED);
+        }
+        if ((apdu.p2 & 0x07) != 0x07) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        if (apdu.data.length < 4) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        int offset = apdu.data[0] & 0xFF;
+        boolean repeatedOffset = (apdu.data[1] & 0x80) != 0;
+        boolean fetchFirst = (apdu.data[1] & 0x01) != 0;
+        int length = apdu.data[2] & 0xFF;
+        if (length == 0 || (apdu.data.length != 3 + length && apdu.data.length != 3 + 2 * length)) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        boolean masked = apdu.data.length == 3 + 2 * length;
+        ElementaryFile file = selectEf(apdu.p2);
+        if (file == null) {
+            return statusWord(currentFileStatus(apdu.p2));
+        }
+        int recordNumber = apdu.p1 & 0xFF;
+        if (recordNumber == 0 || recordNumber > file.records.length) {
+            return statusWord(SW_RECORD_NOT_FOUND);
+        }
+        if (offset + length > file.recordSize) {
+            return statusWord(SW_INCORRECT_DATA);
+        }
+        List<Integer> matchingRecords = new ArrayList<Integer>();
+        for (int i = recordNumber - 1; i < file.records.length; i++) {
+            byte[] record = file.records[i];
+            int lastPosition = repeatedOffset ? record.length - length : offset;
+            for (int position = offset; position <= lastPosition; position++) {
+                boolean match = true;
+                for (int j = 0; j < length && match; j++) {
+                    int mask = masked ? apdu.data[3 + length + j] : 0xFF;
+                    match = ((record[position + j] ^ apdu.data[3 + j]) & mask) == 0;
+                }
+                if (match) {
+                    matchingRecords.add(i + 1);
+                    break;
+                }
+            }
+        }
+        byte[] data = new byte[1 + matchingRecords.size()];
+        data[0] = (byte) matchingRecords.size();
+        for (int i = 0; i < matchingRecords.size(); i++) {
+            data[1 + i] = (byte) matchingRecords.get(i).intValue();
+        }
+        if (fetchFirst && !matchingRecords.isEmpty()) {
+            data = concat(data, file.records[matchingRecords.get(0) - 1]);
+        }
+        return response(data, SW_SUCCESS);
+    }
+
+    /**
+     * Increase Multiple and Decrease Multiple: data = [counter number, value] for each counter,
+     * all the counters are modified or none
+     */
+    private byte[] increaseOrDecreaseMultiple(Apdu apdu) {
+        if (revision != Revision.REV3_3) {
+            return statusWord(SW_INS_NOT_SUPPORTED);
+        }
+        if (apdu.p1 != 0x00 || (apdu.p2 & 0x07) != 0x00) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        if (apdu.data.length == 0 || apdu.data.length % 4 != 0) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        ElementaryFile file = selectEf(apdu.p2);
+        if (file == null) {
+            return statusWord(currentFileStatus(apdu.p2));
+        }
+        if (file.efType != EF_TYPE_COUNTERS) {
+            return statusWord(SW_INCOMPATIBLE_FILE);
+        }
+        byte[] counters = file.records[0].clone();
+        byte[] data = new byte[apdu.data.length];
+        for (int i = 0; i < apdu.data.length; i += 4) {
+            int counterNumber = apdu.data[i] & 0xFF;
+            if (counterNumber == 0 || counterNumber * 3 > file.recordSize) {
+                return statusWord(SW_WRONG_P1_P2);
+            }
+            int offset = (counterNumber - 1) * 3;
+            int operand = readCounter(apdu.data, i + 1);
+            int value = readCounter(counters, offset)
+                    + (apdu.ins == INS_INCREASE_MULTIPLE ? operand : -operand);
+            if (value < 0 || value > MAX_COUNTER_VALUE) {
+                return statusWord(SW_OVERFLOW);
+            }
+            writeCounter(counters, offset, value);
+            data[i] = (byte) counterNumber;
+            writeCounter(data, i + 1, value);
+        }
+        if (!useModificationBuffer(apdu)) {
+            return statusWord(SW_TOO_MANY_MODIFICATIONS);
+        }
+        backup(file);
+        System.arraycopy(counters, 0, file.records[0], 0, counters.length);
+        return response(data, SW_SUCCESS);
+    }
+
+    private byte[] openSession(Apdu apdu) {
+        if (!applicationSelected) {
+            return statusWord(SW_NO_CURRENT_EF);
+        }
+        if (sessionOpen) {
+            return statusWord(SW_ACCESS_FORBIDDEN);
+        }
+        /* P1 = [0x80 in rev2.4] + record number * 8 + key index, P2 = SFI * 8 + mode */
+        int keyIndex = apdu.p1 & 0x07;
+        int recordNumber = revision == Revision.REV2_4 ? (apdu.p1 >> 3) & 0x0F
+                : (apdu.p1 >> 3) & 0x1F;
+        byte sfi = (byte) ((apdu.p2 & 0xFF) >> 3);
+        byte[] terminalChallenge;
+        switch (revision) {
+            case REV3_3:
+            case REV3_2:
+                if (apdu.data.length != 9 || (apdu.p2 & 0x07) != 0x02) {
+                    return statusWord(SW_WRONG_LENGTH);
+                }
+                terminalChallenge = Arrays.copyOfRange(apdu.data, 1, 9);
+                break;
+            case REV3_1:
+                if (apdu.data.length != 4 || (apdu.p2 & 0x07) != 0x01) {
+                    return statusWord(SW_WRONG_LENGTH);
+                }
+                terminalChallenge = apdu.data;
+                break;
+            case REV2_4:
+            default:
+                if (apdu.data.length != 4 || (apdu.p1 & 0x80) == 0) {
+                    return statusWord(SW_WRONG_LENGTH);
+                }
+                terminalChallenge = apdu.data;
+                break;
+        }
+        if (keyIndex < 1 || keyIndex > keys.length) {
+            return statusWord(SW_WRONG_KEY_INDEX);
+        }
+        if (transactionCounter == 0) {
+            return statusWord(SW_TRANSACTION_COUNTER_IS_ZERO);
+        }
+
+        byte[] recordData = new byte[0];
+        if (recordNumber != 0) {
+            ElementaryFile file = files.get(sfi);
+            if (file == null) {
+                return statusWord(SW_FILE_NOT_FOUND);
+            }
+            if (recordNumber > file.records.length) {
+                return statusWord(SW_RECORD_NOT_FOUND);
+            }
+            recordData = file.records[recordNumber - 1];
+            currentFile = file;
+        }
+
+        byte kif = keys[keyIndex - 1][0];
+        byte kvc = keys[keyIndex - 1][1];
+        byte[] counter = new byte[3];
+        transactionCounter--;
+        writeCounter(counter, 0, transactionCounter);
+
+        byte[] openData;
+        switch (revision) {
+            case REV3_3:
+            case REV3_2:
+                openData = concat(counter, randomBytes(5),
+                        new byte[] {(byte) (lastSessionRatified ? 0x02 : 0x03), kif, kvc,
+                                (byte) recordData.length},
+                        recordData);
+                break;
+            case REV3_1:
+                openData = concat(counter, randomBytes(1),
+                        new byte[] {(byte) (lastSessionRatified ? 0x00 : 0x01), kif, kvc,
+                                (byte) recordData.length},
+                        recordData);
+                break;
+            case REV2_4:
+            default:
+                /* the record data is always 29-byte long in rev2.4 */
+                byte[] rev2RecordData = recordNumber != 0
+                        ? Arrays.copyOf(recordData, REV2_OPEN_RECORD_SIZE)
+                        : new byte[0];
+                openData = concat(new byte[] {kvc}, counter, randomBytes(1),
+                        lastSessionRatified ? new byte[0] : new byte[2], rev2RecordData);
+                break;
+        }
+
+        sessionOpen = true;
+        modificationsUsed = 0;
+        sessionBackup.clear();
+        sessionDigest = new CalypsoTestCrypto.SessionDigest(
+                CalypsoTestCrypto.diversifiedKey(kif, kvc, serialNumber), terminalChallenge,
+                openData);
+        if (logger.isTraceEnabled()) {
+            logger.trace("Session opened with key {}, KIF = {}, KVC = {}", keyIndex,
+                    String.format("%02X", kif), String.format("%02X", kvc));
+        }
+        return response(openData, SW_SUCCESS);
+    }
+
+    private byte[] closeSession(Apdu apdu) {
+        if (!sessionOpen) {
+            return statusWord(SW_ACCESS_FORBIDDEN);
+        }
+        if (apdu.data.length == 0) {
+            /* abort */
+            logger.trace("Session aborted: the modifications are cancelled");
+            cancelSession();
+            return statusWord(SW_SUCCESS);
+        }
+        if (apdu.data.length != revision.terminalSignatureLength) {
+            cancelSession();
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        if (!Arrays.equals(apdu.data,
+                sessionDigest.terminalSignature(revision.terminalSignatureLength))) {
+            logger.trace("Incorrect terminal signature: the modifications are cancelled");
+            cancelSession();
+            return statusWord(SW_INCORRECT_SIGNATURE);
+        }
+        byte[] poSignature = sessionDigest.poSignature();
+        /* commit */
+        sessionOpen = false;
+        sessionDigest = null;
+        sessionBackup.clear();
+        closedSessionCount++;
+        if (apdu.p1 == (byte) 0x80) {
+            lastSessionRatified = true;
+        } else {
+            ratificationPending = true;
+        }
+        return response(poSignature, SW_SUCCESS);
+    }
+
+    /**
+     * Change Key: the cryptogram is checked with the key #1 and the last PO challenge
+     */
+    private byte[] changeKey(Apdu apdu) {
+        if (sessionOpen || challenge == null) {
+            return statusWord(SW_ACCESS_FORBIDDEN);
+        }
+        int keyIndex = apdu.p2;
+        if (apdu.p1 != 0x00 || keyIndex < 1 || keyIndex > keys.length) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        if (apdu.data.length != CalypsoTestCrypto.KEY_CRYPTOGRAM_LENGTH) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        byte kif = apdu.data[0];
+        byte kvc = apdu.data[1];
+        byte[] expected = CalypsoTestCrypto.keyCryptogram(
+                CalypsoTestCrypto.diversifiedKey(keys[0][0], keys[0][1], serialNumber), challenge,
+                kif, kvc);
+        challenge = null;
+        if (!Arrays.equals(expected, apdu.data)) {
+            return statusWord(SW_INCORRECT_SIGNATURE);
+        }
+        keys[keyIndex - 1] = new byte[] {kif, kvc};
+        return statusWord(SW_SUCCESS);
+    }
+
+    /**
+     * Cancel the current session, all the EFs recover their content of the opening
+     */
+    private void cancelSession() {
+        for (Map.Entry<ElementaryFile, byte[][]> entry : sessionBackup.entrySet()) {
+            entry.getKey().records = entry.getValue();
+        }
+        sessionBackup.clear();
+        sessionOpen = false;
+        sessionDigest = null;
+    }
+
+    /**
+     * Keep the content of an EF before its first modification in the session
+     */
+    private void backup(ElementaryFile file) {
+        if (sessionOpen && !sessionBackup.containsKey(file)) {
+            byte[][] copy = new byte[file.records.length][];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = file.records[i].clone();
+            }
+            sessionBackup.put(file, copy);
+        }
+    }
+
+    /**
+     * @return false if the modification buffer cannot hold the command
+     */
+    private boolean useModificationBuffer(Apdu apdu) {
+        if (!sessionOpen) {
+            return true;
+        }
+        int needed;
+        int available;
+        if (revision == Revision.REV2_4) {
+            needed = 1;
+            available = REV2_MODIFICATION_COMMANDS;
+        } else {
+            needed = apdu.data.length + MODIFICATION_OVERHEAD;
+            available = BUFFER_SIZE;
+        }
+        if (modificationsUsed + needed > available) {
+            return false;
+        }
+        modificationsUsed += needed;
+        return true;
+    }
+
+    /**
+     * Select the EF designated by the SFI of P2, 0 designates the current EF
+     *
+     * @return the EF or null if not found
+     */
+    private ElementaryFile selectEf(byte p2) {
+        byte sfi = (byte) ((p2 & 0xFF) >> 3);
+        if (sfi == 0) {
+            return currentFile;
+        }
+        ElementaryFile file = files.get(sfi);
+        if (file != null) {
+            currentFile = file;
+        }
+        return file;
+    }
+
+    private static int currentFileStatus(byte p2) {
+        return (p2 & 0xF8) == 0 ? SW_NO_CURRENT_EF : SW_FILE_NOT_FOUND;
+    }
+
+    private ElementaryFile getFile(byte sfi) {
+        ElementaryFile file = files.get(sfi);
+        if (file == null) {
+            throw new IllegalArgumentException(String.format("No EF with the SFI %02X", sfi));
+        }
+        return file;
+    }
+
+    private static int recordIndex(ElementaryFile file, int recordNumber) {
+        if (recordNumber < 1 || recordNumber > file.records.length) {
+            throw new IllegalArgumentException("Record not found: " + recordNumber);
+        }
+        return recordNumber - 1;
+    }
+
+    private static int counterOffset(ElementaryFile file, int counterNumber) {
+        if (file.efType != EF_TYPE_COUNTERS) {
+            throw new IllegalArgumentException(
+                    String.format("The EF %02X is not a counters EF", file.sfi));
+        }
+        if (counterNumber < 1 || counterNumber * 3 > file.recordSize) {
+            throw new IllegalArgumentException("Counter not found: " + counterNumber);
+        }
+        return (counterNumber - 1) * 3;
+    }
+
+    private static int readCounter(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 16) | ((buffer[offset + 1] & 0xFF) << 8)
+                | (buffer[offset + 2] & 0xFF);
+    }
+
+    private static void writeCounter(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >> 16);
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) value;
+    }
+
+    /**
+     * FCI returned by Select Application and Get Data, see GetDataFciRespPars
+     */
+    private byte[] buildFci() {
+        byte[] startupInfo = new byte[] {BUFFER_SIZE_INDICATOR, 0x3C, revision.applicationType,
+                0x12, 0x14, 0x10, 0x01};
+        byte[] discretionaryData = concat(new byte[] {(byte) 0xC7, 0x08}, serialNumber,
+                new byte[] {0x53, 0x07}, startupInfo);
+        byte[] proprietaryTemplate = concat(
+                new byte[] {(byte) 0xBF, 0x0C, (byte) discretionaryData.length},
+                discretionaryData);
+        byte[] template = concat(new byte[] {(byte) 0x84, (byte) aid.length}, aid,
+                new byte[] {(byte) 0xA5, (byte) proprietaryTemplate.length},
+                proprietaryTemplate);
+        return concat(new byte[] {0x6F, (byte) template.length}, template);
+    }
+
+    private byte[] dfDescriptor() {
+        byte[] descriptor = new byte[25];
+        descriptor[0] = (byte) 0x85;
+        descriptor[1] = 0x17;
+        descriptor[3] = 0x02; // DF
+        /* KVC and KIF of the keys 1 to 3 */
+        for (int i = 0; i < keys.length; i++) {
+            descriptor[16 + i] = keys[i][1];
+            descriptor[19 + i] = keys[i][0];
+        }
+        return descriptor;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        int length = 0;
+        for (byte[] array : arrays) {
+            length += array.length;
+        }
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] array : arrays) {
+            System.arraycopy(array, 0, result, offset, array.length);
+            offset += array.length;
+        }
+        return result;
+    }
+
+    private static byte[] statusWord(int statusWord) {
+        return new byte[] {(byte) (statusWord >> 8), (byte) statusWord};
+    }
+
+    private static byte[] response(byte[] data, int statusWord) {
+        byte[] response = Arrays.copyOf(data, data.length + 2);
+        response[data.length] = (byte) (statusWord >> 8);
+        response[data.length + 1] = (byte) statusWord;
+        return response;
+    }
+
+    /**
+     * Elementary file: linear, cyclic or counters
+     */
+    private static final class ElementaryFile {
+        private final byte sfi;
+        private final int lid;
+        private final byte efType;
+        private final int recordSize;
+        private byte[][] records;
+
+        ElementaryFile(byte sfi, int lid, byte efType, int numberOfRecords, int recordSize) {
+            if (sfi < 1 || sfi > 30) {
+                throw new IllegalArgumentException("SFI out of range: " + sfi);
+            }
+            if (numberOfRecords < 1 || numberOfRecords > 255 || recordSize < 1
+                    || recordSize > 250) {
+                throw new IllegalArgumentException("Unsupported file size");
+            }
+            this.sfi = sfi;
+            this.lid = lid;
+            this.efType = efType;
+            this.recordSize = recordSize;
+            this.records = new byte[numberOfRecords][recordSize];
+        }
+
+        /**
+         * @return file descriptor returned by Select File, see SelectFileRespPars
+         */
+        byte[] descriptor() {
+            byte[] descriptor = new byte[25];
+            descriptor[0] = (byte) 0x85;
+            descriptor[1] = 0x17;
+            descriptor[2] = sfi;
+            descriptor[3] = 0x04; // EF
+            descriptor[4] = efType;
+            descriptor[5] = (byte) recordSize;
+            descriptor[6] = (byte) records.length;
+            /* access conditions and key indexes are not simulated */
+            descriptor[23] = (byte) (lid >> 8);
+            descriptor[24] = (byte) lid;
+            return descriptor;
+        }
+    }
+
+    /**
+     * Command APDU split in its fields
+     */
+    private static final class Apdu {
+        private final byte ins;
+        private final byte p1;
+        private final byte p2;
+        private final byte[] data;
+        private final int le;
+        private final boolean case4;
+
+        Apdu(byte[] apdu) {
+            ins = apdu[1];
+            p1 = apdu[2];
+            p2 = apdu[3];
+            int lc = apdu.length > 5 ? apdu[4] & 0xFF : 0;
+            if (lc > 0 && apdu.length >= 5 + lc) {
+                data = Arrays.copyOfRange(apdu, 5, 5 + lc);
+                case4 = apdu.length == 5 + lc + 1;
+                le = case4 ? apdu[5 + lc] & 0xFF : 0;
+            } else {
+                data = new byte[0];
+                case4 = false;
+                le = apdu.length == 5 ? apdu[4] & 0xFF : 0;
+            }
+        }
+
+        boolean isCase4() {
+            return case4;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub.calypso;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.eclipse.keyple.plugin.stub.StubSecureElement;
+import org.eclipse.keyple.seproxy.exception.KeypleChannelStateException;
+import org.eclipse.keyple.seproxy.exception.KeypleIOReaderException;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Software simulation of a Calypso SAM (C1 revision).
+ * <p>
+ * The SAM processes the commands used by a PoTransaction: Select Diversifier, Get Challenge,
+ * Digest Init, Digest Update, Digest Update Multiple, Digest Close, Digest Authenticate, Give
+ * Random and Card Generate Key.
+ * <p>
+ * The work keys are test keys derived from their KIF, KVC and the diversifier, as in
+ * {@link StubCalypsoPo}: the session signatures computed by this SAM are verified by the simulated
+ * PO and the PO signatures are verified by this SAM. Any difference between the data exchanged
+ * with the PO and the data digested by the SAM makes the session fail, as with real secure
+ * elements.
+ * <p>
+ * Only the KIF/KVC mode of Digest Init is supported, the key record mode answers 6B00.
+ * <p>
+ * Commands not handled by the simulation fall back to the hexadecimal commands added with
+ * {@link #addHexCommand(String, String)}.
+ */
+public class StubCalypsoSam extends StubSecureElement {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubCalypsoSam.class);
+
+    private static final String PROTOCOL = "PROTOCOL_ISO7816_3";
+
+    /* instruction bytes, see CalypsoSamCommands */
+    private static final byte INS_SELECT_DIVERSIFIER = (byte) 0x14;
+    private static final byte INS_GET_CHALLENGE = (byte) 0x84;
+    private static final byte INS_DIGEST_INIT = (byte) 0x8A;
+    private static final byte INS_DIGEST_UPDATE = (byte) 0x8C;
+    private static final byte INS_DIGEST_CLOSE = (byte) 0x8E;
+    private static final byte INS_DIGEST_AUTHENTICATE = (byte) 0x82;
+    private static final byte INS_GIVE_RANDOM = (byte) 0x86;
+    private static final byte INS_CARD_GENERATE_KEY = (byte) 0x12;
+
+    /* status words */
+    private static final int SW_SUCCESS = 0x9000;
+    private static final int SW_WRONG_LENGTH = 0x6700;
+    private static final int SW_INCORRECT_SIGNATURE = 0x6988;
+    private static final int SW_CONDITIONS_NOT_SATISFIED = 0x6985;
+    private static final int SW_WRONG_P1_P2 = 0x6B00;
+    private static final int SW_INS_NOT_SUPPORTED = 0x6D00;
+
+    private static final byte KIF_UNDEFINED = (byte) 0xFF;
+    private static final int PO_SIGNATURE_LENGTH = 4;
+
+    private final byte[] atr;
+    private final Random random;
+
+    private byte[] diversifier;
+    private byte[] challenge;
+    private byte[] poRandom;
+    private CalypsoTestCrypto.SessionDigest sessionDigest;
+    private byte[] expectedPoSignature;
+    private int authenticatedSessionCount;
+    private int selectDiversifierCount;
+
+    /**
+     * Create a SAM
+     *
+     * @param serialNumber : 4-byte serial number of the SAM, part of the ATR
+     */
+    public StubCalypsoSam(byte[] serialNumber) {
+        if (serialNumber == null || serialNumber.length != 4) {
+            throw new IllegalArgumentException("The serial number must be 4-byte long");
+        }
+        this.atr = ByteArrayUtils.fromHex(
+                "3B3F9600805A0080C1200000" + ByteArrayUtils.toHex(serialNumber) + "829000");
+        this.random = new Random(Arrays.hashCode(serialNumber));
+    }
+
+    @Override
+    public byte[] getATR() {
+        return atr.clone();
+    }
+
+    @Override
+    public String getSeProcotol() {
+        return PROTOCOL;
+    }
+
+    /**
+     * @return number of PO signatures successfully verified by Digest Authenticate
+     */
+    public int getAuthenticatedSessionCount() {
+        return authenticatedSessionCount;
+    }
+
+    /**
+     * @return number of Select Diversifier commands processed
+     */
+    public int getSelectDiversifierCount() {
+        return selectDiversifierCount;
+    }
+
+    @Override
+    public void closePhysicalChannel() throws KeypleChannelStateException {
+        /* the volatile state of the SAM is lost */
+        diversifier = null;
+        challenge = null;
+        poRandom = null;
+        sessionDigest = null;
+        expectedPoSignature = null;
+        super.closePhysicalChannel();
+    }
+
+    @Override
+    public byte[] processApdu(byte[] apduIn) throws KeypleIOReaderException {
+        if (apduIn == null) {
+            return null;
+        }
+        if (apduIn.length < 4) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        byte ins = apduIn[1];
+        byte p1 = apduIn[2];
+        byte p2 = apduIn[3];
+        byte[] data = apduIn.length > 5
+                ? Arrays.copyOfRange(apduIn, 5, Math.min(apduIn.length, 5 + (apduIn[4] & 0xFF)))
+                : new byte[0];
+        int le = apduIn.length == 5 ? apduIn[4] & 0xFF : 0;
+
+        switch (ins) {
+            case INS_SELECT_DIVERSIFIER:
+                return selectDiversifier(data);
+            case INS_GET_CHALLENGE:
+                return getChallenge(le);
+            case INS_DIGEST_INIT:
+                return digestInit(p1, p2, data);
+            case INS_DIGEST_UPDATE:
+                return p1 == (byte) 0x80 ? digestUpdateMultiple(data) : digestUpdate(p2, data);
+            case INS_DIGEST_CLOSE:
+                return digestClose(le);
+            case INS_DIGEST_AUTHENTICATE:
+                return digestAuthenticate(data);
+            case INS_GIVE_RANDOM:
+                return giveRandom(data);
+            case INS_CARD_GENERATE_KEY:
+                return cardGenerateKey(p1, p2, data);
+            default:
+                try {
+                    return super.processApdu(apduIn);
+                } catch (KeypleIOReaderException e) {
+                    return statusWord(SW_INS_NOT_SUPPORTED);
+                }
+        }
+    }
+
+    private byte[] selectDiversifier(byte[] data) {
+        if (data.length != 4 && data.length != 8) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        diversifier = data;
+        selectDiversifierCount++;
+        return statusWord(SW_SUCCESS);
+    }
+
+    private byte[] getChallenge(int le) {
+        if (le != 4 && le != 8) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        challenge = new byte[le];
+        random.nextBytes(challenge);
+        return response(challenge, SW_SUCCESS);
+    }
+
+    /**
+     * Digest Init: <code>KIF KVC [Open Secure Session response data]</code>
+     */
+    private byte[] digestInit(byte p1, byte p2, byte[] data) {
+        if (p2 != KIF_UNDEFINED) {
+            // key record mode, not simulated
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        if ((p1 & 0x01) != 0) {
+            // verification mode, not simulated
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        if (data.length < 3) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        if (diversifier == null || challenge == null) {
+            return statusWord(SW_CONDITIONS_NOT_SATISFIED);
+        }
+        byte kif = data[0];
+        byte kvc = data[1];
+        sessionDigest = new CalypsoTestCrypto.SessionDigest(
+                CalypsoTestCrypto.diversifiedKey(kif, kvc, diversifier), challenge,
+                Arrays.copyOfRange(data, 2, data.length));
+        // the challenge is used once
+        challenge = null;
+        expectedPoSignature = null;
+        if (logger.isTraceEnabled()) {
+            logger.trace("Digest Init with KIF = {}, KVC = {}", String.format("%02X", kif),
+                    String.format("%02X", kvc));
+        }
+        return statusWord(SW_SUCCESS);
+    }
+
+    private byte[] digestUpdate(byte p2, byte[] data) {
+        if (p2 != 0x00) {
+            // encrypted session, not simulated
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        if (sessionDigest == null) {
+            return statusWord(SW_CONDITIONS_NOT_SATISFIED);
+        }
+        sessionDigest.update(data);
+        return statusWord(SW_SUCCESS);
+    }
+
+    /**
+     * Digest Update Multiple: <code>[length data]...</code>
+     */
+    private byte[] digestUpdateMultiple(byte[] data) {
+        if (sessionDigest == null) {
+            return statusWord(SW_CONDITIONS_NOT_SATISFIED);
+        }
+        int offset = 0;
+        while (offset < data.length) {
+            int length = data[offset] & 0xFF;
+            if (offset + 1 + length > data.length) {
+                return statusWord(SW_WRONG_LENGTH);
+            }
+            offset++;
+            sessionDigest.update(data, offset, length);
+            offset += length;
+        }
+        return statusWord(SW_SUCCESS);
+    }
+
+    private byte[] digestClose(int le) {
+        if (le != 4 && le != 8) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        if (sessionDigest == null) {
+            return statusWord(SW_CONDITIONS_NOT_SATISFIED);
+        }
+        byte[] signature = sessionDigest.terminalSignature(le);
+        expectedPoSignature = sessionDigest.poSignature();
+        sessionDigest = null;
+        return response(signature, SW_SUCCESS);
+    }
+
+    private byte[] digestAuthenticate(byte[] data) {
+        if (data.length != PO_SIGNATURE_LENGTH) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        if (expectedPoSignature == null) {
+            return statusWord(SW_CONDITIONS_NOT_SATISFIED);
+        }
+        boolean authenticated = Arrays.equals(expectedPoSignature, data);
+        expectedPoSignature = null;
+        if (!authenticated) {
+            logger.trace("Incorrect PO signature");
+            return statusWord(SW_INCORRECT_SIGNATURE);
+        }
+        authenticatedSessionCount++;
+        return statusWord(SW_SUCCESS);
+    }
+
+    private byte[] giveRandom(byte[] data) {
+        if (data.length != 8) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        poRandom = data;
+        return statusWord(SW_SUCCESS);
+    }
+
+    /**
+     * Card Generate Key: <code>[ciphering KIF KVC] source KIF KVC 90</code>
+     */
+    private byte[] cardGenerateKey(byte p1, byte p2, byte[] data) {
+        if (p1 != (byte) 0xFF || (p2 != 0x00 && p2 != (byte) 0xFF)) {
+            return statusWord(SW_WRONG_P1_P2);
+        }
+        boolean nullCipheringKey = p2 == 0x00;
+        if (data.length != (nullCipheringKey ? 3 : 5)) {
+            return statusWord(SW_WRONG_LENGTH);
+        }
+        if (diversifier == null || poRandom == null) {
+            return statusWord(SW_CONDITIONS_NOT_SATISFIED);
+        }
+        byte[] cipheringKey = nullCipheringKey ? CalypsoTestCrypto.NULL_KEY
+                : CalypsoTestCrypto.diversifiedKey(data[0], data[1], diversifier);
+        int sourceOffset = nullCipheringKey ? 0 : 2;
+        byte[] cryptogram = CalypsoTestCrypto.keyCryptogram(cipheringKey, poRandom,
+                data[sourceOffset], data[sourceOffset + 1]);
+        // the PO challenge is used once
+        poRandom = null;
+        return response(cryptogram, SW_SUCCESS);
+    }
+
+    private static byte[] statusWord(int statusWord) {
+        return new byte[] {(byte) (statusWord >> 8), (byte) statusWord};
+    }
+
+    private static byte[] response(byte[] data, int statusWord) {
+        byte[] response = Arrays.copyOf(data, data.length + 2);
+        response[data.length] = (byte) (statusWord >> 8);
+        response[data.length + 1] = (byte) statusWord;
+        return response;
+    }
+}
@@ -0,0 +1,85 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.keyple.journal.ApduJournal;
+import org.eclipse.keyple.seproxy.exception.KeypleIOReaderException;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StubReaderJournalTest {
+
+    StubReader reader;
+    List<String> exchanges;
+
+    @Before
+    public void setUp() {
+        reader = new StubReader("StubReaderJournalTest");
+        exchanges = new ArrayList<String>();
+        reader.setApduJournal(new ApduJournal() {
+            @Override
+            public void append(String readerName, byte[] request, byte[] response,
+                    int statusWord, boolean successful) {
+                exchanges.add(readerName + " " + ByteArrayUtils.toHex(request) + " "
+                        + (response != null ? ByteArrayUtils.toHex(response) : "null") + " "
+                        + Integer.toHexString(statusWord) + " " + successful);
+            }
+        });
+    }
+
+    @Test
+    public void transmit_journalsExchanges() throws Exception {
+        reader.insertSe(StubReaderTest.hoplinkSE());
+
+        reader.transmit(StubReaderMetricsTest.readRecordRequest());
+
+        assertEquals(2, exchanges.size());
+        // select application
+        assertTrue(exchanges.get(0).startsWith("StubReaderJournalTest 00A40400"));
+        assertTrue(exchanges.get(0).endsWith(" 9000 true"));
+        assertTrue(exchanges.get(1).startsWith("StubReaderJournalTest 00B201A420 "));
+        assertTrue(exchanges.get(1).endsWith(" 9000 true"));
+    }
+
+    @Test
+    public void ioError_journalsRequestWithoutResponse() throws Exception {
+        reader.insertSe(StubReaderTest.hoplinkSE());
+        StubFaultSchedule schedule = new StubFaultSchedule();
+        schedule.ioExceptionAfter(1);
+        reader.setFaultSchedule(schedule);
+
+        try {
+            reader.transmit(StubReaderMetricsTest.readRecordRequest());
+            fail("An IO exception was expected");
+        } catch (KeypleIOReaderException e) {
+            // expected
+        }
+
+        assertEquals(2, exchanges.size());
+        assertEquals("StubReaderJournalTest 00B201A420 null ffffffff false", exchanges.get(1));
+    }
+
+    @Test
+    public void detached_journalsNothing() throws Exception {
+        reader.setApduJournal(null);
+        reader.insertSe(StubReaderTest.hoplinkSE());
+
+        reader.transmit(StubReaderMetricsTest.readRecordRequest());
+
+        assertNull(reader.getApduJournal());
+        assertTrue(exchanges.isEmpty());
+    }
+}
@@ -0,0 +1,138 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.metrics.InMemoryMetricsRecorder;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.SeSelector;
+import org.eclipse.keyple.seproxy.event.ObservableReader;
+import org.eclipse.keyple.seproxy.event.ReaderEvent;
+import org.eclipse.keyple.seproxy.exception.KeypleIOReaderException;
+import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.message.SeRequest;
+import org.eclipse.keyple.seproxy.message.SeResponse;
+import org.eclipse.keyple.seproxy.protocol.Protocol;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StubReaderMetricsTest {
+
+    static final String AID = "A000000291A000000191";
+
+    StubReader reader;
+    InMemoryMetricsRecorder metrics;
+
+    @Before
+    public void setUp() {
+        reader = new StubReader("StubReaderMetricsTest");
+        metrics = new InMemoryMetricsRecorder();
+        Metrics.setRecorder(metrics);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setRecorder(null);
+    }
+
+    static SeRequest readRecordRequest() {
+        List<ApduRequest> apduRequests = new ArrayList<ApduRequest>();
+        apduRequests.add(new ApduRequest(ByteArrayUtils.fromHex("00B201A420"), false));
+        return new SeRequest(
+                new SeSelector(new SeSelector.AidSelector(ByteArrayUtils.fromHex(AID), null),
+                        null, "AID"),
+                apduRequests, ChannelState.CLOSE_AFTER, Protocol.ANY);
+    }
+
+    @Test
+    public void transmit_recordsExchanges() throws Exception {
+        reader.insertSe(StubReaderTest.hoplinkSE());
+
+        SeResponse seResponse = reader.transmit(readRecordRequest());
+
+        assertTrue(seResponse.getSelectionStatus().hasMatched());
+        String name = reader.getName();
+        assertEquals(1, metrics.getHistogram(name, Metrics.CHANNEL_OPEN).getCount());
+        assertEquals(1, metrics.getHistogram(name, Metrics.SELECTION).getCount());
+        // select application and read record
+        assertEquals(2, metrics.getHistogram(name, Metrics.APDU_EXCHANGE).getCount());
+        assertEquals(1, metrics.getHistogram(name, Metrics.CHANNEL_CLOSE).getCount());
+        assertTrue(metrics.getHistogram(name, Metrics.APDU_EXCHANGE).getMax() > 0);
+        assertEquals(0, metrics.getCounter(name, Metrics.APDU_ERRORS));
+    }
+
+    @Test
+    public void transmit_countsErrors() throws Exception {
+        reader.insertSe(StubReaderTest.hoplinkSE());
+        StubFaultSchedule schedule = new StubFaultSchedule();
+        // the selection succeeds, the read record fails
+        schedule.ioExceptionAfter(1);
+        reader.setFaultSchedule(schedule);
+
+        try {
+            reader.transmit(readRecordRequest());
+            fail("An IO exception was expected");
+        } catch (KeypleIOReaderException e) {
+            // expected
+        }
+
+        assertEquals(1, metrics.getCounter(reader.getName(), Metrics.APDU_ERRORS));
+        assertEquals(1, metrics.getCounter(reader.getName(), Metrics.TRANSMIT_IO_ERRORS));
+        // only the selection was successful
+        assertEquals(1, metrics.getHistogram(reader.getName(), Metrics.APDU_EXCHANGE).getCount());
+    }
+
+    @Test
+    public void disabled_recordsNothing() throws Exception {
+        Metrics.setRecorder(null);
+        reader.insertSe(StubReaderTest.hoplinkSE());
+
+        reader.transmit(readRecordRequest());
+
+        assertFalse(Metrics.isEnabled());
+        assertTrue(metrics.getSources().isEmpty());
+    }
+
+    @Test
+    public void insertionAndRemoval_recordsPresence() throws Exception {
+        final CountDownLatch removed = new CountDownLatch(1);
+        ObservableReader.ReaderObserver observer = new ObservableReader.ReaderObserver() {
+            @Override
+            public void update(ReaderEvent event) {
+                if (event.getEventType() == ReaderEvent.EventType.SE_REMOVAL) {
+                    removed.countDown();
+                }
+            }
+        };
+        reader.addObserver(observer);
+        try {
+            reader.insertSe(StubReaderTest.hoplinkSE());
+            Thread.sleep(100);
+            reader.removeSe();
+
+            assertTrue(removed.await(2, TimeUnit.SECONDS));
+            assertEquals(1,
+                    metrics.getHistogram(reader.getName(), Metrics.SE_PRESENCE).getCount());
+            assertTrue(metrics.getHistogram(reader.getName(), Metrics.SE_PRESENCE)
+                    .getMin() >= TimeUnit.MILLISECONDS.toNanos(50));
+        } finally {
+            reader.removeObserver(observer);
+        }
+    }
+}
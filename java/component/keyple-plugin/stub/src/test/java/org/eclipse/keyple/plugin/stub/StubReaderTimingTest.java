@@ -0,0 +1,159 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub;
+
+import static org.junit.Assert.*;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.seproxy.exception.KeypleIOReaderException;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StubReaderTimingTest {
+
+    static final byte[] APDU = ByteArrayUtils.fromHex("00B2013C00");
+
+    StubReader reader;
+
+    @Before
+    public void setUp() {
+        reader = new StubReader("StubReaderTimingTest");
+        StubSecureElement se = new StubSecureElement() {
+            @Override
+            public byte[] getATR() {
+                return ByteArrayUtils.fromHex("3B00");
+            }
+
+            @Override
+            public String getSeProcotol() {
+                return "PROTOCOL_ISO14443_4";
+            }
+        };
+        se.addHexPrefixCommand("00B2", "11229000");
+        reader.insertSe(se);
+    }
+
+    @Test
+    public void fixedApduLatency() throws Exception {
+        StubTimingProfile profile = new StubTimingProfile();
+        profile.setApduLatency(5, TimeUnit.MILLISECONDS);
+        reader.setTimingProfile(profile);
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            reader.transmitApdu(APDU);
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void uniformApduLatency_reproducible() {
+        StubTimingProfile profile1 = new StubTimingProfile(42);
+        StubTimingProfile profile2 = new StubTimingProfile(42);
+        profile1.setUniformApduLatency(100, 200, TimeUnit.MICROSECONDS);
+        profile2.setUniformApduLatency(100, 200, TimeUnit.MICROSECONDS);
+        for (int i = 0; i < 100; i++) {
+            long latency = profile1.nextApduLatency();
+            assertEquals(latency, profile2.nextApduLatency());
+            assertTrue(latency >= 100000 && latency <= 200000);
+        }
+    }
+
+    @Test
+    public void gaussianApduLatency_notNegative() {
+        StubTimingProfile profile = new StubTimingProfile();
+        profile.setGaussianApduLatency(10, 100, TimeUnit.MICROSECONDS);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(profile.nextApduLatency() >= 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLatency() {
+        new StubTimingProfile().setApduLatency(-1, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void connectDelay() throws Exception {
+        StubTimingProfile profile = new StubTimingProfile();
+        profile.setConnectDelay(20, TimeUnit.MILLISECONDS);
+        reader.setTimingProfile(profile);
+        long start = System.nanoTime();
+        reader.openPhysicalChannel();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(reader.isPhysicalChannelOpen());
+    }
+
+    @Test
+    public void presenceDelay() throws Throwable {
+        StubTimingProfile profile = new StubTimingProfile();
+        profile.setPresenceDelay(100, TimeUnit.MILLISECONDS);
+        reader.setTimingProfile(profile);
+        reader.removeSe();
+        // the removal is not detected yet
+        assertFalse(reader.waitForCardAbsent(10));
+        assertTrue(reader.waitForCardAbsent(1000));
+    }
+
+    @Test
+    public void ioExceptionAfter() throws Exception {
+        StubFaultSchedule schedule = new StubFaultSchedule();
+        schedule.ioExceptionAfter(2);
+        reader.setFaultSchedule(schedule);
+        reader.transmitApdu(APDU);
+        reader.transmitApdu(APDU);
+        try {
+            reader.transmitApdu(APDU);
+            fail("An IO exception was expected");
+        } catch (KeypleIOReaderException e) {
+            // expected
+        }
+        // the fault is triggered once
+        assertEquals("11229000", ByteArrayUtils.toHex(reader.transmitApdu(APDU)));
+        assertEquals(4, schedule.getApduCount());
+        assertTrue(schedule.isCompleted());
+    }
+
+    @Test
+    public void statusWordAfter() throws Exception {
+        StubFaultSchedule schedule = new StubFaultSchedule();
+        schedule.statusWordAfter(1, 0x6400);
+        reader.setFaultSchedule(schedule);
+        assertEquals("11229000", ByteArrayUtils.toHex(reader.transmitApdu(APDU)));
+        assertEquals("6400", ByteArrayUtils.toHex(reader.transmitApdu(APDU)));
+        assertEquals("11229000", ByteArrayUtils.toHex(reader.transmitApdu(APDU)));
+    }
+
+    @Test
+    public void removeSeAfter() throws Throwable {
+        StubFaultSchedule schedule = new StubFaultSchedule();
+        schedule.removeSeAfter(1);
+        reader.setFaultSchedule(schedule);
+        reader.openPhysicalChannel();
+        reader.transmitApdu(APDU);
+        try {
+            reader.transmitApdu(APDU);
+            fail("An IO exception was expected");
+        } catch (KeypleIOReaderException e) {
+            // expected
+        }
+        assertFalse(reader.checkSePresence());
+        assertFalse(reader.isPhysicalChannelOpen());
+        assertTrue(reader.waitForCardAbsent(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void twoFaultsOnTheSameApdu() {
+        StubFaultSchedule schedule = new StubFaultSchedule();
+        schedule.ioExceptionAfter(1);
+        schedule.statusWordAfter(1, 0x6400);
+    }
+}
@@ -0,0 +1,132 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub;
+
+import static org.junit.Assert.*;
+import org.eclipse.keyple.seproxy.exception.KeypleIOReaderException;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StubSecureElementTest {
+
+    StubSecureElement se;
+
+    @Before
+    public void setUp() {
+        se = new StubSecureElement() {
+            @Override
+            public byte[] getATR() {
+                return ByteArrayUtils.fromHex("3B00");
+            }
+
+            @Override
+            public String getSeProcotol() {
+                return "PROTOCOL_ISO14443_4";
+            }
+        };
+    }
+
+    private byte[] process(String hexApdu) throws KeypleIOReaderException {
+        return se.processApdu(ByteArrayUtils.fromHex(hexApdu));
+    }
+
+    @Test
+    public void exactCommand() throws Exception {
+        se.addHexCommand("00 B2 01 3C 00", "1122 9000");
+        assertEquals("11229000", ByteArrayUtils.toHex(process("00B2013C00")));
+    }
+
+    @Test
+    public void exactCommand_lowerCase() throws Exception {
+        se.addHexCommand("00b2013c00", "9000");
+        assertEquals("9000", ByteArrayUtils.toHex(process("00B2013C00")));
+    }
+
+    @Test
+    public void exactCommand_bytes() throws Exception {
+        byte[] command = ByteArrayUtils.fromHex("0084000008");
+        se.addCommand(command, ByteArrayUtils.fromHex("01020304050607089000"));
+        // the stored command is not altered by changes made to the array
+        command[4] = 0x04;
+        assertEquals("01020304050607089000", ByteArrayUtils.toHex(process("0084000008")));
+    }
+
+    @Test
+    public void response_isACopy() throws Exception {
+        se.addHexCommand("00B2013C00", "9000");
+        process("00B2013C00")[0] = 0x6A;
+        assertEquals("9000", ByteArrayUtils.toHex(process("00B2013C00")));
+    }
+
+    @Test(expected = KeypleIOReaderException.class)
+    public void removeCommand() throws Exception {
+        se.addHexCommand("00B2013C00", "9000");
+        se.removeHexCommand("00 B2 01 3C 00");
+        process("00B2013C00");
+    }
+
+    @Test(expected = KeypleIOReaderException.class)
+    public void noMatchingCommand() throws Exception {
+        se.addHexCommand("00B2013C00", "9000");
+        process("00B2023C00");
+    }
+
+    @Test
+    public void prefixCommand() throws Exception {
+        se.addHexPrefixCommand("00B2", "6A82");
+        assertEquals("6A82", ByteArrayUtils.toHex(process("00B2013C00")));
+        assertEquals("6A82", ByteArrayUtils.toHex(process("00B20244021D")));
+    }
+
+    @Test(expected = KeypleIOReaderException.class)
+    public void prefixCommand_shorterApdu() throws Exception {
+        se.addHexPrefixCommand("00B2013C", "6A82");
+        process("00B201");
+    }
+
+    @Test
+    public void maskedCommand() throws Exception {
+        // Read Record of any record of SFI 07, Le ignored
+        se.addHexMaskedCommand("FFFF00FF00", "00B2003C00", "9000");
+        assertEquals("9000", ByteArrayUtils.toHex(process("00B2053C1D")));
+        assertEquals("9000", ByteArrayUtils.toHex(process("00B2013C00")));
+    }
+
+    @Test(expected = KeypleIOReaderException.class)
+    public void maskedCommand_otherLength() throws Exception {
+        se.addHexMaskedCommand("FFFF00FF00", "00B2003C00", "9000");
+        process("00B2053C1D00");
+    }
+
+    @Test(expected = KeypleIOReaderException.class)
+    public void maskedCommand_noMatch() throws Exception {
+        se.addHexMaskedCommand("FFFF00FF00", "00B2003C00", "9000");
+        process("00B2054400");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maskedCommand_lengthMismatch() {
+        se.addHexMaskedCommand("FFFF", "00B200", "9000");
+    }
+
+    @Test
+    public void precedence() throws Exception {
+        se.addHexPrefixCommand("00B2", "6A82");
+        se.addHexMaskedCommand("FFFF00FF00", "00B2003C00", "9000");
+        se.addHexCommand("00B2013C00", "11229000");
+        // exact command first
+        assertEquals("11229000", ByteArrayUtils.toHex(process("00B2013C00")));
+        // then rules in the order they were added
+        assertEquals("6A82", ByteArrayUtils.toHex(process("00B2023C00")));
+    }
+}
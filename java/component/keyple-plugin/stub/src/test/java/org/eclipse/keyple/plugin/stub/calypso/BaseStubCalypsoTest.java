@@ -0,0 +1,172 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub.calypso;
+
+import java.util.EnumMap;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.PoSelector;
+import org.eclipse.keyple.calypso.transaction.PoTransaction;
+import org.eclipse.keyple.calypso.transaction.SamResource;
+import org.eclipse.keyple.calypso.transaction.sam.CalypsoSam;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelector;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.plugin.stub.StubPlugin;
+import org.eclipse.keyple.plugin.stub.StubProtocolSetting;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.protocol.ContactlessProtocols;
+import org.eclipse.keyple.seproxy.protocol.Protocol;
+import org.eclipse.keyple.seproxy.protocol.SeProtocolSetting;
+import org.eclipse.keyple.transaction.SeSelection;
+import org.eclipse.keyple.transaction.SelectionsResult;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+/**
+ * Simulated PO and SAM plugged in stub readers, shared by the tests of the Calypso simulators and
+ * of the PoTransaction
+ */
+public abstract class BaseStubCalypsoTest {
+
+    static final byte[] AID = ByteArrayUtils.fromHex("315449432E49434131");
+    static final byte[] PO_SERIAL_NUMBER = ByteArrayUtils.fromHex("0000000011223344");
+    static final byte[] SAM_SERIAL_NUMBER = ByteArrayUtils.fromHex("12345678");
+    static final byte SFI_ENVIRONMENT = (byte) 0x07;
+    static final byte SFI_EVENT_LOG = (byte) 0x08;
+    static final byte SFI_COUNTERS = (byte) 0x19;
+
+    /** the readers are named after the test class */
+    final String poReaderName = getClass().getSimpleName() + "-po";
+    final String samReaderName = getClass().getSimpleName() + "-sam";
+
+    StubCalypsoSam sam;
+    SamResource samResource;
+
+    @Before
+    public void setUp() {
+        sam = new StubCalypsoSam(SAM_SERIAL_NUMBER);
+    }
+
+    @After
+    public void tearDown() throws KeypleReaderException, InterruptedException {
+        Metrics.setRecorder(null);
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        if (stubPlugin.getReaderNames().contains(poReaderName)) {
+            stubPlugin.unplugStubReader(poReaderName, true);
+        }
+        if (stubPlugin.getReaderNames().contains(samReaderName)) {
+            stubPlugin.unplugStubReader(samReaderName, true);
+        }
+    }
+
+    static StubCalypsoPo newPo(StubCalypsoPo.Revision revision) {
+        return newPo(revision, PO_SERIAL_NUMBER);
+    }
+
+    static StubCalypsoPo newPo(StubCalypsoPo.Revision revision, byte[] serialNumber) {
+        StubCalypsoPo po = new StubCalypsoPo(revision, AID, serialNumber)
+                .addLinearFile(SFI_ENVIRONMENT, 0x2001, 1, 29)
+                .addCyclicFile(SFI_EVENT_LOG, 0x2010, 3, 29)
+                .addCountersFile(SFI_COUNTERS, 0x2069, 9);
+        po.setRecord(SFI_ENVIRONMENT, 1, ByteArrayUtils.fromHex("0102030405"));
+        po.setCounter(SFI_COUNTERS, 1, 100);
+        return po;
+    }
+
+    StubReader getPoReader() throws KeypleReaderException {
+        return (StubReader) StubPlugin.getInstance().getReader(poReaderName);
+    }
+
+    StubReader getSamReader() throws KeypleReaderException {
+        return (StubReader) StubPlugin.getInstance().getReader(samReaderName);
+    }
+
+    /**
+     * Insert the simulated PO and SAM, select them and create the PoTransaction
+     */
+    PoTransaction newPoTransaction(StubCalypsoPo po) throws KeypleReaderException {
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        stubPlugin.plugStubReader(poReaderName, true);
+        stubPlugin.plugStubReader(samReaderName, true);
+        StubReader poReader = getPoReader();
+        StubReader samReader = getSamReader();
+        poReader.addSeProtocolSetting(
+                new SeProtocolSetting(StubProtocolSetting.SETTING_PROTOCOL_ISO14443_4));
+        poReader.insertSe(po);
+        samReader.insertSe(sam);
+
+        SeSelection samSelection = new SeSelection();
+        samSelection.prepareSelection(
+                new SamSelectionRequest(new SamSelector(SamRevision.C1, null, "SAM"),
+                        ChannelState.KEEP_OPEN, Protocol.ANY));
+        SelectionsResult samSelectionsResult = samSelection.processExplicitSelection(samReader);
+        Assert.assertTrue(samSelectionsResult.hasActiveSelection());
+        samResource = new SamResource(samReader,
+                (CalypsoSam) samSelectionsResult.getActiveSelection().getMatchingSe());
+
+        return new PoTransaction(poReader,
+                selectPo(poReader, po.getRevision() == StubCalypsoPo.Revision.REV3_3), samReader,
+                samSettings());
+    }
+
+    /**
+     * Modifications sent in the closing without reading the counter before
+     */
+    PoTransaction openSessionWithModificationsInClosing(StubCalypsoPo po)
+            throws KeypleReaderException {
+        PoTransaction poTransaction = newPoTransaction(po);
+        Assert.assertTrue(poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, SFI_ENVIRONMENT, (byte) 1));
+        poTransaction.prepareDecreaseCmd(SFI_COUNTERS, (byte) 1, 10, "Counter");
+        poTransaction.prepareDecreaseCmd(SFI_COUNTERS, (byte) 1, 5, "Counter");
+        poTransaction.prepareCustomModificationCmd("Update EventLog",
+                new ApduRequest(ByteArrayUtils.fromHex("00DC014403AABBCC"), false),
+                ByteArrayUtils.fromHex("9000"));
+        return poTransaction;
+    }
+
+    static EnumMap<PoTransaction.SamSettings, Byte> samSettings() {
+        EnumMap<PoTransaction.SamSettings, Byte> samSettings =
+                new EnumMap<PoTransaction.SamSettings, Byte>(PoTransaction.SamSettings.class);
+        samSettings.put(PoTransaction.SamSettings.SAM_DEFAULT_KEY_RECORD_NUMBER,
+                PoTransaction.DEFAULT_KEY_RECORD_NUMER);
+        return samSettings;
+    }
+
+    static CalypsoPo selectPo(StubReader poReader) throws KeypleReaderException {
+        return selectPo(poReader, false);
+    }
+
+    /**
+     * @param multipleCommandsSupported true when selecting a rev3.3 PO
+     */
+    static CalypsoPo selectPo(StubReader poReader, boolean multipleCommandsSupported)
+            throws KeypleReaderException {
+        SeSelection poSelection = new SeSelection();
+        PoSelectionRequest poSelectionRequest = new PoSelectionRequest(
+                new PoSelector(new PoSelector.PoAidSelector(AID, PoSelector.InvalidatedPo.REJECT),
+                        null, "PO"),
+                ChannelState.KEEP_OPEN, ContactlessProtocols.PROTOCOL_ISO14443_4);
+        poSelectionRequest.setMultipleCommandsSupported(multipleCommandsSupported);
+        poSelection.prepareSelection(poSelectionRequest);
+        SelectionsResult selectionsResult = poSelection.processExplicitSelection(poReader);
+        Assert.assertTrue(selectionsResult.hasActiveSelection());
+        return (CalypsoPo) selectionsResult.getActiveSelection().getMatchingSe();
+    }
+}
@@ -0,0 +1,465 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub.calypso;
+
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.eclipse.keyple.calypso.command.PoClass;
+import org.eclipse.keyple.calypso.command.po.PoRevision;
+import org.eclipse.keyple.calypso.command.po.builder.AppendRecordCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.DecreaseCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.DecreaseMultipleCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.IncreaseCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.IncreaseMultipleCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.ReadRecordMultipleCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.ReadRecordsCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.SearchRecordMultipleCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.SelectFileCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.UpdateRecordCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.security.AbstractOpenSessionCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.security.CloseSessionCmdBuild;
+import org.eclipse.keyple.calypso.command.po.parser.IncreaseMultipleRespPars;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordMultipleRespPars;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordsRespPars;
+import org.eclipse.keyple.calypso.command.po.parser.SearchRecordMultipleRespPars;
+import org.eclipse.keyple.calypso.command.po.parser.SelectFileRespPars;
+import org.eclipse.keyple.calypso.command.po.parser.security.AbstractOpenSessionRespPars;
+import org.eclipse.keyple.calypso.command.po.parser.security.CloseSessionRespPars;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StubCalypsoPoTest {
+
+    private static final byte[] AID = ByteArrayUtils.fromHex("315449432E49434131");
+    private static final byte[] SERIAL_NUMBER = ByteArrayUtils.fromHex("0000000011223344");
+    private static final byte SFI_ENVIRONMENT = (byte) 0x07;
+    private static final byte SFI_EVENT_LOG = (byte) 0x08;
+    private static final byte SFI_CONTRACTS = (byte) 0x09;
+    private static final byte SFI_COUNTERS = (byte) 0x19;
+    private static final byte[] TERMINAL_CHALLENGE = ByteArrayUtils.fromHex("C1C2C3C4");
+    private static final byte DEBIT_KEY_INDEX = 3;
+
+    private StubCalypsoPo po;
+
+    @Before
+    public void setUp() throws KeypleReaderException {
+        po = newPo(StubCalypsoPo.Revision.REV3_1);
+    }
+
+    private static StubCalypsoPo newPo(StubCalypsoPo.Revision revision)
+            throws KeypleReaderException {
+        StubCalypsoPo po = new StubCalypsoPo(revision, AID, SERIAL_NUMBER)
+                .addLinearFile(SFI_ENVIRONMENT, 0x2001, 1, 29)
+                .addCyclicFile(SFI_EVENT_LOG, 0x2010, 3, 29)
+                .addLinearFile(SFI_CONTRACTS, 0x2020, 4, 29)
+                .addCountersFile(SFI_COUNTERS, 0x2069, 9);
+        po.setRecord(SFI_ENVIRONMENT, 1, ByteArrayUtils.fromHex("0102030405"));
+        po.setCounter(SFI_COUNTERS, 1, 100);
+        po.openPhysicalChannel();
+        Assert.assertEquals("9000", sw(po.processApdu(selectApplication())));
+        return po;
+    }
+
+    private static byte[] selectApplication() {
+        byte[] apdu = new byte[6 + AID.length];
+        apdu[1] = (byte) 0xA4;
+        apdu[2] = 0x04;
+        apdu[4] = (byte) AID.length;
+        System.arraycopy(AID, 0, apdu, 5, AID.length);
+        return apdu;
+    }
+
+    private static String sw(byte[] response) {
+        return ByteArrayUtils.toHex(Arrays.copyOfRange(response, response.length - 2,
+                response.length));
+    }
+
+    private static ApduResponse transmit(StubCalypsoPo po, ApduRequest request)
+            throws KeypleReaderException {
+        return new ApduResponse(po.processApdu(request.getBytes()), null);
+    }
+
+    /**
+     * Open a debit session reading the record 1 of the environment
+     */
+    private static AbstractOpenSessionRespPars openSession(StubCalypsoPo po, PoRevision revision,
+            byte[] terminalChallenge) throws KeypleReaderException {
+        ApduRequest request = AbstractOpenSessionCmdBuild.create(revision, DEBIT_KEY_INDEX,
+                terminalChallenge, SFI_ENVIRONMENT, (byte) 1, "").getApduRequest();
+        ApduResponse response = transmit(po, request);
+        Assert.assertTrue(response.isSuccessful());
+        return AbstractOpenSessionRespPars.create(response, revision);
+    }
+
+    /**
+     * Terminal side of the session: the same test key digest as the PO
+     */
+    private static CalypsoTestCrypto.SessionDigest terminalDigest(byte kif, byte kvc,
+            byte[] terminalChallenge, AbstractOpenSessionRespPars openSessionPars) {
+        return new CalypsoTestCrypto.SessionDigest(
+                CalypsoTestCrypto.diversifiedKey(kif, kvc, SERIAL_NUMBER), terminalChallenge,
+                openSessionPars.getApduResponse().getDataOut());
+    }
+
+    private static ApduResponse digestedExchange(StubCalypsoPo po,
+            CalypsoTestCrypto.SessionDigest digest, ApduRequest request)
+            throws KeypleReaderException {
+        ApduResponse response = transmit(po, request);
+        byte[] command = request.getBytes();
+        digest.update(command, 0, request.isCase4() ? command.length - 1 : command.length);
+        digest.update(response.getBytes());
+        return response;
+    }
+
+    @Test
+    public void selectApplication_returnsFci() throws KeypleReaderException {
+        byte[] response = po.processApdu(selectApplication());
+        Assert.assertEquals((byte) 0x6F, response[0]);
+        Assert.assertTrue(ByteArrayUtils.toHex(response)
+                .contains("C708" + ByteArrayUtils.toHex(SERIAL_NUMBER) + "5307"));
+    }
+
+    @Test
+    public void selectApplication_wrongAid() throws KeypleReaderException {
+        byte[] apdu = selectApplication();
+        apdu[6] = 0x00;
+        Assert.assertEquals("6A82", sw(po.processApdu(apdu)));
+    }
+
+    @Test
+    public void selectFile_byLid() throws KeypleReaderException {
+        SelectFileRespPars pars = new SelectFileRespPars(transmit(po,
+                new SelectFileCmdBuild(PoClass.ISO, ByteArrayUtils.fromHex("3F002010"))
+                        .getApduRequest()));
+        Assert.assertTrue(pars.isSelectionSuccessful());
+        Assert.assertEquals(SFI_EVENT_LOG, pars.getSfi());
+        Assert.assertEquals(SelectFileRespPars.EF_TYPE_CYCLIC, pars.getEfType());
+        Assert.assertEquals(3, pars.getNumRec());
+        Assert.assertEquals(29, pars.getRecSize());
+        Assert.assertEquals(0x2010, pars.getLid());
+    }
+
+    @Test
+    public void selectFile_firstAndNext() throws KeypleReaderException {
+        SelectFileRespPars first = new SelectFileRespPars(transmit(po,
+                new SelectFileCmdBuild(PoClass.ISO, SelectFileCmdBuild.SelectControl.FIRST)
+                        .getApduRequest()));
+        Assert.assertEquals(SFI_ENVIRONMENT, first.getSfi());
+        SelectFileRespPars next = new SelectFileRespPars(transmit(po,
+                new SelectFileCmdBuild(PoClass.ISO, SelectFileCmdBuild.SelectControl.NEXT)
+                        .getApduRequest()));
+        Assert.assertEquals(SFI_EVENT_LOG, next.getSfi());
+    }
+
+    @Test
+    public void readRecords_single() throws KeypleReaderException {
+        ReadRecordsCmdBuild readRecords = new ReadRecordsCmdBuild(PoClass.ISO, SFI_ENVIRONMENT,
+                ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1, true, "");
+        ReadRecordsRespPars pars =
+                readRecords.createResponseParser(transmit(po, readRecords.getApduRequest()));
+        Assert.assertEquals("0102030405" + "000000000000000000000000000000000000000000000000",
+                ByteArrayUtils.toHex(pars.getRecords().get(1)));
+    }
+
+    @Test
+    public void readRecords_multiple() throws KeypleReaderException {
+        po.setRecord(SFI_CONTRACTS, 2, new byte[] {0x22});
+        ReadRecordsCmdBuild readRecords = new ReadRecordsCmdBuild(PoClass.ISO, SFI_CONTRACTS,
+                ReadDataStructure.MULTIPLE_RECORD_DATA, (byte) 1, false, "");
+        ReadRecordsRespPars pars =
+                readRecords.createResponseParser(transmit(po, readRecords.getApduRequest()));
+        Assert.assertEquals(4, pars.getRecords().size());
+        Assert.assertEquals((byte) 0x22, pars.getRecords().get(2)[0]);
+    }
+
+    @Test
+    public void readRecords_errors() throws KeypleReaderException {
+        Assert.assertEquals("6A82", sw(po.processApdu(ByteArrayUtils.fromHex("00B2016C00"))));
+        Assert.assertEquals("6A83", sw(po.processApdu(ByteArrayUtils.fromHex("00B2053C00"))));
+        // ratification command
+        Assert.assertEquals("6B00", sw(po.processApdu(ByteArrayUtils.fromHex("00B2000000"))));
+    }
+
+    @Test
+    public void appendRecord_shiftsCyclicFile() throws KeypleReaderException {
+        po.setRecord(SFI_EVENT_LOG, 1, new byte[] {0x01});
+        Assert.assertTrue(transmit(po,
+                new AppendRecordCmdBuild(PoClass.ISO, SFI_EVENT_LOG, new byte[] {0x02}, "")
+                        .getApduRequest()).isSuccessful());
+        Assert.assertEquals(0x02, po.getRecord(SFI_EVENT_LOG, 1)[0]);
+        Assert.assertEquals(0x01, po.getRecord(SFI_EVENT_LOG, 2)[0]);
+    }
+
+    @Test
+    public void increaseDecrease() throws KeypleReaderException {
+        ApduResponse response = transmit(po,
+                new IncreaseCmdBuild(PoClass.ISO, SFI_COUNTERS, (byte) 1, 20, "").getApduRequest());
+        Assert.assertEquals("000078", ByteArrayUtils.toHex(response.getDataOut()));
+        response = transmit(po, new DecreaseCmdBuild(PoClass.ISO, SFI_COUNTERS, (byte) 1, 200, "")
+                .getApduRequest());
+        Assert.assertEquals(0x6A80, response.getStatusCode());
+        Assert.assertEquals(120, po.getCounter(SFI_COUNTERS, 1));
+    }
+
+    @Test
+    public void readRecordMultiple() throws KeypleReaderException {
+        po = newPo(StubCalypsoPo.Revision.REV3_3);
+        for (int i = 1; i <= 4; i++) {
+            po.setRecord(SFI_CONTRACTS, i, new byte[] {0x00, (byte) i, (byte) (0x10 * i)});
+        }
+        ReadRecordMultipleCmdBuild builder =
+                new ReadRecordMultipleCmdBuild(PoClass.ISO, SFI_CONTRACTS, (byte) 2, 1, 2, "");
+        ReadRecordMultipleRespPars pars =
+                builder.createResponseParser(transmit(po, builder.getApduRequest()));
+        Assert.assertTrue(pars.isSuccessful());
+        Assert.assertFalse(pars.isPartialRead());
+        Assert.assertEquals(3, pars.getRecordCount());
+        Assert.assertEquals("0220", ByteArrayUtils.toHex(pars.getRecord(2)));
+        Assert.assertEquals("0440", ByteArrayUtils.toHex(pars.getRecords().get(4)));
+        Assert.assertNull(pars.getRecord(1));
+
+        // the response is limited by Le: partial read
+        byte[] apdu = builder.getApduRequest().getBytes().clone();
+        apdu[apdu.length - 1] = 0x05;
+        pars = new ReadRecordMultipleRespPars(
+                new ApduResponse(po.processApdu(apdu), builder.getApduRequest()
+                        .getSuccessfulStatusCodes()),
+                2, 2);
+        Assert.assertTrue(pars.isSuccessful());
+        Assert.assertTrue(pars.isPartialRead());
+        Assert.assertEquals(2, pars.getRecordCount());
+        Assert.assertEquals(4, pars.getNextRecordNumber());
+    }
+
+    @Test
+    public void searchRecordMultiple() throws KeypleReaderException {
+        po = newPo(StubCalypsoPo.Revision.REV3_3);
+        po.setRecord(SFI_CONTRACTS, 1, ByteArrayUtils.fromHex("0011AA"));
+        po.setRecord(SFI_CONTRACTS, 2, ByteArrayUtils.fromHex("00AA11"));
+        po.setRecord(SFI_CONTRACTS, 3, ByteArrayUtils.fromHex("0012BB"));
+        SearchRecordMultipleCmdBuild builder = new SearchRecordMultipleCmdBuild(PoClass.ISO,
+                SFI_CONTRACTS, (byte) 1, 1, false, true, ByteArrayUtils.fromHex("10"),
+                ByteArrayUtils.fromHex("F0"), "");
+        SearchRecordMultipleRespPars pars =
+                builder.createResponseParser(transmit(po, builder.getApduRequest()));
+        Assert.assertEquals("[1, 3]", Arrays.toString(pars.getMatchingRecordNumbers()));
+        Assert.assertEquals("0011AA", ByteArrayUtils.toHex(pars.getFirstMatchingRecord())
+                .substring(0, 6));
+
+        // repeated offset: searched from the offset to the end of the records
+        builder = new SearchRecordMultipleCmdBuild(PoClass.ISO, SFI_CONTRACTS, (byte) 1, 1, true,
+                false, ByteArrayUtils.fromHex("AA"), null, "");
+        pars = builder.createResponseParser(transmit(po, builder.getApduRequest()));
+        Assert.assertEquals("[1, 2]", Arrays.toString(pars.getMatchingRecordNumbers()));
+        Assert.assertNull(pars.getFirstMatchingRecord());
+    }
+
+    @Test
+    public void increaseDecreaseMultiple() throws KeypleReaderException {
+        po = newPo(StubCalypsoPo.Revision.REV3_3);
+        po.setCounter(SFI_COUNTERS, 3, 7);
+        SortedMap<Integer, Integer> values = new TreeMap<Integer, Integer>();
+        values.put(1, 20);
+        values.put(3, 1);
+        IncreaseMultipleCmdBuild increase =
+                new IncreaseMultipleCmdBuild(PoClass.ISO, SFI_COUNTERS, values, "");
+        IncreaseMultipleRespPars pars =
+                increase.createResponseParser(transmit(po, increase.getApduRequest()));
+        Assert.assertEquals("{1=120, 3=8}", pars.getNewValues().toString());
+
+        // all or nothing: the overflow of the counter 3 leaves the counter 1 unchanged
+        values.put(3, 10);
+        ApduResponse response = transmit(po,
+                new DecreaseMultipleCmdBuild(PoClass.ISO, SFI_COUNTERS, values, "")
+                        .getApduRequest());
+        Assert.assertEquals(0x6A80, response.getStatusCode());
+        Assert.assertEquals(120, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(8, po.getCounter(SFI_COUNTERS, 3));
+    }
+
+    @Test
+    public void multipleCommands_notSupportedBeforeRev33() throws KeypleReaderException {
+        SortedMap<Integer, Integer> values = new TreeMap<Integer, Integer>();
+        values.put(1, 20);
+        Assert.assertEquals(0x6D00, transmit(po,
+                new IncreaseMultipleCmdBuild(PoClass.ISO, SFI_COUNTERS, values, "")
+                        .getApduRequest()).getStatusCode());
+        Assert.assertEquals(0x6D00,
+                transmit(po, new ReadRecordMultipleCmdBuild(PoClass.ISO, SFI_CONTRACTS,
+                        (byte) 1, 0, 2, "").getApduRequest()).getStatusCode());
+        Assert.assertEquals(100, po.getCounter(SFI_COUNTERS, 1));
+    }
+
+    @Test
+    public void session_rev31_committed() throws KeypleReaderException {
+        int transactionCounter = po.getTransactionCounter();
+        AbstractOpenSessionRespPars openSessionPars =
+                openSession(po, PoRevision.REV3_1, TERMINAL_CHALLENGE);
+        Assert.assertTrue(po.isSessionOpen());
+        Assert.assertEquals(transactionCounter - 1, po.getTransactionCounter());
+        Assert.assertEquals((byte) 0x30, openSessionPars.getSelectedKif());
+        Assert.assertEquals((byte) 0x79, openSessionPars.getSelectedKvc());
+        Assert.assertTrue(openSessionPars.wasRatified());
+        Assert.assertEquals(0x01, openSessionPars.getRecordDataRead()[0]);
+
+        CalypsoTestCrypto.SessionDigest digest = terminalDigest((byte) 0x30, (byte) 0x79,
+                TERMINAL_CHALLENGE, openSessionPars);
+        Assert.assertTrue(digestedExchange(po, digest,
+                new UpdateRecordCmdBuild(PoClass.ISO, SFI_CONTRACTS, (byte) 1,
+                        new byte[] {0x55}, "").getApduRequest()).isSuccessful());
+        Assert.assertTrue(digestedExchange(po, digest,
+                new DecreaseCmdBuild(PoClass.ISO, SFI_COUNTERS, (byte) 1, 1, "").getApduRequest())
+                        .isSuccessful());
+
+        ApduResponse closeResponse = transmit(po,
+                new CloseSessionCmdBuild(PoClass.ISO, true, digest.terminalSignature(4))
+                        .getApduRequest());
+        CloseSessionRespPars closeSessionPars = new CloseSessionRespPars(closeResponse);
+        Assert.assertTrue(closeSessionPars.isSuccessful());
+        Assert.assertArrayEquals(digest.poSignature(), closeSessionPars.getSignatureLo());
+        Assert.assertFalse(po.isSessionOpen());
+        Assert.assertEquals(1, po.getClosedSessionCount());
+        Assert.assertEquals(0x55, po.getRecord(SFI_CONTRACTS, 1)[0]);
+        Assert.assertEquals(99, po.getCounter(SFI_COUNTERS, 1));
+    }
+
+    @Test
+    public void session_rev32_committed() throws KeypleReaderException {
+        po = newPo(StubCalypsoPo.Revision.REV3_2);
+        byte[] terminalChallenge = ByteArrayUtils.fromHex("C1C2C3C4C5C6C7C8");
+        AbstractOpenSessionRespPars openSessionPars =
+                openSession(po, PoRevision.REV3_2, terminalChallenge);
+        Assert.assertEquals(5, openSessionPars.getPoChallenge().length);
+        CalypsoTestCrypto.SessionDigest digest =
+                terminalDigest((byte) 0x30, (byte) 0x79, terminalChallenge, openSessionPars);
+        digestedExchange(po, digest,
+                new IncreaseCmdBuild(PoClass.ISO, SFI_COUNTERS, (byte) 2, 5, "").getApduRequest());
+        Assert.assertTrue(transmit(po,
+                new CloseSessionCmdBuild(PoClass.ISO, true, digest.terminalSignature(8))
+                        .getApduRequest()).isSuccessful());
+        Assert.assertEquals(5, po.getCounter(SFI_COUNTERS, 2));
+    }
+
+    @Test
+    public void session_rev24_openResponse() throws KeypleReaderException {
+        po = newPo(StubCalypsoPo.Revision.REV2_4);
+        AbstractOpenSessionRespPars openSessionPars =
+                openSession(po, PoRevision.REV2_4, TERMINAL_CHALLENGE);
+        Assert.assertEquals(34, openSessionPars.getApduResponse().getDataOut().length);
+        Assert.assertEquals((byte) 0x79, openSessionPars.getSelectedKvc());
+        Assert.assertTrue(openSessionPars.wasRatified());
+    }
+
+    @Test
+    public void session_rev24_modificationsCountedInCommands() throws KeypleReaderException {
+        po = newPo(StubCalypsoPo.Revision.REV2_4);
+        openSession(po, PoRevision.REV2_4, TERMINAL_CHALLENGE);
+        // increase of the counter 1 of the counters EF (SFI 19h)
+        byte[] increase = ByteArrayUtils.fromHex("943201C80300000100");
+        for (int i = 0; i < 6; i++) {
+            Assert.assertEquals("9000", sw(po.processApdu(increase)));
+        }
+        Assert.assertEquals("6400", sw(po.processApdu(increase)));
+    }
+
+    @Test
+    public void session_modificationBufferOverflow() throws KeypleReaderException {
+        openSession(po, PoRevision.REV3_1, TERMINAL_CHALLENGE);
+        // 430 bytes: 12 updates of 29 + 6 bytes fit, the 13th does not
+        ApduRequest update = new UpdateRecordCmdBuild(PoClass.ISO, SFI_CONTRACTS, (byte) 1,
+                new byte[29], "").getApduRequest();
+        for (int i = 0; i < 12; i++) {
+            Assert.assertTrue(transmit(po, update).isSuccessful());
+        }
+        Assert.assertEquals(0x6400, transmit(po, update).getStatusCode());
+    }
+
+    @Test
+    public void session_wrongSignature_cancelled() throws KeypleReaderException {
+        openSession(po, PoRevision.REV3_1, TERMINAL_CHALLENGE);
+        transmit(po, new UpdateRecordCmdBuild(PoClass.ISO, SFI_CONTRACTS, (byte) 1,
+                new byte[] {0x55}, "").getApduRequest());
+        Assert.assertEquals(0x55, po.getRecord(SFI_CONTRACTS, 1)[0]);
+        ApduResponse closeResponse = transmit(po,
+                new CloseSessionCmdBuild(PoClass.ISO, true, new byte[4]).getApduRequest());
+        Assert.assertEquals(0x6988, closeResponse.getStatusCode());
+        Assert.assertFalse(po.isSessionOpen());
+        Assert.assertEquals(0x00, po.getRecord(SFI_CONTRACTS, 1)[0]);
+    }
+
+    @Test
+    public void session_abort_cancelled() throws KeypleReaderException {
+        openSession(po, PoRevision.REV3_1, TERMINAL_CHALLENGE);
+        transmit(po, new IncreaseCmdBuild(PoClass.ISO, SFI_COUNTERS, (byte) 1, 1, "")
+                .getApduRequest());
+        Assert.assertEquals("9000", sw(po.processApdu(
+                new CloseSessionCmdBuild(PoClass.ISO).getApduRequest().getBytes())));
+        Assert.assertEquals(100, po.getCounter(SFI_COUNTERS, 1));
+    }
+
+    @Test
+    public void session_tearing_cancelled() throws KeypleReaderException {
+        openSession(po, PoRevision.REV3_1, TERMINAL_CHALLENGE);
+        transmit(po, new AppendRecordCmdBuild(PoClass.ISO, SFI_EVENT_LOG, new byte[] {0x01}, "")
+                .getApduRequest());
+        po.closePhysicalChannel();
+        Assert.assertFalse(po.isSessionOpen());
+        Assert.assertEquals(0x00, po.getRecord(SFI_EVENT_LOG, 1)[0]);
+    }
+
+    @Test
+    public void session_notRatified() throws KeypleReaderException {
+        AbstractOpenSessionRespPars openSessionPars =
+                openSession(po, PoRevision.REV3_1, TERMINAL_CHALLENGE);
+        CalypsoTestCrypto.SessionDigest digest = terminalDigest((byte) 0x30, (byte) 0x79,
+                TERMINAL_CHALLENGE, openSessionPars);
+        // contactless closing: ratification expected from the next command
+        Assert.assertTrue(transmit(po,
+                new CloseSessionCmdBuild(PoClass.ISO, false, digest.terminalSignature(4))
+                        .getApduRequest()).isSuccessful());
+        // the PO leaves the field before the ratification command
+        po.closePhysicalChannel();
+        Assert.assertFalse(po.isLastSessionRatified());
+
+        po.openPhysicalChannel();
+        po.processApdu(selectApplication());
+        openSessionPars = openSession(po, PoRevision.REV3_1, TERMINAL_CHALLENGE);
+        Assert.assertFalse(openSessionPars.wasRatified());
+    }
+
+    @Test
+    public void session_ratifiedByNextCommand() throws KeypleReaderException {
+        AbstractOpenSessionRespPars openSessionPars =
+                openSession(po, PoRevision.REV3_1, TERMINAL_CHALLENGE);
+        CalypsoTestCrypto.SessionDigest digest = terminalDigest((byte) 0x30, (byte) 0x79,
+                TERMINAL_CHALLENGE, openSessionPars);
+        transmit(po, new CloseSessionCmdBuild(PoClass.ISO, false, digest.terminalSignature(4))
+                .getApduRequest());
+        po.processApdu(ByteArrayUtils.fromHex("00B2000000"));
+        po.closePhysicalChannel();
+        Assert.assertTrue(po.isLastSessionRatified());
+    }
+
+    @Test
+    public void unknownCommand_fallsBackToHexCommands() throws KeypleReaderException {
+        Assert.assertEquals("6D00", sw(po.processApdu(ByteArrayUtils.fromHex("0020000000"))));
+        po.addHexCommand("0020000000", "9000");
+        Assert.assertEquals("9000", sw(po.processApdu(ByteArrayUtils.fromHex("0020000000"))));
+    }
+}
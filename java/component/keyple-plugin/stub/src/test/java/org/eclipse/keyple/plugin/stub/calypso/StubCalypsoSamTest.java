@@ -0,0 +1,232 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub.calypso;
+
+import org.eclipse.keyple.calypso.KeyReference;
+import org.eclipse.keyple.calypso.command.PoClass;
+import org.eclipse.keyple.calypso.command.po.builder.security.ChangeKeyCmdBuild;
+import org.eclipse.keyple.calypso.command.po.builder.security.PoGetChallengeCmdBuild;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordsRespPars;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
+import org.eclipse.keyple.calypso.command.sam.builder.security.CardGenerateKeyCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestAuthenticateCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestCloseCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestInitCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestUpdateCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestUpdateMultipleCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.GiveRandomCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.SamGetChallengeCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.SelectDiversifierCmdBuild;
+import org.eclipse.keyple.calypso.transaction.CalypsoMetrics;
+import org.eclipse.keyple.calypso.transaction.PoTransaction;
+import org.eclipse.keyple.metrics.InMemoryMetricsRecorder;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.message.ApduRequest;
+import org.eclipse.keyple.seproxy.message.ApduResponse;
+import org.eclipse.keyple.seproxy.protocol.TransmissionMode;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StubCalypsoSamTest extends BaseStubCalypsoTest {
+
+    private ApduResponse transmit(ApduRequest request) throws KeypleReaderException {
+        return new ApduResponse(sam.processApdu(request.getBytes()), null);
+    }
+
+    @Test
+    public void atr_matchesSamSelector() {
+        String atr = ByteArrayUtils.toHex(sam.getATR());
+        Assert.assertTrue(atr.matches("3B(.{6}|.{10})805A..80C120.{4}12345678829000"));
+    }
+
+    @Test
+    public void digest_signaturesMatchTheTestKeys() throws KeypleReaderException {
+        byte[] openData = ByteArrayUtils.fromHex("00FFFE2A00307900");
+        byte[] command = ByteArrayUtils.fromHex("00B2013C00");
+        byte[] response = ByteArrayUtils.fromHex("01029000");
+
+        Assert.assertTrue(transmit(new SelectDiversifierCmdBuild(SamRevision.C1, PO_SERIAL_NUMBER)
+                .getApduRequest()).isSuccessful());
+        byte[] challenge = transmit(
+                new SamGetChallengeCmdBuild(SamRevision.C1, (byte) 4).getApduRequest())
+                        .getDataOut();
+        Assert.assertEquals(4, challenge.length);
+        Assert.assertTrue(transmit(new DigestInitCmdBuild(SamRevision.C1, false, false,
+                (byte) 0x00, (byte) 0x30, (byte) 0x79, openData).getApduRequest()).isSuccessful());
+        Assert.assertTrue(transmit(
+                new DigestUpdateCmdBuild(SamRevision.C1, false, command).getApduRequest())
+                        .isSuccessful());
+        Assert.assertTrue(transmit(
+                new DigestUpdateCmdBuild(SamRevision.C1, false, response).getApduRequest())
+                        .isSuccessful());
+        byte[] signature = transmit(
+                new DigestCloseCmdBuild(SamRevision.C1, (byte) 4).getApduRequest()).getDataOut();
+
+        CalypsoTestCrypto.SessionDigest digest = new CalypsoTestCrypto.SessionDigest(
+                CalypsoTestCrypto.diversifiedKey((byte) 0x30, (byte) 0x79, PO_SERIAL_NUMBER),
+                challenge, openData);
+        digest.update(command);
+        digest.update(response);
+        Assert.assertArrayEquals(digest.terminalSignature(4), signature);
+
+        Assert.assertTrue(transmit(
+                new DigestAuthenticateCmdBuild(SamRevision.C1, digest.poSignature())
+                        .getApduRequest()).isSuccessful());
+        Assert.assertEquals(1, sam.getAuthenticatedSessionCount());
+    }
+
+    @Test
+    public void digestUpdateMultiple_sameAsDigestUpdate() throws KeypleReaderException {
+        byte[] openData = ByteArrayUtils.fromHex("00FFFE2A00307900");
+        transmit(new SelectDiversifierCmdBuild(SamRevision.C1, PO_SERIAL_NUMBER).getApduRequest());
+        byte[] challenge = transmit(
+                new SamGetChallengeCmdBuild(SamRevision.C1, (byte) 4).getApduRequest())
+                        .getDataOut();
+        transmit(new DigestInitCmdBuild(SamRevision.C1, false, false, (byte) 0x00, (byte) 0x30,
+                (byte) 0x79, openData).getApduRequest());
+        Assert.assertTrue(transmit(new DigestUpdateMultipleCmdBuild(SamRevision.C1,
+                ByteArrayUtils.fromHex("0500B2013C00" + "0401029000")).getApduRequest())
+                        .isSuccessful());
+        byte[] signature = transmit(
+                new DigestCloseCmdBuild(SamRevision.C1, (byte) 4).getApduRequest()).getDataOut();
+
+        CalypsoTestCrypto.SessionDigest digest = new CalypsoTestCrypto.SessionDigest(
+                CalypsoTestCrypto.diversifiedKey((byte) 0x30, (byte) 0x79, PO_SERIAL_NUMBER),
+                challenge, openData);
+        digest.update(ByteArrayUtils.fromHex("00B2013C00"));
+        digest.update(ByteArrayUtils.fromHex("01029000"));
+        Assert.assertArrayEquals(digest.terminalSignature(4), signature);
+    }
+
+    @Test
+    public void digest_wrongPoSignature() throws KeypleReaderException {
+        transmit(new SelectDiversifierCmdBuild(SamRevision.C1, PO_SERIAL_NUMBER).getApduRequest());
+        transmit(new SamGetChallengeCmdBuild(SamRevision.C1, (byte) 8).getApduRequest());
+        transmit(new DigestInitCmdBuild(SamRevision.C1, false, true, (byte) 0x00, (byte) 0x30,
+                (byte) 0x79, ByteArrayUtils.fromHex("00FFFE2A00000000000030790000"))
+                        .getApduRequest());
+        byte[] signature = transmit(
+                new DigestCloseCmdBuild(SamRevision.C1, (byte) 8).getApduRequest()).getDataOut();
+        Assert.assertEquals(8, signature.length);
+        Assert.assertEquals(0x6988, transmit(
+                new DigestAuthenticateCmdBuild(SamRevision.C1, new byte[4]).getApduRequest())
+                        .getStatusCode());
+        Assert.assertEquals(0, sam.getAuthenticatedSessionCount());
+    }
+
+    @Test
+    public void digestInit_withoutChallenge() throws KeypleReaderException {
+        transmit(new SelectDiversifierCmdBuild(SamRevision.C1, PO_SERIAL_NUMBER).getApduRequest());
+        Assert.assertEquals(0x6985,
+                transmit(new DigestInitCmdBuild(SamRevision.C1, false, false, (byte) 0x00,
+                        (byte) 0x30, (byte) 0x79, new byte[8]).getApduRequest()).getStatusCode());
+    }
+
+    @Test
+    public void cardGenerateKey_changeKey() throws KeypleReaderException {
+        StubCalypsoPo po = newPo(StubCalypsoPo.Revision.REV3_1);
+        byte[] poChallenge = new ApduResponse(po.processApdu(
+                new PoGetChallengeCmdBuild(PoClass.ISO).getApduRequest().getBytes()), null)
+                        .getDataOut();
+
+        transmit(new SelectDiversifierCmdBuild(SamRevision.C1, PO_SERIAL_NUMBER).getApduRequest());
+        Assert.assertTrue(
+                transmit(new GiveRandomCmdBuild(SamRevision.C1, poChallenge).getApduRequest())
+                        .isSuccessful());
+        byte[] cryptogram = transmit(new CardGenerateKeyCmdBuild(SamRevision.C1,
+                new KeyReference((byte) 0x21, (byte) 0x79),
+                new KeyReference((byte) 0x30, (byte) 0x7A)).getApduRequest()).getDataOut();
+        Assert.assertEquals(32, cryptogram.length);
+
+        ApduResponse changeKeyResponse = new ApduResponse(po.processApdu(
+                new ChangeKeyCmdBuild(PoClass.ISO, (byte) 3, cryptogram).getApduRequest()
+                        .getBytes()),
+                null);
+        Assert.assertTrue(changeKeyResponse.isSuccessful());
+        Assert.assertArrayEquals(new byte[] {(byte) 0x30, (byte) 0x7A}, po.getKey(3));
+
+        // the challenge has been used
+        Assert.assertEquals(0x6985, new ApduResponse(po.processApdu(
+                new ChangeKeyCmdBuild(PoClass.ISO, (byte) 3, cryptogram).getApduRequest()
+                        .getBytes()),
+                null).getStatusCode());
+    }
+
+    /**
+     * Full PoTransaction between the simulated PO and SAM
+     */
+    private void runTransaction(StubCalypsoPo.Revision revision) throws KeypleReaderException {
+        StubCalypsoPo po = newPo(revision);
+        PoTransaction poTransaction = newPoTransaction(po);
+
+        Assert.assertTrue(poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, SFI_ENVIRONMENT, (byte) 1));
+        int readEventLogParserIndex = poTransaction.prepareReadRecordsCmd(SFI_EVENT_LOG,
+                ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1, "EventLog");
+        poTransaction.prepareDecreaseCmd(SFI_COUNTERS, (byte) 1, 10, "Counter");
+        Assert.assertTrue(poTransaction.processPoCommandsInSession());
+        Assert.assertNotNull(((ReadRecordsRespPars) poTransaction
+                .getResponseParser(readEventLogParserIndex)).getRecords().get(1));
+        poTransaction.prepareAppendRecordCmd(SFI_EVENT_LOG, ByteArrayUtils.fromHex("AABBCC"),
+                "EventLog");
+        Assert.assertTrue(poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                ChannelState.KEEP_OPEN));
+        Assert.assertTrue(poTransaction.isSuccessful());
+
+        Assert.assertEquals(90, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals((byte) 0xAA, po.getRecord(SFI_EVENT_LOG, 1)[0]);
+        Assert.assertEquals(1, po.getClosedSessionCount());
+        Assert.assertEquals(1, sam.getAuthenticatedSessionCount());
+    }
+
+    @Test
+    public void poTransaction_rev31() throws KeypleReaderException {
+        runTransaction(StubCalypsoPo.Revision.REV3_1);
+    }
+
+    @Test
+    public void poTransaction_rev32() throws KeypleReaderException {
+        runTransaction(StubCalypsoPo.Revision.REV3_2);
+    }
+
+    @Test
+    public void poTransaction_rev24() throws KeypleReaderException {
+        runTransaction(StubCalypsoPo.Revision.REV2_4);
+    }
+
+    @Test
+    public void poTransaction_rev33() throws KeypleReaderException {
+        runTransaction(StubCalypsoPo.Revision.REV3_3);
+    }
+
+    @Test
+    public void poTransaction_recordsSessionPhases() throws KeypleReaderException {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        Metrics.setRecorder(metrics);
+
+        runTransaction(StubCalypsoPo.Revision.REV3_1);
+
+        Assert.assertEquals(1,
+                metrics.getHistogram(poReaderName, CalypsoMetrics.SESSION_OPENING).getCount());
+        Assert.assertEquals(1,
+                metrics.getHistogram(poReaderName, CalypsoMetrics.SESSION_COMMANDS).getCount());
+        Assert.assertEquals(1,
+                metrics.getHistogram(poReaderName, CalypsoMetrics.SESSION_CLOSING).getCount());
+        // the SAM exchanges are measured on the SAM reader
+        Assert.assertTrue(
+                metrics.getHistogram(samReaderName, Metrics.APDU_EXCHANGE).getCount() > 0);
+    }
+}
@@ -0,0 +1,285 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub.calypso;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
+import org.eclipse.keyple.calypso.transaction.CalypsoMetrics;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoResource;
+import org.eclipse.keyple.calypso.transaction.PoSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.PoSelector;
+import org.eclipse.keyple.calypso.transaction.PoTransaction;
+import org.eclipse.keyple.calypso.transaction.SamResource;
+import org.eclipse.keyple.calypso.transaction.perso.CardHandler;
+import org.eclipse.keyple.calypso.transaction.perso.PersonalizationEngine;
+import org.eclipse.keyple.calypso.transaction.perso.PersonalizationJob;
+import org.eclipse.keyple.calypso.transaction.perso.PersonalizationListener;
+import org.eclipse.keyple.calypso.transaction.perso.PersonalizationResult;
+import org.eclipse.keyple.calypso.transaction.sam.CalypsoSam;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelector;
+import org.eclipse.keyple.metrics.InMemoryMetricsRecorder;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.plugin.stub.StubPlugin;
+import org.eclipse.keyple.plugin.stub.StubProtocolSetting;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.SeReader;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.protocol.ContactlessProtocols;
+import org.eclipse.keyple.seproxy.protocol.Protocol;
+import org.eclipse.keyple.seproxy.protocol.SeProtocolSetting;
+import org.eclipse.keyple.seproxy.protocol.TransmissionMode;
+import org.eclipse.keyple.transaction.SeSelection;
+import org.eclipse.keyple.transaction.SelectionsResult;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StubPersonalizationEngineTest {
+
+    private static final byte[] AID = ByteArrayUtils.fromHex("315449432E49434131");
+    private static final byte SFI_ENVIRONMENT = (byte) 0x07;
+    private static final int PO_READERS = 3;
+    private static final int SAM_READERS = 2;
+    private static final String READER_PREFIX = "StubPersonalizationEngineTest-";
+
+    private final List<StubReader> poReaders = new ArrayList<StubReader>();
+    private final List<SamResource> samResources = new ArrayList<SamResource>();
+    /** personalized POs by card id */
+    private final Map<String, StubCalypsoPo> personalizedPos =
+            new ConcurrentHashMap<String, StubCalypsoPo>();
+    private final Map<String, StubCalypsoPo> rejectedPos =
+            new ConcurrentHashMap<String, StubCalypsoPo>();
+
+    /**
+     * Inserts a new PO in the reader for each job, as a card feeder would do
+     */
+    private final CardHandler cardHandler = new CardHandler() {
+        private final Map<SeReader, StubCalypsoPo> insertedPos =
+                new ConcurrentHashMap<SeReader, StubCalypsoPo>();
+
+        @Override
+        public CalypsoPo selectCard(SeReader poReader, PersonalizationJob job)
+                throws KeypleReaderException {
+            if (!insertedPos.containsKey(poReader)) {
+                byte[] serialNumber = new byte[8];
+                serialNumber[7] = (byte) Integer.parseInt(job.getCardId());
+                StubCalypsoPo po = new StubCalypsoPo(StubCalypsoPo.Revision.REV3_1, AID,
+                        serialNumber).addLinearFile(SFI_ENVIRONMENT, 0x2001, 1, 29);
+                insertedPos.put(poReader, po);
+                ((StubReader) poReader).insertSe(po);
+            }
+            SeSelection poSelection = new SeSelection();
+            poSelection.prepareSelection(new PoSelectionRequest(
+                    new PoSelector(
+                            new PoSelector.PoAidSelector(AID, PoSelector.InvalidatedPo.REJECT),
+                            null, "PO"),
+                    ChannelState.KEEP_OPEN, ContactlessProtocols.PROTOCOL_ISO14443_4));
+            SelectionsResult selectionsResult = poSelection.processExplicitSelection(poReader);
+            return selectionsResult.hasActiveSelection()
+                    ? (CalypsoPo) selectionsResult.getActiveSelection().getMatchingSe()
+                    : null;
+        }
+
+        @Override
+        public void releaseCard(SeReader poReader, PersonalizationJob job, boolean successful) {
+            StubCalypsoPo po = insertedPos.remove(poReader);
+            ((StubReader) poReader).removeSe();
+            (successful ? personalizedPos : rejectedPos).put(job.getCardId(), po);
+        }
+    };
+
+    /**
+     * Writes the card id in the environment record within a secure session
+     */
+    private static class WriteEnvironmentJob implements PersonalizationJob {
+        private final String cardId;
+        private final int failures;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        WriteEnvironmentJob(int cardId, int failures) {
+            this.cardId = String.valueOf(cardId);
+            this.failures = failures;
+        }
+
+        @Override
+        public String getCardId() {
+            return cardId;
+        }
+
+        @Override
+        public boolean personalize(PoResource poResource, SamResource samResource)
+                throws KeypleReaderException {
+            if (attempts.incrementAndGet() <= failures) {
+                throw new KeypleReaderException("Simulated failure of card " + cardId);
+            }
+            EnumMap<PoTransaction.SamSettings, Byte> samSettings =
+                    new EnumMap<PoTransaction.SamSettings, Byte>(
+                            PoTransaction.SamSettings.class);
+            samSettings.put(PoTransaction.SamSettings.SAM_DEFAULT_KEY_RECORD_NUMBER,
+                    PoTransaction.DEFAULT_KEY_RECORD_NUMER);
+            PoTransaction poTransaction = new PoTransaction(poResource.getSeReader(),
+                    poResource.getMatchingSe(), samResource.getSeReader(), samSettings);
+            if (!poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                    PoTransaction.SessionAccessLevel.SESSION_LVL_PERSO, (byte) 0, (byte) 0)) {
+                return false;
+            }
+            poTransaction.prepareUpdateRecordCmd(SFI_ENVIRONMENT, (byte) 1,
+                    new byte[] {(byte) Integer.parseInt(cardId)}, "Environment");
+            return poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                    ChannelState.KEEP_OPEN);
+        }
+    }
+
+    @Before
+    public void setUp() throws KeypleReaderException {
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        for (int i = 0; i < PO_READERS; i++) {
+            stubPlugin.plugStubReader(READER_PREFIX + "po" + i, true);
+            StubReader poReader = (StubReader) stubPlugin.getReader(READER_PREFIX + "po" + i);
+            poReader.addSeProtocolSetting(
+                    new SeProtocolSetting(StubProtocolSetting.SETTING_PROTOCOL_ISO14443_4));
+            poReaders.add(poReader);
+        }
+        for (int i = 0; i < SAM_READERS; i++) {
+            stubPlugin.plugStubReader(READER_PREFIX + "sam" + i, true);
+            StubReader samReader = (StubReader) stubPlugin.getReader(READER_PREFIX + "sam" + i);
+            samReader.insertSe(new StubCalypsoSam(new byte[] {0x00, 0x00, 0x00, (byte) i}));
+            SeSelection samSelection = new SeSelection();
+            samSelection.prepareSelection(
+                    new SamSelectionRequest(new SamSelector(SamRevision.C1, null, "SAM"),
+                            ChannelState.KEEP_OPEN, Protocol.ANY));
+            SelectionsResult selectionsResult = samSelection.processExplicitSelection(samReader);
+            Assert.assertTrue(selectionsResult.hasActiveSelection());
+            samResources.add(new SamResource(samReader,
+                    (CalypsoSam) selectionsResult.getActiveSelection().getMatchingSe()));
+        }
+    }
+
+    @After
+    public void tearDown() throws KeypleReaderException, InterruptedException {
+        Metrics.setRecorder(null);
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        for (String name : new ArrayList<String>(stubPlugin.getReaderNames())) {
+            if (name.startsWith(READER_PREFIX)) {
+                stubPlugin.unplugStubReader(name, true);
+            }
+        }
+    }
+
+    @Test
+    public void batchOnAllReaders() throws InterruptedException {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        Metrics.setRecorder(metrics);
+        List<PersonalizationJob> jobs = new ArrayList<PersonalizationJob>();
+        for (int i = 0; i < 12; i++) {
+            /* the first card fails once */
+            jobs.add(new WriteEnvironmentJob(i, i == 0 ? 1 : 0));
+        }
+        final AtomicInteger notifications = new AtomicInteger();
+        PersonalizationEngine engine =
+                new PersonalizationEngine(poReaders, samResources, cardHandler);
+        engine.setListener(new PersonalizationListener() {
+            @Override
+            public void onResult(PersonalizationResult result, int completedCount,
+                    int failedCount) {
+                notifications.incrementAndGet();
+            }
+        });
+
+        List<PersonalizationResult> results = engine.run(jobs.iterator());
+
+        Assert.assertEquals(12, results.size());
+        Assert.assertEquals(12, engine.getCompletedCount());
+        Assert.assertEquals(0, engine.getFailedCount());
+        Assert.assertEquals(12, notifications.get());
+        Set<String> usedPoReaders = new HashSet<String>();
+        for (PersonalizationResult result : results) {
+            Assert.assertTrue(result.toString(), result.isSuccessful());
+            Assert.assertEquals(result.getCardId().equals("0") ? 2 : 1, result.getAttempts());
+            usedPoReaders.add(result.getPoReaderName());
+            StubCalypsoPo po = personalizedPos.get(result.getCardId());
+            Assert.assertEquals((byte) Integer.parseInt(result.getCardId()),
+                    po.getRecord(SFI_ENVIRONMENT, 1)[0]);
+            Assert.assertEquals(1, po.getClosedSessionCount());
+        }
+        Assert.assertEquals(PO_READERS, usedPoReaders.size());
+        Assert.assertTrue(rejectedPos.isEmpty());
+        long personalizations = 0;
+        for (StubReader poReader : poReaders) {
+            personalizations += metrics
+                    .getHistogram(poReader.getName(), CalypsoMetrics.PERSONALIZATION).getCount();
+        }
+        Assert.assertEquals(12, personalizations);
+    }
+
+    @Test
+    public void failingListener() throws InterruptedException {
+        List<PersonalizationJob> jobs = new ArrayList<PersonalizationJob>();
+        for (int i = 0; i < 6; i++) {
+            jobs.add(new WriteEnvironmentJob(i, 0));
+        }
+        final AtomicInteger notifications = new AtomicInteger();
+        PersonalizationEngine engine =
+                new PersonalizationEngine(poReaders, samResources, cardHandler);
+        engine.setListener(new PersonalizationListener() {
+            @Override
+            public void onResult(PersonalizationResult result, int completedCount,
+                    int failedCount) {
+                notifications.incrementAndGet();
+                throw new IllegalStateException("Simulated listener failure");
+            }
+        });
+
+        List<PersonalizationResult> results = engine.run(jobs.iterator());
+
+        /* the PO reader threads went on after each failure of the listener */
+        Assert.assertEquals(6, results.size());
+        Assert.assertEquals(6, engine.getCompletedCount());
+        Assert.assertEquals(0, engine.getFailedCount());
+        Assert.assertEquals(6, notifications.get());
+        Assert.assertEquals(6, personalizedPos.size());
+    }
+
+    @Test
+    public void failedAfterMaxAttempts() throws InterruptedException {
+        PersonalizationEngine engine =
+                new PersonalizationEngine(poReaders, samResources, cardHandler);
+        engine.setMaxAttempts(2);
+        List<PersonalizationJob> jobs = new ArrayList<PersonalizationJob>();
+        jobs.add(new WriteEnvironmentJob(1, 5));
+        jobs.add(new WriteEnvironmentJob(2, 0));
+
+        List<PersonalizationResult> results = engine.run(jobs.iterator());
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(1, engine.getFailedCount());
+        for (PersonalizationResult result : results) {
+            if (result.getCardId().equals("1")) {
+                Assert.assertFalse(result.isSuccessful());
+                Assert.assertEquals(2, result.getAttempts());
+                Assert.assertTrue(result.getError() instanceof KeypleReaderException);
+            } else {
+                Assert.assertTrue(result.isSuccessful());
+                Assert.assertNull(result.getError());
+            }
+        }
+        Assert.assertTrue(rejectedPos.containsKey("1"));
+        Assert.assertTrue(personalizedPos.containsKey("2"));
+    }
+}
@@ -0,0 +1,203 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub.calypso;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.keyple.calypso.command.po.parser.SelectFileRespPars;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoFileInfo;
+import org.eclipse.keyple.calypso.transaction.PoProfile;
+import org.eclipse.keyple.calypso.transaction.PoProfileCache;
+import org.eclipse.keyple.calypso.transaction.PoSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.PoSelector;
+import org.eclipse.keyple.plugin.stub.StubPlugin;
+import org.eclipse.keyple.plugin.stub.StubProtocolSetting;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.protocol.ContactlessProtocols;
+import org.eclipse.keyple.seproxy.protocol.SeProtocolSetting;
+import org.eclipse.keyple.transaction.SeSelection;
+import org.eclipse.keyple.transaction.SelectionsResult;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StubPoProfileCacheTest {
+
+    private static final byte[] AID = ByteArrayUtils.fromHex("315449432E49434131");
+    private static final byte[] PO_SERIAL_NUMBER = ByteArrayUtils.fromHex("0000000011223344");
+    private static final String PO_READER_NAME = "StubPoProfileCacheTest-po";
+
+    private final List<File> tmpFiles = new ArrayList<File>();
+
+    @After
+    public void tearDown() throws KeypleReaderException, InterruptedException {
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        if (stubPlugin.getReaderNames().contains(PO_READER_NAME)) {
+            stubPlugin.unplugStubReader(PO_READER_NAME, true);
+        }
+        for (File file : tmpFiles) {
+            file.delete();
+        }
+    }
+
+    private File newTmpFile() throws IOException {
+        File file = File.createTempFile("po-profiles", ".txt");
+        file.delete();
+        tmpFiles.add(file);
+        tmpFiles.add(new File(file.getPath() + ".tmp"));
+        return file;
+    }
+
+    private static CalypsoPo selectPo(StubReader poReader, StubCalypsoPo po)
+            throws KeypleReaderException {
+        poReader.insertSe(po);
+        SeSelection poSelection = new SeSelection();
+        poSelection.prepareSelection(new PoSelectionRequest(
+                new PoSelector(new PoSelector.PoAidSelector(AID, PoSelector.InvalidatedPo.REJECT),
+                        null, "PO"),
+                ChannelState.KEEP_OPEN, ContactlessProtocols.PROTOCOL_ISO14443_4));
+        SelectionsResult selectionsResult = poSelection.processExplicitSelection(poReader);
+        Assert.assertTrue(selectionsResult.hasActiveSelection());
+        return (CalypsoPo) selectionsResult.getActiveSelection().getMatchingSe();
+    }
+
+    private static PoProfile newProfile(int recordSize) {
+        return newProfile(recordSize, "0A3C2001041010");
+    }
+
+    private static PoProfile newProfile(int recordSize, String startupInfo) {
+        List<PoFileInfo> files = new ArrayList<PoFileInfo>();
+        files.add(new PoFileInfo(0x2001, (byte) 0x07, (byte) SelectFileRespPars.EF_TYPE_LINEAR,
+                recordSize, 1, ByteArrayUtils.fromHex("1F101010"),
+                ByteArrayUtils.fromHex("01030301")));
+        files.add(new PoFileInfo(0x2069, (byte) 0x19, (byte) SelectFileRespPars.EF_TYPE_COUNTERS,
+                27, 1, ByteArrayUtils.fromHex("1F101000"), ByteArrayUtils.fromHex("01030100")));
+        return new PoProfile(AID, ByteArrayUtils.fromHex(startupInfo), files);
+    }
+
+    @Test
+    public void discoveryOncePerProfile() throws KeypleReaderException {
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        stubPlugin.plugStubReader(PO_READER_NAME, true);
+        StubReader poReader = (StubReader) stubPlugin.getReader(PO_READER_NAME);
+        poReader.addSeProtocolSetting(
+                new SeProtocolSetting(StubProtocolSetting.SETTING_PROTOCOL_ISO14443_4));
+        PoProfileCache cache = new PoProfileCache();
+
+        CalypsoPo calypsoPo = selectPo(poReader,
+                new StubCalypsoPo(StubCalypsoPo.Revision.REV3_1, AID, PO_SERIAL_NUMBER)
+                        .addLinearFile((byte) 0x07, 0x2001, 1, 29)
+                        .addCyclicFile((byte) 0x08, 0x2010, 3, 29)
+                        .addCountersFile((byte) 0x19, 0x2069, 9));
+        Assert.assertNull(cache.getProfile(calypsoPo));
+        PoProfile profile = cache.getOrDiscoverProfile(poReader, calypsoPo);
+        Assert.assertEquals(3, profile.getFiles().size());
+        PoFileInfo eventLog = profile.getFileBySfi((byte) 0x08);
+        Assert.assertEquals(0x2010, eventLog.getLid());
+        Assert.assertEquals(SelectFileRespPars.EF_TYPE_CYCLIC, eventLog.getEfType());
+        Assert.assertEquals(29, eventLog.getRecordSize());
+        Assert.assertEquals(3, eventLog.getNumberOfRecords());
+        Assert.assertEquals(27, profile.getFileByLid(0x2069).getRecordSize());
+        Assert.assertSame(profile, cache.getProfile(calypsoPo));
+
+        /* same profile: the files of the second PO are not discovered */
+        poReader.removeSe();
+        calypsoPo = selectPo(poReader,
+                new StubCalypsoPo(StubCalypsoPo.Revision.REV3_1, AID, PO_SERIAL_NUMBER)
+                        .addLinearFile((byte) 0x07, 0x2001, 1, 29));
+        Assert.assertSame(profile, cache.getOrDiscoverProfile(poReader, calypsoPo));
+
+        /* other profile */
+        poReader.removeSe();
+        calypsoPo = selectPo(poReader,
+                new StubCalypsoPo(StubCalypsoPo.Revision.REV3_2, AID, PO_SERIAL_NUMBER)
+                        .addLinearFile((byte) 0x07, 0x2001, 1, 29));
+        Assert.assertEquals(1, cache.getOrDiscoverProfile(poReader, calypsoPo).getFiles().size());
+        Assert.assertEquals(2, cache.getProfiles().size());
+    }
+
+    @Test
+    public void persistence() throws IOException {
+        File file = newTmpFile();
+        PoProfileCache cache = new PoProfileCache(file);
+        Assert.assertTrue(cache.getProfiles().isEmpty());
+        PoProfile profile = newProfile(29);
+        cache.putProfile(profile);
+        Assert.assertTrue(file.exists());
+
+        List<PoProfile> profiles = new PoProfileCache(file).getProfiles();
+        Assert.assertEquals(1, profiles.size());
+        Assert.assertArrayEquals(AID, profiles.get(0).getDfName());
+        Assert.assertArrayEquals(profile.getStartupInfo(), profiles.get(0).getStartupInfo());
+        Assert.assertEquals(profile.getFiles(), profiles.get(0).getFiles());
+
+        /* same key: replaced */
+        cache.putProfile(newProfile(32));
+        profiles = new PoProfileCache(file).getProfiles();
+        Assert.assertEquals(1, profiles.size());
+        Assert.assertEquals(32, profiles.get(0).getFileBySfi((byte) 0x07).getRecordSize());
+    }
+
+    @Test
+    public void concurrentSaves() throws Exception {
+        File file = newTmpFile();
+        final PoProfileCache cache = new PoProfileCache(file);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final String startupInfo = String.format("0A3C200104%02X10", i);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 10; j++) {
+                            cache.putProfile(newProfile(29, startupInfo));
+                            cache.save();
+                        }
+                    } catch (Throwable t) {
+                        synchronized (errors) {
+                            errors.add(t);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals("[]", errors.toString());
+
+        /* the last save wrote all the profiles */
+        Assert.assertEquals(threads.length, new PoProfileCache(file).getProfiles().size());
+        Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedFile() throws IOException {
+        File file = newTmpFile();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("profile 315449432E49434131 0A3C20\n".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        new PoProfileCache(file);
+    }
+}
@@ -0,0 +1,352 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.plugin.stub.calypso;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.eclipse.keyple.calypso.command.po.PoRevision;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordMultipleRespPars;
+import org.eclipse.keyple.calypso.transaction.CalypsoMetrics;
+import org.eclipse.keyple.calypso.transaction.PoResource;
+import org.eclipse.keyple.calypso.transaction.PoTransaction;
+import org.eclipse.keyple.calypso.transaction.SessionResumeCache;
+import org.eclipse.keyple.metrics.InMemoryMetricsRecorder;
+import org.eclipse.keyple.metrics.Metrics;
+import org.eclipse.keyple.plugin.stub.StubFaultSchedule;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.protocol.TransmissionMode;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * PoTransaction features run between the simulated PO and SAM
+ */
+public class StubPoTransactionTest extends BaseStubCalypsoTest {
+
+    /**
+     * Counters decreased in the closing with anticipated responses, a single Decrease Multiple
+     * when supported by the PO
+     */
+    private void runMultipleCountersTransaction(StubCalypsoPo.Revision revision)
+            throws KeypleReaderException {
+        StubCalypsoPo po = newPo(revision);
+        po.setCounter(SFI_COUNTERS, 2, 50);
+        po.setRecord(SFI_EVENT_LOG, 1, ByteArrayUtils.fromHex("0A0B0C"));
+        po.setRecord(SFI_EVENT_LOG, 2, ByteArrayUtils.fromHex("1A1B1C"));
+        PoTransaction poTransaction = newPoTransaction(po);
+
+        poTransaction.prepareReadRecordsCmd(SFI_COUNTERS, ReadDataStructure.MULTIPLE_COUNTER,
+                (byte) 1, "Counters");
+        int readEventLogParserIndex = -1;
+        if (revision == StubCalypsoPo.Revision.REV3_3) {
+            readEventLogParserIndex = poTransaction.prepareReadRecordMultipleCmd(SFI_EVENT_LOG,
+                    (byte) 1, 1, 2, "EventLog");
+        } else {
+            try {
+                poTransaction.prepareReadRecordMultipleCmd(SFI_EVENT_LOG, (byte) 1, 1, 2,
+                        "EventLog");
+                Assert.fail("Read Record Multiple not supported");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        Assert.assertTrue(poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, SFI_ENVIRONMENT, (byte) 1));
+        if (readEventLogParserIndex >= 0) {
+            ReadRecordMultipleRespPars eventLogs = (ReadRecordMultipleRespPars) poTransaction
+                    .getResponseParser(readEventLogParserIndex);
+            Assert.assertEquals("0B0C", ByteArrayUtils.toHex(eventLogs.getRecord(1)));
+            Assert.assertEquals("1B1C", ByteArrayUtils.toHex(eventLogs.getRecord(2)));
+        }
+
+        SortedMap<Integer, Integer> decrements = new TreeMap<Integer, Integer>();
+        decrements.put(1, 10);
+        decrements.put(2, 5);
+        int[] decreaseParserIndexes =
+                poTransaction.prepareDecreaseMultipleCmd(SFI_COUNTERS, decrements, "Counters");
+        Assert.assertEquals(revision == StubCalypsoPo.Revision.REV3_3 ? 1 : 2,
+                decreaseParserIndexes.length);
+        Assert.assertTrue(poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                ChannelState.KEEP_OPEN));
+        Assert.assertTrue(poTransaction.isSuccessful());
+        Assert.assertEquals("{1=90, 2=45}",
+                poTransaction.getNewCounterValues(decreaseParserIndexes).toString());
+
+        Assert.assertEquals(90, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(45, po.getCounter(SFI_COUNTERS, 2));
+        Assert.assertEquals(1, sam.getAuthenticatedSessionCount());
+    }
+
+    @Test
+    public void poTransaction_multipleCounters_rev33() throws KeypleReaderException {
+        runMultipleCountersTransaction(StubCalypsoPo.Revision.REV3_3);
+    }
+
+    @Test
+    public void poTransaction_multipleCounters_fallbackRev31() throws KeypleReaderException {
+        runMultipleCountersTransaction(StubCalypsoPo.Revision.REV3_1);
+    }
+
+    @Test
+    public void poTransaction_closingWithExpectedCounterValue() throws KeypleReaderException {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        Metrics.setRecorder(metrics);
+        StubCalypsoPo po = newPo(StubCalypsoPo.Revision.REV3_1);
+        PoTransaction poTransaction = openSessionWithModificationsInClosing(po);
+
+        poTransaction.setExpectedCounterValue(SFI_COUNTERS, 1, 100);
+        Assert.assertTrue(poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                ChannelState.KEEP_OPEN));
+        Assert.assertTrue(poTransaction.isSuccessful());
+
+        Assert.assertEquals(85, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals((byte) 0xAA, po.getRecord(SFI_EVENT_LOG, 1)[0]);
+        Assert.assertEquals(1, sam.getAuthenticatedSessionCount());
+        Assert.assertEquals(0, metrics.getCounter(poReaderName,
+                CalypsoMetrics.SESSION_CLOSING_EXTRA_EXCHANGES));
+    }
+
+    @Test
+    public void poTransaction_closingWithUnknownCounterValue() throws KeypleReaderException {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        Metrics.setRecorder(metrics);
+        StubCalypsoPo po = newPo(StubCalypsoPo.Revision.REV3_1);
+        PoTransaction poTransaction = openSessionWithModificationsInClosing(po);
+
+        Assert.assertTrue(poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                ChannelState.KEEP_OPEN));
+        Assert.assertTrue(poTransaction.isSuccessful());
+
+        Assert.assertEquals(85, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(1, sam.getAuthenticatedSessionCount());
+        Assert.assertEquals(1, metrics.getCounter(poReaderName,
+                CalypsoMetrics.SESSION_CLOSING_EXTRA_EXCHANGES));
+    }
+
+    @Test
+    public void poTransaction_reset() throws KeypleReaderException {
+        StubCalypsoPo po1 = newPo(StubCalypsoPo.Revision.REV3_1);
+        PoTransaction poTransaction = openSessionWithModificationsInClosing(po1);
+        StubReader poReader = getPoReader();
+        Assert.assertTrue(poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                ChannelState.CLOSE_AFTER));
+        Assert.assertTrue(poTransaction.isSuccessful());
+        poReader.removeSe();
+
+        /* second PO, a session left open with the previous PO is abandoned */
+        StubCalypsoPo po2 =
+                newPo(StubCalypsoPo.Revision.REV3_2, ByteArrayUtils.fromHex("0000000055667788"));
+        poReader.insertSe(po2);
+        poTransaction.reset(poReader, selectPo(poReader));
+        Assert.assertTrue(poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, SFI_COUNTERS, (byte) 1));
+        poReader.removeSe();
+
+        StubCalypsoPo po3 =
+                newPo(StubCalypsoPo.Revision.REV2_4, ByteArrayUtils.fromHex("0000000099AABBCC"));
+        poReader.insertSe(po3);
+        poTransaction.reset(poReader, selectPo(poReader));
+        Assert.assertEquals(PoRevision.REV2_4, poTransaction.getRevision());
+        Assert.assertTrue(poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, SFI_COUNTERS, (byte) 1));
+        Assert.assertEquals(0,
+                poTransaction.prepareDecreaseCmd(SFI_COUNTERS, (byte) 1, 30, "Counter"));
+        Assert.assertTrue(poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                ChannelState.KEEP_OPEN));
+        Assert.assertTrue(poTransaction.isSuccessful());
+
+        Assert.assertEquals(85, po1.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(100, po2.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(70, po3.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(2, sam.getAuthenticatedSessionCount());
+    }
+
+    /**
+     * Debit in a new transaction using the SAM resource
+     */
+    private void debitWithSamResource(StubReader poReader) throws KeypleReaderException {
+        PoTransaction poTransaction = new PoTransaction(
+                new PoResource(poReader, selectPo(poReader)), samResource, samSettings());
+        Assert.assertTrue(poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, SFI_COUNTERS, (byte) 1));
+        poTransaction.prepareDecreaseCmd(SFI_COUNTERS, (byte) 1, 1, "Counter");
+        Assert.assertTrue(poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                ChannelState.KEEP_OPEN));
+        Assert.assertTrue(poTransaction.isSuccessful());
+    }
+
+    @Test
+    public void poTransaction_samResourceKeepsDiversifier() throws KeypleReaderException {
+        StubCalypsoPo po1 = newPo(StubCalypsoPo.Revision.REV3_1);
+        newPoTransaction(po1);
+        StubReader poReader = getPoReader();
+
+        debitWithSamResource(poReader);
+        debitWithSamResource(poReader);
+        Assert.assertEquals(1, sam.getSelectDiversifierCount());
+
+        /* the application has reset the SAM */
+        samResource.resetState();
+        debitWithSamResource(poReader);
+        Assert.assertEquals(2, sam.getSelectDiversifierCount());
+
+        /* the SAM is reset without notice: the first session fails, the next one recovers */
+        getSamReader().insertSe(sam);
+        try {
+            debitWithSamResource(poReader);
+            Assert.fail("The SAM has lost the diversifier");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        debitWithSamResource(poReader);
+        Assert.assertEquals(3, sam.getSelectDiversifierCount());
+
+        poReader.removeSe();
+        StubCalypsoPo po2 =
+                newPo(StubCalypsoPo.Revision.REV3_2, ByteArrayUtils.fromHex("0000000055667788"));
+        poReader.insertSe(po2);
+        debitWithSamResource(poReader);
+        Assert.assertEquals(4, sam.getSelectDiversifierCount());
+
+        Assert.assertEquals(96, po1.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(99, po2.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(5, sam.getAuthenticatedSessionCount());
+    }
+
+    /**
+     * Debit whose closing is interrupted by the PO leaving the field
+     *
+     * @param openingSfi the EF whose record 1 is read at the opening
+     */
+    private void interruptedDebit(StubCalypsoPo po, SessionResumeCache sessionResumeCache,
+            StubFaultSchedule faultSchedule, byte openingSfi) throws KeypleReaderException {
+        PoTransaction poTransaction = newPoTransaction(po);
+        poTransaction.setSessionResumeCache(sessionResumeCache);
+        StubReader poReader = getPoReader();
+        Assert.assertTrue(poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, openingSfi, (byte) 1));
+        poTransaction.prepareDecreaseCmd(SFI_COUNTERS, (byte) 1, 10, "Counter");
+        Assert.assertTrue(poTransaction.processPoCommandsInSession());
+        poTransaction.prepareAppendRecordCmd(SFI_EVENT_LOG, ByteArrayUtils.fromHex("AABBCC"),
+                "EventLog");
+        poReader.setFaultSchedule(faultSchedule);
+        try {
+            poTransaction.processClosing(TransmissionMode.CONTACTLESS, ChannelState.KEEP_OPEN);
+            Assert.fail("The PO has left the field");
+        } catch (KeypleReaderException e) {
+            // expected
+        }
+        Assert.assertTrue(sessionResumeCache.contains(PO_SERIAL_NUMBER));
+    }
+
+    /**
+     * Resume the interrupted debit when the PO comes back
+     *
+     * @return the number of APDUs sent to the PO
+     */
+    private int resumeDebit(StubCalypsoPo po, SessionResumeCache sessionResumeCache)
+            throws KeypleReaderException {
+        StubReader poReader = getPoReader();
+        poReader.insertSe(po);
+        PoTransaction poTransaction = new PoTransaction(poReader, selectPo(poReader),
+                getSamReader(), samSettings());
+        poTransaction.setSessionResumeCache(sessionResumeCache);
+        Assert.assertTrue(poTransaction.isSessionResumable());
+        StubFaultSchedule apduCounter = new StubFaultSchedule();
+        poReader.setFaultSchedule(apduCounter);
+        Assert.assertTrue(
+                poTransaction.processResume(TransmissionMode.CONTACTLESS, ChannelState.KEEP_OPEN));
+        Assert.assertTrue(poTransaction.isSuccessful());
+        Assert.assertFalse(poTransaction.isSessionResumable());
+        return apduCounter.getApduCount();
+    }
+
+    @Test
+    public void poTransaction_resumeCancelledSession() throws KeypleReaderException {
+        StubCalypsoPo po = newPo(StubCalypsoPo.Revision.REV3_1);
+        SessionResumeCache sessionResumeCache = new SessionResumeCache();
+        StubFaultSchedule faultSchedule = new StubFaultSchedule();
+        /* the PO leaves before the Close Secure Session */
+        faultSchedule.removeSeAfter(1);
+        interruptedDebit(po, sessionResumeCache, faultSchedule, SFI_COUNTERS);
+        Assert.assertEquals(100, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(0, po.getClosedSessionCount());
+
+        /* Open Session, Decrease, Append Record, Close Session, ratification */
+        Assert.assertEquals(5, resumeDebit(po, sessionResumeCache));
+        Assert.assertEquals(90, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals((byte) 0xAA, po.getRecord(SFI_EVENT_LOG, 1)[0]);
+        Assert.assertEquals(1, po.getClosedSessionCount());
+        Assert.assertEquals(1, sam.getAuthenticatedSessionCount());
+    }
+
+    @Test
+    public void poTransaction_resumeCancelledSession_counterNotReadAtOpening()
+            throws KeypleReaderException {
+        InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+        Metrics.setRecorder(metrics);
+        StubCalypsoPo po = newPo(StubCalypsoPo.Revision.REV3_1);
+        SessionResumeCache sessionResumeCache = new SessionResumeCache();
+        StubFaultSchedule faultSchedule = new StubFaultSchedule();
+        faultSchedule.removeSeAfter(1);
+        interruptedDebit(po, sessionResumeCache, faultSchedule, SFI_ENVIRONMENT);
+        Assert.assertEquals(100, po.getCounter(SFI_COUNTERS, 1));
+
+        /* the replayed Decrease is anticipated with the value known in the interrupted session */
+        Assert.assertEquals(5, resumeDebit(po, sessionResumeCache));
+        Assert.assertEquals(90, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(1, po.getClosedSessionCount());
+        Assert.assertEquals(0, metrics.getCounter(poReaderName,
+                CalypsoMetrics.SESSION_CLOSING_EXTRA_EXCHANGES));
+    }
+
+    @Test
+    public void poTransaction_resumeCommittedSession() throws KeypleReaderException {
+        StubCalypsoPo po = newPo(StubCalypsoPo.Revision.REV3_1);
+        SessionResumeCache sessionResumeCache = new SessionResumeCache();
+        StubFaultSchedule faultSchedule = new StubFaultSchedule();
+        /* the PO leaves after the Close Secure Session, its response is lost */
+        faultSchedule.removeSeAfterCommand(1);
+        interruptedDebit(po, sessionResumeCache, faultSchedule, SFI_COUNTERS);
+        Assert.assertEquals(90, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertFalse(po.isLastSessionRatified());
+
+        /* Open Session, Close Session, ratification */
+        Assert.assertEquals(3, resumeDebit(po, sessionResumeCache));
+        Assert.assertEquals(90, po.getCounter(SFI_COUNTERS, 1));
+        Assert.assertEquals(2, po.getClosedSessionCount());
+        Assert.assertTrue(po.isLastSessionRatified());
+    }
+
+    @Test
+    public void sessionResumeCache_window() throws Exception {
+        try {
+            new SessionResumeCache(0, 1);
+            Assert.fail("Bad window");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        StubCalypsoPo po = newPo(StubCalypsoPo.Revision.REV3_1);
+        SessionResumeCache sessionResumeCache = new SessionResumeCache(50, 1);
+        StubFaultSchedule faultSchedule = new StubFaultSchedule();
+        faultSchedule.removeSeAfter(1);
+        interruptedDebit(po, sessionResumeCache, faultSchedule, SFI_COUNTERS);
+        Assert.assertEquals(1, sessionResumeCache.size());
+        Thread.sleep(100);
+        Assert.assertFalse(sessionResumeCache.contains(PO_SERIAL_NUMBER));
+        Assert.assertEquals(0, sessionResumeCache.size());
+    }
+}
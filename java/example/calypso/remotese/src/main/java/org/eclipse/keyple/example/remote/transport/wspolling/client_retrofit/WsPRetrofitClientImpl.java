@@ -153,8 +153,11 @@ public class WsPRetrofitClientImpl implements ClientNode {
 
     @Override
     public void sendDTO(TransportDto transportDto) {
-        KeypleDto keypleDto = transportDto.getKeypleDTO();
-        logger.trace("Ws Client send DTO {}", KeypleDtoHelper.toJson(keypleDto));
+        // Retrofit serializes the dto fields directly : compute its json body from the payload
+        KeypleDto keypleDto = KeypleDtoHelper.withoutPayload(transportDto.getKeypleDTO());
+        if (logger.isTraceEnabled()) {
+            logger.trace("Ws Client send DTO {}", KeypleDtoHelper.toJson(keypleDto));
+        }
 
         if (!KeypleDtoHelper.isNoResponse(transportDto.getKeypleDTO())) {
 
@@ -12,10 +12,13 @@
 package org.eclipse.keyple.integration.tools.calypso;
 
 import static org.eclipse.keyple.calypso.command.po.builder.SelectFileCmdBuild.SelectControl.CURRENT_DF;
-import static org.eclipse.keyple.calypso.command.po.builder.SelectFileCmdBuild.SelectControl.FIRST;
-import static org.eclipse.keyple.calypso.command.po.builder.SelectFileCmdBuild.SelectControl.NEXT;
+import java.io.File;
+import java.io.IOException;
 import org.eclipse.keyple.calypso.command.po.parser.SelectFileRespPars;
 import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoFileInfo;
+import org.eclipse.keyple.calypso.transaction.PoProfile;
+import org.eclipse.keyple.calypso.transaction.PoProfileCache;
 import org.eclipse.keyple.calypso.transaction.PoSelectionRequest;
 import org.eclipse.keyple.calypso.transaction.PoTransaction;
 import org.eclipse.keyple.calypso.transaction.exception.KeypleCalypsoSecureSessionException;
@@ -38,7 +41,8 @@ public class Tool_AnalyzePoFileStructure {
 
     private static final Logger logger = LoggerFactory.getLogger(Tool_AnalyzePoFileStructure.class);
 
-    // private PoStructure poStructure = null;
+    /** file structures of the already analyzed PO profiles */
+    private static PoProfileCache poProfileCache;
 
     private static String getEfTypeName(int inEfType) {
 
@@ -91,14 +95,14 @@ public class Tool_AnalyzePoFileStructure {
         return "--";
     }
 
-    private static void printFileInformation(SelectFileRespPars inFileInformation) {
+    private static void printFileInformation(PoFileInfo inFileInformation) {
 
 
         logger.info("{}",
                 String.format("|%04X | %s | %02X  | %2d | %4d | %s | %s | %s | %s |",
                         inFileInformation.getLid(), getEfTypeName(inFileInformation.getEfType()),
-                        inFileInformation.getSfi(), inFileInformation.getNumRec(),
-                        inFileInformation.getRecSize(),
+                        inFileInformation.getSfi(), inFileInformation.getNumberOfRecords(),
+                        inFileInformation.getRecordSize(),
                         getAcName(inFileInformation.getAccessConditions()[0],
                                 inFileInformation.getKeyIndexes()[0]),
                         getAcName(inFileInformation.getAccessConditions()[1],
@@ -148,56 +152,16 @@ public class Tool_AnalyzePoFileStructure {
     protected static void getApplicationFileData(SeReader poReader, CalypsoPo curApp) {
 
         try {
-            PoTransaction poTransaction = new PoTransaction(poReader, curApp);
-            int currentFile;
-
-            int selectFileParserFirstIndex = poTransaction.prepareSelectFileCmd(FIRST, "First EF");
-
-            poTransaction.processPoCommands(ChannelState.KEEP_OPEN);
-
-            SelectFileRespPars selectFileParserFirst = (SelectFileRespPars) poTransaction
-                    .getResponseParser(selectFileParserFirstIndex);
-            if (!selectFileParserFirst.isSelectionSuccessful()) {
-                return;
-            }
+            /* the files are only selected for a profile not yet in the cache */
+            PoProfile poProfile = poProfileCache.getOrDiscoverProfile(poReader, curApp);
 
             logger.info("|LID  | Type | SID | #R | Size | G0 | G1 | G2 | G3 |");
             logger.info("----------------------------------------------------");
 
-            printFileInformation(selectFileParserFirst);
-            currentFile = selectFileParserFirst.getLid();
-
-            int selectFileParserNextIndex = poTransaction.prepareSelectFileCmd(NEXT, "Next EF");
-            poTransaction.processPoCommands(ChannelState.KEEP_OPEN);
-
-            SelectFileRespPars selectFileParserNext =
-                    (SelectFileRespPars) poTransaction.getResponseParser(selectFileParserNextIndex);
-            if (!selectFileParserNext.isSelectionSuccessful()) {
-                return;
-            }
-
-            printFileInformation(selectFileParserNext);
-
-            while (selectFileParserNext.isSelectionSuccessful()
-                    && selectFileParserNext.getLid() != currentFile) {
-
-                currentFile = selectFileParserNext.getLid();
-
-                selectFileParserNextIndex = poTransaction.prepareSelectFileCmd(NEXT, "Next EF");
-                poTransaction.processPoCommands(ChannelState.KEEP_OPEN);
-
-                selectFileParserNext = (SelectFileRespPars) poTransaction
-                        .getResponseParser(selectFileParserNextIndex);
-
-                if (!selectFileParserNext.isSelectionSuccessful()) {
-                    return;
-                }
-
-                printFileInformation(selectFileParserNext);
+            for (PoFileInfo fileInfo : poProfile.getFiles()) {
+                printFileInformation(fileInfo);
             }
 
-        } catch (KeypleCalypsoSecureSessionException e) {
-            // SW1SW2 is in:: e.getResponses().get(0).getStatusCode();
         } catch (Exception e) {
             logger.error("Exception: " + e.getCause());
         } finally {
@@ -290,6 +254,13 @@ public class Tool_AnalyzePoFileStructure {
             throw new IllegalStateException("Bad PO reader setup");
         }
 
+        try {
+            poProfileCache = new PoProfileCache(new File("po_profiles.txt"));
+        } catch (IOException e) {
+            logger.warn("PO profiles not loaded: {}", e.getMessage());
+            poProfileCache = new PoProfileCache();
+        }
+
         logger.info("= PO Reader  NAME = {}", poReader.getName());
         /* Check if a PO is present in the reader */
         if (poReader.isSePresent()) {
@@ -0,0 +1,67 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Thread safe recorder of latencies, in microseconds
+ */
+public class LatencyRecorder {
+
+    private long[] latencies = new long[4096];
+    private int count;
+    private int failures;
+
+    public synchronized void record(long latencyMicros) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyMicros;
+    }
+
+    public synchronized void recordFailure() {
+        failures++;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized int getFailureCount() {
+        return failures;
+    }
+
+    /**
+     * @return a sorted copy of the recorded latencies
+     */
+    public synchronized long[] snapshot() {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Nearest-rank percentile
+     *
+     * @param sorted : sorted latencies (see {@link #snapshot()})
+     * @param percentile : percentile in ]0, 100]
+     * @return the latency, 0 if nothing was recorded
+     */
+    public static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
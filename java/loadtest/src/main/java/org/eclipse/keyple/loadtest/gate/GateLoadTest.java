@@ -0,0 +1,191 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.loadtest.gate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.loadtest.LatencyRecorder;
+import org.eclipse.keyple.plugin.stub.StubPlugin;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.plugin.stub.StubTimingProfile;
+import org.eclipse.keyple.seproxy.SeProxyService;
+
+/**
+ * Load test of a gate made of several lanes, each one with its own PO and SAM stub readers.
+ * <p>
+ * All the lanes are busy at once: the monitoring threads of the readers, the notification of the
+ * observers, the default selections and the Calypso transactions compete for the CPU. See
+ * {@link Lane} for the validation run at each tap and {@link GateLoadTestSettings} for the
+ * arguments.
+ * <p>
+ * At the end of the run, the throughput, the latency percentiles of each phase of the taps, the
+ * number of threads and the allocation rate are reported.
+ */
+public class GateLoadTest implements Lane.TapListener {
+
+    private final GateLoadTestSettings settings;
+    private final Map<Lane.Phase, LatencyRecorder> recorders =
+            new EnumMap<Lane.Phase, LatencyRecorder>(Lane.Phase.class);
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private volatile boolean measuring;
+
+    GateLoadTest(GateLoadTestSettings settings) {
+        this.settings = settings;
+        for (Lane.Phase phase : Lane.Phase.values()) {
+            recorders.put(phase, new LatencyRecorder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        GateLoadTestSettings settings = GateLoadTestSettings.parse(args);
+        new GateLoadTest(settings).run();
+        // the monitoring threads of the readers are stopped with the JVM
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        System.out.println("Gate load test : " + settings);
+
+        StubPlugin stubPlugin = StubPlugin.getInstance();
+        SeProxyService.getInstance().addPlugin(stubPlugin);
+
+        SortedSet<String> readerNames = new TreeSet<String>();
+        for (int i = 0; i < settings.lanes; i++) {
+            readerNames.add(poReaderName(i));
+            readerNames.add(samReaderName(i));
+        }
+        stubPlugin.plugStubReaders(readerNames, true);
+
+        StubTimingProfile timingProfile = null;
+        if (settings.apduLatency > 0) {
+            timingProfile = new StubTimingProfile(settings.seed);
+            timingProfile.setApduLatency(settings.apduLatency, TimeUnit.MICROSECONDS);
+        }
+        List<Lane> lanes = new ArrayList<Lane>(settings.lanes);
+        for (int i = 0; i < settings.lanes; i++) {
+            StubReader poReader = (StubReader) stubPlugin.getReader(poReaderName(i));
+            poReader.setTimingProfile(timingProfile);
+            lanes.add(new Lane(i, poReader, (StubReader) stubPlugin.getReader(samReaderName(i)),
+                    scheduler, settings, this));
+        }
+        for (Lane lane : lanes) {
+            lane.start();
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(settings.warmup));
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threadMXBean);
+        threadMXBean.resetPeakThreadCount();
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(settings.duration));
+        measuring = false;
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes(threadMXBean);
+
+        scheduler.shutdownNow();
+        report(elapsed, threadMXBean,
+                allocatedBefore < 0 || allocatedAfter < 0 ? -1
+                        : allocatedAfter - allocatedBefore);
+    }
+
+    private static String poReaderName(int lane) {
+        return String.format("lane-%03d-po", lane);
+    }
+
+    private static String samReaderName(int lane) {
+        return String.format("lane-%03d-sam", lane);
+    }
+
+    @Override
+    public void onTap(EnumMap<Lane.Phase, Long> durations) {
+        if (!measuring) {
+            return;
+        }
+        if (durations == null) {
+            recorders.get(Lane.Phase.TAP).recordFailure();
+            return;
+        }
+        for (Map.Entry<Lane.Phase, Long> duration : durations.entrySet()) {
+            recorders.get(duration.getKey()).record(duration.getValue());
+        }
+    }
+
+    /**
+     * Bytes allocated by the live threads, when supported by the JVM
+     *
+     * @return the number of bytes or -1 if not supported
+     */
+    private static long allocatedBytes(ThreadMXBean threadMXBean) {
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunThreadMXBean =
+                (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!sunThreadMXBean.isThreadAllocatedMemorySupported()
+                || !sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated : sunThreadMXBean
+                .getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    private void report(long elapsedNanos, ThreadMXBean threadMXBean, long allocatedBytes) {
+        LatencyRecorder tapRecorder = recorders.get(Lane.Phase.TAP);
+        int taps = tapRecorder.getCount();
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("---------------------------------------------------------------");
+        System.out.println(
+                String.format(Locale.ROOT, "taps              : %d in %.1f s", taps, seconds));
+        System.out.println(String.format(Locale.ROOT, "throughput        : %.1f taps/s",
+                taps / seconds));
+        System.out.println("failures          : " + tapRecorder.getFailureCount());
+        for (Lane.Phase phase : Lane.Phase.values()) {
+            long[] latencies = recorders.get(phase).snapshot();
+            System.out.println(String.format(Locale.ROOT,
+                    "%-18s: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f",
+                    phase.name().toLowerCase(Locale.ROOT) + " (ms)",
+                    LatencyRecorder.percentile(latencies, 50) / 1000.0,
+                    LatencyRecorder.percentile(latencies, 90) / 1000.0,
+                    LatencyRecorder.percentile(latencies, 99) / 1000.0,
+                    LatencyRecorder.percentile(latencies, 99.9) / 1000.0,
+                    LatencyRecorder.percentile(latencies, 100) / 1000.0));
+        }
+        System.out.println(String.format(Locale.ROOT, "threads           : %d live, %d peak",
+                threadMXBean.getThreadCount(), threadMXBean.getPeakThreadCount()));
+        if (allocatedBytes < 0) {
+            System.out.println("allocation rate   : not supported by the JVM");
+        } else {
+            System.out.println(String.format(Locale.ROOT,
+                    "allocation rate   : %.1f MB/s, %d bytes per tap",
+                    allocatedBytes / seconds / (1024 * 1024),
+                    taps == 0 ? 0 : allocatedBytes / taps));
+        }
+        System.out.println("---------------------------------------------------------------");
+    }
+}
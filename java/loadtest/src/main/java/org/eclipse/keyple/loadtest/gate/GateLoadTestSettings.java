@@ -0,0 +1,89 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.loadtest.gate;
+
+/**
+ * Settings of the gate load test, parsed from the command line arguments
+ * <p>
+ * Arguments are of the form --name=value :
+ * <ul>
+ * <li>--lanes : number of lanes, each one with a PO reader and a SAM reader (default 8)</li>
+ * <li>--rate : mean number of card arrivals per second on each lane, the arrivals following a
+ * Poisson process (default 2)</li>
+ * <li>--duration : duration of the measurement in seconds (default 30)</li>
+ * <li>--warmup : duration of the warmup in seconds, not measured (default 5)</li>
+ * <li>--hold : time in milliseconds a card stays in the reader after its validation
+ * (default 100)</li>
+ * <li>--apduLatency : latency in microseconds added to each APDU exchanged with the PO, 0 for
+ * none (default 0)</li>
+ * <li>--seed : seed of the random arrivals (default 0)</li>
+ * </ul>
+ */
+class GateLoadTestSettings {
+
+    int lanes = 8;
+    double rate = 2;
+    int duration = 30;
+    int warmup = 5;
+    int hold = 100;
+    int apduLatency = 0;
+    long seed = 0;
+
+    static GateLoadTestSettings parse(String[] args) {
+        GateLoadTestSettings settings = new GateLoadTestSettings();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument : " + arg);
+            }
+            int separator = arg.indexOf('=');
+            String name = separator > 0 ? arg.substring(2, separator) : arg.substring(2);
+            String value = separator > 0 ? arg.substring(separator + 1) : "true";
+
+            if ("lanes".equals(name)) {
+                settings.lanes = positive(name, value);
+            } else if ("rate".equals(name)) {
+                settings.rate = Double.parseDouble(value);
+                if (settings.rate <= 0) {
+                    throw new IllegalArgumentException(name + " must be positive");
+                }
+            } else if ("duration".equals(name)) {
+                settings.duration = positive(name, value);
+            } else if ("warmup".equals(name)) {
+                settings.warmup = Integer.parseInt(value);
+            } else if ("hold".equals(name)) {
+                settings.hold = Integer.parseInt(value);
+            } else if ("apduLatency".equals(name)) {
+                settings.apduLatency = Integer.parseInt(value);
+            } else if ("seed".equals(name)) {
+                settings.seed = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument : " + arg);
+            }
+        }
+        return settings;
+    }
+
+    private static int positive(String name, String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed < 1) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return parsed;
+    }
+
+    @Override
+    public String toString() {
+        return "lanes=" + lanes + ", rate=" + rate + "/s per lane, duration=" + duration
+                + "s, warmup=" + warmup + "s, hold=" + hold + "ms, apduLatency=" + apduLatency
+                + "us, seed=" + seed;
+    }
+}
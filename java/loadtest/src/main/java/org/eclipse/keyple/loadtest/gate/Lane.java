@@ -0,0 +1,287 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.loadtest.gate;
+
+import java.util.EnumMap;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.PoSelector;
+import org.eclipse.keyple.calypso.transaction.PoTransaction;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelector;
+import org.eclipse.keyple.plugin.stub.StubProtocolSetting;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.plugin.stub.calypso.StubCalypsoPo;
+import org.eclipse.keyple.plugin.stub.calypso.StubCalypsoSam;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.event.ObservableReader;
+import org.eclipse.keyple.seproxy.event.ReaderEvent;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.protocol.ContactlessProtocols;
+import org.eclipse.keyple.seproxy.protocol.Protocol;
+import org.eclipse.keyple.seproxy.protocol.SeProtocolSetting;
+import org.eclipse.keyple.seproxy.protocol.TransmissionMode;
+import org.eclipse.keyple.transaction.SeSelection;
+import org.eclipse.keyple.transaction.SelectionsResult;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A lane of the gate: a PO reader, a SAM reader and the validation run at each tap.
+ * <p>
+ * Cards arrive on the lane following a Poisson process. The insertion of a card triggers the
+ * default selection of the PO, the validation is then run by the reader observer, on the monitoring
+ * thread of the reader, as a validator application would do:
+ * <ul>
+ * <li>opening of the secure session, reading the environment record,</li>
+ * <li>reading the last event and the contract list, decreasing a counter,</li>
+ * <li>appending the new event and closing the session.</li>
+ * </ul>
+ * The card is removed after the hold time, the next arrival is scheduled from the removal.
+ */
+class Lane implements ObservableReader.ReaderObserver {
+
+    private static final Logger logger = LoggerFactory.getLogger(Lane.class);
+
+    /**
+     * Phases of a tap
+     */
+    enum Phase {
+        /* from the insertion to the notification, the default selection included */
+        SELECTION,
+        /* Open Secure Session */
+        OPENING,
+        /* commands in session */
+        SESSION,
+        /* Close Secure Session */
+        CLOSING,
+        /* from the insertion to the end of the validation */
+        TAP
+    }
+
+    /**
+     * Notified at the end of each tap
+     */
+    interface TapListener {
+        /**
+         * @param durations : duration of each phase in microseconds, null if the tap failed
+         */
+        void onTap(EnumMap<Phase, Long> durations);
+    }
+
+    static final byte[] AID = ByteArrayUtils.fromHex("315449432E49434131");
+    static final byte SFI_ENVIRONMENT = (byte) 0x07;
+    static final byte SFI_EVENT_LOG = (byte) 0x08;
+    static final byte SFI_CONTRACT_LIST = (byte) 0x1E;
+    static final byte SFI_COUNTERS = (byte) 0x19;
+
+    private final int index;
+    private final StubReader poReader;
+    private final StubReader samReader;
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+    private final double rate;
+    private final int hold;
+    private final TapListener listener;
+    private final SeSelection seSelection = new SeSelection();
+    private final EnumMap<PoTransaction.SamSettings, Byte> samSettings =
+            new EnumMap<PoTransaction.SamSettings, Byte>(PoTransaction.SamSettings.class);
+
+    private volatile long insertionTime;
+    private int tapCount;
+    /* reused from a tap to the next one, as on a validator */
+    private PoTransaction poTransaction;
+
+    Lane(int index, StubReader poReader, StubReader samReader, ScheduledExecutorService scheduler,
+            GateLoadTestSettings settings, TapListener listener) {
+        this.index = index;
+        this.poReader = poReader;
+        this.samReader = samReader;
+        this.scheduler = scheduler;
+        this.random = new Random(settings.seed + index);
+        this.rate = settings.rate;
+        this.hold = settings.hold;
+        this.listener = listener;
+        samSettings.put(PoTransaction.SamSettings.SAM_DEFAULT_KEY_RECORD_NUMBER,
+                PoTransaction.DEFAULT_KEY_RECORD_NUMER);
+    }
+
+    /**
+     * Select the SAM, set the default selection of the PO reader and schedule the first arrival
+     */
+    void start() throws KeypleReaderException {
+        samReader.insertSe(new StubCalypsoSam(
+                new byte[] {0x00, 0x00, (byte) (index >> 8), (byte) index}));
+        SeSelection samSelection = new SeSelection();
+        samSelection.prepareSelection(
+                new SamSelectionRequest(new SamSelector(SamRevision.C1, null, "SAM"),
+                        ChannelState.KEEP_OPEN, Protocol.ANY));
+        if (!samSelection.processExplicitSelection(samReader).hasActiveSelection()) {
+            throw new IllegalStateException("Selection of the SAM has failed on lane " + index);
+        }
+
+        poReader.addSeProtocolSetting(
+                new SeProtocolSetting(StubProtocolSetting.SETTING_PROTOCOL_ISO14443_4));
+        seSelection.prepareSelection(new PoSelectionRequest(
+                new PoSelector(new PoSelector.PoAidSelector(AID, PoSelector.InvalidatedPo.REJECT),
+                        null, "PO"),
+                ChannelState.KEEP_OPEN, ContactlessProtocols.PROTOCOL_ISO14443_4));
+        poReader.setDefaultSelectionRequest(seSelection.getSelectionOperation(),
+                ObservableReader.NotificationMode.ALWAYS);
+        poReader.addObserver(this);
+
+        scheduleArrival();
+    }
+
+    /**
+     * Schedule the next card arrival, the delay follows an exponential distribution
+     */
+    private void scheduleArrival() {
+        long delay = (long) (-Math.log(1 - random.nextDouble()) / rate * 1e6);
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    StubCalypsoPo po = newPo(tapCount++);
+                    insertionTime = System.nanoTime();
+                    poReader.insertSe(po);
+                }
+            }, delay, TimeUnit.MICROSECONDS);
+        } catch (RejectedExecutionException e) {
+            // end of the run
+        }
+    }
+
+    private StubCalypsoPo newPo(int tap) {
+        byte[] serialNumber = new byte[8];
+        serialNumber[3] = (byte) (index >> 8);
+        serialNumber[4] = (byte) index;
+        serialNumber[5] = (byte) (tap >> 16);
+        serialNumber[6] = (byte) (tap >> 8);
+        serialNumber[7] = (byte) tap;
+        StubCalypsoPo po = new StubCalypsoPo(StubCalypsoPo.Revision.REV3_1, AID, serialNumber)
+                .addLinearFile(SFI_ENVIRONMENT, 0x2001, 1, 29)
+                .addCyclicFile(SFI_EVENT_LOG, 0x2010, 3, 29)
+                .addLinearFile(SFI_CONTRACT_LIST, 0x2050, 1, 29)
+                .addCountersFile(SFI_COUNTERS, 0x2069, 9);
+        po.setRecord(SFI_ENVIRONMENT, 1, ByteArrayUtils.fromHex("24B92848080000131A5000"));
+        po.setCounter(SFI_COUNTERS, 1, 10);
+        return po;
+    }
+
+    @Override
+    public void update(ReaderEvent event) {
+        switch (event.getEventType()) {
+            case SE_MATCHED:
+                long selectionEnd = System.nanoTime();
+                EnumMap<Phase, Long> durations = validate(event, selectionEnd);
+                removeLater();
+                listener.onTap(durations);
+                break;
+            case SE_INSERTED:
+                logger.warn("The card has not been selected on lane {}", index);
+                removeLater();
+                listener.onTap(null);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Run the validation
+     *
+     * @return the duration of each phase, null if the validation has failed
+     */
+    private EnumMap<Phase, Long> validate(ReaderEvent event, long selectionEnd) {
+        try {
+            SelectionsResult selectionsResult =
+                    seSelection.processDefaultSelection(event.getDefaultSelectionResponse());
+            if (!selectionsResult.hasActiveSelection()) {
+                return null;
+            }
+            CalypsoPo calypsoPo = (CalypsoPo) selectionsResult.getActiveSelection().getMatchingSe();
+            if (poTransaction == null) {
+                poTransaction = new PoTransaction(poReader, calypsoPo, samReader, samSettings);
+            } else {
+                poTransaction.reset(poReader, calypsoPo);
+            }
+
+            if (!poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                    PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT, SFI_ENVIRONMENT,
+                    (byte) 1)) {
+                return null;
+            }
+            long openingEnd = System.nanoTime();
+
+            poTransaction.prepareReadRecordsCmd(SFI_EVENT_LOG,
+                    ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1, "EventLog");
+            poTransaction.prepareReadRecordsCmd(SFI_CONTRACT_LIST,
+                    ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1, "ContractList");
+            poTransaction.prepareDecreaseCmd(SFI_COUNTERS, (byte) 1, 1, "Counter");
+            if (!poTransaction.processPoCommandsInSession()) {
+                return null;
+            }
+            long sessionEnd = System.nanoTime();
+
+            poTransaction.prepareAppendRecordCmd(SFI_EVENT_LOG,
+                    ByteArrayUtils.fromHex("0102030405060708"), "EventLog");
+            if (!poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                    ChannelState.CLOSE_AFTER)) {
+                return null;
+            }
+            long closingEnd = System.nanoTime();
+
+            EnumMap<Phase, Long> durations = new EnumMap<Phase, Long>(Phase.class);
+            durations.put(Phase.SELECTION, micros(selectionEnd - insertionTime));
+            durations.put(Phase.OPENING, micros(openingEnd - selectionEnd));
+            durations.put(Phase.SESSION, micros(sessionEnd - openingEnd));
+            durations.put(Phase.CLOSING, micros(closingEnd - sessionEnd));
+            durations.put(Phase.TAP, micros(closingEnd - insertionTime));
+            return durations;
+        } catch (KeypleReaderException e) {
+            logger.warn("Validation has failed on lane {} : {}", index, e.getMessage());
+            return null;
+        } catch (RuntimeException e) {
+            logger.warn("Validation has failed on lane {}", index, e);
+            return null;
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Remove the card after the hold time then schedule the next arrival
+     */
+    private void removeLater() {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    poReader.removeSe();
+                    scheduleArrival();
+                }
+            }, hold, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // end of the run
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.loadtest.remotese;
+
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import org.eclipse.keyple.calypso.command.po.parser.ReadDataStructure;
+import org.eclipse.keyple.calypso.command.po.parser.ReadRecordsRespPars;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.PoTransaction;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelectionRequest;
+import org.eclipse.keyple.calypso.transaction.sam.SamSelector;
+import org.eclipse.keyple.plugin.remotese.pluginse.MasterAPI;
+import org.eclipse.keyple.plugin.remotese.pluginse.RemoteSePlugin;
+import org.eclipse.keyple.plugin.remotese.pluginse.VirtualReader;
+import org.eclipse.keyple.seproxy.ChannelState;
+import org.eclipse.keyple.seproxy.SeSelector;
+import org.eclipse.keyple.seproxy.event.ObservablePlugin;
+import org.eclipse.keyple.seproxy.event.ObservableReader;
+import org.eclipse.keyple.seproxy.event.PluginEvent;
+import org.eclipse.keyple.seproxy.event.ReaderEvent;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.protocol.ContactlessProtocols;
+import org.eclipse.keyple.seproxy.protocol.Protocol;
+import org.eclipse.keyple.seproxy.protocol.TransmissionMode;
+import org.eclipse.keyple.transaction.SeSelection;
+import org.eclipse.keyple.transaction.SelectionsResult;
+import org.eclipse.keyple.util.ByteArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Master side of the load test : configures the default selection of each PO Virtual Reader and
+ * runs a Calypso secure session each time a PO matches, with the SAM Virtual Reader of the same
+ * slave.
+ * <p>
+ * The selection reads the EnvironmentAndHolder record. The session is opened with the reading of
+ * the EventLog record, then the ContractList record is read and the counter is decreased, the
+ * session is closed with a new EventLog record and the channel is closed. The SAM of a slave is
+ * selected at its first transaction. Transactions run on a worker pool so the notification of the
+ * reader events is never blocked by the exchanges with the slaves.
+ */
+class LoadTestMaster implements ObservablePlugin.PluginObserver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestMaster.class);
+
+    /**
+     * Notified at the end of each transaction
+     */
+    interface TransactionListener {
+        /**
+         * @param nativeReaderName : name of the reader of the slave
+         * @param success : true if the transaction has succeeded
+         */
+        void onTransactionCompleted(String nativeReaderName, boolean success);
+    }
+
+    private final RemoteSePlugin plugin;
+    private final ExecutorService workers;
+    private final TransactionListener listener;
+    // selection of each PO Virtual Reader, by native reader name (the name carried by the events)
+    private final ConcurrentMap<String, ReaderContext> readerContexts =
+            new ConcurrentHashMap<String, ReaderContext>();
+    // SAM Virtual Reader of each slave, by slave node id
+    private final ConcurrentMap<String, SamContext> samContexts =
+            new ConcurrentHashMap<String, SamContext>();
+    private final EnumMap<PoTransaction.SamSettings, Byte> samSettings =
+            new EnumMap<PoTransaction.SamSettings, Byte>(PoTransaction.SamSettings.class);
+    // observer of the Virtual Readers
+    private final ObservableReader.ReaderObserver readerObserver =
+            new ObservableReader.ReaderObserver() {
+                @Override
+                public void update(ReaderEvent event) {
+                    onReaderEvent(event);
+                }
+            };
+
+    LoadTestMaster(MasterAPI masterAPI, ExecutorService workers, TransactionListener listener) {
+        this.plugin = masterAPI.getPlugin();
+        this.workers = workers;
+        this.listener = listener;
+        samSettings.put(PoTransaction.SamSettings.SAM_DEFAULT_KEY_RECORD_NUMBER,
+                PoTransaction.DEFAULT_KEY_RECORD_NUMER);
+        plugin.addObserver(this);
+    }
+
+    @Override
+    public void update(PluginEvent event) {
+        String readerName = event.getReaderNames().first();
+        switch (event.getEventType()) {
+            case READER_CONNECTED:
+                try {
+                    onReaderConnected((VirtualReader) plugin.getReader(readerName));
+                } catch (KeypleReaderException e) {
+                    logger.error("Virtual Reader {} could not be configured", readerName, e);
+                }
+                break;
+            case READER_DISCONNECTED:
+                for (ReaderContext context : readerContexts.values()) {
+                    if (context.reader.getName().equals(readerName)) {
+                        readerContexts.remove(context.reader.getNativeReaderName());
+                    }
+                }
+                for (SamContext samContext : samContexts.values()) {
+                    if (samContext.reader.getName().equals(readerName)) {
+                        samContexts.remove(samContext.reader.getSession().getSlaveNodeId());
+                    }
+                }
+                break;
+        }
+    }
+
+    private void onReaderEvent(final ReaderEvent event) {
+        if (event.getEventType() == ReaderEvent.EventType.SE_MATCHED) {
+            final ReaderContext context = readerContexts.get(event.getReaderName());
+            if (context == null) {
+                logger.warn("SE_MATCHED received for an unknown reader {}",
+                        event.getReaderName());
+                return;
+            }
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean success = false;
+                    try {
+                        success = runTransaction(context, event);
+                    } finally {
+                        // the slave is released whatever happened
+                        listener.onTransactionCompleted(event.getReaderName(), success);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Register the SAM Virtual Reader of a slave, or set the default selection of a new PO Virtual
+     * Reader and observe it
+     */
+    private void onReaderConnected(VirtualReader reader) throws KeypleReaderException {
+        if (reader.getNativeReaderName().startsWith(SimulatedSlave.SAM_READER_PREFIX)) {
+            // the SAM is selected by the first transaction, the slave is still being connected
+            samContexts.put(reader.getSession().getSlaveNodeId(), new SamContext(reader));
+            return;
+        }
+        SeSelection seSelection = new SeSelection();
+        PoSelectionRequest poSelectionRequest = new PoSelectionRequest(
+                new SeSelector(new SeSelector.AidSelector(SimulatedSlave.AID, null), null,
+                        "AID: " + ByteArrayUtils.toHex(SimulatedSlave.AID)),
+                ChannelState.KEEP_OPEN, ContactlessProtocols.PROTOCOL_ISO14443_4);
+        int readEnvironmentParserIndex = poSelectionRequest.prepareReadRecordsCmd(
+                SimulatedSlave.SFI_ENVIRONMENT, ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1,
+                "EnvironmentAndHolder");
+        seSelection.prepareSelection(poSelectionRequest);
+
+        readerContexts.put(reader.getNativeReaderName(),
+                new ReaderContext(reader, seSelection, readEnvironmentParserIndex));
+
+        reader.setDefaultSelectionRequest(seSelection.getSelectionOperation(),
+                ObservableReader.NotificationMode.MATCHED_ONLY);
+        reader.addObserver(readerObserver);
+    }
+
+    /**
+     * Process the default selection response then run the secure session
+     *
+     * @return true if the transaction has succeeded
+     */
+    private boolean runTransaction(ReaderContext context, ReaderEvent event) {
+        try {
+            SelectionsResult selectionsResult;
+            // a SeSelection is not thread safe
+            synchronized (context) {
+                selectionsResult = context.seSelection
+                        .processDefaultSelection(event.getDefaultSelectionResponse());
+            }
+            if (!selectionsResult.hasActiveSelection()) {
+                logger.warn("Selection of the PO has failed on reader {}",
+                        context.reader.getName());
+                return false;
+            }
+            ReadRecordsRespPars readEnvironmentParser =
+                    (ReadRecordsRespPars) selectionsResult.getActiveSelection()
+                            .getResponseParser(context.readEnvironmentParserIndex);
+            if (readEnvironmentParser.getRecords().get(1) == null) {
+                return false;
+            }
+
+            SamContext samContext = samContexts.get(context.reader.getSession().getSlaveNodeId());
+            if (samContext == null || !samContext.select()) {
+                logger.warn("No SAM available for reader {}", context.reader.getName());
+                return false;
+            }
+
+            PoTransaction poTransaction = new PoTransaction(context.reader,
+                    (CalypsoPo) selectionsResult.getActiveSelection().getMatchingSe(),
+                    samContext.reader, samSettings);
+            if (!poTransaction.processOpening(PoTransaction.ModificationMode.ATOMIC,
+                    PoTransaction.SessionAccessLevel.SESSION_LVL_DEBIT,
+                    SimulatedSlave.SFI_EVENT_LOG, (byte) 1)) {
+                return false;
+            }
+            poTransaction.prepareReadRecordsCmd(SimulatedSlave.SFI_CONTRACT_LIST,
+                    ReadDataStructure.SINGLE_RECORD_DATA, (byte) 1, "ContractList");
+            poTransaction.prepareDecreaseCmd(SimulatedSlave.SFI_COUNTERS, (byte) 1, 1,
+                    "Counter");
+            if (!poTransaction.processPoCommandsInSession()) {
+                return false;
+            }
+            poTransaction.prepareAppendRecordCmd(SimulatedSlave.SFI_EVENT_LOG,
+                    ByteArrayUtils.fromHex("0102030405060708"), "EventLog");
+            return poTransaction.processClosing(TransmissionMode.CONTACTLESS,
+                    ChannelState.CLOSE_AFTER);
+        } catch (KeypleReaderException e) {
+            logger.warn("Transaction has failed on reader {} : {}", context.reader.getName(),
+                    e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            logger.warn("Transaction has failed on reader {}", context.reader.getName(), e);
+            return false;
+        }
+    }
+
+    private static final class ReaderContext {
+        private final VirtualReader reader;
+        private final SeSelection seSelection;
+        private final int readEnvironmentParserIndex;
+
+        ReaderContext(VirtualReader reader, SeSelection seSelection,
+                int readEnvironmentParserIndex) {
+            this.reader = reader;
+            this.seSelection = seSelection;
+            this.readEnvironmentParserIndex = readEnvironmentParserIndex;
+        }
+    }
+
+    /**
+     * SAM Virtual Reader of a slave, the logical channel opened by the selection of the SAM is
+     * kept for all the transactions of the slave
+     */
+    private static final class SamContext {
+        private final VirtualReader reader;
+        private boolean selected;
+
+        SamContext(VirtualReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Select the SAM at the first call
+         *
+         * @return true if the SAM is selected
+         */
+        synchronized boolean select() throws KeypleReaderException {
+            if (!selected) {
+                SeSelection samSelection = new SeSelection();
+                samSelection.prepareSelection(
+                        new SamSelectionRequest(new SamSelector(SamRevision.C1, null, "SAM"),
+                                ChannelState.KEEP_OPEN, Protocol.ANY));
+                selected = samSelection.processExplicitSelection(reader).hasActiveSelection();
+            }
+            return selected;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.loadtest.remotese;
+
+/**
+ * Settings of the Remote SE load test, parsed from the command line arguments
+ * <p>
+ * Arguments are of the form --name=value :
+ * <ul>
+ * <li>--slaves : number of simulated slave nodes, each one with a PO and a SAM stub reader
+ * (default 1000)</li>
+ * <li>--rate : number of cards inserted per second over all the slaves (default 200)</li>
+ * <li>--duration : duration of the measurement in seconds (default 30)</li>
+ * <li>--warmup : duration of the warmup in seconds, not measured (default 5)</li>
+ * <li>--hold : time in milliseconds a card stays in the reader after its transaction
+ * (default 20)</li>
+ * <li>--zeroSerialization : use the zero-serialization mode of the local transport (default
+ * false)</li>
+ * </ul>
+ */
+class LoadTestSettings {
+
+    int slaves = 1000;
+    int rate = 200;
+    int duration = 30;
+    int warmup = 5;
+    int hold = 20;
+    boolean zeroSerialization = false;
+
+    static LoadTestSettings parse(String[] args) {
+        LoadTestSettings settings = new LoadTestSettings();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument : " + arg);
+            }
+            int separator = arg.indexOf('=');
+            String name = separator > 0 ? arg.substring(2, separator) : arg.substring(2);
+            String value = separator > 0 ? arg.substring(separator + 1) : "true";
+
+            if ("slaves".equals(name)) {
+                settings.slaves = positive(name, value);
+            } else if ("rate".equals(name)) {
+                settings.rate = positive(name, value);
+            } else if ("duration".equals(name)) {
+                settings.duration = positive(name, value);
+            } else if ("warmup".equals(name)) {
+                settings.warmup = Integer.parseInt(value);
+            } else if ("hold".equals(name)) {
+                settings.hold = Integer.parseInt(value);
+            } else if ("zeroSerialization".equals(name)) {
+                settings.zeroSerialization = Boolean.parseBoolean(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument : " + arg);
+            }
+        }
+        return settings;
+    }
+
+    private static int positive(String name, String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed < 1) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return parsed;
+    }
+
+    @Override
+    public String toString() {
+        return "slaves=" + slaves + ", rate=" + rate + "/s, duration=" + duration + "s, warmup="
+                + warmup + "s, hold=" + hold + "ms, zeroSerialization=" + zeroSerialization;
+    }
+}
@@ -0,0 +1,196 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.loadtest.remotese;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.keyple.loadtest.LatencyRecorder;
+import org.eclipse.keyple.plugin.remotese.pluginse.MasterAPI;
+import org.eclipse.keyple.plugin.remotese.transport.factory.TransportFactory;
+import org.eclipse.keyple.plugin.remotese.transport.impl.java.LocalTransportFactory;
+import org.eclipse.keyple.plugin.stub.StubPlugin;
+import org.eclipse.keyple.seproxy.SeProxyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load test of the Remote SE plugin.
+ * <p>
+ * A master ({@link MasterAPI}) and thousands of simulated slaves ({@link SimulatedSlave}) are bound
+ * together by the local transport. Cards are inserted in the idle slave readers at a fixed rate,
+ * each insertion triggers the default selection and a Calypso secure session run by the master
+ * with the SAM of the slave ({@link LoadTestMaster}). The card is removed once the transaction is
+ * completed.
+ * <p>
+ * At the end of the run, the throughput, the latency percentiles (from the insertion of the card
+ * to the end of the transaction) and the heap used per session are reported. See
+ * {@link LoadTestSettings} for the arguments.
+ */
+public class RemoteSeLoadTest implements LoadTestMaster.TransactionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteSeLoadTest.class);
+
+    private static final String MASTER_NODE_ID = "loadTestMaster";
+
+    private final LoadTestSettings settings;
+    private final Map<String, SimulatedSlave> slavesByReaderName =
+            new ConcurrentHashMap<String, SimulatedSlave>();
+    private final ConcurrentLinkedQueue<SimulatedSlave> idleSlaves =
+            new ConcurrentLinkedQueue<SimulatedSlave>();
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private final AtomicInteger missedInsertions = new AtomicInteger();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final ExecutorService workers =
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+    private volatile boolean measuring;
+
+    RemoteSeLoadTest(LoadTestSettings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.parse(args);
+        new RemoteSeLoadTest(settings).run();
+        // the monitoring threads of the readers are stopped with the JVM
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        System.out.println("Remote SE load test : " + settings);
+
+        SeProxyService.getInstance().addPlugin(StubPlugin.getInstance());
+        TransportFactory factory =
+                new LocalTransportFactory(MASTER_NODE_ID, settings.zeroSerialization);
+
+        MasterAPI masterAPI = new MasterAPI(SeProxyService.getInstance(), factory.getServer());
+        new LoadTestMaster(masterAPI, workers, this);
+
+        /* connect the slaves */
+        long heapBefore = usedHeap();
+        List<SimulatedSlave> slaves = new ArrayList<SimulatedSlave>(settings.slaves);
+        long start = System.nanoTime();
+        for (int i = 0; i < settings.slaves; i++) {
+            SimulatedSlave slave =
+                    new SimulatedSlave(i, factory.getClient("slave" + i), MASTER_NODE_ID);
+            slave.connect();
+            slaves.add(slave);
+            slavesByReaderName.put(slave.getReaderName(), slave);
+        }
+        long connectionTime = System.nanoTime() - start;
+        // each slave has a session for its PO reader and one for its SAM reader
+        long heapPerSession =
+                (usedHeap() - heapBefore) / masterAPI.getPlugin().getSessionCount();
+        System.out.println(String.format(Locale.ROOT,
+                "%d slaves connected in %d ms, %d sessions on the master, %d bytes per session",
+                settings.slaves, TimeUnit.NANOSECONDS.toMillis(connectionTime),
+                masterAPI.getPlugin().getSessionCount(), heapPerSession));
+        idleSlaves.addAll(slaves);
+
+        /* insert cards at the configured rate */
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                SimulatedSlave slave = idleSlaves.poll();
+                if (slave == null) {
+                    // all the readers are busy, the master does not keep up with the rate
+                    missedInsertions.incrementAndGet();
+                    return;
+                }
+                slave.insertCard();
+            }
+        }, 0, TimeUnit.SECONDS.toNanos(1) / settings.rate, TimeUnit.NANOSECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(settings.warmup));
+        missedInsertions.set(0);
+        measuring = true;
+        start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(settings.duration));
+        measuring = false;
+        long elapsed = System.nanoTime() - start;
+
+        scheduler.shutdownNow();
+        report(latencyRecorder.getCount(), elapsed,
+                masterAPI.getPlugin().getSessionCount(), heapPerSession);
+    }
+
+    @Override
+    public void onTransactionCompleted(String nativeReaderName, boolean success) {
+        final SimulatedSlave slave = slavesByReaderName.get(nativeReaderName);
+        if (slave == null) {
+            logger.warn("Transaction completed on an unknown reader {}", nativeReaderName);
+            return;
+        }
+        if (measuring) {
+            if (success) {
+                latencyRecorder.record(TimeUnit.NANOSECONDS
+                        .toMicros(System.nanoTime() - slave.getInsertionTime()));
+            } else {
+                latencyRecorder.recordFailure();
+            }
+        }
+        // the card is left in the reader for a while, as a holder would do
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    slave.removeCard();
+                    idleSlaves.add(slave);
+                }
+            }, settings.hold, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // end of the run
+        }
+    }
+
+    private void report(int transactions, long elapsedNanos, int sessions, long heapPerSession) {
+        long[] latencies = latencyRecorder.snapshot();
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("---------------------------------------------------------------");
+        System.out.println(String.format(Locale.ROOT, "transactions      : %d in %.1f s",
+                transactions, seconds));
+        System.out.println(String.format(Locale.ROOT, "throughput        : %.1f tx/s",
+                transactions / seconds));
+        System.out.println("failures          : " + latencyRecorder.getFailureCount());
+        System.out.println("missed insertions : " + missedInsertions.get());
+        System.out.println(String.format(Locale.ROOT,
+                "latency (ms)      : p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f",
+                LatencyRecorder.percentile(latencies, 50) / 1000.0,
+                LatencyRecorder.percentile(latencies, 90) / 1000.0,
+                LatencyRecorder.percentile(latencies, 99) / 1000.0,
+                LatencyRecorder.percentile(latencies, 99.9) / 1000.0,
+                LatencyRecorder.percentile(latencies, 100) / 1000.0));
+        System.out.println("sessions          : " + sessions);
+        System.out.println(
+                String.format(Locale.ROOT, "heap per session  : %d bytes", heapPerSession));
+        System.out.println(String.format(Locale.ROOT, "heap used         : %d KB at the end",
+                usedHeap() / 1024));
+        System.out.println("---------------------------------------------------------------");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
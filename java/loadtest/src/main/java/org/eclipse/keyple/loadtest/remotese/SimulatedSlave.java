@@ -0,0 +1,128 @@
+/********************************************************************************
+ * Copyright (c) 2019 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information regarding copyright
+ * ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ********************************************************************************/
+package org.eclipse.keyple.loadtest.remotese;
+
+import org.eclipse.keyple.plugin.remotese.nativese.SlaveAPI;
+import org.eclipse.keyple.plugin.remotese.transport.factory.ClientNode;
+import org.eclipse.keyple.plugin.stub.StubPlugin;
+import org.eclipse.keyple.plugin.stub.StubProtocolSetting;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.plugin.stub.calypso.StubCalypsoPo;
+import org.eclipse.keyple.plugin.stub.calypso.StubCalypsoSam;
+import org.eclipse.keyple.seproxy.SeProxyService;
+import org.eclipse.keyple.seproxy.exception.KeypleReaderException;
+import org.eclipse.keyple.seproxy.protocol.SeProtocolSetting;
+import org.eclipse.keyple.util.ByteArrayUtils;
+
+/**
+ * Simulated slave node : a client node of the local transport, its {@link SlaveAPI}, a PO stub
+ * reader and a SAM stub reader, both connected to the master
+ * <p>
+ * A new Calypso PO is inserted at each tap, the SAM stays in its reader for the whole run.
+ */
+class SimulatedSlave {
+
+    static final byte[] AID = ByteArrayUtils.fromHex("315449432E49434131");
+    static final byte SFI_ENVIRONMENT = (byte) 0x07;
+    static final byte SFI_EVENT_LOG = (byte) 0x08;
+    static final byte SFI_CONTRACT_LIST = (byte) 0x1E;
+    static final byte SFI_COUNTERS = (byte) 0x19;
+
+    /** prefix of the names of the SAM readers, used by the master to tell them apart */
+    static final String SAM_READER_PREFIX = "stubSam-";
+
+    private final int index;
+    private final String nodeId;
+    private final StubReader poReader;
+    private final StubReader samReader;
+    private final SlaveAPI slaveAPI;
+    private int tapCount;
+    private volatile long insertionTime;
+
+    /**
+     * Plug the stub readers, insert the SAM and bind the slave services to the client node
+     *
+     * @param index : index of the slave, used for the serial numbers of its cards
+     * @param clientNode : client node of the slave, bound to the master server node
+     * @param masterNodeId : node id of the master
+     */
+    SimulatedSlave(int index, ClientNode clientNode, String masterNodeId)
+            throws KeypleReaderException {
+        this.index = index;
+        this.nodeId = clientNode.getNodeId();
+
+        String poReaderName = "stubReader-" + nodeId;
+        StubPlugin.getInstance().plugStubReader(poReaderName, true);
+        this.poReader = (StubReader) StubPlugin.getInstance().getReader(poReaderName);
+        this.poReader.addSeProtocolSetting(
+                new SeProtocolSetting(StubProtocolSetting.SETTING_PROTOCOL_ISO14443_4));
+
+        String samReaderName = SAM_READER_PREFIX + nodeId;
+        StubPlugin.getInstance().plugStubReader(samReaderName, true);
+        this.samReader = (StubReader) StubPlugin.getInstance().getReader(samReaderName);
+        this.samReader.insertSe(new StubCalypsoSam(
+                new byte[] {0x00, (byte) (index >> 16), (byte) (index >> 8), (byte) index}));
+
+        this.slaveAPI = new SlaveAPI(SeProxyService.getInstance(), clientNode, masterNodeId);
+    }
+
+    /**
+     * Connect the SAM reader then the PO reader to the master, a Virtual Reader is created by the
+     * master for each one
+     */
+    void connect() throws KeypleReaderException {
+        slaveAPI.connectReader(samReader);
+        slaveAPI.connectReader(poReader);
+    }
+
+    String getReaderName() {
+        return poReader.getName();
+    }
+
+    /**
+     * Present a new card to the PO reader
+     */
+    void insertCard() {
+        StubCalypsoPo po = newPo(tapCount++);
+        insertionTime = System.nanoTime();
+        poReader.insertSe(po);
+    }
+
+    void removeCard() {
+        poReader.removeSe();
+    }
+
+    /**
+     * @return time of the last insertion, see {@link System#nanoTime()}
+     */
+    long getInsertionTime() {
+        return insertionTime;
+    }
+
+    private StubCalypsoPo newPo(int tap) {
+        byte[] serialNumber = new byte[8];
+        serialNumber[2] = (byte) (index >> 16);
+        serialNumber[3] = (byte) (index >> 8);
+        serialNumber[4] = (byte) index;
+        serialNumber[5] = (byte) (tap >> 16);
+        serialNumber[6] = (byte) (tap >> 8);
+        serialNumber[7] = (byte) tap;
+        StubCalypsoPo po = new StubCalypsoPo(StubCalypsoPo.Revision.REV3_1, AID, serialNumber)
+                .addLinearFile(SFI_ENVIRONMENT, 0x2001, 1, 29)
+                .addCyclicFile(SFI_EVENT_LOG, 0x2010, 3, 29)
+                .addLinearFile(SFI_CONTRACT_LIST, 0x2050, 1, 29)
+                .addCountersFile(SFI_COUNTERS, 0x2069, 9);
+        po.setRecord(SFI_ENVIRONMENT, 1, ByteArrayUtils.fromHex("24B92848080000131A5000"));
+        po.setCounter(SFI_COUNTERS, 1, 10);
+        return po;
+    }
+}